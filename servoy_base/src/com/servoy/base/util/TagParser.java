@@ -28,7 +28,20 @@ public class TagParser
 {
 	public static final String TAGCHAR = "%"; //$NON-NLS-1$
 
-	public static String processTags(String s, ITagResolver resolver, I18NProvider i18nProvider)
+	/**
+	 * Receives the text and tags of a tag string in order, see {@link #parse(String, ITagHandler)}.
+	 */
+	interface ITagHandler
+	{
+		void appendText(String text);
+
+		/**
+		 * @param tag the trimmed name of a %%tag%%
+		 */
+		void appendTag(String tag);
+	}
+
+	public static String processTags(String s, final ITagResolver resolver, final I18NProvider i18nProvider)
 	{
 		if (s == null)
 		{
@@ -39,7 +52,49 @@ public class TagParser
 			return i18nProvider.getI18NMessage(s.substring(5));
 		}
 
-		StringBuilder retval = new StringBuilder();
+		final StringBuilder retval = new StringBuilder();
+		boolean changed = parse(s, new ITagHandler()
+		{
+			public void appendText(String text)
+			{
+				retval.append(text);
+			}
+
+			public void appendTag(String tag)
+			{
+				String string = null;
+				if (tag.startsWith("i18n:")) //$NON-NLS-1$
+				{
+					if (i18nProvider != null)
+					{
+						string = i18nProvider.getI18NMessageIfPrefixed(tag);
+					}
+					else
+					{
+						string = tag;
+					}
+				}
+				else if (resolver != null)
+				{
+					string = resolver.getStringValue(tag);
+				}
+
+				if (string != null)
+				{
+					retval.append(string);
+				}
+			}
+		});
+		return changed ? retval.toString() : s;
+	}
+
+	/**
+	 * Split a tag string in text and %%tag%% parts and give them to the handler in order, consecutive texts can be given in multiple parts.
+	 *
+	 * @return true when the string contains %% so the result can differ from the string itself
+	 */
+	static boolean parse(String s, ITagHandler handler)
+	{
 		String[] splitResult = split(s, TAGCHAR.charAt(0));
 		int[] splitIdx = { 0 };
 		boolean changed = false;
@@ -57,7 +112,7 @@ public class TagParser
 					{
 						do
 						{
-							retval.append(token1);
+							handler.appendText(token1);
 							token1 = token2;
 							token2 = macro;
 							macro = getNextToken(splitResult, splitIdx);
@@ -68,50 +123,29 @@ public class TagParser
 					String percent2 = getNextToken(splitResult, splitIdx);
 					if (macro != null && TAGCHAR.equals(percent1) && TAGCHAR.equals(percent2))
 					{
-						String string = null;
-						String trimmed = macro.trim();
-						if (trimmed.startsWith("i18n:")) //$NON-NLS-1$
-						{
-							if (i18nProvider != null)
-							{
-								string = i18nProvider.getI18NMessageIfPrefixed(trimmed);
-							}
-							else
-							{
-								string = trimmed;
-							}
-						}
-						else if (resolver != null)
-						{
-							string = resolver.getStringValue(trimmed);
-						}
-
-						if (string != null)
-						{
-							retval.append(string);
-						}
+						handler.appendTag(macro.trim());
 					}
 					else
 					{
-						retval.append(token1);
-						retval.append(token2);
-						if (macro != null) retval.append(macro);
-						if (percent1 != null) retval.append(percent1);
-						if (percent2 != null) retval.append(percent2);
+						handler.appendText(token1);
+						handler.appendText(token2);
+						if (macro != null) handler.appendText(macro);
+						if (percent1 != null) handler.appendText(percent1);
+						if (percent2 != null) handler.appendText(percent2);
 					}
 				}
 				else
 				{
-					retval.append(token1);
-					if (token2 != null) retval.append(token2);
+					handler.appendText(token1);
+					if (token2 != null) handler.appendText(token2);
 				}
 			}
 			else
 			{
-				retval.append(token1);
+				handler.appendText(token1);
 			}
 		}
-		return changed ? retval.toString() : s;
+		return changed;
 	}
 
 	public static boolean staticStringUsesDataproviderAsTag(String staticString, String dataProvider)
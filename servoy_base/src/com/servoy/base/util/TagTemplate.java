@@ -0,0 +1,202 @@
+/*
+ This file belongs to the Servoy development and deployment environment, Copyright (C) 1997-2021 Servoy BV
+
+ This program is free software; you can redistribute it and/or modify it under
+ the terms of the GNU Affero General Public License as published by the Free
+ Software Foundation; either version 3 of the License, or (at your option) any
+ later version.
+
+ This program is distributed in the hope that it will be useful, but WITHOUT
+ ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ FOR A PARTICULAR PURPOSE. See the GNU Affero General Public License for more details.
+
+ You should have received a copy of the GNU Affero General Public License along
+ with this program; if not, see http://www.gnu.org/licenses or write to the Free
+ Software Foundation,Inc., 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301
+ */
+package com.servoy.base.util;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A tag string (with %%tag%% and %%i18n:key%% tags) that is parsed once into literal and tag segments, so it can be rendered without parsing it again.
+ * <p>
+ * Rendering gives the same result as {@link TagParser#processTags(String, ITagResolver, I18NProvider)}, the tag values can be resolved separately from
+ * building the string, so callers can skip building the string when the tag values did not change.
+ *
+ * @author agent
+ * @since 2021.06
+ */
+public final class TagTemplate
+{
+	private static final String[] NO_STRINGS = new String[0];
+
+	private static final String I18N_PREFIX = "i18n:"; //$NON-NLS-1$
+
+	private final String source;
+	private final boolean hasTags;
+
+	// segments: text is a literal when tagIndex is -1, otherwise the trimmed tag name
+	private final String[] texts;
+	private final int[] tagIndexes;
+	private final String[] tags;
+	private final boolean[] i18nTags;
+	private final String[] dataProviders;
+
+	private TagTemplate(String source, boolean hasTags, List<String> texts, List<Integer> tagIndexes, List<String> tags, List<Boolean> i18nTags)
+	{
+		this.source = source;
+		this.hasTags = hasTags;
+		this.texts = texts.toArray(new String[texts.size()]);
+		this.tagIndexes = new int[tagIndexes.size()];
+		for (int i = 0; i < this.tagIndexes.length; i++)
+		{
+			this.tagIndexes[i] = tagIndexes.get(i).intValue();
+		}
+		this.tags = tags.toArray(new String[tags.size()]);
+		this.i18nTags = new boolean[i18nTags.size()];
+		List<String> dps = new ArrayList<String>();
+		for (int i = 0; i < this.i18nTags.length; i++)
+		{
+			this.i18nTags[i] = i18nTags.get(i).booleanValue();
+			if (!this.i18nTags[i] && !dps.contains(this.tags[i])) dps.add(this.tags[i]);
+		}
+		this.dataProviders = dps.isEmpty() ? NO_STRINGS : dps.toArray(new String[dps.size()]);
+	}
+
+	/**
+	 * Parse a tag string into literal and tag segments.
+	 */
+	public static TagTemplate compile(String s)
+	{
+		SegmentCollector collector = new SegmentCollector();
+		boolean changed = TagParser.parse(s, collector);
+		collector.endLiteral();
+		return new TagTemplate(s, changed, collector.texts, collector.tagIndexes, collector.tags, collector.i18nTags);
+	}
+
+	/**
+	 * Collects the segments of a template from the parts given by {@link TagParser#parse(String, TagParser.ITagHandler)}, consecutive texts are joined.
+	 */
+	private static final class SegmentCollector implements TagParser.ITagHandler
+	{
+		final List<String> texts = new ArrayList<String>();
+		final List<Integer> tagIndexes = new ArrayList<Integer>();
+		final List<String> tags = new ArrayList<String>();
+		final List<Boolean> i18nTags = new ArrayList<Boolean>();
+		private final StringBuilder literal = new StringBuilder();
+
+		public void appendText(String text)
+		{
+			literal.append(text);
+		}
+
+		public void appendTag(String tag)
+		{
+			endLiteral();
+			texts.add(tag);
+			tagIndexes.add(Integer.valueOf(tags.size()));
+			tags.add(tag);
+			i18nTags.add(Boolean.valueOf(tag.startsWith(I18N_PREFIX)));
+		}
+
+		void endLiteral()
+		{
+			if (literal.length() > 0)
+			{
+				texts.add(literal.toString());
+				tagIndexes.add(Integer.valueOf(-1));
+				literal.setLength(0);
+			}
+		}
+	}
+
+	public String getSource()
+	{
+		return source;
+	}
+
+	/**
+	 * @return false when rendering will always give the source string
+	 */
+	public boolean hasTags()
+	{
+		return hasTags;
+	}
+
+	/**
+	 * @return the distinct names of the non-i18n tags, in order of appearance
+	 */
+	public String[] getDataProviders()
+	{
+		if (dataProviders.length == 0) return dataProviders;
+		String[] copy = new String[dataProviders.length];
+		System.arraycopy(dataProviders, 0, copy, 0, copy.length);
+		return copy;
+	}
+
+	/**
+	 * Resolve the value of every tag, i18n tags are resolved with the i18n provider and other tags with the resolver.
+	 */
+	public String[] resolveTags(ITagResolver resolver, I18NProvider i18nProvider)
+	{
+		if (tags.length == 0) return NO_STRINGS;
+		String[] values = new String[tags.length];
+		for (int i = 0; i < tags.length; i++)
+		{
+			if (i18nTags[i])
+			{
+				values[i] = i18nProvider != null ? i18nProvider.getI18NMessageIfPrefixed(tags[i]) : tags[i];
+			}
+			else if (resolver != null)
+			{
+				values[i] = resolver.getStringValue(tags[i]);
+			}
+		}
+		return values;
+	}
+
+	/**
+	 * Append the template with the given tag values, tags with a null value are left out.
+	 */
+	public void render(StringBuilder sb, String[] tagValues)
+	{
+		for (int i = 0; i < texts.length; i++)
+		{
+			int tagIndex = tagIndexes[i];
+			if (tagIndex < 0)
+			{
+				sb.append(texts[i]);
+			}
+			else if (tagValues[tagIndex] != null)
+			{
+				sb.append(tagValues[tagIndex]);
+			}
+		}
+	}
+
+	/**
+	 * @return the rendered template with the given tag values, or the source string when it has no tags.
+	 */
+	public String render(String[] tagValues)
+	{
+		if (!hasTags) return source;
+		StringBuilder sb = new StringBuilder(source.length() + 16);
+		render(sb, tagValues);
+		return sb.toString();
+	}
+
+	/**
+	 * Render the template like {@link TagParser#processTags(String, ITagResolver, I18NProvider)}, including a source that is an i18n key as a whole.
+	 */
+	public String render(ITagResolver resolver, I18NProvider i18nProvider)
+	{
+		if (i18nProvider != null && source.startsWith(I18N_PREFIX))
+		{
+			return i18nProvider.getI18NMessage(source.substring(I18N_PREFIX.length()));
+		}
+		if (!hasTags) return source;
+		return render(resolveTags(resolver, i18nProvider));
+	}
+}
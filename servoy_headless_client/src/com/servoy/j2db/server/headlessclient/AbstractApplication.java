@@ -25,6 +25,7 @@ import java.text.MessageFormat;
 import java.util.Enumeration;
 import java.util.EventObject;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Locale;
 import java.util.Map;
 import java.util.MissingResourceException;
@@ -44,6 +45,9 @@ import com.servoy.j2db.IModeManager;
 import com.servoy.j2db.J2DBGlobals;
 import com.servoy.j2db.Messages;
 import com.servoy.j2db.ModeManager;
+import com.servoy.j2db.SharedMessages;
+import com.servoy.j2db.SharedMessages.MessagesOverlay;
+import com.servoy.j2db.SharedMessages.SharedProperties;
 import com.servoy.j2db.cmd.ICmd;
 import com.servoy.j2db.cmd.ICmdManager;
 import com.servoy.j2db.dataprocessing.ClientInfo;
@@ -72,6 +76,8 @@ import com.servoy.j2db.util.Utils;
 public abstract class AbstractApplication extends ClientState implements IApplication
 {
 	private final HashMap<Locale, Properties> messages = new HashMap<Locale, Properties>();
+	// set when scripts filtered or changed the messages, see resetI18NMessages()
+	private volatile boolean i18nMessagesChanged;
 	protected Locale locale;
 	protected TimeZone timeZone;
 
@@ -304,21 +310,81 @@ public abstract class AbstractApplication extends ClientState implements IApplic
 		messages.clear();
 	}
 
+	/**
+	 * Drop the messages that were filtered or changed by scripts, used when a pooled client is given back.
+	 */
+	void resetI18NMessages()
+	{
+		if (i18nMessagesChanged)
+		{
+			i18nMessagesChanged = false;
+			refreshI18NMessages();
+		}
+	}
+
 
 	public void setI18NMessagesFilter(String columnname, String[] value)
 	{
-		Properties properties = new Properties();
-		Messages.loadMessagesFromDatabaseInternal(null, getClientInfo().getClientId(), getSettings(), getDataServer(), getRepository(), properties, locale,
-			Messages.ALL_LOCALES, null, null, columnname, value, getFoundSetManager());
-		Solution solution = getSolution();
-		Messages.loadMessagesFromDatabaseInternal(solution != null ? solution.getI18nDataSource() : null, getClientInfo().getClientId(), getSettings(),
-			getDataServer(), getRepository(), properties, locale, Messages.ALL_LOCALES, null, null, columnname, value, getFoundSetManager());
+		i18nMessagesChanged = true;
+		Properties properties = null;
+		if (useSharedMessages())
+		{
+			SharedProperties shared = getSharedMessages(locale, columnname, value);
+			if (shared != null)
+			{
+				properties = new MessagesOverlay(shared);
+			}
+		}
+		if (properties == null)
+		{
+			properties = new Properties();
+			loadFilteredMessages(properties, locale, columnname, value);
+		}
 		synchronized (messages)
 		{
 			messages.put(locale, properties);
 		}
 	}
 
+	private void loadFilteredMessages(Properties properties, Locale loc, String columnname, String[] value)
+	{
+		Messages.loadMessagesFromDatabaseInternal(null, getClientInfo().getClientId(), getSettings(), getDataServer(), getRepository(), properties, loc,
+			Messages.ALL_LOCALES, null, null, columnname, value, getFoundSetManager());
+		Solution solution = getSolution();
+		Messages.loadMessagesFromDatabaseInternal(solution != null ? solution.getI18nDataSource() : null, getClientInfo().getClientId(), getSettings(),
+			getDataServer(), getRepository(), properties, loc, Messages.ALL_LOCALES, null, null, columnname, value, getFoundSetManager());
+	}
+
+	/**
+	 * Messages can be shared with other clients when they are not changed by table filters of this client.
+	 */
+	private boolean useSharedMessages()
+	{
+		Solution solution = getSolution();
+		return solution != null && Utils.getAsBoolean(getSettings().getProperty(SharedMessages.SHARED_MESSAGES_PROPERTY, "false")) && //$NON-NLS-1$
+			!ApplicationServerRegistry.get().isDeveloperStartup() && !Messages.hasI18NTableFilter(null, getSettings(), getFoundSetManager()) &&
+			!Messages.hasI18NTableFilter(solution.getI18nDataSource(), getSettings(), getFoundSetManager());
+	}
+
+	private SharedProperties getSharedMessages(Locale loc, String columnname, String[] value)
+	{
+		String i18nDatasource = getSolution().getI18nDataSource();
+		List<String> tableDataSources = Messages.getI18NTableDataSources(i18nDatasource, getSettings());
+		long maxAge = Utils.getAsLong(getSettings().getProperty(SharedMessages.SHARED_MESSAGES_MAX_AGE_PROPERTY, String.valueOf(SharedMessages.DEFAULT_MAX_AGE)));
+		return SharedMessages.getMessages(i18nDatasource, loc, columnname, value, tableDataSources, maxAge * 1000, properties -> {
+			Messages.invalidConnection = false;
+			if (columnname == null && value == null)
+			{
+				loadMessages(properties, loc);
+			}
+			else
+			{
+				loadFilteredMessages(properties, loc, columnname, value);
+			}
+			return !Messages.invalidConnection;
+		});
+	}
+
 	public ResourceBundle getResourceBundle(Locale lc)
 	{
 		final Locale loc = lc != null ? lc : locale != null ? locale : Locale.getDefault();
@@ -343,7 +409,7 @@ public abstract class AbstractApplication extends ClientState implements IApplic
 				final ResourceBundle jarMessages = ResourceBundle.getBundle(Messages.BUNDLE_NAME, loc);
 				return new Enumeration<String>()
 				{
-					private Enumeration< ? > solutionKeys = msg.keys();
+					private Enumeration< ? > solutionKeys = msg.propertyNames();
 					private final Enumeration< ? > jarKeys = jarMessages.getKeys();
 
 					public String nextElement()
@@ -401,11 +467,15 @@ public abstract class AbstractApplication extends ClientState implements IApplic
 	{
 		if (key != null)
 		{
+			i18nMessagesChanged = true;
 			Properties properties = getMessages(getLocale());
 			if (value == null)
 			{
 				properties.remove(key);
-				refreshI18NMessages();
+				if (!(properties instanceof MessagesOverlay))
+				{
+					refreshI18NMessages();
+				}
 			}
 			else
 			{
@@ -488,16 +558,34 @@ public abstract class AbstractApplication extends ClientState implements IApplic
 		synchronized (messages)
 		{
 			properties = messages.get(loc);
+			if (properties instanceof MessagesOverlay && ((MessagesOverlay)properties).isStale())
+			{
+				// i18n messages were changed, move the messages that were set by this client to the reloaded shared messages
+				SharedProperties stale = ((MessagesOverlay)properties).getShared();
+				SharedProperties shared = getSharedMessages(loc, stale.getColumnNameFilter(), stale.getColumnValueFilter());
+				if (shared != null && shared != stale)
+				{
+					properties = ((MessagesOverlay)properties).copyOnto(shared);
+					messages.put(loc, properties);
+				}
+			}
 			if (properties == null && getClientInfo() != null)
 			{
+				if (useSharedMessages())
+				{
+					SharedProperties shared = getSharedMessages(loc, null, null);
+					if (shared != null)
+					{
+						properties = new MessagesOverlay(shared);
+						messages.put(loc, properties);
+						return properties;
+					}
+				}
 				properties = new Properties();
 				Messages.invalidConnection = false;
-				Messages.loadMessagesFromDatabaseInternal(null, ApplicationServerRegistry.get().getClientId(), getSettings(), getDataServer(), getRepository(),
-					properties, loc, getFoundSetManager());
+				loadMessages(properties, loc);
 				if (getSolution() != null) //must be sure that solution is loaded, app might retrieve system messages, before solution loaded!
 				{
-					Messages.loadMessagesFromDatabaseInternal(getSolution().getI18nDataSource(), ApplicationServerRegistry.get().getClientId(), getSettings(),
-						getDataServer(), getRepository(), properties, loc, getFoundSetManager());
 					messages.put(loc, properties);
 				}
 			}
@@ -506,6 +594,17 @@ public abstract class AbstractApplication extends ClientState implements IApplic
 		return properties == null ? new Properties() : properties;
 	}
 
+	private void loadMessages(Properties properties, Locale loc)
+	{
+		Messages.loadMessagesFromDatabaseInternal(null, ApplicationServerRegistry.get().getClientId(), getSettings(), getDataServer(), getRepository(),
+			properties, loc, getFoundSetManager());
+		if (getSolution() != null)
+		{
+			Messages.loadMessagesFromDatabaseInternal(getSolution().getI18nDataSource(), ApplicationServerRegistry.get().getClientId(), getSettings(),
+				getDataServer(), getRepository(), properties, loc, getFoundSetManager());
+		}
+	}
+
 	/*
 	 * @see IServiceProvider#getI18NMessageIfPrefixed(String,Object[])
 	 */
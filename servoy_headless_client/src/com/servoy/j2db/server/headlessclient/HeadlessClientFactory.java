@@ -87,4 +87,78 @@ public class HeadlessClientFactory
 				}
 			});
 	}
+
+	/**
+	 * Lease a headless client from the pool for the solution and user, the solution is only loaded when the pool has no idle client.
+	 * The client must be given back with {@link #releaseHeadlessClient(IHeadlessClient)}, open transactions and unsaved edits are rolled back then.
+	 *
+	 * @see HeadlessClientPool
+	 */
+	public static IHeadlessClient leaseHeadlessClient(String solutionname, String username, String password, Object[] solutionOpenMethodArgs) throws Exception
+	{
+		HeadlessClientPool pool = HeadlessClientPool.getPool(solutionname, username, password, solutionOpenMethodArgs);
+		return (IHeadlessClient)Proxy.newProxyInstance(HeadlessClientFactory.class.getClassLoader(),
+			new Class[] { IHeadlessClient.class, ISessionClient.class }, new PooledClientInvocationHandler(pool, pool.lease()));
+	}
+
+	/**
+	 * Give a client that was leased with {@link #leaseHeadlessClient(String, String, String, Object[])} back to its pool, the client can no longer be used after this.
+	 */
+	public static void releaseHeadlessClient(IHeadlessClient client)
+	{
+		if (client != null && Proxy.isProxyClass(client.getClass()) && Proxy.getInvocationHandler(client) instanceof PooledClientInvocationHandler)
+		{
+			((PooledClientInvocationHandler)Proxy.getInvocationHandler(client)).release(false);
+		}
+		else
+		{
+			throw new IllegalArgumentException("Headless client was not leased from a pool"); //$NON-NLS-1$
+		}
+	}
+
+	private static class PooledClientInvocationHandler implements InvocationHandler
+	{
+		private final HeadlessClientPool pool;
+		private volatile ISessionClient sb;
+
+		PooledClientInvocationHandler(HeadlessClientPool pool, ISessionClient sb)
+		{
+			this.pool = pool;
+			this.sb = sb;
+		}
+
+		@Override
+		public Object invoke(Object proxy, Method method, Object[] args) throws Throwable
+		{
+			ISessionClient client = sb;
+			if (client == null)
+			{
+				throw new IllegalStateException("Headless client was already given back to the pool"); //$NON-NLS-1$
+			}
+			if ("shutDown".equals(method.getName())) //$NON-NLS-1$
+			{
+				// a client that is shut down is not given back as idle client, the pool closes it and creates a new one when needed
+				release(true);
+				return null;
+			}
+			return method.invoke(client, args);
+		}
+
+		synchronized void release(boolean discard)
+		{
+			ISessionClient client = sb;
+			if (client != null)
+			{
+				sb = null;
+				if (discard)
+				{
+					pool.discard(client);
+				}
+				else
+				{
+					pool.release(client);
+				}
+			}
+		}
+	}
 }
@@ -0,0 +1,601 @@
+/*
+ This file belongs to the Servoy development and deployment environment, Copyright (C) 1997-2021 Servoy BV
+
+ This program is free software; you can redistribute it and/or modify it under
+ the terms of the GNU Affero General Public License as published by the Free
+ Software Foundation; either version 3 of the License, or (at your option) any
+ later version.
+
+ This program is distributed in the hope that it will be useful, but WITHOUT
+ ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ FOR A PARTICULAR PURPOSE. See the GNU Affero General Public License for more details.
+
+ You should have received a copy of the GNU Affero General Public License along
+ with this program; if not, see http://www.gnu.org/licenses or write to the Free
+ Software Foundation,Inc., 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301
+*/
+
+package com.servoy.j2db.server.headlessclient;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.security.SecureRandom;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import com.servoy.j2db.ISessionClient;
+import com.servoy.j2db.dataprocessing.IFoundSetManagerInternal;
+import com.servoy.j2db.server.shared.ApplicationServerRegistry;
+import com.servoy.j2db.util.Debug;
+import com.servoy.j2db.util.Settings;
+import com.servoy.j2db.util.Utils;
+
+/**
+ * Pool of headless clients that have the solution loaded, one pool per solution, user and solution open arguments.
+ * <p>
+ * Leased clients are reset when they are given back: open transactions and unsaved edits are rolled back and the client is restored to the state it had
+ * right after it was created, see {@link PooledClientState}. A client that cannot be restored is closed instead of reused, also when it was shut down
+ * during the lease.
+ * <p>
+ * Configuration via settings: {@link #MIN_PROPERTY} idle clients are kept ready (also after the idle timeout), at most {@link #MAX_PROPERTY} clients per pool
+ * (leased and idle), idle clients above the minimum are closed after {@link #IDLE_TIMEOUT_PROPERTY} seconds and a lease waits at most {@link #MAX_WAIT_PROPERTY}
+ * seconds for a client when the maximum is reached. Expired idle clients are closed by a sweep on the server executor, pools are closed when the
+ * application server is destroyed.
+ *
+ * @author agent
+ * @since 2021.06
+ */
+@SuppressWarnings("nls")
+public class HeadlessClientPool
+{
+	public static final String MIN_PROPERTY = "servoy.headlessclient.pool.min";
+	public static final String MAX_PROPERTY = "servoy.headlessclient.pool.max";
+	public static final String IDLE_TIMEOUT_PROPERTY = "servoy.headlessclient.pool.idleTimeout";
+	public static final String MAX_WAIT_PROPERTY = "servoy.headlessclient.pool.maxWait";
+
+	private static final ConcurrentMap<List<Object>, HeadlessClientPool> pools = new ConcurrentHashMap<>();
+
+	// the pool key holds a hash of the credentials, salted per jvm so the key cannot be used to look up the password
+	private static final byte[] CREDENTIALS_SALT = SecureRandom.getSeed(16);
+
+	private static final long MIN_SWEEP_INTERVAL = 1000;
+	private static final long MAX_SWEEP_INTERVAL = 60000;
+
+	// guarded by pools
+	private static ScheduledFuture< ? > sweeper;
+	private static boolean destroyHookAdded;
+
+	private final String solutionName;
+	private final String username;
+	private final String password;
+	private final Object[] solutionOpenMethodArgs;
+
+	private final int min;
+	private final int max;
+	private final long idleTimeout;
+	private final long maxWait;
+
+	// guarded by this
+	private final Deque<PooledClient> idle = new ArrayDeque<>(); // most recently used first
+	private final Map<ISessionClient, PooledClient> leasedClients = new IdentityHashMap<>();
+	private int total; // idle + leased + being created
+	private int leased;
+	private int creating;
+	private boolean closed;
+
+	// statistics, guarded by this
+	private long leaseCount;
+	private long reuseCount;
+	private long createCount;
+	private long destroyCount;
+	private long waitTimeoutCount;
+
+	protected HeadlessClientPool(String solutionName, String username, String password, Object[] solutionOpenMethodArgs)
+	{
+		this.solutionName = solutionName;
+		this.username = username;
+		this.password = password;
+		this.solutionOpenMethodArgs = solutionOpenMethodArgs;
+
+		Settings settings = Settings.getInstance();
+		this.max = Math.max(1, Utils.getAsInteger(settings.getProperty(MAX_PROPERTY, "10")));
+		this.min = Math.min(max, Math.max(0, Utils.getAsInteger(settings.getProperty(MIN_PROPERTY, "0"))));
+		this.idleTimeout = Utils.getAsLong(settings.getProperty(IDLE_TIMEOUT_PROPERTY, "300")) * 1000;
+		this.maxWait = Utils.getAsLong(settings.getProperty(MAX_WAIT_PROPERTY, "30")) * 1000;
+	}
+
+	/**
+	 * Get the pool for the solution and user, created and pre-warmed to the minimum number of idle clients on first use.
+	 */
+	public static HeadlessClientPool getPool(String solutionName, String username, String password, Object[] solutionOpenMethodArgs)
+	{
+		List<Object> key = Arrays.asList(solutionName, username, hashCredentials(username, password),
+			solutionOpenMethodArgs == null ? null : Arrays.asList(solutionOpenMethodArgs));
+		HeadlessClientPool pool = pools.get(key);
+		if (pool == null)
+		{
+			HeadlessClientPool newPool = new HeadlessClientPool(solutionName, username, password,
+				solutionOpenMethodArgs == null ? null : solutionOpenMethodArgs.clone());
+			pool = pools.putIfAbsent(key, newPool);
+			if (pool == null)
+			{
+				pool = newPool;
+				startSweeper(pool.idleTimeout);
+				pool.ensureMinIdle();
+			}
+		}
+		return pool;
+	}
+
+	private static String hashCredentials(String username, String password)
+	{
+		try
+		{
+			MessageDigest digest = MessageDigest.getInstance("SHA-256");
+			digest.update(CREDENTIALS_SALT);
+			digest.update(String.valueOf(username).getBytes(StandardCharsets.UTF_8));
+			digest.update((byte)0);
+			digest.update(String.valueOf(password).getBytes(StandardCharsets.UTF_8));
+			return Utils.encodeBASE64(digest.digest());
+		}
+		catch (NoSuchAlgorithmException e)
+		{
+			// every jvm has SHA-256
+			throw new IllegalStateException(e);
+		}
+	}
+
+	/**
+	 * Close expired idle clients of all pools periodically, also when no leases are done. Started with the first pool, stopped in {@link #closeAll()}.
+	 */
+	private static void startSweeper(long idleTimeout)
+	{
+		if (!ApplicationServerRegistry.exists()) return; // expired clients are still closed on lease
+
+		synchronized (pools)
+		{
+			if (!destroyHookAdded)
+			{
+				ApplicationServerRegistry.addDestroyHook(() -> {
+					// the hooks are cleared when the application server is destroyed, add it again for the next one
+					synchronized (pools)
+					{
+						destroyHookAdded = false;
+					}
+					closeAll();
+				});
+				destroyHookAdded = true;
+			}
+			if (sweeper != null) return;
+			ScheduledExecutorService executor = ApplicationServerRegistry.get().getExecutor();
+			if (executor == null) return;
+			long interval = Math.max(MIN_SWEEP_INTERVAL, Math.min(MAX_SWEEP_INTERVAL, idleTimeout / 2));
+			sweeper = executor.scheduleWithFixedDelay(() -> {
+				for (HeadlessClientPool pool : pools.values())
+				{
+					pool.closeExpired();
+				}
+			}, interval, interval, TimeUnit.MILLISECONDS);
+		}
+	}
+
+	public static Collection<HeadlessClientPool> getPools()
+	{
+		return Collections.unmodifiableCollection(pools.values());
+	}
+
+	/**
+	 * Close all pools and the idle clients in them, leased clients are closed when they are given back.
+	 */
+	public static void closeAll()
+	{
+		synchronized (pools)
+		{
+			if (sweeper != null)
+			{
+				sweeper.cancel(false);
+				sweeper = null;
+			}
+		}
+		Iterator<HeadlessClientPool> it = pools.values().iterator();
+		while (it.hasNext())
+		{
+			HeadlessClientPool pool = it.next();
+			it.remove();
+			pool.close();
+		}
+	}
+
+	/**
+	 * Lease a client, when none is idle a new one is created, when the maximum number of clients is reached wait for one to be returned.
+	 */
+	public ISessionClient lease() throws Exception
+	{
+		long deadline = System.currentTimeMillis() + maxWait;
+		List<PooledClient> toShutDown = new ArrayList<>();
+		PooledClient pooled = null;
+		try
+		{
+			synchronized (this)
+			{
+				while (pooled == null)
+				{
+					if (closed)
+					{
+						throw new IllegalStateException("Headless client pool for solution " + solutionName + " is closed");
+					}
+					collectExpired(toShutDown);
+					PooledClient candidate = idle.pollFirst();
+					if (candidate != null)
+					{
+						if (candidate.client.isValid())
+						{
+							pooled = candidate;
+							reuseCount++;
+						}
+						else
+						{
+							total--;
+							destroyCount++;
+							toShutDown.add(candidate);
+						}
+					}
+					else if (total < max)
+					{
+						// create a new one outside the lock
+						total++;
+						break;
+					}
+					else
+					{
+						long remaining = deadline - System.currentTimeMillis();
+						if (remaining <= 0)
+						{
+							waitTimeoutCount++;
+							throw new TimeoutException("No headless client available for solution " + solutionName + " within " + maxWait + "ms, pool maximum is " + max);
+						}
+						wait(remaining);
+					}
+				}
+				leased++;
+				leaseCount++;
+				if (pooled != null) leasedClients.put(pooled.client, pooled);
+			}
+		}
+		finally
+		{
+			shutDown(toShutDown);
+		}
+
+		if (pooled == null)
+		{
+			try
+			{
+				pooled = createClient();
+			}
+			catch (Exception e)
+			{
+				synchronized (this)
+				{
+					total--;
+					leased--;
+					notifyAll();
+				}
+				throw e;
+			}
+			synchronized (this)
+			{
+				leasedClients.put(pooled.client, pooled);
+			}
+		}
+
+		ensureMinIdle();
+		return pooled.client;
+	}
+
+	/**
+	 * Give a leased client back, it is reset and becomes idle, or closed when it is no longer usable.
+	 */
+	public void release(ISessionClient client)
+	{
+		release(client, false);
+	}
+
+	/**
+	 * Give a leased client back that should not be reused, it is closed and no longer counts for the pool maximum.
+	 */
+	public void discard(ISessionClient client)
+	{
+		release(client, true);
+	}
+
+	private void release(ISessionClient client, boolean discard)
+	{
+		PooledClient pooled;
+		synchronized (this)
+		{
+			pooled = leasedClients.get(client);
+		}
+		if (pooled == null)
+		{
+			throw new IllegalArgumentException("Headless client was not leased from the pool of solution " + solutionName);
+		}
+
+		boolean reusable = !discard && !client.isShutDown() && client.isValid() && solutionName.equals(client.getSolutionName()) && reset(pooled);
+		boolean shutDown;
+		synchronized (this)
+		{
+			leasedClients.remove(client);
+			leased--;
+			shutDown = !reusable || closed;
+			if (shutDown)
+			{
+				total--;
+				destroyCount++;
+			}
+			else
+			{
+				idle.addFirst(pooled.touch());
+			}
+			notifyAll();
+		}
+		if (shutDown)
+		{
+			shutDown(Collections.singletonList(pooled));
+		}
+	}
+
+	private static boolean reset(PooledClient pooled)
+	{
+		ISessionClient client = pooled.client;
+		try
+		{
+			boolean[] restored = { false };
+			client.invokeAndWait(() -> {
+				IFoundSetManagerInternal foundSetManager = client.getFoundSetManager();
+				if (foundSetManager != null)
+				{
+					foundSetManager.rollbackTransaction(true, false, true);
+					foundSetManager.getEditRecordList().rollbackRecords();
+				}
+				restored[0] = pooled.state.restore(client);
+			});
+			return restored[0];
+		}
+		catch (Exception e)
+		{
+			Debug.error("Could not reset pooled headless client for solution " + client.getSolutionName() + ", closing it", e);
+			return false;
+		}
+	}
+
+	private PooledClient createClient() throws Exception
+	{
+		ISessionClient client = createHeadlessClient();
+		synchronized (this)
+		{
+			createCount++;
+		}
+		try
+		{
+			PooledClientState[] state = { null };
+			client.invokeAndWait(() -> state[0] = PooledClientState.capture(client));
+			return new PooledClient(client, state[0]);
+		}
+		catch (RuntimeException e)
+		{
+			shutDown(Collections.singletonList(new PooledClient(client, null)));
+			throw e;
+		}
+	}
+
+	/**
+	 * Create a client with the solution loaded, called outside the pool lock.
+	 */
+	protected ISessionClient createHeadlessClient() throws Exception
+	{
+		return HeadlessClientFactoryInternal.createHeadlessClient(solutionName, username, password, solutionOpenMethodArgs);
+	}
+
+	/**
+	 * Create idle clients in the background until the minimum is reached.
+	 */
+	private void ensureMinIdle()
+	{
+		int toCreate;
+		synchronized (this)
+		{
+			toCreate = closed ? 0 : Math.min(min - idle.size() - creating, max - total);
+			if (toCreate > 0)
+			{
+				total += toCreate;
+				creating += toCreate;
+			}
+		}
+		if (toCreate <= 0) return;
+
+		Executor executor = ApplicationServerRegistry.exists() ? ApplicationServerRegistry.get().getExecutor() : null;
+		for (int i = 0; i < toCreate; i++)
+		{
+			Runnable creator = () -> {
+				PooledClient pooled = null;
+				try
+				{
+					pooled = createClient();
+				}
+				catch (Exception e)
+				{
+					Debug.error("Could not create headless client for the pool of solution " + solutionName, e);
+				}
+				boolean shutDown = false;
+				synchronized (this)
+				{
+					creating--;
+					if (pooled == null || closed)
+					{
+						total--;
+						shutDown = pooled != null;
+					}
+					else
+					{
+						idle.addLast(pooled);
+					}
+					notifyAll();
+				}
+				if (shutDown) shutDown(Collections.singletonList(pooled));
+			};
+			if (executor != null)
+			{
+				executor.execute(creator);
+			}
+			else
+			{
+				creator.run();
+			}
+		}
+	}
+
+	/**
+	 * Remove idle clients that have passed the idle timeout, but keep the minimum.
+	 */
+	private void collectExpired(List<PooledClient> toShutDown)
+	{
+		long now = System.currentTimeMillis();
+		while (idle.size() > min && idle.peekLast().lastUsed + idleTimeout < now)
+		{
+			toShutDown.add(idle.pollLast());
+			total--;
+			destroyCount++;
+		}
+	}
+
+	private void closeExpired()
+	{
+		List<PooledClient> toShutDown = new ArrayList<>();
+		synchronized (this)
+		{
+			collectExpired(toShutDown);
+		}
+		shutDown(toShutDown);
+	}
+
+	private void close()
+	{
+		List<PooledClient> toShutDown;
+		synchronized (this)
+		{
+			closed = true;
+			toShutDown = new ArrayList<>(idle);
+			total -= idle.size();
+			destroyCount += idle.size();
+			idle.clear();
+			notifyAll();
+		}
+		shutDown(toShutDown);
+	}
+
+	private static void shutDown(List<PooledClient> clients)
+	{
+		for (PooledClient pooled : clients)
+		{
+			try
+			{
+				pooled.client.shutDown(true);
+			}
+			catch (Exception e)
+			{
+				Debug.error(e);
+			}
+		}
+	}
+
+	public String getSolutionName()
+	{
+		return solutionName;
+	}
+
+	public String getUsername()
+	{
+		return username;
+	}
+
+	public synchronized int getIdleCount()
+	{
+		return idle.size();
+	}
+
+	public synchronized int getLeasedCount()
+	{
+		return leased;
+	}
+
+	public synchronized long getLeaseCount()
+	{
+		return leaseCount;
+	}
+
+	/**
+	 * Number of leases that got an already initialized client, the solution load was saved for those.
+	 */
+	public synchronized long getReuseCount()
+	{
+		return reuseCount;
+	}
+
+	public synchronized long getCreateCount()
+	{
+		return createCount;
+	}
+
+	public synchronized long getDestroyCount()
+	{
+		return destroyCount;
+	}
+
+	public synchronized long getWaitTimeoutCount()
+	{
+		return waitTimeoutCount;
+	}
+
+	@Override
+	public synchronized String toString()
+	{
+		return "HeadlessClientPool[solution=" + solutionName + ", user=" + username + ", idle=" + idle.size() + ", leased=" + leased + ", leases=" +
+			leaseCount + ", reused=" + reuseCount + ", created=" + createCount + ", destroyed=" + destroyCount + ", timeouts=" + waitTimeoutCount + "]";
+	}
+
+	private static class PooledClient
+	{
+		final ISessionClient client;
+		final PooledClientState state;
+		long lastUsed = System.currentTimeMillis();
+
+		PooledClient(ISessionClient client, PooledClientState state)
+		{
+			this.client = client;
+			this.state = state;
+		}
+
+		PooledClient touch()
+		{
+			lastUsed = System.currentTimeMillis();
+			return this;
+		}
+	}
+}
@@ -0,0 +1,335 @@
+/*
+ This file belongs to the Servoy development and deployment environment, Copyright (C) 1997-2021 Servoy BV
+
+ This program is free software; you can redistribute it and/or modify it under
+ the terms of the GNU Affero General Public License as published by the Free
+ Software Foundation; either version 3 of the License, or (at your option) any
+ later version.
+
+ This program is distributed in the hope that it will be useful, but WITHOUT
+ ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ FOR A PARTICULAR PURPOSE. See the GNU Affero General Public License for more details.
+
+ You should have received a copy of the GNU Affero General Public License along
+ with this program; if not, see http://www.gnu.org/licenses or write to the Free
+ Software Foundation,Inc., 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301
+*/
+
+package com.servoy.j2db.server.headlessclient;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.TimeZone;
+
+import org.mozilla.javascript.Function;
+import org.mozilla.javascript.Scriptable;
+import org.mozilla.javascript.Undefined;
+
+import com.servoy.j2db.FlattenedSolution;
+import com.servoy.j2db.IBasicFormManager;
+import com.servoy.j2db.IFormController;
+import com.servoy.j2db.ISessionClient;
+import com.servoy.j2db.dataprocessing.ClientInfo;
+import com.servoy.j2db.dataprocessing.IFoundSetManagerInternal;
+import com.servoy.j2db.dataprocessing.TableFilter;
+import com.servoy.j2db.persistence.ScriptVariable;
+import com.servoy.j2db.scripting.GlobalScope;
+import com.servoy.j2db.scripting.IExecutingEnviroment;
+import com.servoy.j2db.scripting.ScopesScope;
+import com.servoy.j2db.scripting.ScriptVariableScope;
+import com.servoy.j2db.util.Debug;
+import com.servoy.j2db.util.Utils;
+
+/**
+ * The client state of a pooled headless client right after it was created, a leased client is restored to this state when it is given back.
+ * <p>
+ * Restored are the locale, time zone, tenant value, table filters, i18n messages, global scope variables and the variables of forms that were loaded when the
+ * client was created. Forms that were loaded during the lease are destroyed. When the state cannot be restored (the user was changed, a table filter of the
+ * initial state was removed, the solution model was used, a variable held a value that is not a string, number, boolean or date, or a form could not be
+ * destroyed) the client cannot be reused and is closed by the pool.
+ *
+ * @author agent
+ * @since 2021.06
+ */
+@SuppressWarnings("nls")
+class PooledClientState
+{
+	private final String userUid;
+	private final String[] userGroups;
+	private final Object[] tenantValue;
+	private final Locale locale;
+	private final TimeZone timeZone;
+	private final Map<String, List<TableFilter>> tableFilters;
+	private final Map<String, Map<String, Object>> globalVariables = new HashMap<>(); // scope name -> variable name -> value
+	private final Map<String, Map<String, Object>> formVariables = new HashMap<>(); // form name -> variable name -> value
+	private final boolean solutionModelUsed;
+	private String notRestorable;
+
+	private PooledClientState(ISessionClient client)
+	{
+		ClientInfo clientInfo = client.getClientInfo();
+		userUid = clientInfo == null ? null : clientInfo.getUserUid();
+		userGroups = clientInfo == null ? null : clientInfo.getUserGroups();
+		tenantValue = clientInfo == null ? null : clientInfo.getTenantValue();
+		locale = client.getLocale();
+		timeZone = client.getTimeZone();
+
+		IFoundSetManagerInternal foundSetManager = client.getFoundSetManager();
+		tableFilters = foundSetManager == null ? Collections.emptyMap() : foundSetManager.getTableFilterParams();
+
+		FlattenedSolution flattenedSolution = client.getFlattenedSolution();
+		solutionModelUsed = flattenedSolution != null && flattenedSolution.getSolutionCopy(false) != null;
+		if (solutionModelUsed)
+		{
+			notRestorable = "the solution model was used when the client was created";
+		}
+
+		ScopesScope scopesScope = getScopesScope(client);
+		if (scopesScope != null)
+		{
+			for (Object scopeName : scopesScope.getIds())
+			{
+				GlobalScope globalScope = scopesScope.getGlobalScope((String)scopeName);
+				globalVariables.put((String)scopeName, getVariableValues(globalScope, flattenedSolution.getScriptVariables((String)scopeName, false), true));
+			}
+		}
+
+		IBasicFormManager formManager = client.getFormManager();
+		if (formManager != null)
+		{
+			for (IFormController formController : formManager.getCachedFormControllers())
+			{
+				formVariables.put(formController.getName(),
+					getVariableValues(formController.getFormScope(), flattenedSolution.getFlattenedForm(formController.getForm()).getScriptVariables(false),
+						false));
+			}
+		}
+	}
+
+	/**
+	 * Capture the state of a newly created client, must be called on the event thread of the client.
+	 */
+	static PooledClientState capture(ISessionClient client)
+	{
+		return new PooledClientState(client);
+	}
+
+	/**
+	 * Restore the client to the captured state, must be called on the event thread of the client.
+	 *
+	 * @return false when the client could not be restored and should not be reused
+	 */
+	boolean restore(ISessionClient client)
+	{
+		if (notRestorable != null)
+		{
+			return notRestorable(client, notRestorable);
+		}
+
+		ClientInfo clientInfo = client.getClientInfo();
+		if (clientInfo != null && (!Objects.equals(userUid, clientInfo.getUserUid()) || !Arrays.equals(userGroups, clientInfo.getUserGroups())))
+		{
+			return notRestorable(client, "the user was changed");
+		}
+
+		FlattenedSolution flattenedSolution = client.getFlattenedSolution();
+		if (!solutionModelUsed && flattenedSolution != null && flattenedSolution.getSolutionCopy(false) != null)
+		{
+			return notRestorable(client, "the solution model was used");
+		}
+
+		IBasicFormManager formManager = client.getFormManager();
+		if (formManager != null)
+		{
+			for (IFormController formController : new ArrayList<>(formManager.getCachedFormControllers()))
+			{
+				String formName = formController.getName();
+				Map<String, Object> values = formVariables.get(formName);
+				if (values == null)
+				{
+					if (!formManager.destroyFormInstance(formName))
+					{
+						return notRestorable(client, "form " + formName + " could not be destroyed");
+					}
+				}
+				else
+				{
+					restoreVariableValues(formController.getFormScope(), values, false);
+				}
+			}
+		}
+
+		IFoundSetManagerInternal foundSetManager = client.getFoundSetManager();
+		if (foundSetManager != null && !restoreTableFilters(foundSetManager))
+		{
+			return notRestorable(client, "a table filter was changed");
+		}
+
+		if (clientInfo != null && !Arrays.equals(tenantValue, clientInfo.getTenantValue()))
+		{
+			clientInfo.setTenantValue(tenantValue);
+			try
+			{
+				client.getClientHost().pushClientInfo(clientInfo.getClientId(), clientInfo);
+			}
+			catch (Exception e)
+			{
+				Debug.error(e);
+				return notRestorable(client, "the tenant value could not be restored");
+			}
+			if (foundSetManager != null)
+			{
+				foundSetManager.refreshFoundsetsForTenantTables();
+			}
+		}
+
+		if (!Objects.equals(locale, client.getLocale()))
+		{
+			client.setLocale(locale);
+		}
+		if (!Objects.equals(timeZone, client.getTimeZone()))
+		{
+			client.setTimeZone(timeZone);
+		}
+		if (client instanceof AbstractApplication)
+		{
+			((AbstractApplication)client).resetI18NMessages();
+		}
+
+		ScopesScope scopesScope = getScopesScope(client);
+		if (scopesScope != null)
+		{
+			for (Object scopeName : scopesScope.getIds())
+			{
+				GlobalScope globalScope = scopesScope.getGlobalScope((String)scopeName);
+				Map<String, Object> values = globalVariables.get(scopeName);
+				if (values == null)
+				{
+					// scope was created during the lease, evaluate the initial values again as a new client would do
+					Iterator<ScriptVariable> it = flattenedSolution.getScriptVariables((String)scopeName, false);
+					while (it.hasNext())
+					{
+						globalScope.put(it.next(), true);
+					}
+				}
+				else
+				{
+					restoreVariableValues(globalScope, values, true);
+				}
+			}
+		}
+
+		return true;
+	}
+
+	private boolean restoreTableFilters(IFoundSetManagerInternal foundSetManager)
+	{
+		Map<String, List<TableFilter>> current = foundSetManager.getTableFilterParams();
+		if (current.equals(tableFilters)) return true;
+
+		for (Map.Entry<String, List<TableFilter>> entry : current.entrySet())
+		{
+			List<TableFilter> initial = tableFilters.get(entry.getKey());
+			Set<String> removed = new HashSet<>();
+			for (TableFilter filter : entry.getValue())
+			{
+				if ((initial == null || !initial.contains(filter)) && removed.add(filter.getName()))
+				{
+					foundSetManager.removeTableFilterParam(entry.getKey(), filter.getName());
+				}
+			}
+		}
+		// filters of the initial state that were removed or replaced cannot be added again here
+		return foundSetManager.getTableFilterParams().equals(tableFilters);
+	}
+
+	/**
+	 * Get the values of the variables of the solution in the scope, for global scopes also the variables that were added by scripts.
+	 */
+	private Map<String, Object> getVariableValues(ScriptVariableScope scope, Iterator<ScriptVariable> variables, boolean dynamicVariables)
+	{
+		Map<String, Object> values = new HashMap<>();
+		while (variables.hasNext())
+		{
+			String name = variables.next().getName();
+			addVariableValue(values, name, scope.get(name, scope));
+		}
+		if (dynamicVariables)
+		{
+			for (Object id : scope.getIds())
+			{
+				if (id instanceof String && !values.containsKey(id))
+				{
+					Object value = scope.get((String)id, scope);
+					if (!(value instanceof Function))
+					{
+						addVariableValue(values, (String)id, value);
+					}
+				}
+			}
+		}
+		return values;
+	}
+
+	private void addVariableValue(Map<String, Object> values, String name, Object value)
+	{
+		if (notRestorable == null && !isRestorable(value))
+		{
+			notRestorable = "variable " + name + " holds a value that cannot be restored";
+		}
+		values.put(name, value instanceof Date ? new Date(((Date)value).getTime()) : value);
+	}
+
+	/**
+	 * Put the captured values back in the scope, for global scopes variables that were added by scripts are removed.
+	 */
+	private static void restoreVariableValues(ScriptVariableScope scope, Map<String, Object> values, boolean dynamicVariables)
+	{
+		if (dynamicVariables)
+		{
+			for (Object id : scope.getIds())
+			{
+				if (id instanceof String && !values.containsKey(id) && !(scope.get((String)id, scope) instanceof Function))
+				{
+					scope.remove((String)id);
+				}
+			}
+		}
+		for (Map.Entry<String, Object> entry : values.entrySet())
+		{
+			Object value = entry.getValue();
+			if (!Utils.equalObjects(scope.get(entry.getKey(), scope), value))
+			{
+				scope.put(entry.getKey(), scope, value instanceof Date ? new Date(((Date)value).getTime()) : value);
+			}
+		}
+	}
+
+	private static boolean isRestorable(Object value)
+	{
+		return value == null || value == Undefined.instance || value == Scriptable.NOT_FOUND || value instanceof String || value instanceof Number ||
+			value instanceof Boolean || value instanceof Date;
+	}
+
+	private static ScopesScope getScopesScope(ISessionClient client)
+	{
+		IExecutingEnviroment scriptEngine = client.getScriptEngine();
+		return scriptEngine == null ? null : scriptEngine.getScopesScope();
+	}
+
+	private static boolean notRestorable(ISessionClient client, String reason)
+	{
+		Debug.log("Pooled headless client for solution " + client.getSolutionName() + " is not reused, " + reason);
+		return false;
+	}
+}
@@ -0,0 +1,139 @@
+/*
+ This file belongs to the Servoy development and deployment environment, Copyright (C) 1997-2021 Servoy BV
+
+ This program is free software; you can redistribute it and/or modify it under
+ the terms of the GNU Affero General Public License as published by the Free
+ Software Foundation; either version 3 of the License, or (at your option) any
+ later version.
+
+ This program is distributed in the hope that it will be useful, but WITHOUT
+ ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ FOR A PARTICULAR PURPOSE. See the GNU Affero General Public License for more details.
+
+ You should have received a copy of the GNU Affero General Public License along
+ with this program; if not, see http://www.gnu.org/licenses or write to the Free
+ Software Foundation,Inc., 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301
+*/
+
+package com.servoy.j2db.server.ngclient.benchmarks;
+
+import java.awt.Dimension;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.json.JSONException;
+import org.sablo.InMemPackageReader;
+
+import com.servoy.base.solutionmodel.IBaseSMPart;
+import com.servoy.j2db.dataprocessing.BufferedDataSet;
+import com.servoy.j2db.persistence.Form;
+import com.servoy.j2db.persistence.IColumnTypes;
+import com.servoy.j2db.persistence.IServer;
+import com.servoy.j2db.persistence.WebComponent;
+import com.servoy.j2db.server.ngclient.property.AbstractSolutionTest;
+import com.servoy.j2db.server.ngclient.property.TestNGClient;
+import com.servoy.j2db.util.ServoyException;
+import com.servoy.j2db.util.ServoyJSONObject;
+import com.servoy.j2db.util.Utils;
+
+/**
+ * In-process client with a solution for the benchmarks: one form on an in-memory datasource with a component that has a foundset property.
+ * <p>
+ * The data server of the test client returns the synthetic data set of the datasource, there is no database involved.
+ *
+ * @author agent
+ * @since 2021.06
+ */
+@SuppressWarnings("nls")
+public class BenchmarkSolution extends AbstractSolutionTest
+{
+	public static final String DATASOURCE_NAME = "bench";
+	public static final String DATASOURCE = "mem:" + DATASOURCE_NAME;
+	public static final String FORM_NAME = "bench";
+	public static final String COMPONENT_NAME = "table";
+	public static final String FOUNDSET_PROPERTY = "myfoundset";
+
+	public static final String PK_INTEGER = "INTEGER";
+	public static final String PK_TEXT = "TEXT";
+
+	private final int size;
+	private final String pkType;
+
+	public BenchmarkSolution(int size, String pkType)
+	{
+		this.size = size;
+		this.pkType = pkType;
+	}
+
+	public TestNGClient getClient()
+	{
+		return client;
+	}
+
+	/**
+	 * Create the pk value of a row, text pks have the length and distribution of uuids.
+	 */
+	public static Object createPK(String pkType, int row)
+	{
+		if (PK_TEXT.equals(pkType))
+		{
+			return new java.util.UUID(row * 0x9E3779B97F4A7C15L, row).toString();
+		}
+		return Integer.valueOf(row);
+	}
+
+	@Override
+	protected InMemPackageReader getTestComponents() throws IOException
+	{
+		// use the component specs of the foundset tests
+		HashMap<String, String> components = new HashMap<>();
+		components.put("mycomponent.spec", readResource("FoundSetTest-mycomponent.spec"));
+		components.put("mydynamiccomponent.spec", readResource("FoundSetTest-mydynamiccomponent.spec"));
+		return new InMemPackageReader(readResource("FoundSetTest.manifest"), components);
+	}
+
+	private static String readResource(String name) throws IOException
+	{
+		try (InputStream is = AbstractSolutionTest.class.getResourceAsStream(name))
+		{
+			return Utils.getTXTFileContent(is, StandardCharsets.UTF_8);
+		}
+	}
+
+	@Override
+	protected void fillTestSolution() throws ServoyException
+	{
+		try
+		{
+			Form form = solution.createNewForm(validator, null, FORM_NAME, DATASOURCE, false, new Dimension(600, 400));
+			form.setNavigatorID(-1);
+			form.createNewPart(IBaseSMPart.BODY, 5);
+			WebComponent bean = form.createNewWebComponent(COMPONENT_NAME, "my-component");
+			bean.setProperty(FOUNDSET_PROPERTY, new ServoyJSONObject("{foundsetSelector:'',dataproviders:{firstname:'text1',lastname:'text2'}}", false));
+		}
+		catch (JSONException e)
+		{
+			e.printStackTrace();
+			throw new ServoyException();
+		}
+	}
+
+	@Override
+	protected void setupData() throws ServoyException
+	{
+		BufferedDataSet ds = new BufferedDataSet(new String[] { "pk", "text1", "text2", "number1" },
+			new int[] { PK_TEXT.equals(pkType) ? IColumnTypes.TEXT : IColumnTypes.INTEGER, IColumnTypes.TEXT, IColumnTypes.TEXT, IColumnTypes.NUMBER });
+		for (int i = 0; i < size; i++)
+		{
+			ds.addRow(new Object[] { createPK(pkType, i), "first" + i, "last" + i, Double.valueOf(i * 1.5d) });
+		}
+		client.getFoundSetManager().createDataSourceFromDataSet(DATASOURCE_NAME, ds, null, new String[] { "pk" }, false);
+
+		ConcurrentHashMap<String, IServer> serverProxies = new ConcurrentHashMap<String, IServer>();
+		serverProxies.put("_sv_inmem", DUMMY_ISERVER);
+		solution.setServerProxies(serverProxies);
+	}
+}
@@ -0,0 +1,199 @@
+/*
+ This file belongs to the Servoy development and deployment environment, Copyright (C) 1997-2021 Servoy BV
+
+ This program is free software; you can redistribute it and/or modify it under
+ the terms of the GNU Affero General Public License as published by the Free
+ Software Foundation; either version 3 of the License, or (at your option) any
+ later version.
+
+ This program is distributed in the hope that it will be useful, but WITHOUT
+ ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ FOR A PARTICULAR PURPOSE. See the GNU Affero General Public License for more details.
+
+ You should have received a copy of the GNU Affero General Public License along
+ with this program; if not, see http://www.gnu.org/licenses or write to the Free
+ Software Foundation,Inc., 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301
+*/
+
+package com.servoy.j2db.server.ngclient.benchmarks;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.json.JSONException;
+import org.json.JSONStringer;
+import org.json.JSONWriter;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.sablo.specification.WebObjectSpecification.PushToServerEnum;
+import org.sablo.specification.property.BrowserConverterContext;
+import org.sablo.websocket.utils.DataConversion;
+
+import com.servoy.j2db.dataprocessing.BufferedDataSet;
+import com.servoy.j2db.dataprocessing.FoundSetManager;
+import com.servoy.j2db.dataprocessing.IFoundSetInternal;
+import com.servoy.j2db.dataprocessing.IRecordInternal;
+import com.servoy.j2db.dataprocessing.PKDataSet;
+import com.servoy.j2db.dataprocessing.RowManager;
+import com.servoy.j2db.dataprocessing.SQLSheet;
+import com.servoy.j2db.persistence.IColumnTypes;
+import com.servoy.j2db.server.ngclient.IWebFormController;
+import com.servoy.j2db.server.ngclient.WebFormComponent;
+import com.servoy.j2db.server.ngclient.property.FoundsetTypeSabloValue;
+import com.servoy.j2db.util.ServoyException;
+
+/**
+ * Benchmarks for the foundset and row cache data path, with foundset sizes and pk types as parameters.
+ * <p>
+ * All benchmarks run against one in-process client per parameter combination, see {@link BenchmarkSolution}.
+ * The data server stub returns the complete data set for row queries, so record loading includes matching the rows to the requested pks.
+ *
+ * @author agent
+ * @since 2021.06
+ */
+@SuppressWarnings("nls")
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class FoundSetBenchmarks
+{
+	private static final int RECORDS_PER_READ = 100;
+
+	@Param({ "1000", "100000" })
+	public int size;
+
+	@Param({ BenchmarkSolution.PK_INTEGER, BenchmarkSolution.PK_TEXT })
+	public String pkType;
+
+	private BenchmarkSolution benchmarkSolution;
+	private FoundSetManager fsm;
+	private IFoundSetInternal foundset;
+	private WebFormComponent component;
+	private FoundsetTypeSabloValue foundsetProperty;
+	private Object[][] pks;
+	private int next;
+
+	@Setup(Level.Trial)
+	public void setUp() throws Exception
+	{
+		benchmarkSolution = new BenchmarkSolution(size, pkType);
+		benchmarkSolution.buildSolution();
+
+		fsm = (FoundSetManager)benchmarkSolution.getClient().getFoundSetManager();
+		IWebFormController form = (IWebFormController)benchmarkSolution.getClient().getFormManager().showFormInCurrentContainer(
+			BenchmarkSolution.FORM_NAME);
+		foundset = form.getFormModel();
+		component = form.getFormUI().getWebComponent(BenchmarkSolution.COMPONENT_NAME);
+		foundsetProperty = (FoundsetTypeSabloValue)component.getRawPropertyValue(BenchmarkSolution.FOUNDSET_PROPERTY);
+
+		pks = new Object[size][];
+		for (int i = 0; i < size; i++)
+		{
+			pks[i] = new Object[] { BenchmarkSolution.createPK(pkType, i) };
+		}
+	}
+
+	@TearDown(Level.Trial)
+	public void tearDown() throws Exception
+	{
+		benchmarkSolution.tearDown();
+	}
+
+	/**
+	 * Get records that are already loaded in the foundset and row cache.
+	 */
+	@Benchmark
+	public IRecordInternal getRecord()
+	{
+		return foundset.getRecord(next++ % foundset.getSize());
+	}
+
+	/**
+	 * Read records after the row cache was flushed, so the rows are fetched again via the row manager.
+	 */
+	@Benchmark
+	public void readRecordsAfterFlush(Blackhole bh)
+	{
+		fsm.flushCachedDatabaseData(BenchmarkSolution.DATASOURCE);
+		int n = Math.min(RECORDS_PER_READ, foundset.getSize());
+		for (int i = 0; i < n; i++)
+		{
+			bh.consume(foundset.getRecord(i));
+		}
+	}
+
+	@Benchmark
+	public String createPKHashKey()
+	{
+		return RowManager.createPKHashKey(pks[next++ % pks.length]);
+	}
+
+	@Benchmark
+	public void sortPKDataSet(SortState sortState)
+	{
+		sortState.pkDataSet.sort(0, true);
+	}
+
+	@Benchmark
+	public SQLSheet createSQLSheet() throws ServoyException
+	{
+		return fsm.getSQLGenerator().getNewTableSQLSheet(BenchmarkSolution.DATASOURCE);
+	}
+
+	/**
+	 * Change a record and save it, the data server stub does not execute the update statement.
+	 */
+	@Benchmark
+	public int stopEditing()
+	{
+		IRecordInternal record = foundset.getRecord(next++ % foundset.getSize());
+		record.startEditing();
+		record.setValue("text1", "changed" + next);
+		return fsm.getEditRecordList().stopEditing(false);
+	}
+
+	/**
+	 * Full value of the foundset property with the initial viewport, as sent when the form is shown.
+	 */
+	@Benchmark
+	public JSONWriter foundsetToJSON() throws JSONException
+	{
+		return foundsetProperty.toJSON(new JSONStringer(), new DataConversion(), new BrowserConverterContext(component, PushToServerEnum.allow));
+	}
+
+	/**
+	 * Unsorted pk data set, created again for every sort.
+	 */
+	@State(Scope.Thread)
+	public static class SortState
+	{
+		PKDataSet pkDataSet;
+		private final Random random = new Random(42);
+
+		@Setup(Level.Invocation)
+		public void shuffle(FoundSetBenchmarks benchmarks)
+		{
+			List<Object[]> rows = new ArrayList<>(benchmarks.pks.length);
+			Collections.addAll(rows, benchmarks.pks);
+			Collections.shuffle(rows, random);
+			pkDataSet = new PKDataSet(new BufferedDataSet(new String[] { "pk" },
+				new int[] { BenchmarkSolution.PK_TEXT.equals(benchmarks.pkType) ? IColumnTypes.TEXT : IColumnTypes.INTEGER }, rows));
+		}
+	}
+}
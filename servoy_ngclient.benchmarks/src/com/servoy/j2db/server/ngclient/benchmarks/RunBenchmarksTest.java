@@ -0,0 +1,58 @@
+/*
+ This file belongs to the Servoy development and deployment environment, Copyright (C) 1997-2021 Servoy BV
+
+ This program is free software; you can redistribute it and/or modify it under
+ the terms of the GNU Affero General Public License as published by the Free
+ Software Foundation; either version 3 of the License, or (at your option) any
+ later version.
+
+ This program is distributed in the hope that it will be useful, but WITHOUT
+ ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ FOR A PARTICULAR PURPOSE. See the GNU Affero General Public License for more details.
+
+ You should have received a copy of the GNU Affero General Public License along
+ with this program; if not, see http://www.gnu.org/licenses or write to the Free
+ Software Foundation,Inc., 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301
+*/
+
+package com.servoy.j2db.server.ngclient.benchmarks;
+
+import org.junit.Test;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Runs the JMH benchmarks from the test runtime, with the gc profiler for allocation rates per operation.
+ * <p>
+ * The benchmarks to run can be selected with a regular expression in system property servoy.benchmarks.include,
+ * results are written as json to the file in system property servoy.benchmarks.result (default target/jmh-result.json).
+ *
+ * @author agent
+ * @since 2021.06
+ */
+@SuppressWarnings("nls")
+public class RunBenchmarksTest
+{
+	@Test
+	public void runBenchmarks() throws RunnerException
+	{
+		Options options = new OptionsBuilder() //
+			.include(System.getProperty("servoy.benchmarks.include", FoundSetBenchmarks.class.getName())) //
+			// the bundle class path of the test runtime is not available in a forked vm
+			.forks(0) //
+			.addProfiler(GCProfiler.class) //
+			.resultFormat(ResultFormatType.JSON) //
+			.result(System.getProperty("servoy.benchmarks.result", "target/jmh-result.json")) //
+			.build();
+		new Runner(options).run();
+	}
+
+	public static void main(String[] args) throws RunnerException
+	{
+		new RunBenchmarksTest().runBenchmarks();
+	}
+}
@@ -0,0 +1,249 @@
+/*
+ This file belongs to the Servoy development and deployment environment, Copyright (C) 1997-2021 Servoy BV
+
+ This program is free software; you can redistribute it and/or modify it under
+ the terms of the GNU Affero General Public License as published by the Free
+ Software Foundation; either version 3 of the License, or (at your option) any
+ later version.
+
+ This program is distributed in the hope that it will be useful, but WITHOUT
+ ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ FOR A PARTICULAR PURPOSE. See the GNU Affero General Public License for more details.
+
+ You should have received a copy of the GNU Affero General Public License along
+ with this program; if not, see http://www.gnu.org/licenses or write to the Free
+ Software Foundation,Inc., 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301
+*/
+
+package com.servoy.j2db.server.headlessclient;
+
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TimeZone;
+import java.util.concurrent.TimeoutException;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.servoy.j2db.ISessionClient;
+import com.servoy.j2db.dataprocessing.ClientInfo;
+import com.servoy.j2db.dataprocessing.IClientHost;
+import com.servoy.j2db.util.Settings;
+
+/**
+ * Tests lease, release and reset of {@link HeadlessClientPool} with clients that only keep the client info, locale and time zone.
+ *
+ * @author agent
+ *
+ */
+@SuppressWarnings("nls")
+public class HeadlessClientPoolTest
+{
+	private final List<StubClient> created = new ArrayList<>();
+	private final List<ClientInfo> pushedClientInfos = new ArrayList<>();
+
+	@Before
+	public void setUp()
+	{
+		Settings.getInstance().setProperty(HeadlessClientPool.MAX_PROPERTY, "2");
+		Settings.getInstance().setProperty(HeadlessClientPool.MAX_WAIT_PROPERTY, "0");
+	}
+
+	@After
+	public void tearDown()
+	{
+		Settings.getInstance().remove(HeadlessClientPool.MAX_PROPERTY);
+		Settings.getInstance().remove(HeadlessClientPool.MAX_WAIT_PROPERTY);
+	}
+
+	@Test
+	public void releasedClientIsReused() throws Exception
+	{
+		HeadlessClientPool pool = new TestPool();
+
+		ISessionClient client = pool.lease();
+		Assert.assertEquals(1, pool.getLeasedCount());
+		pool.release(client);
+		Assert.assertEquals(0, pool.getLeasedCount());
+		Assert.assertEquals(1, pool.getIdleCount());
+
+		Assert.assertSame(client, pool.lease());
+		Assert.assertEquals(1, created.size());
+		Assert.assertEquals(2, pool.getLeaseCount());
+		Assert.assertEquals(1, pool.getReuseCount());
+	}
+
+	@Test
+	public void leaseWaitsForMaximum() throws Exception
+	{
+		HeadlessClientPool pool = new TestPool();
+		pool.lease();
+		ISessionClient second = pool.lease();
+		try
+		{
+			pool.lease();
+			Assert.fail("pool maximum is 2");
+		}
+		catch (TimeoutException e)
+		{
+			// expected
+		}
+		Assert.assertEquals(1, pool.getWaitTimeoutCount());
+
+		pool.release(second);
+		Assert.assertSame(second, pool.lease());
+	}
+
+	@Test
+	public void releaseRestoresClientState() throws Exception
+	{
+		HeadlessClientPool pool = new TestPool();
+		ISessionClient client = pool.lease();
+		Locale locale = client.getLocale();
+		TimeZone timeZone = client.getTimeZone();
+
+		client.setLocale(Locale.JAPANESE);
+		client.setTimeZone(TimeZone.getTimeZone("Asia/Tokyo"));
+		client.getClientInfo().setTenantValue(new Object[] { "tenant1" });
+		pool.release(client);
+
+		Assert.assertSame(client, pool.lease());
+		Assert.assertEquals(locale, client.getLocale());
+		Assert.assertEquals(timeZone, client.getTimeZone());
+		Assert.assertNull(client.getClientInfo().getTenantValue());
+		Assert.assertEquals(1, pushedClientInfos.size());
+		Assert.assertEquals(0, pool.getDestroyCount());
+	}
+
+	@Test
+	public void clientWithOtherUserIsNotReused() throws Exception
+	{
+		HeadlessClientPool pool = new TestPool();
+		ISessionClient client = pool.lease();
+		client.getClientInfo().setUserUid("other");
+		pool.release(client);
+
+		Assert.assertEquals(0, pool.getIdleCount());
+		Assert.assertEquals(1, pool.getDestroyCount());
+		Assert.assertTrue(created.get(0).shutDown);
+		Assert.assertNotSame(client, pool.lease());
+	}
+
+	@Test
+	public void shutDownClientIsNotReused() throws Exception
+	{
+		HeadlessClientPool pool = new TestPool();
+		ISessionClient client = pool.lease();
+		client.shutDown(true);
+		pool.release(client);
+
+		Assert.assertEquals(0, pool.getIdleCount());
+		Assert.assertEquals(0, pool.getLeasedCount());
+		Assert.assertEquals(1, pool.getDestroyCount());
+
+		// the shut down client does not count for the maximum
+		pool.lease();
+		pool.lease();
+		Assert.assertEquals(3, created.size());
+	}
+
+	@Test
+	public void discardedClientIsClosed() throws Exception
+	{
+		HeadlessClientPool pool = new TestPool();
+		ISessionClient client = pool.lease();
+		pool.discard(client);
+
+		Assert.assertTrue(created.get(0).shutDown);
+		Assert.assertEquals(0, pool.getIdleCount());
+		Assert.assertEquals(0, pool.getLeasedCount());
+		Assert.assertEquals(1, pool.getDestroyCount());
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void releaseOfClientThatWasNotLeased() throws Exception
+	{
+		HeadlessClientPool pool = new TestPool();
+		ISessionClient client = pool.lease();
+		pool.release(client);
+		pool.release(client);
+	}
+
+	private class TestPool extends HeadlessClientPool
+	{
+		TestPool()
+		{
+			super("pooltest", null, null, null);
+		}
+
+		@Override
+		protected ISessionClient createHeadlessClient()
+		{
+			StubClient stub = new StubClient();
+			created.add(stub);
+			return stub.client;
+		}
+	}
+
+	/**
+	 * Client that runs event thread code directly and only keeps the state that the tests check.
+	 */
+	private class StubClient
+	{
+		final ClientInfo clientInfo = new ClientInfo();
+		final Map<String, Object> properties = new HashMap<>();
+		boolean shutDown;
+
+		final IClientHost clientHost = (IClientHost)Proxy.newProxyInstance(getClass().getClassLoader(), new Class[] { IClientHost.class },
+			(proxy, method, args) -> {
+				if (method.getName().equals("pushClientInfo")) pushedClientInfos.add((ClientInfo)args[1]);
+				return null;
+			});
+
+		final ISessionClient client = (ISessionClient)Proxy.newProxyInstance(getClass().getClassLoader(), new Class[] { ISessionClient.class },
+			(proxy, method, args) -> {
+				switch (method.getName())
+				{
+					case "invokeAndWait" :
+						((Runnable)args[0]).run();
+						return null;
+					case "getClientInfo" :
+						return clientInfo;
+					case "getClientHost" :
+						return clientHost;
+					case "getSolutionName" :
+						return "pooltest";
+					case "isValid" :
+						return Boolean.TRUE;
+					case "isShutDown" :
+						return Boolean.valueOf(shutDown);
+					case "shutDown" :
+						shutDown = true;
+						return null;
+					case "getLocale" :
+						return properties.getOrDefault("locale", Locale.ENGLISH);
+					case "setLocale" :
+						properties.put("locale", args[0]);
+						return null;
+					case "getTimeZone" :
+						return properties.getOrDefault("timeZone", TimeZone.getTimeZone("UTC"));
+					case "setTimeZone" :
+						properties.put("timeZone", args[0]);
+						return null;
+					case "hashCode" :
+						return Integer.valueOf(System.identityHashCode(proxy));
+					case "equals" :
+						return Boolean.valueOf(proxy == args[0]);
+					default :
+						// no solution, script engine, form or foundset manager
+						return method.getReturnType() == boolean.class ? Boolean.FALSE : null;
+				}
+			});
+	}
+}
@@ -0,0 +1,286 @@
+/*
+ This file belongs to the Servoy development and deployment environment, Copyright (C) 1997-2021 Servoy BV
+
+ This program is free software; you can redistribute it and/or modify it under
+ the terms of the GNU Affero General Public License as published by the Free
+ Software Foundation; either version 3 of the License, or (at your option) any
+ later version.
+
+ This program is distributed in the hope that it will be useful, but WITHOUT
+ ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ FOR A PARTICULAR PURPOSE. See the GNU Affero General Public License for more details.
+
+ You should have received a copy of the GNU Affero General Public License along
+ with this program; if not, see http://www.gnu.org/licenses or write to the Free
+ Software Foundation,Inc., 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301
+ */
+
+package com.servoy.j2db.server.ngclient;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.zip.GZIPInputStream;
+
+import javax.servlet.ServletOutputStream;
+import javax.servlet.WriteListener;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import org.junit.Test;
+
+/**
+ * Tests for the range, conditional and gzip handling of {@link MediaResponseWriter}.
+ *
+ * @author agent
+ *
+ */
+@SuppressWarnings("nls")
+public class MediaResponseWriterTest
+{
+	private static final byte[] DATA = createData(2000);
+
+	private static byte[] createData(int length)
+	{
+		byte[] data = new byte[length];
+		for (int i = 0; i < length; i++)
+		{
+			data[i] = (byte)('a' + i % 26);
+		}
+		return data;
+	}
+
+	/**
+	 * Response that records the status, headers and body that were written.
+	 */
+	private static final class Response
+	{
+		int status = HttpServletResponse.SC_OK;
+		final Map<String, String> headers = new HashMap<>();
+		final ByteArrayOutputStream body = new ByteArrayOutputStream();
+
+		HttpServletResponse create()
+		{
+			ServletOutputStream out = new ServletOutputStream()
+			{
+				@Override
+				public void write(int b) throws IOException
+				{
+					body.write(b);
+				}
+
+				@Override
+				public boolean isReady()
+				{
+					return true;
+				}
+
+				@Override
+				public void setWriteListener(WriteListener writeListener)
+				{
+				}
+			};
+			return (HttpServletResponse)Proxy.newProxyInstance(getClass().getClassLoader(), new Class[] { HttpServletResponse.class },
+				(proxy, method, args) -> {
+					switch (method.getName())
+					{
+						case "setStatus" :
+							status = ((Integer)args[0]).intValue();
+							break;
+						case "setHeader" :
+						case "addHeader" :
+							headers.put((String)args[0], (String)args[1]);
+							break;
+						case "setContentLength" :
+						case "setContentLengthLong" :
+							headers.put("Content-Length", String.valueOf(args[0]));
+							break;
+						case "getOutputStream" :
+							return out;
+					}
+					return defaultValue(method);
+				});
+		}
+	}
+
+	private static Object defaultValue(Method method)
+	{
+		Class< ? > type = method.getReturnType();
+		if (type == boolean.class) return Boolean.FALSE;
+		if (type == int.class) return Integer.valueOf(0);
+		if (type == long.class) return Long.valueOf(0);
+		return null;
+	}
+
+	private static HttpServletRequest request(String... headers)
+	{
+		Map<String, String> map = new HashMap<>();
+		for (int i = 0; i < headers.length; i += 2)
+		{
+			map.put(headers[i], headers[i + 1]);
+		}
+		return (HttpServletRequest)Proxy.newProxyInstance(MediaResponseWriterTest.class.getClassLoader(), new Class[] { HttpServletRequest.class },
+			(proxy, method, args) -> "getHeader".equals(method.getName()) ? map.get(args[0]) : defaultValue(method));
+	}
+
+	private static Response write(String contentType, String... requestHeaders) throws IOException
+	{
+		Response response = new Response();
+		MediaResponseWriter.writeData(request(requestHeaders), response.create(), DATA, contentType);
+		return response;
+	}
+
+	private static void assertRange(long start, long end, long[] range)
+	{
+		assertArrayEquals(new long[] { start, end }, range);
+	}
+
+	private static void assertUnsatisfiable(long[] range)
+	{
+		assertEquals(0, range.length);
+	}
+
+	@Test
+	public void parseRange()
+	{
+		assertRange(0, 9, MediaResponseWriter.parseRange("bytes=0-9", 100));
+		assertRange(50, 99, MediaResponseWriter.parseRange("bytes=50-", 100));
+		// the end is limited to the length
+		assertRange(90, 99, MediaResponseWriter.parseRange("bytes=90-200", 100));
+		assertRange(5, 5, MediaResponseWriter.parseRange("bytes=5-5", 100));
+	}
+
+	@Test
+	public void parseSuffixRange()
+	{
+		assertRange(90, 99, MediaResponseWriter.parseRange("bytes=-10", 100));
+		// a suffix longer than the content is the full content
+		assertRange(0, 99, MediaResponseWriter.parseRange("bytes=-200", 100));
+		assertUnsatisfiable(MediaResponseWriter.parseRange("bytes=-0", 100));
+	}
+
+	@Test
+	public void parseInvalidRanges()
+	{
+		// end before start is invalid, the full content is sent
+		assertNull(MediaResponseWriter.parseRange("bytes=10-5", 100));
+		// start beyond the content cannot be satisfied
+		assertUnsatisfiable(MediaResponseWriter.parseRange("bytes=100-", 100));
+		assertUnsatisfiable(MediaResponseWriter.parseRange("bytes=150-160", 100));
+		assertUnsatisfiable(MediaResponseWriter.parseRange("bytes=150-120", 100));
+		// multiple ranges are not supported, the full content is sent
+		assertNull(MediaResponseWriter.parseRange("bytes=0-1,5-6", 100));
+		assertNull(MediaResponseWriter.parseRange("items=0-1", 100));
+		assertNull(MediaResponseWriter.parseRange("bytes=a-b", 100));
+		assertNull(MediaResponseWriter.parseRange("bytes=5", 100));
+	}
+
+	@Test
+	public void fullContent() throws IOException
+	{
+		Response response = write("image/png");
+		assertEquals(HttpServletResponse.SC_OK, response.status);
+		assertEquals(MediaResponseWriter.createETag(DATA), response.headers.get("ETag"));
+		assertEquals("bytes", response.headers.get("Accept-Ranges"));
+		assertEquals("2000", response.headers.get("Content-Length"));
+		assertArrayEquals(DATA, response.body.toByteArray());
+	}
+
+	@Test
+	public void notModified() throws IOException
+	{
+		String etag = MediaResponseWriter.createETag(DATA);
+		Response response = write("image/png", "If-None-Match", etag);
+		assertEquals(HttpServletResponse.SC_NOT_MODIFIED, response.status);
+		assertEquals(etag, response.headers.get("ETag"));
+		assertEquals(0, response.body.size());
+
+		response = write("image/png", "If-None-Match", "\"other\", W/" + etag);
+		assertEquals(HttpServletResponse.SC_NOT_MODIFIED, response.status);
+
+		response = write("image/png", "If-None-Match", "\"other\"");
+		assertEquals(HttpServletResponse.SC_OK, response.status);
+		assertEquals(DATA.length, response.body.size());
+	}
+
+	@Test
+	public void partialContent() throws IOException
+	{
+		Response response = write("image/png", "Range", "bytes=10-19");
+		assertEquals(HttpServletResponse.SC_PARTIAL_CONTENT, response.status);
+		assertEquals("bytes 10-19/2000", response.headers.get("Content-Range"));
+		assertEquals("10", response.headers.get("Content-Length"));
+		assertArrayEquals(Arrays.copyOfRange(DATA, 10, 20), response.body.toByteArray());
+
+		response = write("image/png", "Range", "bytes=-5");
+		assertEquals(HttpServletResponse.SC_PARTIAL_CONTENT, response.status);
+		assertEquals("bytes 1995-1999/2000", response.headers.get("Content-Range"));
+
+		// a matching If-None-Match wins over the range
+		response = write("image/png", "Range", "bytes=10-19", "If-None-Match", MediaResponseWriter.createETag(DATA));
+		assertEquals(HttpServletResponse.SC_NOT_MODIFIED, response.status);
+	}
+
+	@Test
+	public void rangeWithIfRange() throws IOException
+	{
+		Response response = write("image/png", "Range", "bytes=10-19", "If-Range", MediaResponseWriter.createETag(DATA));
+		assertEquals(HttpServletResponse.SC_PARTIAL_CONTENT, response.status);
+
+		// the content changed since the client got the first part
+		response = write("image/png", "Range", "bytes=10-19", "If-Range", "\"old\"");
+		assertEquals(HttpServletResponse.SC_OK, response.status);
+		assertEquals(DATA.length, response.body.size());
+	}
+
+	@Test
+	public void rangeNotSatisfiable() throws IOException
+	{
+		Response response = write("image/png", "Range", "bytes=5000-");
+		assertEquals(HttpServletResponse.SC_REQUESTED_RANGE_NOT_SATISFIABLE, response.status);
+		assertEquals("bytes */2000", response.headers.get("Content-Range"));
+		assertEquals(0, response.body.size());
+	}
+
+	@Test
+	public void gzipVariant() throws IOException
+	{
+		String etag = MediaResponseWriter.createETag(DATA);
+		Response response = write("text/css", "Accept-Encoding", "deflate, gzip");
+		assertEquals(HttpServletResponse.SC_OK, response.status);
+		assertEquals("gzip", response.headers.get("Content-Encoding"));
+		assertEquals("Accept-Encoding", response.headers.get("Vary"));
+		String gzipETag = response.headers.get("ETag");
+		assertEquals(etag.substring(0, etag.length() - 1) + "-gz\"", gzipETag);
+		try (GZIPInputStream in = new GZIPInputStream(new ByteArrayInputStream(response.body.toByteArray())))
+		{
+			ByteArrayOutputStream unzipped = new ByteArrayOutputStream();
+			byte[] buffer = new byte[512];
+			int n;
+			while ((n = in.read(buffer)) != -1)
+			{
+				unzipped.write(buffer, 0, n);
+			}
+			assertArrayEquals(DATA, unzipped.toByteArray());
+		}
+
+		response = write("text/css", "Accept-Encoding", "gzip", "If-None-Match", gzipETag);
+		assertEquals(HttpServletResponse.SC_NOT_MODIFIED, response.status);
+
+		// gzip is refused or the content type is not compressible
+		response = write("text/css", "Accept-Encoding", "gzip;q=0");
+		assertNull(response.headers.get("Content-Encoding"));
+		assertEquals(etag, response.headers.get("ETag"));
+		response = write("image/png", "Accept-Encoding", "gzip");
+		assertNull(response.headers.get("Content-Encoding"));
+	}
+}
@@ -253,6 +253,7 @@ public abstract class AbstractSolutionTest
 		}
 	};
 	protected Solution solution;
+	protected TestRepository repository;
 	protected TestNGClient client;
 	protected NGClientEndpoint endpoint;
 
@@ -429,6 +430,7 @@ public abstract class AbstractSolutionTest
 		WebServiceSpecProvider.init(servicesReaders);
 
 		final TestRepository tr = new TestRepository();
+		repository = tr;
 		try
 		{
 			ApplicationServerRegistry.setApplicationServerSingleton(new TestApplicationServer(tr));
@@ -440,75 +442,99 @@ public abstract class AbstractSolutionTest
 			solution.setChangeHandler(new ChangeHandler(tr));
 			fillTestSolution();
 
-			HttpSession testHttpsession = new TestHttpsession();
+			ClientEndpoint clientEndpoint = createClient(tr);
+			client = clientEndpoint.client;
+			endpoint = clientEndpoint.endpoint;
+		}
+		catch (RepositoryException e)
+		{
+			e.printStackTrace();
+			Assert.fail(e.getMessage());
+		}
+	}
+
+	/**
+	 * Create a client with its own http session, websocket session and endpoint.
+	 * The client is set as service provider and its window as current window of the calling thread.
+	 */
+	protected ClientEndpoint createClient(TestRepository tr) throws Exception
+	{
+		HttpSession testHttpsession = new TestHttpsession();
 
-			endpoint = new NGClientEndpoint()
+		NGClientEndpoint endpoint = new NGClientEndpoint()
+		{
+			// for testing onstart of the NGClientEndpoint should not run
+			@Override
+			public void onStart()
 			{
-				// for testing onstart of the NGClientEndpoint should not run
-				@Override
-				public void onStart()
-				{
-				}
+			}
 
-				@Override
-				protected HttpSession getHttpSession(Session session)
-				{
-					return testHttpsession;
-				}
-			};
+			@Override
+			protected HttpSession getHttpSession(Session session)
+			{
+				return testHttpsession;
+			}
+		};
 
-			NGClientWebsocketSession session = new NGClientWebsocketSession(new WebsocketSessionKey(testHttpsession.getId(), 1))
+		NGClientWebsocketSession session = new NGClientWebsocketSession(new WebsocketSessionKey(testHttpsession.getId(), 1))
+		{
+			@Override
+			public void init(Map<String, List<String>> requestParams) throws Exception
 			{
-				@Override
-				public void init(Map<String, List<String>> requestParams) throws Exception
-				{
-					// override default init, shouldnt make another client.
-				}
+				// override default init, shouldnt make another client.
+			}
 
-				@Override
-				protected IEventDispatcher createEventDispatcher()
-				{
-					return new TestNGEventDispatcher(endpoint);
-				}
-			};
+			@Override
+			protected IEventDispatcher createEventDispatcher()
+			{
+				return new TestNGEventDispatcher(endpoint);
+			}
+		};
 
-			WebsocketSessionManager.addSession(session);
+		WebsocketSessionManager.addSession(session);
 
-			NGClientWebsocketSessionWindows windows = new NGClientWebsocketSessionWindows(session);
-			CurrentWindow.set(windows);
+		NGClientWebsocketSessionWindows windows = new NGClientWebsocketSessionWindows(session);
+		CurrentWindow.set(windows);
 
-			client = new TestNGClient(tr, session)
+		TestNGClient client = new TestNGClient(tr, session)
+		{
+			@Override
+			public boolean loadSolutionsAndModules(SolutionMetaData solutionMetaData)
 			{
-				@Override
-				public boolean loadSolutionsAndModules(SolutionMetaData solutionMetaData)
+				boolean b = super.loadSolutionsAndModules(solutionMetaData);
+				IPersistIndex index = PersistIndexCache.getCachedIndex(solution);
+				solution.getChangeHandler().addIPersistListener((IItemChangeListener<IPersist>)index);
+
+				try
 				{
-					boolean b = super.loadSolutionsAndModules(solutionMetaData);
-					IPersistIndex index = PersistIndexCache.getCachedIndex(solution);
-					solution.getChangeHandler().addIPersistListener((IItemChangeListener<IPersist>)index);
-
-					try
-					{
-						setupData();
-					}
-					catch (ServoyException e)
-					{
-						e.printStackTrace();
-					}
-					return b;
+					setupData();
 				}
+				catch (ServoyException e)
+				{
+					e.printStackTrace();
+				}
+				return b;
+			}
 
-			};
-			J2DBGlobals.setServiceProvider(client);
-			client.setUseLoginSolution(false);
+		};
+		J2DBGlobals.setServiceProvider(client);
+		client.setUseLoginSolution(false);
 
-			endpoint.start(new TestSession(), String.valueOf(session.getSessionKey().getClientnr()), "null", "42");
+		endpoint.start(new TestSession(), String.valueOf(session.getSessionKey().getClientnr()), "null", "42");
 
-			CurrentWindow.set(session.getWindows().iterator().next());
-		}
-		catch (RepositoryException e)
+		CurrentWindow.set(session.getWindows().iterator().next());
+		return new ClientEndpoint(client, endpoint);
+	}
+
+	protected static final class ClientEndpoint
+	{
+		public final TestNGClient client;
+		public final NGClientEndpoint endpoint;
+
+		ClientEndpoint(TestNGClient client, NGClientEndpoint endpoint)
 		{
-			e.printStackTrace();
-			Assert.fail(e.getMessage());
+			this.client = client;
+			this.endpoint = endpoint;
 		}
 	}
 
@@ -0,0 +1,342 @@
+/*
+ This file belongs to the Servoy development and deployment environment, Copyright (C) 1997-2021 Servoy BV
+
+ This program is free software; you can redistribute it and/or modify it under
+ the terms of the GNU Affero General Public License as published by the Free
+ Software Foundation; either version 3 of the License, or (at your option) any
+ later version.
+
+ This program is distributed in the hope that it will be useful, but WITHOUT
+ ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ FOR A PARTICULAR PURPOSE. See the GNU Affero General Public License for more details.
+
+ You should have received a copy of the GNU Affero General Public License along
+ with this program; if not, see http://www.gnu.org/licenses or write to the Free
+ Software Foundation,Inc., 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301
+*/
+
+package com.servoy.j2db.server.ngclient.property;
+
+import java.io.IOException;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.sablo.InMemPackageReader;
+
+import com.servoy.base.query.IBaseSQLCondition;
+import com.servoy.base.query.IJoinConstants;
+import com.servoy.j2db.dataprocessing.BufferedDataSet;
+import com.servoy.j2db.dataprocessing.DataSetCursor;
+import com.servoy.j2db.dataprocessing.FoundSetManager;
+import com.servoy.j2db.dataprocessing.IDataServer;
+import com.servoy.j2db.dataprocessing.IDataSet;
+import com.servoy.j2db.persistence.IColumnTypes;
+import com.servoy.j2db.persistence.RepositoryException;
+import com.servoy.j2db.persistence.Table;
+import com.servoy.j2db.query.AndCondition;
+import com.servoy.j2db.query.CompareCondition;
+import com.servoy.j2db.query.IQuerySelectValue;
+import com.servoy.j2db.query.IQuerySort;
+import com.servoy.j2db.query.ISQLCondition;
+import com.servoy.j2db.query.OrCondition;
+import com.servoy.j2db.query.QueryColumn;
+import com.servoy.j2db.query.QuerySelect;
+import com.servoy.j2db.query.QuerySort;
+import com.servoy.j2db.querybuilder.impl.QBJoin;
+import com.servoy.j2db.querybuilder.impl.QBSelect;
+import com.servoy.j2db.util.ServoyException;
+import com.servoy.j2db.util.Utils;
+
+/**
+ * Tests the paging of {@link DataSetCursor}. The pages are read from a data server that evaluates the page queries on rows in memory and, like a database,
+ * returns rows with the same sort values in a random order.
+ *
+ * @author agent
+ *
+ */
+@SuppressWarnings("nls")
+public class DataSetCursorTest extends AbstractSolutionTest
+{
+	private static final int ORDERS = 30;
+	private static final int PAGE_SIZE = 7;
+
+	private final List<Map<String, Object>> orderRows = new ArrayList<>();
+	private final List<Map<String, Object>> joinedRows = new ArrayList<>();
+
+	@Override
+	protected InMemPackageReader getTestComponents() throws IOException
+	{
+		return null;
+	}
+
+	@Override
+	protected void fillTestSolution() throws ServoyException
+	{
+	}
+
+	@Override
+	protected void setupData() throws ServoyException
+	{
+		BufferedDataSet orders = new BufferedDataSet(new String[] { "id", "customer" }, new int[] { IColumnTypes.INTEGER, IColumnTypes.TEXT });
+		BufferedDataSet lines = new BufferedDataSet(new String[] { "id", "order_id", "product" },
+			new int[] { IColumnTypes.INTEGER, IColumnTypes.INTEGER, IColumnTypes.TEXT });
+		int lineId = 0;
+		for (int i = 0; i < ORDERS; i++)
+		{
+			// only 4 different customers, so many rows have the same sort value
+			Object[] order = new Object[] { Integer.valueOf(i), "customer" + (i % 4) };
+			orders.addRow(order);
+			Map<String, Object> orderRow = new HashMap<>();
+			orderRow.put("mem:orders.id", order[0]);
+			orderRow.put("mem:orders.customer", order[1]);
+			orderRows.add(orderRow);
+
+			// 1:n, an order has 0 to 3 lines
+			for (int l = 0; l < i % 4; l++)
+			{
+				Object[] line = new Object[] { Integer.valueOf(lineId++), order[0], "product" + lineId };
+				lines.addRow(line);
+				Map<String, Object> joinedRow = new HashMap<>(orderRow);
+				joinedRow.put("mem:lines.id", line[0]);
+				joinedRow.put("mem:lines.order_id", line[1]);
+				joinedRow.put("mem:lines.product", line[2]);
+				joinedRows.add(joinedRow);
+			}
+		}
+		client.getFoundSetManager().createDataSourceFromDataSet("orders", orders, null, new String[] { "id" }, false);
+		client.getFoundSetManager().createDataSourceFromDataSet("lines", lines, null, new String[] { "id" }, false);
+	}
+
+	private QBSelect createOrdersSelect() throws RepositoryException
+	{
+		QBSelect query = (QBSelect)client.getFoundSetManager().getQueryFactory().createSelect("mem:orders");
+		query.result().add(query.getColumn("id")).add(query.getColumn("customer"));
+		query.sort().add(query.getColumn("customer").asc());
+		return query;
+	}
+
+	private DataSetCursor createCursor(QBSelect query, List<Map<String, Object>> rows) throws RepositoryException
+	{
+		return new DataSetCursor((FoundSetManager)client.getFoundSetManager(), createDataServer(rows), "mem", query.build(), false, PAGE_SIZE);
+	}
+
+	private static List<Object[]> readAll(DataSetCursor cursor) throws ServoyException
+	{
+		List<Object[]> result = new ArrayList<>();
+		IDataSet page;
+		while ((page = cursor.nextPage()) != null)
+		{
+			Assert.assertTrue(page.getRowCount() <= PAGE_SIZE);
+			for (int i = 0; i < page.getRowCount(); i++)
+			{
+				result.add(page.getRow(i));
+			}
+		}
+		return result;
+	}
+
+	@Test
+	public void joinedQueryAcrossPageBoundary() throws ServoyException
+	{
+		QBSelect query = createOrdersSelect();
+		QBJoin lines = query.joins().add("mem:lines", IJoinConstants.INNER_JOIN, "l");
+		lines.on().add(lines.getColumn("order_id").eq(query.getColumn("id")));
+		query.result().add(lines.getColumn("product"));
+
+		DataSetCursor cursor = createCursor(query, joinedRows);
+		Assert.assertFalse("sort on a joined pk is paged with a start row", cursor.isKeysetPaging());
+		List<Object[]> result = readAll(cursor);
+
+		// every order line exactly once, the orders are repeated for each line
+		Assert.assertEquals(joinedRows.size(), result.size());
+		Set<Object> products = new HashSet<>();
+		for (Object[] row : result)
+		{
+			Assert.assertEquals(3, row.length);
+			Assert.assertTrue("duplicate row " + row[2], products.add(row[2]));
+		}
+		assertSortedOnCustomer(result);
+	}
+
+	@Test
+	public void joinWithoutPrimaryKeyIsRefused() throws ServoyException
+	{
+		QBSelect query = createOrdersSelect();
+		QBSelect lineCounts = (QBSelect)client.getFoundSetManager().getQueryFactory().createSelect("mem:lines");
+		lineCounts.result().add(lineCounts.getColumn("order_id"));
+		query.joins().add(lineCounts, IJoinConstants.INNER_JOIN, "counts");
+		try
+		{
+			createCursor(query, joinedRows);
+			Assert.fail("the rows of the derived table have no fixed position");
+		}
+		catch (RepositoryException e)
+		{
+			// expected
+		}
+	}
+
+	@Test
+	public void duplicateSortValuesWithStartRow() throws ServoyException
+	{
+		DataSetCursor cursor = createCursor(createOrdersSelect(), orderRows);
+		Assert.assertFalse("customer can be null", cursor.isKeysetPaging());
+		assertAllOrdersOnce(readAll(cursor));
+	}
+
+	@Test
+	public void duplicateSortValuesWithKeyset() throws ServoyException
+	{
+		Table orders = (Table)client.getFoundSetManager().getTable("mem:orders");
+		orders.getColumn("customer").setAllowNull(false);
+		try
+		{
+			DataSetCursor cursor = createCursor(createOrdersSelect(), orderRows);
+			Assert.assertTrue(cursor.isKeysetPaging());
+			assertAllOrdersOnce(readAll(cursor));
+		}
+		finally
+		{
+			orders.getColumn("customer").setAllowNull(true);
+		}
+	}
+
+	private static void assertAllOrdersOnce(List<Object[]> result)
+	{
+		Assert.assertEquals(ORDERS, result.size());
+		Set<Object> ids = new HashSet<>();
+		for (Object[] row : result)
+		{
+			Assert.assertEquals("the sort columns that were only selected for the paging are removed", 2, row.length);
+			Assert.assertTrue("duplicate row " + row[0], ids.add(row[0]));
+		}
+		assertSortedOnCustomer(result);
+	}
+
+	private static void assertSortedOnCustomer(List<Object[]> result)
+	{
+		for (int i = 1; i < result.size(); i++)
+		{
+			Assert.assertTrue(((String)result.get(i - 1)[1]).compareTo((String)result.get(i)[1]) <= 0);
+		}
+	}
+
+	/**
+	 * Data server that runs the page queries of the cursor on the rows, the values of a row are stored under datasource.column.
+	 */
+	private static IDataServer createDataServer(List<Map<String, Object>> rows)
+	{
+		Random random = new Random(3);
+		return (IDataServer)Proxy.newProxyInstance(IDataServer.class.getClassLoader(), new Class< ? >[] { IDataServer.class }, (proxy, method, args) -> {
+			if (!"performCursorQuery".equals(method.getName()))
+			{
+				throw new UnsupportedOperationException(method.getName());
+			}
+			QuerySelect select = (QuerySelect)args[3];
+			int startRow = ((Integer)args[5]).intValue();
+			int pageSize = ((Integer)args[6]).intValue();
+
+			List<Map<String, Object>> result = new ArrayList<>(rows);
+			Collections.shuffle(result, random);
+			if (select.getConditions() != null)
+			{
+				for (AndCondition condition : select.getConditions().values())
+				{
+					result.removeIf(row -> !matches(row, condition));
+				}
+			}
+			result.sort(createComparator(select.getSorts()));
+
+			List<IQuerySelectValue> columns = select.getColumns();
+			String[] columnNames = new String[columns.size()];
+			int[] columnTypes = new int[columns.size()];
+			for (int c = 0; c < columns.size(); c++)
+			{
+				columnNames[c] = "c" + c;
+				columnTypes[c] = IColumnTypes.TEXT;
+			}
+			BufferedDataSet page = new BufferedDataSet(columnNames, columnTypes);
+			for (int i = startRow; i < Math.min(result.size(), startRow + pageSize); i++)
+			{
+				Object[] values = new Object[columns.size()];
+				for (int c = 0; c < columns.size(); c++)
+				{
+					values[c] = getValue(result.get(i), columns.get(c));
+				}
+				page.addRow(values);
+			}
+			return page;
+		});
+	}
+
+	private static Object getValue(Map<String, Object> row, IQuerySelectValue column)
+	{
+		QueryColumn queryColumn = (QueryColumn)column;
+		String key = queryColumn.getTable().getDataSource() + '.' + queryColumn.getName();
+		Assert.assertTrue("unknown column " + key, row.containsKey(key));
+		return row.get(key);
+	}
+
+	@SuppressWarnings("unchecked")
+	private static int compare(Object value1, Object value2)
+	{
+		if (value1 == null || value2 == null)
+		{
+			return value1 == null ? (value2 == null ? 0 : -1) : 1;
+		}
+		return ((Comparable<Object>)value1).compareTo(value2);
+	}
+
+	private static Comparator<Map<String, Object>> createComparator(List<IQuerySort> sorts)
+	{
+		return (row1, row2) -> {
+			for (IQuerySort sort : Utils.iterate(sorts))
+			{
+				QuerySort querySort = (QuerySort)sort;
+				int result = compare(getValue(row1, querySort.getColumn()), getValue(row2, querySort.getColumn()));
+				if (result != 0)
+				{
+					return querySort.isAscending() ? result : -result;
+				}
+			}
+			return 0;
+		};
+	}
+
+	private static boolean matches(Map<String, Object> row, ISQLCondition condition)
+	{
+		if (condition instanceof AndCondition)
+		{
+			return ((AndCondition)condition).getConditions().stream().allMatch(c -> matches(row, c));
+		}
+		if (condition instanceof OrCondition)
+		{
+			return ((OrCondition)condition).getConditions().stream().anyMatch(c -> matches(row, c));
+		}
+		if (condition instanceof CompareCondition)
+		{
+			CompareCondition compareCondition = (CompareCondition)condition;
+			int result = compare(getValue(row, compareCondition.getOperand1()), compareCondition.getOperand2());
+			switch (compareCondition.getOperator() & IBaseSQLCondition.OPERATOR_MASK)
+			{
+				case IBaseSQLCondition.EQUALS_OPERATOR :
+					return result == 0;
+				case IBaseSQLCondition.GT_OPERATOR :
+					return result > 0;
+				case IBaseSQLCondition.LT_OPERATOR :
+					return result < 0;
+			}
+		}
+		throw new UnsupportedOperationException("condition " + condition);
+	}
+}
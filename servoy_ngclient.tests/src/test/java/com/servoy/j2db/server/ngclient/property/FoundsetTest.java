@@ -829,4 +829,67 @@ public class FoundsetTest extends AbstractSolutionTest
 		Assert.assertEquals("{\"n\":true}", stringWriter3.toString());
 	}
 
+	@Test
+	public void foundsetColumnarViewport() throws JSONException
+	{
+		IWebFormController form = (IWebFormController)client.getFormManager().showFormInCurrentContainer("test");
+		Assert.assertNotNull(form);
+		WebFormComponent wc = form.getFormUI().getWebComponent("mycustombean");
+
+		FoundsetTypeSabloValue rawPropertyValue = (FoundsetTypeSabloValue)wc.getRawPropertyValue("myfoundset");
+		BrowserConverterContext allowBrowserConverterContext = new BrowserConverterContext(wc, PushToServerEnum.allow);
+		rawPropertyValue.getViewPort().setBounds(0, 2);
+
+		client.getSettings().setProperty(FoundsetTypeSabloValue.COLUMNAR_VIEWPORT_SETTING, "true");
+		try
+		{
+			// server offers the columnar format, rows are still sent as objects until the client accepts it
+			StringWriter stringWriter = new StringWriter();
+			rawPropertyValue.toJSON(new JSONWriter(stringWriter), new DataConversion(), allowBrowserConverterContext);
+			JSONObject fullValue = new JSONObject(stringWriter.toString());
+			Assert.assertTrue(fullValue.getBoolean("columnar"));
+			Assert.assertEquals(2, fullValue.getJSONObject("viewPort").getJSONArray("rows").length());
+
+			rawPropertyValue.browserUpdatesReceived(new JSONArray("[{\"columnar\":true},{\"newViewPort\":{\"startIndex\":1,\"size\":2},\"id\":1}]"), null,
+				allowBrowserConverterContext);
+
+			stringWriter = new StringWriter();
+			rawPropertyValue.changesToJSON(new JSONWriter(stringWriter), new DataConversion(), allowBrowserConverterContext);
+			JSONObject rows = new JSONObject(stringWriter.toString()).getJSONObject("upd_viewPort").getJSONObject("rows");
+
+			JSONArray columns = rows.getJSONArray("c");
+			JSONArray values = rows.getJSONArray("v");
+			Assert.assertEquals(3, columns.length());
+			Assert.assertEquals("_svyRowId", columns.getString(0));
+			Assert.assertEquals(3, values.length());
+			Assert.assertEquals("1.2;_1", values.getJSONArray(0).getString(0));
+			Assert.assertEquals("1.3;_2", values.getJSONArray(0).getString(1));
+			for (int i = 1; i < columns.length(); i++)
+			{
+				if ("firstname".equals(columns.getString(i)))
+				{
+					Assert.assertEquals("[\"value3\",\"value1\"]", values.getJSONArray(i).toString());
+				}
+				else
+				{
+					Assert.assertEquals("lastname", columns.getString(i));
+					Assert.assertEquals("[\"value4\",\"value2\"]", values.getJSONArray(i).toString());
+				}
+			}
+			Assert.assertFalse(rows.has("t"));
+			Assert.assertFalse(rows.has("x"));
+
+			// once accepted, the full value is not offering it again
+			stringWriter = new StringWriter();
+			rawPropertyValue.toJSON(new JSONWriter(stringWriter), new DataConversion(), allowBrowserConverterContext);
+			fullValue = new JSONObject(stringWriter.toString());
+			Assert.assertFalse(fullValue.has("columnar"));
+			Assert.assertEquals(3, fullValue.getJSONObject("viewPort").getJSONObject("rows").getJSONArray("v").length());
+		}
+		finally
+		{
+			client.getSettings().remove(FoundsetTypeSabloValue.COLUMNAR_VIEWPORT_SETTING);
+		}
+	}
+
 }
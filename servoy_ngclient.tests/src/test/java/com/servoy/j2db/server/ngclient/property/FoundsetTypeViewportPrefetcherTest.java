@@ -0,0 +1,165 @@
+/*
+ This file belongs to the Servoy development and deployment environment, Copyright (C) 1997-2021 Servoy BV
+
+ This program is free software; you can redistribute it and/or modify it under
+ the terms of the GNU Affero General Public License as published by the Free
+ Software Foundation; either version 3 of the License, or (at your option) any
+ later version.
+
+ This program is distributed in the hope that it will be useful, but WITHOUT
+ ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ FOR A PARTICULAR PURPOSE. See the GNU Affero General Public License for more details.
+
+ You should have received a copy of the GNU Affero General Public License along
+ with this program; if not, see http://www.gnu.org/licenses or write to the Free
+ Software Foundation,Inc., 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301
+ */
+
+package com.servoy.j2db.server.ngclient.property;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executor;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.sablo.InMemPackageReader;
+
+import com.servoy.j2db.dataprocessing.BufferedDataSet;
+import com.servoy.j2db.dataprocessing.FoundSet;
+import com.servoy.j2db.persistence.IColumnTypes;
+import com.servoy.j2db.util.ServoyException;
+
+/**
+ * Tests for {@link FoundsetTypeViewportPrefetcher}, the test event dispatcher runs the events that are posted with invokeLater right away.
+ * The queries are run by an executor of the test, so the test decides when the background part of the prefetch runs.
+ *
+ * @author agent
+ *
+ */
+@SuppressWarnings("nls")
+public class FoundsetTypeViewportPrefetcherTest extends AbstractSolutionTest
+{
+	private static final int ROWS = 1000;
+
+	@Override
+	protected InMemPackageReader getTestComponents() throws IOException
+	{
+		return null;
+	}
+
+	@Override
+	protected void fillTestSolution() throws ServoyException
+	{
+	}
+
+	@Override
+	protected void setupData() throws ServoyException
+	{
+		BufferedDataSet ds = new BufferedDataSet(new String[] { "pk", "name" }, new int[] { IColumnTypes.INTEGER, IColumnTypes.TEXT });
+		for (int i = 0; i < ROWS; i++)
+		{
+			ds.addRow(new Object[] { Integer.valueOf(i), "name" + i });
+		}
+		client.getFoundSetManager().createDataSourceFromDataSet("prefetch", ds, null, new String[] { "pk" }, false);
+	}
+
+	private FoundSet loadFoundset() throws ServoyException
+	{
+		FoundSet fs = (FoundSet)client.getFoundSetManager().getNewFoundSet("mem:prefetch");
+		fs.loadAllRecords();
+		return fs;
+	}
+
+	private final List<Runnable> queued = new ArrayList<>();
+
+	private FoundsetTypeViewportPrefetcher createPrefetcher()
+	{
+		return createPrefetcher(Runnable::run);
+	}
+
+	private FoundsetTypeViewportPrefetcher createPrefetcher(Executor executor)
+	{
+		client.getSettings().setProperty(FoundsetTypeViewportPrefetcher.PREFETCH_PAGES_SETTING, "1");
+		try
+		{
+			return FoundsetTypeViewportPrefetcher.create(client, executor);
+		}
+		finally
+		{
+			client.getSettings().remove(FoundsetTypeViewportPrefetcher.PREFETCH_PAGES_SETTING);
+		}
+	}
+
+	@Test
+	public void disabledByDefault()
+	{
+		Assert.assertNull(FoundsetTypeViewportPrefetcher.create(client));
+	}
+
+	@Test
+	public void prefetchAddsRowsToCache() throws ServoyException
+	{
+		FoundSet fs = loadFoundset();
+		FoundsetTypeViewportPrefetcher prefetcher = createPrefetcher();
+
+		prefetcher.viewportRequested(fs, 0, 20);
+		Assert.assertTrue(prefetcher.getPrefetchedRowCount() > 0);
+	}
+
+	@Test
+	public void queriesRunOnExecutor() throws ServoyException
+	{
+		FoundSet fs = loadFoundset();
+		FoundsetTypeViewportPrefetcher prefetcher = createPrefetcher(queued::add);
+
+		// only the pks are collected on the event thread, the rows are loaded when the executor runs
+		prefetcher.viewportRequested(fs, 0, 20);
+		Assert.assertEquals(1, queued.size());
+		Assert.assertEquals(0, prefetcher.getPrefetchedRowCount());
+
+		// a prefetch is pending, no new one is queued
+		prefetcher.viewportRequested(fs, 20, 20);
+		Assert.assertEquals(1, queued.size());
+
+		queued.remove(0).run();
+		Assert.assertTrue(prefetcher.getPrefetchedRowCount() > 0);
+	}
+
+	@Test
+	public void doesNotLoadMorePksAtTheEnd() throws ServoyException
+	{
+		FoundSet fs = loadFoundset();
+		int loaded = fs.getSize();
+		Assert.assertTrue("more pks than the first chunk", fs.hadMoreRows());
+		FoundsetTypeViewportPrefetcher prefetcher = createPrefetcher(queued::add);
+
+		prefetcher.viewportRequested(fs, loaded - 20, 20);
+		Assert.assertEquals(loaded, fs.getSize());
+		Assert.assertTrue(queued.isEmpty());
+	}
+
+	@Test
+	public void rowsAreNotAddedAfterDispose() throws ServoyException
+	{
+		FoundSet fs = loadFoundset();
+		FoundsetTypeViewportPrefetcher prefetcher = createPrefetcher(queued::add);
+
+		prefetcher.viewportRequested(fs, 0, 20);
+		prefetcher.dispose();
+		queued.remove(0).run();
+		Assert.assertEquals(0, prefetcher.getPrefetchedRowCount());
+	}
+
+	@Test
+	public void nothingIsLoadedAfterDispose() throws ServoyException
+	{
+		FoundSet fs = loadFoundset();
+		FoundsetTypeViewportPrefetcher prefetcher = createPrefetcher();
+		prefetcher.dispose();
+
+		prefetcher.viewportRequested(fs, 0, 20);
+		Assert.assertEquals(0, prefetcher.getPrefetchedRowCount());
+	}
+}
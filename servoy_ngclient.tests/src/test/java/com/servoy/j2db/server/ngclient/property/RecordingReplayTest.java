@@ -0,0 +1,193 @@
+/*
+ This file belongs to the Servoy development and deployment environment, Copyright (C) 1997-2021 Servoy BV
+
+ This program is free software; you can redistribute it and/or modify it under
+ the terms of the GNU Affero General Public License as published by the Free
+ Software Foundation; either version 3 of the License, or (at your option) any
+ later version.
+
+ This program is distributed in the hope that it will be useful, but WITHOUT
+ ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ FOR A PARTICULAR PURPOSE. See the GNU Affero General Public License for more details.
+
+ You should have received a copy of the GNU Affero General Public License along
+ with this program; if not, see http://www.gnu.org/licenses or write to the Free
+ Software Foundation,Inc., 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301
+*/
+
+package com.servoy.j2db.server.ngclient.property;
+
+import java.awt.Dimension;
+import java.awt.Point;
+import java.io.FileReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.StringReader;
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.sablo.InMemPackageReader;
+import org.sablo.websocket.CurrentWindow;
+
+import com.servoy.j2db.J2DBGlobals;
+import com.servoy.j2db.persistence.DummyValidator;
+import com.servoy.j2db.persistence.Form;
+import com.servoy.j2db.persistence.GraphicalComponent;
+import com.servoy.j2db.persistence.IColumnTypes;
+import com.servoy.j2db.persistence.ScriptMethod;
+import com.servoy.j2db.persistence.ScriptVariable;
+import com.servoy.j2db.server.ngclient.IWebFormController;
+import com.servoy.j2db.server.ngclient.property.ReplayLoadGenerator.IVirtualUser;
+import com.servoy.j2db.server.ngclient.property.ReplayLoadGenerator.Result;
+import com.servoy.j2db.util.ServoyException;
+
+/**
+ * Replays a recorded session with concurrent virtual users, each with its own in-process client.
+ * <p>
+ * Users, iterations and the recording file can be set with the system properties servoy.replay.users, servoy.replay.iterations and servoy.replay.recording,
+ * a recording can be downloaded from a server that runs the recording endpoint via &lt;clientnr&gt;.recording.
+ * Messages of a recording are replayed against the solution of this test, a recording of another solution needs the forms of that solution in fillTestSolution.
+ *
+ * @author agent
+ * @since 2021.06
+ */
+@SuppressWarnings("nls")
+public class RecordingReplayTest extends AbstractSolutionTest
+{
+	private static final String CLICK = click("replayButton");
+
+	private static final String FAILING_CLICK = click("failButton");
+
+	private static final String RECORDING = ">" + CLICK + "\n" + //
+		"{\"cmsgid\":2,\"ret\":null}\n" + //
+		">{\"smsgid\":1,\"ret\":true}\n" + //
+		">" + CLICK + "\n";
+
+	private static String click(String beanName)
+	{
+		return "{\"service\":\"formService\",\"methodname\":\"executeEvent\",\"args\":{\"formname\":\"test\",\"beanname\":\"" + beanName +
+			"\",\"event\":\"onActionMethodID\",\"args\":[{\"type\":\"event\",\"eventName\":\"onActionMethodID\",\"modifiers\":0,\"timestamp\":1430912492641,\"x\":362,\"y\":207}],\"changes\":{}},\"cmsgid\":2}";
+	}
+
+	@Override
+	protected InMemPackageReader getTestComponents() throws IOException
+	{
+		return null;
+	}
+
+	@Override
+	protected void setupData() throws ServoyException
+	{
+	}
+
+	@Override
+	protected void fillTestSolution() throws ServoyException
+	{
+		Form form = solution.createNewForm(validator, null, "test", null, false, new Dimension(600, 400));
+		form.setNavigatorID(-1);
+		ScriptVariable counter = form.createNewScriptVariable(DummyValidator.INSTANCE, "counter", IColumnTypes.INTEGER);
+		counter.setDefaultValue("0");
+		GraphicalComponent button = form.createNewGraphicalComponent(new Point(10, 10));
+		button.setName("replayButton");
+		ScriptMethod sm = form.createNewScriptMethod(DummyValidator.INSTANCE, "count");
+		sm.setDeclaration("function count() {counter++}");
+		button.setOnActionMethodID(sm.getID());
+
+		GraphicalComponent failButton = form.createNewGraphicalComponent(new Point(10, 40));
+		failButton.setName("failButton");
+		ScriptMethod failMethod = form.createNewScriptMethod(DummyValidator.INSTANCE, "fail");
+		failMethod.setDeclaration("function fail() {throw new Error('replay failure')}");
+		failButton.setOnActionMethodID(failMethod.getID());
+	}
+
+	/**
+	 * Replay the messages, a message fails when the client reported an error while handling it.
+	 *
+	 * @param expectedCounter the expected value of the counter variable of each client after the replay, -1 when not known
+	 */
+	private Result replay(List<String> messages, int users, int iterations, int expectedCounter) throws Exception
+	{
+		return new ReplayLoadGenerator(messages, users, iterations).run(userNumber -> {
+			ClientEndpoint clientEndpoint = createClient(repository);
+			IWebFormController form = (IWebFormController)clientEndpoint.client.getFormManager().showFormInCurrentContainer("test");
+			clientEndpoint.client.getAndClearReportedErrors();
+			return new IVirtualUser()
+			{
+				@Override
+				public void incoming(String message) throws Exception
+				{
+					clientEndpoint.endpoint.incoming(message, true);
+					List<String> errors = clientEndpoint.client.getAndClearReportedErrors();
+					if (!errors.isEmpty())
+					{
+						throw new Exception(errors.get(0));
+					}
+				}
+
+				@Override
+				public void close()
+				{
+					if (expectedCounter >= 0)
+					{
+						Assert.assertEquals(expectedCounter, ((Number)form.getFormScope().get("counter")).intValue());
+					}
+					CurrentWindow.set(null);
+					J2DBGlobals.setServiceProvider(null);
+				}
+			};
+		});
+	}
+
+	@Test
+	public void readRecording() throws IOException
+	{
+		List<String> messages = ReplayLoadGenerator.readRecording(new StringReader(RECORDING));
+		// the message to the browser and the response to a server call are not replayed
+		Assert.assertEquals(2, messages.size());
+		Assert.assertEquals("formService.executeEvent", ReplayLoadGenerator.getMessageType(messages.get(0)));
+	}
+
+	@Test
+	public void replayWithConcurrentUsers() throws Exception
+	{
+		int users = Integer.getInteger("servoy.replay.users", 4).intValue();
+		int iterations = Integer.getInteger("servoy.replay.iterations", 10).intValue();
+		String recordingFile = System.getProperty("servoy.replay.recording");
+
+		List<String> messages;
+		try (Reader reader = recordingFile == null ? new StringReader(RECORDING) : new FileReader(recordingFile))
+		{
+			messages = ReplayLoadGenerator.readRecording(reader);
+		}
+
+		Result result = replay(messages, users, iterations, recordingFile == null ? 2 * iterations : -1);
+
+		Assert.assertFalse(result.getMessageTypes().isEmpty());
+		for (String type : result.getMessageTypes())
+		{
+			Assert.assertEquals(type + " failed with: " + result.getFirstError(type), 0, result.getErrors(type));
+			Assert.assertTrue(type, result.getCount(type) > 0);
+			Assert.assertTrue(type, result.getPercentileMS(type, 50) <= result.getPercentileMS(type, 99));
+			Assert.assertTrue(type, result.getThroughput(type) > 0);
+		}
+		if (recordingFile == null)
+		{
+			Assert.assertEquals(Collections.singletonList("formService.executeEvent"), result.getMessageTypes());
+			Assert.assertEquals(2 * users * iterations, result.getCount("formService.executeEvent"));
+		}
+	}
+
+	@Test
+	public void replayRecordsFailures() throws Exception
+	{
+		List<String> messages = ReplayLoadGenerator.readRecording(new StringReader(">" + CLICK + "\n>" + FAILING_CLICK + "\n"));
+		Result result = replay(messages, 2, 3, 3);
+
+		// both clicks are the same message type, the script error of the failing click is reported by the client and not thrown by the endpoint
+		Assert.assertEquals(6, result.getErrors("formService.executeEvent"));
+		Assert.assertEquals(6, result.getCount("formService.executeEvent"));
+		Assert.assertTrue(result.getFirstError("formService.executeEvent"), result.getFirstError("formService.executeEvent").contains("replay failure"));
+	}
+}
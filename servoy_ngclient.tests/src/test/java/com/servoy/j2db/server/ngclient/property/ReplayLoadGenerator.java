@@ -0,0 +1,346 @@
+/*
+ This file belongs to the Servoy development and deployment environment, Copyright (C) 1997-2021 Servoy BV
+
+ This program is free software; you can redistribute it and/or modify it under
+ the terms of the GNU Affero General Public License as published by the Free
+ Software Foundation; either version 3 of the License, or (at your option) any
+ later version.
+
+ This program is distributed in the hope that it will be useful, but WITHOUT
+ ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ FOR A PARTICULAR PURPOSE. See the GNU Affero General Public License for more details.
+
+ You should have received a copy of the GNU Affero General Public License along
+ with this program; if not, see http://www.gnu.org/licenses or write to the Free
+ Software Foundation,Inc., 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301
+*/
+
+package com.servoy.j2db.server.ngclient.property;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+
+/**
+ * Replays the incoming messages of a session recorded with the RecordingEndpoint by a number of concurrent virtual users.
+ * <p>
+ * A recording has a line per message, messages from the browser start with '&gt;', the other lines are messages that were sent to the browser.
+ * Only service calls and commands from the browser are replayed, responses to server calls (smsgid) cannot be matched to the calls of the replayed session.
+ * <p>
+ * The time of handling each message is measured per message type (service.methodname or cmd), this is the time until the endpoint returns,
+ * with the test event dispatcher that runs events on the calling thread this includes the execution of the event.
+ * A message fails when the virtual user throws an exception for it, the endpoint itself does not throw for errors in the handling of a message.
+ *
+ * @author agent
+ * @since 2021.06
+ */
+@SuppressWarnings("nls")
+public class ReplayLoadGenerator
+{
+	public interface IVirtualUserFactory
+	{
+		/**
+		 * Create a virtual user, called on the thread that replays the messages for that user.
+		 */
+		IVirtualUser createUser(int userNumber) throws Exception;
+	}
+
+	public interface IVirtualUser
+	{
+		/**
+		 * Handle an incoming message, throws an exception when the handling of the message failed.
+		 */
+		void incoming(String message) throws Exception;
+
+		void close();
+	}
+
+	private final List<String> messages;
+	private final int users;
+	private final int iterations;
+
+	public ReplayLoadGenerator(List<String> messages, int users, int iterations)
+	{
+		this.messages = messages;
+		this.users = users;
+		this.iterations = iterations;
+	}
+
+	/**
+	 * Read the incoming messages of a recording that should be replayed.
+	 */
+	public static List<String> readRecording(Reader reader) throws IOException
+	{
+		List<String> messages = new ArrayList<>();
+		BufferedReader br = new BufferedReader(reader);
+		String line;
+		while ((line = br.readLine()) != null)
+		{
+			if (line.length() > 1 && line.charAt(0) == '>')
+			{
+				String message = line.substring(1);
+				if (!getMessageType(message).startsWith("<"))
+				{
+					messages.add(message);
+				}
+			}
+		}
+		return messages;
+	}
+
+	/**
+	 * @return service.methodname for service calls, the command for commands, &lt;response&gt; or &lt;unknown&gt; for other messages
+	 */
+	public static String getMessageType(String message)
+	{
+		try
+		{
+			JSONObject json = new JSONObject(message);
+			if (json.has("service"))
+			{
+				return json.optString("service") + '.' + json.optString("methodname");
+			}
+			if (json.has("cmd"))
+			{
+				return json.optString("cmd");
+			}
+			if (json.has("smsgid"))
+			{
+				return "<response>";
+			}
+		}
+		catch (JSONException e)
+		{
+			// not json
+		}
+		return "<unknown>";
+	}
+
+	/**
+	 * Run all virtual users concurrently, every user replays the messages the configured number of iterations.
+	 */
+	public Result run(IVirtualUserFactory factory) throws Exception
+	{
+		ExecutorService executor = Executors.newFixedThreadPool(users);
+		try
+		{
+			CountDownLatch ready = new CountDownLatch(users);
+			CountDownLatch start = new CountDownLatch(1);
+			List<Future<Map<String, Latencies>>> futures = new ArrayList<>(users);
+			for (int i = 0; i < users; i++)
+			{
+				int userNumber = i;
+				futures.add(executor.submit(() -> {
+					IVirtualUser user;
+					try
+					{
+						user = factory.createUser(userNumber);
+					}
+					finally
+					{
+						ready.countDown();
+					}
+					try
+					{
+						start.await();
+						return replay(user);
+					}
+					finally
+					{
+						user.close();
+					}
+				}));
+			}
+
+			// the creation of the users is not part of the measurement
+			ready.await();
+			long startTime = System.nanoTime();
+			start.countDown();
+
+			Map<String, Latencies> total = new TreeMap<>();
+			for (Future<Map<String, Latencies>> future : futures)
+			{
+				for (Map.Entry<String, Latencies> entry : future.get().entrySet())
+				{
+					total.computeIfAbsent(entry.getKey(), k -> new Latencies()).addAll(entry.getValue());
+				}
+			}
+			return new Result(total, System.nanoTime() - startTime);
+		}
+		finally
+		{
+			executor.shutdownNow();
+		}
+	}
+
+	private Map<String, Latencies> replay(IVirtualUser user)
+	{
+		Map<String, Latencies> latencies = new TreeMap<>();
+		String[] types = new String[messages.size()];
+		for (int i = 0; i < types.length; i++)
+		{
+			types[i] = getMessageType(messages.get(i));
+		}
+		for (int iteration = 0; iteration < iterations; iteration++)
+		{
+			for (int i = 0; i < types.length; i++)
+			{
+				Latencies typeLatencies = latencies.computeIfAbsent(types[i], k -> new Latencies());
+				long time = System.nanoTime();
+				try
+				{
+					user.incoming(messages.get(i));
+					typeLatencies.add(System.nanoTime() - time);
+				}
+				catch (Exception e)
+				{
+					typeLatencies.errors++;
+					if (typeLatencies.firstError == null)
+					{
+						typeLatencies.firstError = e.getMessage();
+					}
+				}
+			}
+		}
+		return latencies;
+	}
+
+	static final class Latencies
+	{
+		private long[] nanos = new long[64];
+		private int size;
+		int errors;
+		String firstError;
+
+		void add(long value)
+		{
+			if (size == nanos.length)
+			{
+				nanos = Arrays.copyOf(nanos, size * 2);
+			}
+			nanos[size++] = value;
+		}
+
+		void addAll(Latencies other)
+		{
+			for (int i = 0; i < other.size; i++)
+			{
+				add(other.nanos[i]);
+			}
+			errors += other.errors;
+			if (firstError == null)
+			{
+				firstError = other.firstError;
+			}
+		}
+
+		int getCount()
+		{
+			return size;
+		}
+
+		/**
+		 * Nearest rank percentile in milliseconds.
+		 */
+		double getPercentileMS(double percentile)
+		{
+			if (size == 0) return 0;
+			long[] sorted = Arrays.copyOf(nanos, size);
+			Arrays.sort(sorted);
+			int rank = (int)Math.ceil(percentile / 100 * size);
+			return sorted[Math.max(0, Math.min(size, rank) - 1)] / 1000000d;
+		}
+	}
+
+	public static final class Result
+	{
+		private final Map<String, Latencies> latencies;
+		private final long wallTimeNanos;
+
+		Result(Map<String, Latencies> latencies, long wallTimeNanos)
+		{
+			this.latencies = latencies;
+			this.wallTimeNanos = wallTimeNanos;
+		}
+
+		public List<String> getMessageTypes()
+		{
+			return Collections.unmodifiableList(new ArrayList<>(latencies.keySet()));
+		}
+
+		public int getCount(String messageType)
+		{
+			Latencies l = latencies.get(messageType);
+			return l == null ? 0 : l.getCount();
+		}
+
+		public int getErrors(String messageType)
+		{
+			Latencies l = latencies.get(messageType);
+			return l == null ? 0 : l.errors;
+		}
+
+		/**
+		 * @return the message of the first failure of the message type, null when there were no failures
+		 */
+		public String getFirstError(String messageType)
+		{
+			Latencies l = latencies.get(messageType);
+			return l == null ? null : l.firstError;
+		}
+
+		public double getPercentileMS(String messageType, double percentile)
+		{
+			Latencies l = latencies.get(messageType);
+			return l == null ? 0 : l.getPercentileMS(percentile);
+		}
+
+		/**
+		 * @return handled messages per second over all virtual users
+		 */
+		public double getThroughput(String messageType)
+		{
+			return wallTimeNanos == 0 ? 0 : getCount(messageType) * 1000000000d / wallTimeNanos;
+		}
+
+		public long getWallTimeMS()
+		{
+			return wallTimeNanos / 1000000;
+		}
+
+		@Override
+		public String toString()
+		{
+			StringBuilder sb = new StringBuilder();
+			sb.append(String.format("%-40s %8s %8s %10s %10s %10s%n", "message type", "count", "errors", "msg/s", "p50 ms", "p99 ms"));
+			for (String type : latencies.keySet())
+			{
+				sb.append(String.format("%-40s %8d %8d %10.1f %10.3f %10.3f%n", type, Integer.valueOf(getCount(type)), Integer.valueOf(getErrors(type)),
+					Double.valueOf(getThroughput(type)), Double.valueOf(getPercentileMS(type, 50)), Double.valueOf(getPercentileMS(type, 99))));
+			}
+			for (String type : latencies.keySet())
+			{
+				String firstError = getFirstError(type);
+				if (firstError != null)
+				{
+					sb.append("first error of ").append(type).append(": ").append(firstError).append('\n');
+				}
+			}
+			sb.append("wall time: ").append(getWallTimeMS()).append(" ms");
+			return sb.toString();
+		}
+	}
+}
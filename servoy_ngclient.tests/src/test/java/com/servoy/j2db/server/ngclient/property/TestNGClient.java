@@ -23,6 +23,7 @@ import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Date;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Locale;
 import java.util.Map;
 import java.util.Set;
@@ -85,6 +86,8 @@ public class TestNGClient extends NGClient
 	 */
 	private final TestRepository tr;
 
+	private final List<String> reportedErrors = new ArrayList<String>();
+
 	/**
 	 * @param wsSession
 	 * @param tr
@@ -598,4 +601,27 @@ public class TestNGClient extends NGClient
 	protected void createPluginManager()
 	{
 	}
+
+	@Override
+	protected void logError(String msg, Object detail)
+	{
+		super.logError(msg, detail);
+		synchronized (reportedErrors)
+		{
+			reportedErrors.add(detail instanceof Throwable ? msg + ": " + detail : msg);
+		}
+	}
+
+	/**
+	 * @return the errors reported to this client since the last call, script errors of events are reported and not thrown to the endpoint
+	 */
+	public List<String> getAndClearReportedErrors()
+	{
+		synchronized (reportedErrors)
+		{
+			List<String> errors = new ArrayList<String>(reportedErrors);
+			reportedErrors.clear();
+			return errors;
+		}
+	}
 }
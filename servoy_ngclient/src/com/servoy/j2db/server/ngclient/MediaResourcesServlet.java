@@ -35,7 +35,6 @@ import java.util.concurrent.ConcurrentHashMap;
 
 import javax.servlet.ServletConfig;
 import javax.servlet.ServletException;
-import javax.servlet.ServletOutputStream;
 import javax.servlet.annotation.WebServlet;
 import javax.servlet.http.HttpServlet;
 import javax.servlet.http.HttpServletRequest;
@@ -239,7 +238,7 @@ public class MediaResourcesServlet extends HttpServlet
 			try
 			{
 				String decrypt = SecuritySupport.decrypt(Settings.getInstance(), encrypted);
-				found = clientnr != null && sendData(resp, MediaURLStreamHandler.getBlobLoaderMedia(getClient(req, Integer.parseInt(clientnr)), decrypt),
+				found = clientnr != null && sendData(req, resp, MediaURLStreamHandler.getBlobLoaderMedia(getClient(req, Integer.parseInt(clientnr)), decrypt),
 					MediaURLStreamHandler.getBlobLoaderMimeType(decrypt), MediaURLStreamHandler.getBlobLoaderFileName(decrypt), null);
 			}
 			catch (Exception e)
@@ -260,7 +259,15 @@ public class MediaResourcesServlet extends HttpServlet
 			cleanupDynamicMediasMap(false);
 			if (HTTPUtils.checkAndSetUnmodified(request, response, mediaInfo.getLastModifiedTimeStamp())) return true;
 
-			return sendData(response, mediaInfo.getData(), mediaInfo.getContentType(), mediaInfo.getFileName(), mediaInfo.getContentDisposition());
+			File file = mediaInfo.getFile();
+			if (file != null)
+			{
+				// large data is streamed from the temp file instead of reading it in memory
+				setContentHeaders(response, mediaInfo.getContentType(), mediaInfo.getFileName(), mediaInfo.getContentDisposition());
+				MediaResponseWriter.writeFile(request, response, file, mediaInfo.getETag());
+				return true;
+			}
+			return sendData(request, response, mediaInfo.getData(), mediaInfo.getContentType(), mediaInfo.getFileName(), mediaInfo.getContentDisposition());
 		}
 
 		return false;
@@ -362,7 +369,7 @@ public class MediaResourcesServlet extends HttpServlet
 		// cache resources on client until changed
 		if (HTTPUtils.checkAndSetUnmodified(request, response, media.getLastModifiedTime() != -1 ? media.getLastModifiedTime() : fs.getLastModifiedTime()))
 			return true;
-		return sendData(response, media.getName().endsWith(".less") ? LessCompiler.compileSolutionLessFile(media, fs).getBytes("UTF-8") : media.getMediaData(),
+		return sendData(request, response, media.getName().endsWith(".less") ? LessCompiler.compileSolutionLessFileBytes(media, fs) : media.getMediaData(),
 			media.getName().endsWith(".less") ? "text/css" : media.getMimeType(), media.getName(), null);
 	}
 
@@ -399,7 +406,8 @@ public class MediaResourcesServlet extends HttpServlet
 		return null;
 	}
 
-	private boolean sendData(HttpServletResponse resp, byte[] mediaData, String contentType, String fileName, String contentDisposition) throws IOException
+	private boolean sendData(HttpServletRequest req, HttpServletResponse resp, byte[] mediaData, String contentType, String fileName,
+		String contentDisposition) throws IOException
 	{
 		boolean dataWasSent = false;
 		if (mediaData != null && mediaData.length > 0)
@@ -409,20 +417,22 @@ public class MediaResourcesServlet extends HttpServlet
 			{
 				ct = MimeTypes.getContentType(mediaData, fileName);
 			}
-			if (ct != null) resp.setContentType(ct);
-			resp.setContentLength(mediaData.length);
-			if (fileName != null)
-			{
-				resp.setHeader("Content-disposition", (contentDisposition == null ? "attachment" : contentDisposition) + "; filename=\"" + fileName + "\"");
-			}
-			ServletOutputStream outputStream = resp.getOutputStream();
-			outputStream.write(mediaData);
-			outputStream.flush();
+			setContentHeaders(resp, ct, fileName, contentDisposition);
+			MediaResponseWriter.writeData(req, resp, mediaData, ct);
 			dataWasSent = true;
 		}
 		return dataWasSent;
 	}
 
+	private static void setContentHeaders(HttpServletResponse resp, String contentType, String fileName, String contentDisposition)
+	{
+		if (contentType != null) resp.setContentType(contentType);
+		if (fileName != null)
+		{
+			resp.setHeader("Content-disposition", (contentDisposition == null ? "attachment" : contentDisposition) + "; filename=\"" + fileName + "\"");
+		}
+	}
+
 	@Override
 	protected void doPost(HttpServletRequest req, HttpServletResponse res) throws ServletException, IOException
 	{
@@ -646,6 +656,7 @@ public class MediaResourcesServlet extends HttpServlet
 		private long accessedTimeStamp;
 		private final Dimension mediaSize;
 		private byte[] data;
+		private final String etag; // only for data in a file, the response writer caches the etag of data in memory
 
 		MediaInfo(String name, String fileName, String contentType, String contentDisposition, byte[] data)
 		{
@@ -658,10 +669,12 @@ public class MediaResourcesServlet extends HttpServlet
 			if (data.length < MAX_DATA_SIZE_FOR_IN_MEMORY)
 			{
 				this.data = data;
+				this.etag = null;
 			}
 			else
 			{
 				this.data = null;
+				this.etag = MediaResponseWriter.createETag(data);
 				if (MediaResourcesServlet.tempDir != null)
 				{
 					Utils.writeFile(new File(MediaResourcesServlet.tempDir, name), data);
@@ -712,6 +725,24 @@ public class MediaResourcesServlet extends HttpServlet
 			return data;
 		}
 
+		/**
+		 * @return the file with the data when it is too large to keep in memory, null otherwise
+		 */
+		File getFile()
+		{
+			if (data == null && MediaResourcesServlet.tempDir != null)
+			{
+				File file = new File(MediaResourcesServlet.tempDir, name);
+				if (file.exists()) return file;
+			}
+			return null;
+		}
+
+		String getETag()
+		{
+			return etag;
+		}
+
 		public void touch()
 		{
 			accessedTimeStamp = System.currentTimeMillis();
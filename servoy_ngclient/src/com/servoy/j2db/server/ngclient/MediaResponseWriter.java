@@ -0,0 +1,341 @@
+/*
+ This file belongs to the Servoy development and deployment environment, Copyright (C) 1997-2021 Servoy BV
+
+ This program is free software; you can redistribute it and/or modify it under
+ the terms of the GNU Affero General Public License as published by the Free
+ Software Foundation; either version 3 of the License, or (at your option) any
+ later version.
+
+ This program is distributed in the hope that it will be useful, but WITHOUT
+ ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ FOR A PARTICULAR PURPOSE. See the GNU Affero General Public License for more details.
+
+ You should have received a copy of the GNU Affero General Public License along
+ with this program; if not, see http://www.gnu.org/licenses or write to the Free
+ Software Foundation,Inc., 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301
+*/
+
+package com.servoy.j2db.server.ngclient;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Collections;
+import java.util.Map;
+import java.util.WeakHashMap;
+import java.util.function.Supplier;
+import java.util.zip.GZIPOutputStream;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import org.apache.commons.io.IOUtils;
+
+import com.servoy.j2db.util.Debug;
+
+/**
+ * Writes media data to the response with a content hash ETag, support for a single byte Range and a gzip variant for compressible content types.
+ * <p>
+ * The ETag and gzip variant of a data array are cached as long as the array is alive. Solution medias and dynamic medias keep their data array, the
+ * {@link com.servoy.j2db.server.ngclient.less.LessCompiler} keeps the array of a compiled less file and blob loader data is the value of the cached row.
+ * Dynamic medias that are too large to keep in memory are streamed from their file.
+ *
+ * @author agent
+ * @since 2021.06
+ */
+@SuppressWarnings("nls")
+final class MediaResponseWriter
+{
+	private static final int MIN_COMPRESS_SIZE = 1024;
+	private static final long[] UNSATISFIABLE = new long[0];
+
+	private static final Map<byte[], Variants> variants = Collections.synchronizedMap(new WeakHashMap<byte[], Variants>());
+
+	private MediaResponseWriter()
+	{
+	}
+
+	static void writeData(HttpServletRequest request, HttpServletResponse response, byte[] data, String contentType) throws IOException
+	{
+		Variants dataVariants = variants.get(data);
+		if (dataVariants == null)
+		{
+			// byte arrays use identity for equals and hashCode, so this is keyed by the array instance
+			dataVariants = new Variants(data);
+			Variants previous = variants.putIfAbsent(data, dataVariants);
+			if (previous != null) dataVariants = previous;
+		}
+		Variants v = dataVariants;
+		write(request, response, new ByteArrayContent(data), dataVariants.etag,
+			isCompressible(contentType) && data.length >= MIN_COMPRESS_SIZE ? () -> v.getGzipped(data) : null);
+	}
+
+	static void writeFile(HttpServletRequest request, HttpServletResponse response, File file, String etag) throws IOException
+	{
+		write(request, response, new FileContent(file), etag, null);
+	}
+
+	static String createETag(byte[] data)
+	{
+		try
+		{
+			byte[] digest = MessageDigest.getInstance("SHA-256").digest(data);
+			StringBuilder sb = new StringBuilder(34).append('"');
+			for (int i = 0; i < 16; i++)
+			{
+				sb.append(Character.forDigit((digest[i] >> 4) & 0xF, 16)).append(Character.forDigit(digest[i] & 0xF, 16));
+			}
+			return sb.append('"').toString();
+		}
+		catch (NoSuchAlgorithmException e)
+		{
+			// every java platform has SHA-256
+			throw new IllegalStateException(e);
+		}
+	}
+
+	static boolean isCompressible(String contentType)
+	{
+		if (contentType == null) return false;
+		String ct = contentType.toLowerCase();
+		return ct.startsWith("text/") || ct.startsWith("application/javascript") || ct.startsWith("application/x-javascript") ||
+			ct.startsWith("application/json") || ct.startsWith("application/xml") || ct.startsWith("image/svg+xml");
+	}
+
+	/**
+	 * @param gzipVariant supplier of the gzip variant when the content type is compressible, null otherwise; the supplier returns null when gzip does not make the content smaller
+	 */
+	private static void write(HttpServletRequest request, HttpServletResponse response, Content content, String etag, Supplier<byte[]> gzipVariant)
+		throws IOException
+	{
+		long length = content.getLength();
+		response.setHeader("Accept-Ranges", "bytes");
+		if (gzipVariant != null) response.addHeader("Vary", "Accept-Encoding");
+
+		String range = request.getHeader("Range");
+		if (range != null && isIfRangeMatch(request.getHeader("If-Range"), etag))
+		{
+			long[] startEnd = parseRange(range, length);
+			if (startEnd == UNSATISFIABLE)
+			{
+				response.setHeader("Content-Range", "bytes */" + length);
+				response.setStatus(HttpServletResponse.SC_REQUESTED_RANGE_NOT_SATISFIABLE);
+				return;
+			}
+			if (startEnd != null)
+			{
+				if (isNotModified(request, response, etag)) return;
+				response.setHeader("ETag", etag);
+				response.setStatus(HttpServletResponse.SC_PARTIAL_CONTENT);
+				response.setHeader("Content-Range", "bytes " + startEnd[0] + '-' + startEnd[1] + '/' + length);
+				response.setContentLengthLong(startEnd[1] - startEnd[0] + 1);
+				OutputStream out = response.getOutputStream();
+				content.write(out, startEnd[0], startEnd[1] - startEnd[0] + 1);
+				out.flush();
+				return;
+			}
+		}
+
+		byte[] gzipped = gzipVariant != null && acceptsGzip(request) ? gzipVariant.get() : null;
+		String representationETag = gzipped != null ? etag.substring(0, etag.length() - 1) + "-gz\"" : etag;
+		if (isNotModified(request, response, representationETag)) return;
+		response.setHeader("ETag", representationETag);
+		OutputStream out = response.getOutputStream();
+		if (gzipped != null)
+		{
+			response.setHeader("Content-Encoding", "gzip");
+			response.setContentLength(gzipped.length);
+			out.write(gzipped);
+		}
+		else
+		{
+			response.setContentLengthLong(length);
+			content.write(out, 0, length);
+		}
+		out.flush();
+	}
+
+	private static boolean isNotModified(HttpServletRequest request, HttpServletResponse response, String etag)
+	{
+		String ifNoneMatch = request.getHeader("If-None-Match");
+		if (ifNoneMatch != null)
+		{
+			for (String tag : ifNoneMatch.split(","))
+			{
+				String t = tag.trim();
+				if (t.startsWith("W/")) t = t.substring(2);
+				if (t.equals("*") || t.equals(etag))
+				{
+					response.setHeader("ETag", etag);
+					response.setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+					return true;
+				}
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * A range request with an If-Range that does not match the current ETag gets the full content.
+	 */
+	private static boolean isIfRangeMatch(String ifRange, String etag)
+	{
+		return ifRange == null || ifRange.trim().equals(etag);
+	}
+
+	private static boolean acceptsGzip(HttpServletRequest request)
+	{
+		String acceptEncoding = request.getHeader("Accept-Encoding");
+		if (acceptEncoding == null) return false;
+		for (String encoding : acceptEncoding.split(","))
+		{
+			String[] parts = encoding.trim().split(";");
+			if ("gzip".equalsIgnoreCase(parts[0].trim()))
+			{
+				return parts.length < 2 || !parts[1].trim().replace(" ", "").matches("q=0(\\.0*)?");
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Parse a single byte range, multiple ranges and invalid headers are ignored and get the full content.
+	 *
+	 * @return start and end (inclusive), null when the full content should be sent or UNSATISFIABLE
+	 */
+	static long[] parseRange(String range, long length)
+	{
+		if (!range.startsWith("bytes=") || range.indexOf(',') != -1) return null;
+		String spec = range.substring("bytes=".length()).trim();
+		int dash = spec.indexOf('-');
+		if (dash == -1) return null;
+		try
+		{
+			long start;
+			long end;
+			if (dash == 0)
+			{
+				// suffix range, the last n bytes
+				long suffix = Long.parseLong(spec.substring(1));
+				if (suffix <= 0) return UNSATISFIABLE;
+				start = Math.max(0, length - suffix);
+				end = length - 1;
+			}
+			else
+			{
+				start = Long.parseLong(spec.substring(0, dash));
+				end = dash == spec.length() - 1 ? length - 1 : Math.min(Long.parseLong(spec.substring(dash + 1)), length - 1);
+				if (end < start && start < length) return null;
+			}
+			if (start >= length) return UNSATISFIABLE;
+			return new long[] { start, end };
+		}
+		catch (NumberFormatException e)
+		{
+			return null;
+		}
+	}
+
+	/**
+	 * ETag and gzip variant of a data array, this should not reference the data array itself because that is the weak key.
+	 */
+	private static final class Variants
+	{
+		private static final byte[] NOT_SMALLER = new byte[0];
+
+		final String etag;
+		private volatile byte[] gzipped;
+
+		Variants(byte[] data)
+		{
+			this.etag = createETag(data);
+		}
+
+		byte[] getGzipped(byte[] data)
+		{
+			byte[] gz = gzipped;
+			if (gz == null)
+			{
+				// concurrent requests may both compress, the result is the same
+				gz = gzip(data);
+				if (gz == null || gz.length >= data.length) gz = NOT_SMALLER;
+				gzipped = gz;
+			}
+			return gz == NOT_SMALLER ? null : gz;
+		}
+	}
+
+	private interface Content
+	{
+		long getLength();
+
+		void write(OutputStream out, long offset, long length) throws IOException;
+	}
+
+	private static final class ByteArrayContent implements Content
+	{
+		private final byte[] data;
+
+		ByteArrayContent(byte[] data)
+		{
+			this.data = data;
+		}
+
+		@Override
+		public long getLength()
+		{
+			return data.length;
+		}
+
+		@Override
+		public void write(OutputStream out, long offset, long length) throws IOException
+		{
+			out.write(data, (int)offset, (int)length);
+		}
+	}
+
+	private static final class FileContent implements Content
+	{
+		private final File file;
+
+		FileContent(File file)
+		{
+			this.file = file;
+		}
+
+		@Override
+		public long getLength()
+		{
+			return file.length();
+		}
+
+		@Override
+		public void write(OutputStream out, long offset, long length) throws IOException
+		{
+			try (InputStream is = new FileInputStream(file))
+			{
+				IOUtils.copyLarge(is, out, offset, length);
+			}
+		}
+	}
+
+	static byte[] gzip(byte[] data)
+	{
+		ByteArrayOutputStream baos = new ByteArrayOutputStream(data.length / 3);
+		try (GZIPOutputStream gzos = new GZIPOutputStream(baos))
+		{
+			gzos.write(data);
+		}
+		catch (IOException e)
+		{
+			Debug.error(e);
+			return null;
+		}
+		return baos.toByteArray();
+	}
+}
@@ -21,7 +21,15 @@ import java.io.BufferedReader;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
-import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.zip.CRC32;
 
 import javax.script.Bindings;
 import javax.script.CompiledScript;
@@ -34,6 +42,7 @@ import com.servoy.j2db.FlattenedSolution;
 import com.servoy.j2db.persistence.Media;
 import com.servoy.j2db.util.Debug;
 import com.servoy.j2db.util.Settings;
+import com.servoy.j2db.util.xmlxport.SolutionImportNotifier;
 
 /**
  * @author jcompagner
@@ -47,12 +56,88 @@ public class LessCompiler
 	private static CompiledScript script;
 	private static Bindings bindings;
 
+	/**
+	 * Compiled solution less files per solution and media uuid, shared by all clients of the server.
+	 */
+	private static final ConcurrentMap<String, CompletableFuture<CompiledLess>> compiledSolutionLess = new ConcurrentHashMap<>();
+
+	static
+	{
+		SolutionImportNotifier.addImportListener(compiledSolutionLess::clear);
+	}
+
 	public static String compileSolutionLessFile(Media media, FlattenedSolution fs)
 	{
-		String cssAsString = compileLess(new String(media.getMediaData(), Charset.forName("UTF-8")), fs, media.getName());
-		cssAsString = cssAsString.replaceAll("##last-changed-timestamp##",
-			Long.toHexString(media.getLastModifiedTime() != -1 ? media.getLastModifiedTime() : fs.getSolution().getLastModifiedTime()));
-		return cssAsString;
+		CompiledLess compiled = getCompiledSolutionLess(media, fs);
+		return compiled == null ? null : compiled.getCss(getLastChangedTimestamp(media, fs));
+	}
+
+	/**
+	 * Get the compiled css of a solution less file as UTF-8 bytes. The same array is returned as long as the compiled css is cached and the media did not
+	 * change, so it can be used as key for data that is derived from the css, like the ETag and gzip variant of the media response.
+	 */
+	public static byte[] compileSolutionLessFileBytes(Media media, FlattenedSolution fs)
+	{
+		CompiledLess compiled = getCompiledSolutionLess(media, fs);
+		return compiled == null ? null : compiled.getCssBytes(getLastChangedTimestamp(media, fs));
+	}
+
+	private static long getLastChangedTimestamp(Media media, FlattenedSolution fs)
+	{
+		return media.getLastModifiedTime() != -1 ? media.getLastModifiedTime() : fs.getSolution().getLastModifiedTime();
+	}
+
+	/**
+	 * Get the compiled css of a solution less file from the cache or compile it, concurrent requests for the same less file wait for one compilation.
+	 * A cached css is used when the less file and the medias it imports did not change.
+	 */
+	private static CompiledLess getCompiledSolutionLess(Media media, FlattenedSolution fs)
+	{
+		String key = fs.getName() + ':' + media.getUUID();
+		byte[] source = media.getMediaData();
+		while (true)
+		{
+			CompletableFuture<CompiledLess> future = compiledSolutionLess.get(key);
+			if (future != null)
+			{
+				CompiledLess compiled;
+				try
+				{
+					compiled = future.join();
+				}
+				catch (CompletionException | CancellationException e)
+				{
+					compiled = null;
+				}
+				if (compiled != null && compiled.isValid(source, fs))
+				{
+					// the media of this flattened solution did not go through the compiler, set the imports for the stylesheet timestamps
+					media.setRuntimeProperty(Media.REFERENCES, compiled.getImports(fs));
+					return compiled;
+				}
+			}
+
+			CompletableFuture<CompiledLess> compiling = new CompletableFuture<>();
+			if (future == null ? compiledSolutionLess.putIfAbsent(key, compiling) == null : compiledSolutionLess.replace(key, future, compiling))
+			{
+				try
+				{
+					String css = compileLess(new String(source, StandardCharsets.UTF_8), fs, media.getName());
+					List<Media> imports = media.getRuntimeProperty(Media.REFERENCES);
+					CompiledLess compiled = new CompiledLess(source, imports, fs, css);
+					compiling.complete(compiled);
+					if (css == null) compiledSolutionLess.remove(key, compiling);
+					return compiled;
+				}
+				catch (RuntimeException e)
+				{
+					compiledSolutionLess.remove(key, compiling);
+					compiling.completeExceptionally(e);
+					throw e;
+				}
+			}
+			// another request started compiling this less file, wait for that one
+		}
 	}
 
 	public static String compileLess(InputStream is)
@@ -90,6 +175,87 @@ public class LessCompiler
 
 	}
 
+	private static final class CompiledLess
+	{
+		private final long sourceChecksum;
+		private final List<String> importNames;
+		private final long importsChecksum;
+		final String css;
+		private long cssBytesTimestamp;
+		private byte[] cssBytes;
+
+		CompiledLess(byte[] source, List<Media> imports, FlattenedSolution fs, String css)
+		{
+			this.sourceChecksum = checksum(source);
+			this.importNames = new ArrayList<>();
+			if (imports != null)
+			{
+				for (Media media : imports)
+				{
+					if (!importNames.contains(media.getName())) importNames.add(media.getName());
+				}
+			}
+			this.importsChecksum = importsChecksum(importNames, fs);
+			this.css = css;
+		}
+
+		String getCss(long lastChangedTimestamp)
+		{
+			return css == null ? null : css.replace("##last-changed-timestamp##", Long.toHexString(lastChangedTimestamp));
+		}
+
+		synchronized byte[] getCssBytes(long lastChangedTimestamp)
+		{
+			if (css == null) return null;
+			if (cssBytes == null || cssBytesTimestamp != lastChangedTimestamp)
+			{
+				cssBytes = getCss(lastChangedTimestamp).getBytes(StandardCharsets.UTF_8);
+				cssBytesTimestamp = lastChangedTimestamp;
+			}
+			return cssBytes;
+		}
+
+		boolean isValid(byte[] source, FlattenedSolution fs)
+		{
+			return sourceChecksum == checksum(source) && importsChecksum == importsChecksum(importNames, fs);
+		}
+
+		List<Media> getImports(FlattenedSolution fs)
+		{
+			List<Media> imports = new ArrayList<>(importNames.size());
+			for (String name : importNames)
+			{
+				Media media = fs.getMedia(name);
+				if (media != null) imports.add(media);
+			}
+			return imports;
+		}
+
+		private static long checksum(byte[] data)
+		{
+			CRC32 crc = new CRC32();
+			if (data != null) crc.update(data);
+			return crc.getValue();
+		}
+
+		/**
+		 * Checksum over the contents of the imported medias as they resolve in the given solution.
+		 */
+		private static long importsChecksum(List<String> names, FlattenedSolution fs)
+		{
+			CRC32 crc = new CRC32();
+			for (String name : names)
+			{
+				crc.update(name.getBytes(StandardCharsets.UTF_8));
+				Media media = fs.getMedia(name);
+				byte[] data = media == null ? null : media.getMediaData();
+				crc.update(data == null ? -1 : data.length);
+				if (data != null) crc.update(data);
+			}
+			return crc.getValue();
+		}
+	}
+
 	private static String getText(InputStream is) throws IOException
 	{
 		BufferedReader bufferedReader = new BufferedReader(new InputStreamReader(is));
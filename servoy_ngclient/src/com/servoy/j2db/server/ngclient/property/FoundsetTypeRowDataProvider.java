@@ -17,17 +17,25 @@
 
 package com.servoy.j2db.server.ngclient.property;
 
+import java.util.HashMap;
+import java.util.Map;
+
 import org.json.JSONException;
 import org.json.JSONWriter;
+import org.sablo.specification.PropertyDescription;
 import org.sablo.specification.property.IBrowserConverterContext;
 import org.sablo.websocket.utils.DataConversion;
+import org.sablo.websocket.utils.JSONUtils;
 
+import com.servoy.j2db.dataprocessing.FireCollector;
+import com.servoy.j2db.dataprocessing.IFoundSetInternal;
 import com.servoy.j2db.dataprocessing.IRecordInternal;
+import com.servoy.j2db.util.Debug;
 
 /**
  * @author acostescu
  */
-public final class FoundsetTypeRowDataProvider extends ViewportRowDataProvider
+public final class FoundsetTypeRowDataProvider extends ViewportRowDataProvider implements IColumnarRowDataProvider
 {
 
 	protected final FoundsetTypeSabloValue foundsetPropertyValue;
@@ -53,6 +61,162 @@ public final class FoundsetTypeRowDataProvider extends ViewportRowDataProvider
 		w.endObject();
 	}
 
+	@Override
+	public void writeColumnarRowData(int startIndex, int endIndex, IFoundSetInternal foundset, JSONWriter w, DataConversion clientConversionInfo)
+		throws JSONException
+	{
+		String[] columnKeys = foundsetPropertyValue.getColumnKeys();
+
+		w.object();
+		w.key(FoundsetTypeSabloValue.COLUMNAR_COLUMNS).array();
+		for (String columnKey : columnKeys)
+		{
+			w.value(columnKey);
+		}
+		w.endArray();
+
+		Map<String, Object> columnConversions = new HashMap<>();
+		Map<String, Map<String, Object>> cellConversions = new HashMap<>();
+		w.key(FoundsetTypeSabloValue.COLUMNAR_VALUES).array();
+		if (foundset != null)
+		{
+			int size = foundset.getSize();
+			int end = Math.min(size - 1, endIndex);
+			if (end < endIndex)
+			{
+				Debug.error("Illegal state: view ports end index " + endIndex + " is bigger then the size " + size, new RuntimeException());
+			}
+
+			// see ViewportRowDataProvider.writeRowData(...) for why the fire collector is needed
+			FireCollector fireCollector = FireCollector.getFireCollector();
+			try
+			{
+				int rowCount = Math.max(0, end - startIndex + 1);
+				IRecordInternal[] records = new IRecordInternal[rowCount];
+				String[] generatedRowIds = new String[rowCount];
+				for (int i = 0; i < rowCount; i++)
+				{
+					records[i] = foundset.getRecord(startIndex + i);
+					// a record that could not be loaded is written as a row of nulls
+					generatedRowIds[i] = records[i] != null ? records[i].getPKHashKey() + "_" + (startIndex + i) : null;
+				}
+
+				boolean[] nullValues = new boolean[rowCount];
+				DataConversion fixedConversionInfo = new DataConversion();
+				for (int c = 0; c < columnKeys.length; c++)
+				{
+					String columnKey = columnKeys[c];
+					w.array();
+					if (FoundsetTypeSabloValue.ROW_ID_COL_KEY.equals(columnKey))
+					{
+						// row ids have no conversion
+						for (int i = 0; i < rowCount; i++)
+						{
+							w.value(generatedRowIds[i]);
+						}
+					}
+					else
+					{
+						PropertyDescription pd = foundsetPropertyValue.getColumnPropertyDescription(columnKey);
+						if (FoundsetTypeSabloValue.hasFixedConversion(pd))
+						{
+							// all non-null values of the column get the same conversion, so it is only kept for the column and not tracked per cell
+							fixedConversionInfo.pushNode(String.valueOf(c));
+							for (int i = 0; i < rowCount; i++)
+							{
+								populateCellData(records[i], columnKey, pd, w, fixedConversionInfo);
+							}
+							fixedConversionInfo.popNode();
+						}
+						else
+						{
+							// the conversion depends on the value, track it per cell
+							DataConversion columnConversionInfo = new DataConversion();
+							for (int i = 0; i < rowCount; i++)
+							{
+								columnConversionInfo.pushNode(String.valueOf(i));
+								nullValues[i] = !populateCellData(records[i], columnKey, pd, w, columnConversionInfo);
+								columnConversionInfo.popNode();
+							}
+							addColumnConversions(String.valueOf(c), columnConversionInfo.getConversions(), nullValues, rowCount, columnConversions,
+								cellConversions);
+						}
+					}
+					w.endArray();
+				}
+				columnConversions.putAll(fixedConversionInfo.getConversions());
+			}
+			finally
+			{
+				fireCollector.done();
+			}
+		}
+		w.endArray();
+
+		if (columnConversions.size() > 0)
+		{
+			w.key(FoundsetTypeSabloValue.COLUMNAR_COLUMN_CONVERSIONS).object();
+			JSONUtils.writeConversions(w, columnConversions);
+			w.endObject();
+		}
+		if (cellConversions.size() > 0)
+		{
+			w.key(FoundsetTypeSabloValue.COLUMNAR_CELL_CONVERSIONS).object();
+			for (Map.Entry<String, Map<String, Object>> rowConversions : cellConversions.entrySet())
+			{
+				w.key(rowConversions.getKey()).object();
+				JSONUtils.writeConversions(w, rowConversions.getValue());
+				w.endObject();
+			}
+			w.endObject();
+		}
+		w.endObject();
+	}
+
+	/**
+	 * Writes the value of one dataprovider cell for the columnar format.
+	 *
+	 * @return false if the value of the cell was null.
+	 */
+	private boolean populateCellData(IRecordInternal record, String columnKey, PropertyDescription pd, JSONWriter w, DataConversion cellConversionInfo)
+		throws JSONException
+	{
+		if (record == null)
+		{
+			w.value(null);
+			return false;
+		}
+		return foundsetPropertyValue.populateCellData(record, columnKey, pd, w, cellConversionInfo, browserConverterContext);
+	}
+
+	/**
+	 * The client applies the column conversion to all non-null values of the column, cells that do not match that get their own conversion;
+	 * an empty conversion means that the cell has no conversion.
+	 */
+	private static void addColumnConversions(String columnIndex, Map<String, Object> conversions, boolean[] nullValues, int rowCount,
+		Map<String, Object> columnConversions, Map<String, Map<String, Object>> cellConversions)
+	{
+		if (conversions.isEmpty()) return;
+
+		Object columnConversion = null;
+		for (int i = 0; i < rowCount && columnConversion == null; i++)
+		{
+			if (!nullValues[i]) columnConversion = conversions.get(String.valueOf(i));
+		}
+		if (columnConversion != null) columnConversions.put(columnIndex, columnConversion);
+
+		for (int i = 0; i < rowCount; i++)
+		{
+			String rowIndex = String.valueOf(i);
+			Object cellConversion = conversions.get(rowIndex);
+			Object expected = nullValues[i] ? null : columnConversion;
+			if (cellConversion == null ? expected != null : !cellConversion.equals(expected))
+			{
+				cellConversions.computeIfAbsent(rowIndex, k -> new HashMap<>()).put(columnIndex, cellConversion != null ? cellConversion : "");
+			}
+		}
+	}
+
 	@Override
 	protected boolean containsColumn(String columnName)
 	{
@@ -73,6 +73,7 @@ import com.servoy.j2db.server.ngclient.ServoyClientService;
 import com.servoy.j2db.server.ngclient.property.ChainedRelatedFoundsetSelectionMonitor.IRelatedFoundsetChainSelectionChangeListener;
 import com.servoy.j2db.server.ngclient.property.types.FormatPropertyType;
 import com.servoy.j2db.server.ngclient.property.types.IDataLinkedType.TargetDataLinks;
+import com.servoy.j2db.server.ngclient.property.types.MediaDataproviderPropertyType;
 import com.servoy.j2db.server.ngclient.utils.NGUtils;
 import com.servoy.j2db.util.DataSourceUtils;
 import com.servoy.j2db.util.Debug;
@@ -104,6 +105,11 @@ public class FoundsetTypeSabloValue implements IDataLinkedPropertyValue, TableMo
 	public static final String DATAPROVIDER_KEY = "dp";
 	public static final String VALUE_KEY = "value";
 
+	/**
+	 * Setting that allows clients to request whole viewports in the columnar format, see {@link IColumnarRowDataProvider#writeColumnarRowData}.
+	 */
+	public static final String COLUMNAR_VIEWPORT_SETTING = "servoy.ngclient.foundset.columnarViewport";
+
 	// START keys and values used in JSON
 	public static final String UPDATE_PREFIX = "upd_"; // prefixes keys when only partial updates are send for them
 
@@ -127,9 +133,19 @@ public class FoundsetTypeSabloValue implements IDataLinkedPropertyValue, TableMo
 	public static final String ROWS = "rows";
 	public static final String NO_OP = "n";
 
+	// server offers the columnar viewport format in the full value, client accepts it with a request
+	public static final String COLUMNAR_VIEWPORT = "columnar";
+	public static final String COLUMNAR_COLUMNS = "c";
+	public static final String COLUMNAR_VALUES = "v";
+	public static final String COLUMNAR_COLUMN_CONVERSIONS = "t";
+	public static final String COLUMNAR_CELL_CONVERSIONS = "x";
+
 	// END keys and values used in JSON
 
 	protected FoundsetTypeViewport viewPort;
+	private FoundsetTypeViewportPrefetcher prefetcher;
+	private boolean prefetcherCreated;
+	private boolean columnarViewport;
 	private IFoundSetInternal foundset;
 	protected final Object designJSONValue;
 
@@ -423,6 +439,22 @@ public class FoundsetTypeSabloValue implements IDataLinkedPropertyValue, TableMo
 		return getApplication().getFoundSetManager();
 	}
 
+	/**
+	 * Let the prefetcher (when enabled) load the rows that the browser is expected to request next.
+	 */
+	private void prefetchViewport()
+	{
+		if (!prefetcherCreated)
+		{
+			prefetcherCreated = true;
+			prefetcher = FoundsetTypeViewportPrefetcher.create(getApplication());
+		}
+		if (prefetcher != null)
+		{
+			prefetcher.viewportRequested(getFoundset(), viewPort.getStartIndex(), viewPort.getSize());
+		}
+	}
+
 	protected INGApplication getApplication()
 	{
 		if (webObjectContext.getUnderlyingWebObject() instanceof WebComponent) return getFormUI().getDataConverterContext().getApplication();
@@ -524,6 +556,12 @@ public class FoundsetTypeSabloValue implements IDataLinkedPropertyValue, TableMo
 	public void detach()
 	{
 		viewPort.dispose();
+		if (prefetcher != null)
+		{
+			prefetcher.dispose();
+			prefetcher = null;
+		}
+		prefetcherCreated = false;
 		if (foundset instanceof ISwingFoundSet)
 		{
 			((ISwingFoundSet)foundset).getSelectionModel().removeListSelectionListener(getListSelectionListener());
@@ -558,6 +596,7 @@ public class FoundsetTypeSabloValue implements IDataLinkedPropertyValue, TableMo
 		addSelectedIndexes(destinationJSON);
 		destinationJSON.key(MULTI_SELECT).value(getFoundset() != null ? getFoundset().isMultiSelect() : false);
 		destinationJSON.key(HAS_MORE_ROWS).value(getFoundset() != null ? getFoundset().hadMoreRows() : false);
+		if (!columnarViewport && isColumnarViewportAllowed()) destinationJSON.key(COLUMNAR_VIEWPORT).value(true);
 
 		writeColumnFormatsIfNeededAndAvailable(destinationJSON, dataConverterContext, false);
 
@@ -607,8 +646,16 @@ public class FoundsetTypeSabloValue implements IDataLinkedPropertyValue, TableMo
 
 			destinationJSON.key(ROWS);
 			clientConversionInfo.pushNode(ROWS);
-			rowDataProvider.writeRowData(viewPort.getStartIndex(), viewPort.getStartIndex() + viewPort.getSize() - 1, getFoundset(), destinationJSON,
-				clientConversionInfo);
+			if (columnarViewport)
+			{
+				rowDataProvider.writeColumnarRowData(viewPort.getStartIndex(), viewPort.getStartIndex() + viewPort.getSize() - 1, getFoundset(),
+					destinationJSON, clientConversionInfo);
+			}
+			else
+			{
+				rowDataProvider.writeRowData(viewPort.getStartIndex(), viewPort.getStartIndex() + viewPort.getSize() - 1, getFoundset(), destinationJSON,
+					clientConversionInfo);
+			}
 			clientConversionInfo.popNode();
 
 			// conversion info for websocket traffic (for example Date objects will turn into long)
@@ -830,29 +877,92 @@ public class FoundsetTypeSabloValue implements IDataLinkedPropertyValue, TableMo
 			String dataProvider = entry.getValue();
 			if (columnName == null || Utils.equalObjects(columnName, dataProvider))
 			{
-				Object value = (dataProvider != null ? record.getValue(dataProvider) : null);
-				if (value == Scriptable.NOT_FOUND) value = null; // if the given DP is invalid, then record.getValue(dataProvider) can return Rhino Scriptable.NOT_FOUND; we must handle that as that can't be sent to client conversion directly
-
-				PropertyDescription pd = getDataProviderPropertyDescription(dataProvider);
-
-				// currently all that NGUtils.getDataProviderPropertyDescription can return is IConvertedProperty type or default types; so we don't need any special value pre-processing (like IWrapperType or IServoyAwareValue or others would need)
-				//			if (pd != null)
-				//			{
-				//				if (pd.getType() instanceof IWrapperType< ? , ? >) value = ((IWrapperType)pd.getType()).wrap(value, null, new DataConverterContext(pd,
-				//					webObject));
-				//			}
-
 				clientConversionInfo.pushNode(entry.getKey());
-				if (value instanceof DbIdentValue)
-				{
-					value = ((DbIdentValue)value).getPkValue();
-				}
-				FullValueToJSONConverter.INSTANCE.toJSONValue(w, entry.getKey(), value, pd, clientConversionInfo, browserConverterContext);
+				writeCellValue(record, entry.getKey(), dataProvider, getDataProviderPropertyDescription(dataProvider), w, clientConversionInfo,
+					browserConverterContext);
 				clientConversionInfo.popNode();
 			}
 		}
 	}
 
+	/**
+	 * @return the client keys of the columns that are written for a whole row in the columnar format: the row id followed by the dataproviders.
+	 */
+	protected String[] getColumnKeys()
+	{
+		String[] columnKeys = new String[dataproviders.size() + 1];
+		columnKeys[0] = ROW_ID_COL_KEY;
+		int i = 1;
+		for (String key : dataproviders.keySet())
+		{
+			columnKeys[i++] = key;
+		}
+		return columnKeys;
+	}
+
+	/**
+	 * @return the type of the dataprovider of a column, for the columnar viewport format it is looked up once for the whole column.
+	 */
+	protected PropertyDescription getColumnPropertyDescription(String columnKey)
+	{
+		return getDataProviderPropertyDescription(dataproviders.get(columnKey));
+	}
+
+	/**
+	 * @return true if all non-null values of the type get the same client side conversion, so the conversion of a column with this type can be decided once.
+	 * Values of media dataproviders and of dataproviders without a type are converted depending on the value.
+	 */
+	protected static boolean hasFixedConversion(PropertyDescription pd)
+	{
+		return pd != null && !(pd.getType() instanceof MediaDataproviderPropertyType);
+	}
+
+	/**
+	 * Writes the value of a dataprovider column of the given record as an array element, for the columnar viewport format.
+	 *
+	 * @param pd the type of the column, see {@link #getColumnPropertyDescription(String)}
+	 * @return false if the value was null.
+	 */
+	protected boolean populateCellData(IRecordInternal record, String columnKey, PropertyDescription pd, JSONWriter w, DataConversion cellConversionInfo,
+		IBrowserConverterContext browserConverterContext) throws JSONException
+	{
+		return writeCellValue(record, null, dataproviders.get(columnKey), pd, w, cellConversionInfo, browserConverterContext);
+	}
+
+	/**
+	 * @param key the key to write the value with, null to write it as an array element.
+	 * @return false if the value was null.
+	 */
+	private boolean writeCellValue(IRecordInternal record, String key, String dataProvider, PropertyDescription pd, JSONWriter w,
+		DataConversion clientConversionInfo, IBrowserConverterContext browserConverterContext) throws JSONException
+	{
+		Object value = (dataProvider != null ? record.getValue(dataProvider) : null);
+		if (value == Scriptable.NOT_FOUND) value = null; // if the given DP is invalid, then record.getValue(dataProvider) can return Rhino Scriptable.NOT_FOUND; we must handle that as that can't be sent to client conversion directly
+
+		// currently all that NGUtils.getDataProviderPropertyDescription can return is IConvertedProperty type or default types; so we don't need any special value pre-processing (like IWrapperType or IServoyAwareValue or others would need)
+		//			if (pd != null)
+		//			{
+		//				if (pd.getType() instanceof IWrapperType< ? , ? >) value = ((IWrapperType)pd.getType()).wrap(value, null, new DataConverterContext(pd,
+		//					webObject));
+		//			}
+
+		if (value instanceof DbIdentValue)
+		{
+			value = ((DbIdentValue)value).getPkValue();
+		}
+		FullValueToJSONConverter.INSTANCE.toJSONValue(w, key, value, pd, clientConversionInfo, browserConverterContext);
+		return value != null;
+	}
+
+	/**
+	 * The columnar viewport format is only offered to clients when enabled by {@link #COLUMNAR_VIEWPORT_SETTING}.
+	 */
+	private boolean isColumnarViewportAllowed()
+	{
+		INGApplication application = getApplication();
+		return application != null && Utils.getAsBoolean(application.getSettings().getProperty(COLUMNAR_VIEWPORT_SETTING, "false"));
+	}
+
 	private PropertyDescription getDataProviderPropertyDescription(String dataProvider)
 	{
 		if (parentDAL != null)
@@ -890,6 +1000,7 @@ public class FoundsetTypeSabloValue implements IDataLinkedPropertyValue, TableMo
 
 						viewPort.clearSendingInitialPreferredViewport();
 						viewPort.setBounds(newViewport.getInt(START_INDEX), newViewport.getInt(SIZE));
+						prefetchViewport();
 
 						changeMonitor.requestIdHandled(requestID, true);
 					}
@@ -907,6 +1018,7 @@ public class FoundsetTypeSabloValue implements IDataLinkedPropertyValue, TableMo
 						int requestID = update.getInt(ID_KEY);
 						viewPort.clearSendingInitialPreferredViewport();
 						viewPort.loadExtraRecords(update.getInt("loadExtraRecords"));
+						prefetchViewport();
 						changeMonitor.requestIdHandled(requestID, true);
 					}
 					// {loadLessRecords: negativeOrPositiveCount}
@@ -917,6 +1029,11 @@ public class FoundsetTypeSabloValue implements IDataLinkedPropertyValue, TableMo
 						viewPort.loadLessRecords(update.getInt("loadLessRecords"));
 						changeMonitor.requestIdHandled(requestID, true);
 					}
+					// {columnar: true}
+					else if (update.has(COLUMNAR_VIEWPORT))
+					{
+						columnarViewport = update.getBoolean(COLUMNAR_VIEWPORT) && isColumnarViewportAllowed();
+					}
 					else if (update.has("sort"))
 					{
 						int requestID = update.getInt(ID_KEY);
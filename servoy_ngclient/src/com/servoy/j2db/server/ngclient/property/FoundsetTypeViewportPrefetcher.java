@@ -0,0 +1,206 @@
+/*
+ This file belongs to the Servoy development and deployment environment, Copyright (C) 1997-2021 Servoy BV
+
+ This program is free software; you can redistribute it and/or modify it under
+ the terms of the GNU Affero General Public License as published by the Free
+ Software Foundation; either version 3 of the License, or (at your option) any
+ later version.
+
+ This program is distributed in the hope that it will be useful, but WITHOUT
+ ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ FOR A PARTICULAR PURPOSE. See the GNU Affero General Public License for more details.
+
+ You should have received a copy of the GNU Affero General Public License along
+ with this program; if not, see http://www.gnu.org/licenses or write to the Free
+ Software Foundation,Inc., 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301
+*/
+
+package com.servoy.j2db.server.ngclient.property;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicReference;
+
+import com.servoy.j2db.dataprocessing.FoundSet;
+import com.servoy.j2db.dataprocessing.IDataSet;
+import com.servoy.j2db.dataprocessing.IFoundSetInternal;
+import com.servoy.j2db.dataprocessing.Row;
+import com.servoy.j2db.server.ngclient.INGApplication;
+import com.servoy.j2db.util.Debug;
+import com.servoy.j2db.util.Utils;
+
+/**
+ * Predictive prefetching for the viewport of a foundset property.
+ * <p>
+ * Viewport requests of the browser are tracked for scroll direction and speed. After each request the rows of the next chunk in the scroll direction
+ * are loaded into the row cache, so the next request creates its records from memory.
+ * The foundset is not thread safe, so the pks of the rows that are not cached are collected on the event thread, the queries for these rows run on the
+ * executor of the client and the loaded rows are added to the row cache on the event thread again with invokeLater. Only rows of pks that are already
+ * loaded are prefetched, the pk set of the foundset is not changed.
+ * <p>
+ * Disabled by default, servoy.ngclient.viewportPrefetch.pages sets the number of scroll chunks to load ahead.
+ *
+ * @author agent
+ * @since 2021.06
+ */
+@SuppressWarnings("nls")
+public class FoundsetTypeViewportPrefetcher
+{
+	public static final String PREFETCH_PAGES_SETTING = "servoy.ngclient.viewportPrefetch.pages";
+
+	// fast scrolling adds at most this many chunks to the prefetch depth
+	private static final int MAX_SPEED_CHUNKS = 3;
+
+	private final INGApplication application;
+	private final Executor executor;
+	private final int pages;
+
+	// all state is only used on the event thread
+	private IFoundSetInternal lastFoundset;
+	private int lastStartIndex = -1;
+	private int lastSize;
+	private long lastRequestTime;
+	private int direction = 1;
+	private int chunkSize;
+	private double recordsPerSecond;
+	private int prefetchedStart;
+	private int prefetchedEnd;
+	private boolean prefetchPending;
+
+	// the row cache holds soft references, keep the prefetched rows until the next prefetch
+	private List<Row> prefetchedRows = Collections.emptyList();
+	private boolean disposed;
+
+	private FoundsetTypeViewportPrefetcher(INGApplication application, Executor executor, int pages)
+	{
+		this.application = application;
+		this.executor = executor;
+		this.pages = pages;
+	}
+
+	/**
+	 * @return a prefetcher when prefetching is enabled, null otherwise
+	 */
+	public static FoundsetTypeViewportPrefetcher create(INGApplication application)
+	{
+		return create(application, command -> application.getScheduledExecutor().execute(command));
+	}
+
+	/**
+	 * @return a prefetcher that runs the queries on the executor when prefetching is enabled, null otherwise
+	 */
+	static FoundsetTypeViewportPrefetcher create(INGApplication application, Executor executor)
+	{
+		if (application == null) return null;
+		int pages = Utils.getAsInteger(application.getSettings().getProperty(PREFETCH_PAGES_SETTING, "0"));
+		if (pages <= 0) return null;
+		return new FoundsetTypeViewportPrefetcher(application, executor, pages);
+	}
+
+	/**
+	 * Called on the event thread after the browser requested a new viewport or extra records.
+	 */
+	public void viewportRequested(IFoundSetInternal foundset, int startIndex, int size)
+	{
+		if (disposed || !(foundset instanceof FoundSet) || size <= 0) return;
+
+		long now = System.currentTimeMillis();
+		if (foundset != lastFoundset)
+		{
+			lastFoundset = foundset;
+			lastStartIndex = -1;
+			prefetchedStart = prefetchedEnd = 0;
+			prefetchedRows = Collections.emptyList();
+		}
+		if (lastStartIndex < 0)
+		{
+			chunkSize = size;
+		}
+		else
+		{
+			int startDelta = startIndex - lastStartIndex;
+			int endDelta = (startIndex + size) - (lastStartIndex + lastSize);
+			int moved = 0;
+			if (endDelta > 0 && startDelta >= 0)
+			{
+				direction = 1;
+				moved = endDelta;
+			}
+			else if (startDelta < 0 && endDelta <= 0)
+			{
+				direction = -1;
+				moved = -startDelta;
+			}
+			if (moved > 0)
+			{
+				chunkSize = moved;
+				recordsPerSecond = (recordsPerSecond + moved * 1000d / Math.max(1, now - lastRequestTime)) / 2;
+			}
+		}
+		lastStartIndex = startIndex;
+		lastSize = size;
+		lastRequestTime = now;
+
+		int depth = chunkSize * (pages + Math.min(MAX_SPEED_CHUNKS, (int)(recordsPerSecond / chunkSize)));
+		int from, to;
+		if (direction > 0)
+		{
+			from = startIndex + size;
+			to = from + depth;
+		}
+		else
+		{
+			to = startIndex;
+			from = Math.max(0, to - depth);
+		}
+		if (prefetchPending || (from >= prefetchedStart && to <= prefetchedEnd)) return; // already prefetched or queued
+
+		final FoundSet fs = (FoundSet)foundset;
+		to = Math.min(to, fs.getSize());
+		if (from >= to) return;
+
+		final int start = from;
+		final int end = to;
+		Callable<List<IDataSet>> loader = fs.createRowsLoader(start, end - start);
+		prefetchedStart = start;
+		prefetchedEnd = end;
+		if (loader == null) return; // all rows are cached
+
+		prefetchPending = true;
+		executor.execute(() -> {
+			AtomicReference<List<IDataSet>> rowData = new AtomicReference<>();
+			try
+			{
+				rowData.set(loader.call());
+			}
+			catch (Exception e)
+			{
+				Debug.error("Error prefetching rows " + start + " - " + end + " of foundset " + fs.getDataSource(), e);
+			}
+			finally
+			{
+				// only add the rows to the cache on the event thread
+				application.invokeLater(() -> {
+					prefetchPending = false;
+					if (rowData.get() != null && !disposed && fs == lastFoundset) prefetchedRows = fs.addRowsToCache(rowData.get());
+				});
+			}
+		});
+	}
+
+	/**
+	 * @return the number of rows that were loaded by the last prefetch
+	 */
+	int getPrefetchedRowCount()
+	{
+		return prefetchedRows.size();
+	}
+
+	public void dispose()
+	{
+		disposed = true;
+		prefetchedRows = Collections.emptyList();
+	}
+}
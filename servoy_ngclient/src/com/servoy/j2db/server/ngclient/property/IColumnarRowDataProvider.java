@@ -0,0 +1,44 @@
+/*
+ This file belongs to the Servoy development and deployment environment, Copyright (C) 1997-2021 Servoy BV
+
+ This program is free software; you can redistribute it and/or modify it under
+ the terms of the GNU Affero General Public License as published by the Free
+ Software Foundation; either version 3 of the License, or (at your option) any
+ later version.
+
+ This program is distributed in the hope that it will be useful, but WITHOUT
+ ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ FOR A PARTICULAR PURPOSE. See the GNU Affero General Public License for more details.
+
+ You should have received a copy of the GNU Affero General Public License along
+ with this program; if not, see http://www.gnu.org/licenses or write to the Free
+ Software Foundation,Inc., 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301
+*/
+
+package com.servoy.j2db.server.ngclient.property;
+
+import org.json.JSONException;
+import org.json.JSONWriter;
+import org.sablo.websocket.utils.DataConversion;
+
+import com.servoy.j2db.dataprocessing.IFoundSetInternal;
+
+/**
+ * A viewport row data provider that can also write whole rows as columns instead of as an array of row objects.
+ *
+ * @author agent
+ * @since 2021.06
+ */
+public interface IColumnarRowDataProvider
+{
+	/**
+	 * Writes whole rows as columns. The column keys are written once, the values as an array per column and
+	 * the client side conversion once per column; only cells that need a different conversion than the rest of their column get their own conversion.
+	 * <pre>
+	 * { c: ["_svyRowId", "col1", "col2"], v: [[rowId1, rowId2], [1, 2], [date1, null]], t: { "2": "Date" }, x: { "1": { "1": "..." } } }
+	 * </pre>
+	 * The conversions are written inside the columnar value, so nothing is added to the conversion info of the caller.
+	 */
+	void writeColumnarRowData(int startIndex, int endIndex, IFoundSetInternal foundset, JSONWriter w, DataConversion clientConversionInfo)
+		throws JSONException;
+}
@@ -33,8 +33,9 @@ import org.sablo.util.ValueReference;
 import org.sablo.websocket.utils.DataConversion;
 import org.sablo.websocket.utils.JSONUtils;
 
-import com.servoy.base.util.ITagResolver;
+import com.servoy.base.util.TagTemplate;
 import com.servoy.j2db.FlattenedSolution;
+import com.servoy.j2db.J2DBGlobals;
 import com.servoy.j2db.persistence.ScriptVariable;
 import com.servoy.j2db.server.ngclient.DataAdapterList;
 import com.servoy.j2db.server.ngclient.FormElement;
@@ -260,10 +261,10 @@ public class TagStringPropertyType extends DefaultPropertyType<BasicTagStringTyp
 		final Set<String> dataProviders = new HashSet<>();
 		final boolean recordDP[] = new boolean[1];
 
-		Text.processTags(formElementValue, new ITagResolver()
+		TagTemplate template = Text.getTemplate(formElementValue);
+		if (template != null && !(formElementValue.startsWith("i18n:") && J2DBGlobals.getServiceProvider() != null))
 		{
-			@Override
-			public String getStringValue(String name)
+			for (String name : template.getDataProviders())
 			{
 				String dp = name;
 				if (dp.startsWith(ScriptVariable.GLOBALS_DOT_PREFIX))
@@ -274,10 +275,8 @@ public class TagStringPropertyType extends DefaultPropertyType<BasicTagStringTyp
 				dataProviders.add(dp);
 				// TODO Can't it be something special like record count or current record which are special cases and could still not depend on record...?
 				recordDP[0] = recordDP[0] || (!ScopesUtils.isVariableScope(dp) && formElement.getForm().getScriptVariable(dp) == null);
-
-				return dp;
 			}
-		});
+		}
 
 		return dataProviders.size() == 0 ? TargetDataLinks.NOT_LINKED_TO_DATA
 			: new TargetDataLinks(dataProviders.toArray(new String[dataProviders.size()]), recordDP[0]);
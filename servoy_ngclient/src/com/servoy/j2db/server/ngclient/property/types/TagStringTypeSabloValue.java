@@ -17,10 +17,14 @@
 
 package com.servoy.j2db.server.ngclient.property.types;
 
+import java.util.Arrays;
+
 import org.sablo.IChangeListener;
 import org.sablo.IWebObjectContext;
 import org.sablo.specification.PropertyDescription;
 
+import com.servoy.base.util.TagTemplate;
+import com.servoy.j2db.J2DBGlobals;
 import com.servoy.j2db.dataprocessing.IRecordInternal;
 import com.servoy.j2db.server.ngclient.DataAdapterList;
 import com.servoy.j2db.server.ngclient.FormElement;
@@ -42,6 +46,8 @@ public class TagStringTypeSabloValue extends BasicTagStringTypeSabloValue implem
 {
 
 	protected String tagReplacedValue;
+	private String[] tagValues; // the tag values of tagReplacedValue
+	private String tagValuesSource; // the template source the tag values were resolved for
 	protected IChangeListener changeMonitor;
 	protected IServoyDataConverterContext dataConverterContext;
 	protected final TargetDataLinks dataLinks;
@@ -108,7 +114,22 @@ public class TagStringTypeSabloValue extends BasicTagStringTypeSabloValue implem
 	protected boolean updateTagReplacedValue()
 	{
 		String oldTagReplacedValue = tagReplacedValue;
-		tagReplacedValue = Text.processTags(getDesignValue(), getDataAdapterList()); // shouldn't this be done after HTMLTagsConverter.convert?
+		TagTemplate template = Text.getTemplate(getDesignValue());
+		if (template == null || getDesignValue().startsWith("i18n:")) //$NON-NLS-1$
+		{
+			tagValues = null;
+			tagValuesSource = null;
+			tagReplacedValue = Text.processTags(getDesignValue(), getDataAdapterList()); // shouldn't this be done after HTMLTagsConverter.convert?
+		}
+		else
+		{
+			String[] newTagValues = template.resolveTags(getDataAdapterList(), J2DBGlobals.getServiceProvider());
+			// same template and none of the tags changed, no need to render and convert again
+			if (tagValues != null && template.getSource().equals(tagValuesSource) && Arrays.equals(tagValues, newTagValues)) return false;
+			tagValues = newTagValues;
+			tagValuesSource = template.getSource();
+			tagReplacedValue = template.render(newTagValues); // shouldn't this be done after HTMLTagsConverter.convert?
+		}
 
 		if (HtmlUtils.startsWithHtml(tagReplacedValue))
 		{
@@ -156,6 +156,52 @@ angular.module('foundset_custom_property', ['webSocketModule'])
 
 	var NO_OP = "n";
 
+	// columnar viewport format; offered by the server in the full value, accepted by sending a request back
+	var COLUMNAR_VIEWPORT = "columnar";
+	var COLUMNAR_COLUMNS = "c";
+	var COLUMNAR_VALUES = "v";
+	var COLUMNAR_COLUMN_CONVERSIONS = "t";
+	var COLUMNAR_CELL_CONVERSIONS = "x";
+
+	/**
+	 * Whole viewports are sent in the columnar format once the client accepted it:
+	 * { c: [columnKeys], v: [[valuesOfColumn0], [valuesOfColumn1], ...], t: { columnIdx: conversion }, x: { rowIdx: { columnIdx: conversion } } }
+	 * This turns them back into an array of row objects with conversion info per row, so the rest is the same for both formats.
+	 * The conversion of a column applies to all non-null values of that column, unless the cell has its own conversion ("" meaning no conversion).
+	 */
+	function expandColumnarRows(viewPort) {
+		var columnar = viewPort ? viewPort[ROWS] : undefined;
+		if (!columnar || angular.isArray(columnar)) return;
+
+		var columns = columnar[COLUMNAR_COLUMNS];
+		var values = columnar[COLUMNAR_VALUES];
+		var columnConversions = columnar[COLUMNAR_COLUMN_CONVERSIONS] || {};
+		var cellConversions = columnar[COLUMNAR_CELL_CONVERSIONS] || {};
+		var rowCount = values.length > 0 ? values[0].length : 0;
+		var rows = new Array(rowCount);
+		var rowConversions;
+		for (var r = 0; r < rowCount; r++) {
+			var row = {};
+			for (var c = 0; c < columns.length; c++) {
+				var value = values[c][r];
+				row[columns[c]] = value;
+				var conversion = cellConversions[r] ? cellConversions[r][c] : undefined;
+				if (conversion === undefined && value !== null && value !== undefined) conversion = columnConversions[c];
+				if (conversion) {
+					if (!rowConversions) rowConversions = {};
+					if (!rowConversions[r]) rowConversions[r] = {};
+					rowConversions[r][columns[c]] = conversion;
+				}
+			}
+			rows[r] = row;
+		}
+		viewPort[ROWS] = rows;
+		if (rowConversions) {
+			if (!viewPort[$sabloConverters.TYPES_KEY]) viewPort[$sabloConverters.TYPES_KEY] = {};
+			viewPort[$sabloConverters.TYPES_KEY][ROWS] = rowConversions;
+		}
+	};
+
 	function removeAllWatches(value) {
 		if (value != null && angular.isDefined(value)) {
 			var iS = value[$sabloConverters.INTERNAL_IMPL];
@@ -297,6 +343,7 @@ angular.module('foundset_custom_property', ['webSocketModule'])
 						currentClientValue[VIEW_PORT][SIZE] = viewPortUpdate[SIZE];
 					}
 					if (angular.isDefined(viewPortUpdate[ROWS])) {
+						expandColumnarRows(viewPortUpdate);
 						var oldRows = currentClientValue[VIEW_PORT][ROWS];
 						$viewportModule.updateWholeViewport(currentClientValue[VIEW_PORT], ROWS, internalState, viewPortUpdate[ROWS],
 								viewPortUpdate[$sabloConverters.TYPES_KEY] && viewPortUpdate[$sabloConverters.TYPES_KEY][ROWS] ? viewPortUpdate[$sabloConverters.TYPES_KEY][ROWS] : undefined, componentScope, propertyContext);
@@ -321,6 +368,7 @@ angular.module('foundset_custom_property', ['webSocketModule'])
 				// if it's a no-op, ignore it (sometimes server asks a prop. to send changes even though it has none to send)
 				if (!updates && !serverJSONValue[NO_OP]) {
 					// not updates - so whole thing received
+					expandColumnarRows(serverJSONValue[VIEW_PORT]);
 					var proto = { };
 					// conversion to server in case it is sent to handler or server side internalAPI calls as argument of type "foundsetRef"
 					proto[$sabloUtils.DEFAULT_CONVERSION_TO_SERVER_FUNC] = function() {
@@ -360,6 +408,14 @@ angular.module('foundset_custom_property', ['webSocketModule'])
 					{
 						$sabloDeferHelper.initInternalStateForDeferring(internalState, "svy foundset * ");
 					}	
+					if (newValue[COLUMNAR_VIEWPORT]) {
+						// accept the columnar viewport format; it is sent along with the next requests and used for whole viewports after that
+						delete newValue[COLUMNAR_VIEWPORT];
+						var columnarRequest = {};
+						columnarRequest[COLUMNAR_VIEWPORT] = true;
+						internalState.requests.push(columnarRequest);
+						if (internalState.changeNotifier) internalState.changeNotifier();
+					}
 					// convert data if needed - specially done for Date send/receive as the rest are primitives anyway in case of foundset
 					$viewportModule.updateAllConversionInfo(rows, internalState, newValue[VIEW_PORT][$sabloConverters.TYPES_KEY] ? newValue[VIEW_PORT][$sabloConverters.TYPES_KEY][ROWS] : undefined);
 					if (newValue[VIEW_PORT][$sabloConverters.TYPES_KEY]) {
@@ -510,6 +566,8 @@ angular.module('foundset_custom_property', ['webSocketModule'])
 					// $sabloConverters setup
 					internalState.setChangeNotifier = function(changeNotifier) {
 						internalState.changeNotifier = changeNotifier;
+						// a new value can already have requests, like accepting the columnar format, that were added before it had a notifier
+						if (changeNotifier && internalState.isChanged()) changeNotifier();
 					}
 					internalState.isChanged = function() { return internalState.requests && (internalState.requests.length > 0); }
 
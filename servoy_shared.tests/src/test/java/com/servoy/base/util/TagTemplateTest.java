@@ -0,0 +1,85 @@
+/*
+ This file belongs to the Servoy development and deployment environment, Copyright (C) 1997-2021 Servoy BV
+
+ This program is free software; you can redistribute it and/or modify it under
+ the terms of the GNU Affero General Public License as published by the Free
+ Software Foundation; either version 3 of the License, or (at your option) any
+ later version.
+
+ This program is distributed in the hope that it will be useful, but WITHOUT
+ ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ FOR A PARTICULAR PURPOSE. See the GNU Affero General Public License for more details.
+
+ You should have received a copy of the GNU Affero General Public License along
+ with this program; if not, see http://www.gnu.org/licenses or write to the Free
+ Software Foundation,Inc., 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301
+*/
+
+package com.servoy.base.util;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.lang.reflect.Proxy;
+
+import org.junit.Test;
+
+/**
+ * Tests that rendering a {@link TagTemplate} gives the same result as {@link TagParser#processTags(String, ITagResolver, I18NProvider)}.
+ *
+ * @author agent
+ *
+ */
+@SuppressWarnings("nls")
+public class TagTemplateTest
+{
+	private static final String[] INPUTS = { "", "no tags", "100%", "%", "%%", "%%%", "%%%%", "%%%%%", "%%%%%%", "%%name%%", "%% name %%", "a%%name%%b",
+		"%%%name%%", "%%name%%%", "%%name%%%%", "%%%%name%%%%", "%%%name%%%", "%%name", "%%name%", "name%%", "a%%b", "%%a%%b%%c%%", "%%a%%%%b%%",
+		"x%%y%z%%w", "%%name%%%%%", "%%missing%%x", "x%%missing%%", "%%i18n:key%%", "%% i18n:key %%", "text %%i18n:key%% and %%name%%", "i18n:key",
+		"%%name%% %%name%%", "%%%%%%name%%" };
+
+	private static final ITagResolver RESOLVER = new ITagResolver()
+	{
+		public String getStringValue(String name)
+		{
+			return "missing".equals(name) ? null : "[" + name + "]";
+		}
+	};
+
+	private static final I18NProvider I18N = (I18NProvider)Proxy.newProxyInstance(TagTemplateTest.class.getClassLoader(), new Class[] { I18NProvider.class },
+		(proxy, method, args) -> "<" + args[0] + ">");
+
+	@Test
+	public void renderIsProcessTags()
+	{
+		for (String input : INPUTS)
+		{
+			TagTemplate template = TagTemplate.compile(input);
+			assertEquals(input, TagParser.processTags(input, RESOLVER, I18N), template.render(RESOLVER, I18N));
+			assertEquals(input, TagParser.processTags(input, RESOLVER, null), template.render(RESOLVER, null));
+			assertEquals(input, TagParser.processTags(input, null, null), template.render((ITagResolver)null, null));
+		}
+	}
+
+	@Test
+	public void stringWithoutTagsIsNotCopied()
+	{
+		String input = "100% sure";
+		TagTemplate template = TagTemplate.compile(input);
+		assertFalse(template.hasTags());
+		assertSame(input, template.render(RESOLVER, I18N));
+		assertSame(input, TagParser.processTags(input, RESOLVER, I18N));
+	}
+
+	@Test
+	public void dataProviders()
+	{
+		TagTemplate template = TagTemplate.compile("%%a%% %%i18n:key%% %% b %% %%a%% %%%c%%%");
+		assertTrue(template.hasTags());
+		assertArrayEquals(new String[] { "a", "b", "c" }, template.getDataProviders());
+		assertArrayEquals(new String[] { "[a]", "<i18n:key>", "[b]", "[a]", "[c]" }, template.resolveTags(RESOLVER, I18N));
+	}
+}
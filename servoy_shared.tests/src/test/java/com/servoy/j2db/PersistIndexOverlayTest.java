@@ -0,0 +1,193 @@
+/*
+ This file belongs to the Servoy development and deployment environment, Copyright (C) 1997-2021 Servoy BV
+
+ This program is free software; you can redistribute it and/or modify it under
+ the terms of the GNU Affero General Public License as published by the Free
+ Software Foundation; either version 3 of the License, or (at your option) any
+ later version.
+
+ This program is distributed in the hope that it will be useful, but WITHOUT
+ ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ FOR A PARTICULAR PURPOSE. See the GNU Affero General Public License for more details.
+
+ You should have received a copy of the GNU Affero General Public License along
+ with this program; if not, see http://www.gnu.org/licenses or write to the Free
+ Software Foundation,Inc., 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301
+ */
+
+package com.servoy.j2db;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+import java.awt.Dimension;
+import java.awt.Point;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.Set;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import com.servoy.j2db.persistence.AbstractBase;
+import com.servoy.j2db.persistence.ChangeHandler;
+import com.servoy.j2db.persistence.Form;
+import com.servoy.j2db.persistence.GraphicalComponent;
+import com.servoy.j2db.persistence.IPersist;
+import com.servoy.j2db.persistence.IRepository;
+import com.servoy.j2db.persistence.IValidateName;
+import com.servoy.j2db.persistence.RepositoryException;
+import com.servoy.j2db.persistence.RootObjectMetaData;
+import com.servoy.j2db.persistence.Solution;
+import com.servoy.j2db.persistence.ValidatorSearchContext;
+import com.servoy.j2db.util.UUID;
+
+/**
+ * Tests that a {@link PersistIndexOverlay} only returns persists of the cloned solution and only indexes the persists that are used.
+ *
+ * @author agent
+ *
+ */
+@SuppressWarnings("nls")
+public class PersistIndexOverlayTest
+{
+	private final IValidateName validator = new IValidateName()
+	{
+		@Override
+		public void checkName(String nameToCheck, int skip_element_id, ValidatorSearchContext searchContext, boolean sqlRelated) throws RepositoryException
+		{
+		}
+	};
+
+	private PersistIndex base;
+	private Solution clone;
+	private Form form1;
+	private Form form2;
+	private GraphicalComponent label1;
+	private GraphicalComponent label2;
+
+	@Before
+	public void createSolution() throws RepositoryException
+	{
+		TestRepository tr = new TestRepository();
+		UUID uuid = UUID.randomUUID();
+		RootObjectMetaData metadata = tr.createRootObjectMetaData(tr.getElementIdForUUID(uuid), uuid, "overlay", IRepository.SOLUTIONS, 1, 1);
+		Solution solution = (Solution)tr.createRootObject(metadata);
+		solution.setChangeHandler(new ChangeHandler(tr));
+
+		form1 = solution.createNewForm(validator, null, "form1", null, false, new Dimension(600, 400));
+		label1 = form1.createNewGraphicalComponent(new Point(10, 10));
+		label1.setText("label1");
+		form2 = solution.createNewForm(validator, null, "form2", null, false, new Dimension(600, 400));
+		label2 = form2.createNewGraphicalComponent(new Point(10, 10));
+		label2.setText("label2");
+
+		base = new PersistIndex(Collections.singletonList(solution));
+		clone = (Solution)solution.clonePersist(null);
+	}
+
+	private PersistIndexOverlay createOverlay()
+	{
+		return new PersistIndexOverlay(base, Collections.singletonList(clone));
+	}
+
+	private IPersist getClonePersist(IPersist persist)
+	{
+		if (persist.getParent() instanceof Solution)
+		{
+			return clone.getChild(persist.getUUID());
+		}
+		return ((AbstractBase)getClonePersist(persist.getParent())).getChild(persist.getUUID());
+	}
+
+	@Test
+	public void lookupsReturnClonedPersists()
+	{
+		PersistIndexOverlay overlay = createOverlay();
+		assertSame(getClonePersist(form1), overlay.getPersistByUUID(form1.getUUID().toString()));
+		assertSame(getClonePersist(label1), overlay.getPersistByUUID(label1.getUUID().toString()));
+		assertSame(getClonePersist(form2), overlay.getPersistByID(form2.getID(), Form.class));
+		assertSame(getClonePersist(label2), overlay.getPersistByUUID(label2.getUUID().toString(), GraphicalComponent.class));
+		assertSame(clone, overlay.getPersistByUUID(clone.getUUID().toString()));
+
+		IPersist label = overlay.getPersistByUUID(label1.getUUID().toString());
+		assertNotSame(label1, label);
+		assertSame(clone, label.getAncestor(IRepository.SOLUTIONS));
+	}
+
+	@Test
+	public void changeOfLookedUpPersistDoesNotChangeOriginalSolution()
+	{
+		PersistIndexOverlay overlay = createOverlay();
+		((GraphicalComponent)overlay.getPersistByUUID(label1.getUUID().toString())).setText("changed");
+		((Form)overlay.getPersistByID(form1.getID(), Form.class)).setName("changedform");
+
+		assertEquals("label1", label1.getText());
+		assertEquals("form1", form1.getName());
+		assertEquals("changed", ((GraphicalComponent)getClonePersist(label1)).getText());
+	}
+
+	@Test
+	public void onlyUsedPersistsAreIndexed()
+	{
+		PersistIndexOverlay overlay = createOverlay();
+		assertEquals(0, overlay.uuidToPersist.size());
+
+		overlay.getPersistByUUID(label1.getUUID().toString());
+		assertEquals(1, overlay.uuidToPersist.size());
+	}
+
+	@Test
+	public void removedPersistIsNotResolved()
+	{
+		clone.removeChild(getClonePersist(form2));
+
+		PersistIndexOverlay overlay = createOverlay();
+		assertNull(overlay.getPersistByUUID(form2.getUUID().toString()));
+		assertNull(overlay.getPersistByUUID(label2.getUUID().toString()));
+		assertNull(overlay.getPersistByID(form2.getID(), Form.class));
+		assertSame(getClonePersist(form1), overlay.getPersistByUUID(form1.getUUID().toString()));
+	}
+
+	@Test
+	public void addedPersistIsResolved() throws RepositoryException
+	{
+		GraphicalComponent added = ((Form)getClonePersist(form1)).createNewGraphicalComponent(new Point(20, 20));
+
+		PersistIndexOverlay overlay = createOverlay();
+		assertSame(added, overlay.getPersistByUUID(added.getUUID().toString()));
+		assertSame(added, overlay.getPersistByID(added.getID(), GraphicalComponent.class));
+
+		Set<IPersist> labels = new HashSet<>();
+		Iterator<GraphicalComponent> it = overlay.getIterableFor(GraphicalComponent.class);
+		while (it.hasNext())
+		{
+			labels.add(it.next());
+		}
+		assertEquals(new HashSet<>(Arrays.asList(getClonePersist(label1), getClonePersist(label2), added)), labels);
+	}
+
+	@Test
+	public void persistEventsAfterCreation() throws RepositoryException
+	{
+		PersistIndexOverlay overlay = createOverlay();
+		GraphicalComponent cloneLabel = (GraphicalComponent)overlay.getPersistByUUID(label1.getUUID().toString());
+		cloneLabel.setText("changed");
+		overlay.itemChanged(cloneLabel);
+		assertSame(cloneLabel, overlay.getPersistByUUID(label1.getUUID().toString()));
+
+		Form cloneForm2 = (Form)getClonePersist(form2);
+		GraphicalComponent added = cloneForm2.createNewGraphicalComponent(new Point(20, 20));
+		overlay.itemCreated(added);
+		assertSame(added, overlay.getPersistByUUID(added.getUUID().toString()));
+
+		clone.removeChild(cloneForm2);
+		overlay.itemRemoved(cloneForm2);
+		assertNull(overlay.getPersistByUUID(form2.getUUID().toString()));
+		assertNull(overlay.getPersistByUUID(added.getUUID().toString()));
+	}
+}
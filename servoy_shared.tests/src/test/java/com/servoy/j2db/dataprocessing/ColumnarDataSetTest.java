@@ -0,0 +1,281 @@
+/*
+ This file belongs to the Servoy development and deployment environment, Copyright (C) 1997-2021 Servoy BV
+
+ This program is free software; you can redistribute it and/or modify it under
+ the terms of the GNU Affero General Public License as published by the Free
+ Software Foundation; either version 3 of the License, or (at your option) any
+ later version.
+
+ This program is distributed in the hope that it will be useful, but WITHOUT
+ ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ FOR A PARTICULAR PURPOSE. See the GNU Affero General Public License for more details.
+
+ You should have received a copy of the GNU Affero General Public License along
+ with this program; if not, see http://www.gnu.org/licenses or write to the Free
+ Software Foundation,Inc., 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301
+ */
+
+package com.servoy.j2db.dataprocessing;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.util.Random;
+import java.util.function.Consumer;
+
+import org.junit.Test;
+
+/**
+ * Runs the same operations on a {@link BufferedDataSet} and a {@link ColumnarDataSet} and checks they have the same content.
+ *
+ * @author agent
+ *
+ */
+@SuppressWarnings("nls")
+public class ColumnarDataSetTest
+{
+	private static final String[] COLUMN_NAMES = new String[] { "id", "name", "amount", "created" };
+	private static final int[] COLUMN_TYPES = new int[] { Types.INTEGER, Types.VARCHAR, Types.DOUBLE, Types.TIMESTAMP };
+
+	private static Object[] row(int id)
+	{
+		return new Object[] { Integer.valueOf(id), "name" + (id % 7), id % 3 == 0 ? null : Double.valueOf(id * 1.5), new Timestamp(1600000000000L + id) };
+	}
+
+	private static void assertSameContent(IDataSet expected, IDataSet actual)
+	{
+		assertEquals(expected.getRowCount(), actual.getRowCount());
+		assertEquals(expected.getColumnCount(), actual.getColumnCount());
+		assertArrayEquals(expected.getColumnNames(), actual.getColumnNames());
+		for (int r = -1; r <= expected.getRowCount(); r++)
+		{
+			Object[] expectedRow = expected.getRow(r);
+			assertArrayEquals("row " + r, expectedRow, actual.getRow(r));
+			if (actual instanceof ColumnarDataSet)
+			{
+				for (int c = 0; c < expected.getColumnCount(); c++)
+				{
+					assertEquals("row " + r + " column " + c, expectedRow == null ? null : expectedRow[c], ((ColumnarDataSet)actual).getValue(r, c));
+				}
+			}
+		}
+	}
+
+	private static void runOnBoth(Consumer<IDataSet> operations)
+	{
+		BufferedDataSet buffered = new BufferedDataSet(COLUMN_NAMES, COLUMN_TYPES);
+		ColumnarDataSet columnar = new ColumnarDataSet(COLUMN_NAMES, COLUMN_TYPES);
+		operations.accept(buffered);
+		operations.accept(columnar);
+		assertSameContent(buffered, columnar);
+	}
+
+	@Test
+	public void addAndGet()
+	{
+		runOnBoth(set -> {
+			for (int i = 0; i < 100; i++)
+			{
+				set.addRow(row(i));
+			}
+		});
+	}
+
+	@Test
+	public void outOfRangeRows()
+	{
+		runOnBoth(set -> {
+			set.addRow(row(1));
+			assertNull(set.getRow(-1));
+			assertNull(set.getRow(1));
+			// ignored, like a SafeArrayList
+			set.removeRow(5);
+			set.removeRow(-2);
+		});
+	}
+
+	@Test
+	public void setAndAddBeyondEnd()
+	{
+		runOnBoth(set -> {
+			set.addRow(row(1));
+			// extends the set with null rows
+			set.setRow(3, row(3));
+			set.addRow(6, row(6));
+			set.setRow(7, row(7));
+			assertEquals(8, set.getRowCount());
+			assertNull(set.getRow(2));
+		});
+	}
+
+	@Test
+	public void insertRemoveAndSet()
+	{
+		runOnBoth(set -> {
+			for (int i = 0; i < 20; i++)
+			{
+				set.addRow(row(i));
+			}
+			set.addRow(0, row(100));
+			set.addRow(10, null);
+			set.addRow(5, row(101));
+			set.removeRow(3);
+			set.removeRow(0);
+			set.setRow(4, row(102));
+			set.setRow(8, null);
+			set.removeRow(set.getRowCount() - 1);
+		});
+	}
+
+	@Test
+	public void removeAll()
+	{
+		runOnBoth(set -> {
+			for (int i = 0; i < 20; i++)
+			{
+				set.addRow(row(i));
+			}
+			set.removeRow(-1);
+			set.addRow(row(5));
+		});
+	}
+
+	@Test
+	public void mixedValueTypes()
+	{
+		runOnBoth(set -> {
+			for (int i = 0; i < 20; i++)
+			{
+				set.addRow(row(i));
+			}
+			// switches the storage of the columns to objects
+			set.setRow(3, new Object[] { Long.valueOf(Long.MAX_VALUE), Integer.valueOf(3), "text", new java.util.Date(5) });
+			set.addRow(7, new Object[] { "x", null, Integer.valueOf(4), null });
+		});
+	}
+
+	@Test
+	public void manyDistinctStrings()
+	{
+		runOnBoth(set -> {
+			for (int i = 0; i < 70000; i++)
+			{
+				set.addRow(new Object[] { Integer.valueOf(i), "value" + i, null, null });
+			}
+		});
+	}
+
+	@Test
+	public void sortAndColumns()
+	{
+		runOnBoth(set -> {
+			for (int i = 0; i < 50; i++)
+			{
+				set.addRow(row((i * 37) % 50));
+			}
+			set.sort(0, false);
+			set.sort(1, true);
+			set.addColumn(1, "extra", Types.INTEGER);
+			set.setRow(2, new Object[] { Integer.valueOf(1), Integer.valueOf(2), "name", null, null });
+			set.removeColumn(3);
+			set.setColumnName(0, "key");
+		});
+	}
+
+	@Test
+	public void randomOperations()
+	{
+		long seed = 11;
+		runOnBoth(set -> {
+			Random random = new Random(seed);
+			for (int n = 0; n < 3000; n++)
+			{
+				int rowCount = set.getRowCount();
+				switch (random.nextInt(5))
+				{
+					case 0 :
+						set.addRow(row(n));
+						break;
+					case 1 :
+						set.addRow(random.nextInt(rowCount + 1), row(n));
+						break;
+					case 2 :
+						set.removeRow(random.nextInt(rowCount + 2)); // can be beyond the end
+						break;
+					default :
+						if (rowCount > 0) set.setRow(random.nextInt(rowCount), row(n));
+				}
+			}
+		});
+	}
+
+	@Test
+	public void insertAndRemoveWithNanosAndNulls()
+	{
+		runOnBoth(set -> {
+			for (int i = 0; i < 100; i++)
+			{
+				Timestamp created = new Timestamp(1600000000000L + i);
+				if (i % 4 == 0) created.setNanos(created.getNanos() + i);
+				set.addRow(new Object[] { i % 5 == 0 ? null : Integer.valueOf(i), i % 6 == 0 ? null : "name" + i, Double.valueOf(i), i % 7 == 0 ? null : created });
+			}
+			set.addRow(0, row(200));
+			set.addRow(64, new Object[] { null, null, null, null });
+			set.removeRow(63);
+			set.removeRow(0);
+			set.addRow(set.getRowCount() - 1, row(201));
+			set.removeRow(set.getRowCount() - 2);
+		});
+	}
+
+	@Test
+	public void convertReleasesRows()
+	{
+		BufferedDataSet buffered = new BufferedDataSet(COLUMN_NAMES, COLUMN_TYPES);
+		BufferedDataSet expected = new BufferedDataSet(COLUMN_NAMES, COLUMN_TYPES);
+		for (int i = 0; i < 30; i++)
+		{
+			buffered.addRow(i == 10 ? null : row(i));
+			expected.addRow(i == 10 ? null : row(i));
+		}
+		ColumnarDataSet columnar = ColumnarDataSet.convert(buffered);
+		assertSameContent(expected, columnar);
+		assertEquals(0, buffered.getRowCount());
+	}
+
+	@Test
+	public void copyAndSerialize() throws Exception
+	{
+		BufferedDataSet buffered = new BufferedDataSet(COLUMN_NAMES, COLUMN_TYPES);
+		for (int i = 0; i < 30; i++)
+		{
+			buffered.addRow(i == 10 ? null : row(i));
+		}
+		ColumnarDataSet columnar = new ColumnarDataSet(buffered);
+		assertSameContent(buffered, columnar);
+		assertSameContent(buffered, columnar.clone());
+
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		try (ObjectOutputStream out = new ObjectOutputStream(bytes))
+		{
+			out.writeObject(columnar);
+		}
+		try (ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(bytes.toByteArray())))
+		{
+			ColumnarDataSet copy = (ColumnarDataSet)in.readObject();
+			assertSameContent(buffered, copy);
+
+			// the string lookup is rebuilt when values are added after deserialization
+			buffered.addRow(row(3));
+			copy.addRow(row(3));
+			assertSameContent(buffered, copy);
+		}
+	}
+}
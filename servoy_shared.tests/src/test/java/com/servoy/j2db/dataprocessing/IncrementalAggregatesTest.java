@@ -0,0 +1,153 @@
+/*
+ This file belongs to the Servoy development and deployment environment, Copyright (C) 1997-2021 Servoy BV
+
+ This program is free software; you can redistribute it and/or modify it under
+ the terms of the GNU Affero General Public License as published by the Free
+ Software Foundation; either version 3 of the License, or (at your option) any
+ later version.
+
+ This program is distributed in the hope that it will be useful, but WITHOUT
+ ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ FOR A PARTICULAR PURPOSE. See the GNU Affero General Public License for more details.
+
+ You should have received a copy of the GNU Affero General Public License along
+ with this program; if not, see http://www.gnu.org/licenses or write to the Free
+ Software Foundation,Inc., 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301
+ */
+
+package com.servoy.j2db.dataprocessing;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+import java.math.BigDecimal;
+import java.sql.Timestamp;
+
+import org.junit.Test;
+
+import com.servoy.j2db.query.QueryAggregate;
+
+/**
+ * Tests for {@link IncrementalAggregates}, inserts have no old value, deletes have no new value and updates have both.
+ *
+ * @author agent
+ *
+ */
+@SuppressWarnings("nls")
+public class IncrementalAggregatesTest
+{
+	private static Object insert(int type, Object current, Object value)
+	{
+		return IncrementalAggregates.apply(type, current, null, value);
+	}
+
+	private static Object update(int type, Object current, Object oldValue, Object newValue)
+	{
+		return IncrementalAggregates.apply(type, current, oldValue, newValue);
+	}
+
+	private static Object delete(int type, Object current, Object value)
+	{
+		return IncrementalAggregates.apply(type, current, value, null);
+	}
+
+	private static void assertNotIncremental(Object value)
+	{
+		assertSame(IncrementalAggregates.NOT_INCREMENTAL, value);
+	}
+
+	@Test
+	public void count()
+	{
+		int type = QueryAggregate.COUNT;
+		assertEquals(Integer.valueOf(4), insert(type, Integer.valueOf(3), "a"));
+		assertEquals(Long.valueOf(3), insert(type, Long.valueOf(3), null)); // null values are not counted
+		assertEquals(Integer.valueOf(3), update(type, Integer.valueOf(3), "a", "b"));
+		assertEquals(Integer.valueOf(2), update(type, Integer.valueOf(3), "a", null));
+		assertEquals(Integer.valueOf(4), update(type, Integer.valueOf(3), null, "b"));
+		assertEquals(Integer.valueOf(2), delete(type, Integer.valueOf(3), "a"));
+		assertEquals(Integer.valueOf(0), delete(type, Integer.valueOf(1), Integer.valueOf(5)));
+		assertNotIncremental(insert(type, null, "a"));
+	}
+
+	@Test
+	public void sum()
+	{
+		int type = QueryAggregate.SUM;
+		assertEquals(Integer.valueOf(15), insert(type, Integer.valueOf(10), Integer.valueOf(5)));
+		assertEquals(Integer.valueOf(5), insert(type, null, Integer.valueOf(5))); // first non-null value
+		assertEquals(Integer.valueOf(10), insert(type, Integer.valueOf(10), null));
+		assertEquals(Long.valueOf(12), update(type, Long.valueOf(10), Integer.valueOf(3), Integer.valueOf(5)));
+		assertEquals(new BigDecimal("10.25"), update(type, new BigDecimal("10.00"), new BigDecimal("1"), new BigDecimal("1.25")));
+		assertEquals(Integer.valueOf(10), delete(type, Integer.valueOf(10), null));
+
+		// the sum becomes null when the last non-null value is removed, that is not known here
+		assertNotIncremental(delete(type, Integer.valueOf(10), Integer.valueOf(3)));
+		assertNotIncremental(update(type, Integer.valueOf(10), Integer.valueOf(3), null));
+		assertNotIncremental(delete(type, null, Integer.valueOf(3)));
+		assertNotIncremental(insert(type, Integer.valueOf(10), "text"));
+		// overflow of the cached type
+		assertNotIncremental(insert(type, Integer.valueOf(Integer.MAX_VALUE), Integer.valueOf(1)));
+
+		// floating point sums are rounded by the database, depending on the order of the values
+		assertNotIncremental(update(type, Double.valueOf(10), Double.valueOf(1), Double.valueOf(2.5)));
+		assertNotIncremental(insert(type, Integer.valueOf(10), Double.valueOf(0.5)));
+		assertNotIncremental(insert(type, Float.valueOf(10), Float.valueOf(1)));
+		assertEquals(Double.valueOf(2.5), insert(type, null, Double.valueOf(2.5)));
+		assertEquals(Double.valueOf(10), insert(type, Double.valueOf(10), null));
+
+		// the result must fit the cached type
+		assertNotIncremental(insert(type, Long.valueOf(10), new BigDecimal("0.5")));
+		assertEquals(Long.valueOf(11), insert(type, Long.valueOf(10), new BigDecimal("1.0")));
+	}
+
+	@Test
+	public void min()
+	{
+		int type = QueryAggregate.MIN;
+		assertEquals(Integer.valueOf(2), insert(type, Integer.valueOf(5), Integer.valueOf(2)));
+		assertEquals(Integer.valueOf(5), insert(type, Integer.valueOf(5), Integer.valueOf(8)));
+		assertEquals(Integer.valueOf(8), insert(type, null, Integer.valueOf(8)));
+		assertEquals(Integer.valueOf(5), insert(type, Integer.valueOf(5), null));
+		assertEquals(Integer.valueOf(5), update(type, Integer.valueOf(5), Integer.valueOf(7), Integer.valueOf(9)));
+		assertEquals(Integer.valueOf(1), update(type, Integer.valueOf(5), Integer.valueOf(7), Integer.valueOf(1)));
+		// the minimum is replaced by a lower value
+		assertEquals(Integer.valueOf(4), update(type, Integer.valueOf(5), Integer.valueOf(5), Integer.valueOf(4)));
+		assertEquals(Integer.valueOf(5), delete(type, Integer.valueOf(5), Integer.valueOf(7)));
+
+		// another record may have the next minimum
+		assertNotIncremental(update(type, Integer.valueOf(5), Integer.valueOf(5), Integer.valueOf(6)));
+		assertNotIncremental(delete(type, Integer.valueOf(5), Integer.valueOf(5)));
+		// text may be sorted differently in the database
+		assertNotIncremental(insert(type, "b", "a"));
+
+		Timestamp earlier = new Timestamp(1000);
+		Timestamp later = new Timestamp(2000);
+		assertEquals(earlier, insert(type, later, earlier));
+		assertEquals(earlier, delete(type, earlier, later));
+	}
+
+	@Test
+	public void max()
+	{
+		int type = QueryAggregate.MAX;
+		assertEquals(Integer.valueOf(8), insert(type, Integer.valueOf(5), Integer.valueOf(8)));
+		assertEquals(Integer.valueOf(5), insert(type, Integer.valueOf(5), Integer.valueOf(2)));
+		assertEquals(Double.valueOf(5), update(type, Double.valueOf(5), Double.valueOf(1), Double.valueOf(3)));
+		assertEquals(Long.valueOf(12), update(type, Long.valueOf(9), Long.valueOf(9), Long.valueOf(12)));
+		assertEquals(Integer.valueOf(5), delete(type, Integer.valueOf(5), Integer.valueOf(2)));
+
+		assertNotIncremental(delete(type, Integer.valueOf(5), Integer.valueOf(5)));
+		assertNotIncremental(update(type, Integer.valueOf(5), Integer.valueOf(5), Integer.valueOf(4)));
+		// the removed value is above the cached maximum, the cache is not consistent
+		assertNotIncremental(delete(type, Integer.valueOf(5), Integer.valueOf(6)));
+		assertNotIncremental(delete(type, null, Integer.valueOf(6)));
+	}
+
+	@Test
+	public void otherAggregatesAreNotIncremental()
+	{
+		assertNotIncremental(insert(QueryAggregate.AVG, Double.valueOf(5), Integer.valueOf(2)));
+		assertNotIncremental(delete(QueryAggregate.AVG, Double.valueOf(5), Integer.valueOf(2)));
+	}
+}
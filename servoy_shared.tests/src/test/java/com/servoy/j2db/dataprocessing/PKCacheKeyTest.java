@@ -0,0 +1,107 @@
+/*
+ This file belongs to the Servoy development and deployment environment, Copyright (C) 1997-2021 Servoy BV
+
+ This program is free software; you can redistribute it and/or modify it under
+ the terms of the GNU Affero General Public License as published by the Free
+ Software Foundation; either version 3 of the License, or (at your option) any
+ later version.
+
+ This program is distributed in the hope that it will be useful, but WITHOUT
+ ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ FOR A PARTICULAR PURPOSE. See the GNU Affero General Public License for more details.
+
+ You should have received a copy of the GNU Affero General Public License along
+ with this program; if not, see http://www.gnu.org/licenses or write to the Free
+ Software Foundation,Inc., 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301
+*/
+
+package com.servoy.j2db.dataprocessing;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+
+import java.util.Date;
+
+import org.junit.Test;
+
+import com.servoy.j2db.util.UUID;
+
+/**
+ * Tests that the {@link PKCacheKey} of pk values equals the key of their pk hash key, so rows are found with both.
+ *
+ * @author agent
+ *
+ */
+@SuppressWarnings("nls")
+public class PKCacheKeyTest
+{
+	private static void assertSameKey(Object... pk)
+	{
+		String pkHashKey = RowManager.createPKHashKey(pk);
+		PKCacheKey key = PKCacheKey.create(pk);
+		PKCacheKey keyOfHash = PKCacheKey.create(pkHashKey);
+		assertEquals(key, keyOfHash);
+		assertEquals(key.hashCode(), keyOfHash.hashCode());
+		assertEquals(pkHashKey, key.getPKHashKey());
+		assertEquals(pkHashKey, keyOfHash.getPKHashKey());
+	}
+
+	@Test
+	public void numberKeys()
+	{
+		assertSameKey(Integer.valueOf(5));
+		assertSameKey(Long.valueOf(0));
+		assertSameKey(Long.valueOf(-123456789012L));
+		assertSameKey(Long.valueOf(Long.MAX_VALUE));
+		assertSameKey(Long.valueOf(Long.MIN_VALUE));
+		assertSameKey(Double.valueOf(42));
+		assertSameKey(new Date(1234567890L));
+
+		assertEquals(PKCacheKey.create(new Object[] { Integer.valueOf(42) }), PKCacheKey.create(new Object[] { Double.valueOf(42) }));
+		assertNotEquals(PKCacheKey.create(new Object[] { Integer.valueOf(42) }), PKCacheKey.create(new Object[] { Integer.valueOf(43) }));
+	}
+
+	@Test
+	public void stringThatLooksLikeANumber()
+	{
+		// the pk hash key of a string with the digits of a number is the same as that of the number
+		assertSameKey("5");
+		assertEquals(PKCacheKey.create(new Object[] { "5" }), PKCacheKey.create(new Object[] { Integer.valueOf(5) }));
+
+		assertSameKey("05");
+		assertSameKey("-0");
+		assertSameKey("+5");
+		assertSameKey("99999999999999999999");
+		assertNotEquals(PKCacheKey.create(new Object[] { "05" }), PKCacheKey.create(new Object[] { Integer.valueOf(5) }));
+	}
+
+	@Test
+	public void uuidKeys()
+	{
+		UUID uuid = UUID.fromString("3f2504e0-4f89-11d3-9a0c-0305e82c3301");
+		assertSameKey(uuid);
+		assertSameKey(UUID.fromString("3F2504E0-4F89-11D3-9A0C-0305E82C3301"));
+		assertSameKey("3F2504E0-4F89-11D3-9A0C-0305E82C3301");
+		assertSameKey("3f2504e0-4f89-11d3-9a0c-0305e82c3301");
+		assertSameKey(uuid.toBytes());
+
+		assertEquals(PKCacheKey.create(new Object[] { uuid }), PKCacheKey.create(new Object[] { "3F2504E0-4F89-11D3-9A0C-0305E82C3301" }));
+		assertNotEquals(PKCacheKey.create(new Object[] { uuid }), PKCacheKey.create(new Object[] { UUID.randomUUID() }));
+	}
+
+	@Test
+	public void otherKeys()
+	{
+		// 36 characters with 4 dashes but not hex
+		assertSameKey("zzzzzzzz-zzzz-zzzz-zzzz-zzzzzzzzzzzz");
+		assertSameKey("a-b-c-d-eeeeeeeeeeeeeeeeeeeeeeeeeeee");
+		assertSameKey("some text; with. separators");
+		assertSameKey(Double.valueOf(1.5));
+		assertSameKey((Object)null);
+		assertSameKey(Integer.valueOf(1), "a");
+		assertSameKey(Integer.valueOf(1), Integer.valueOf(2));
+		assertSameKey();
+
+		assertNotEquals(PKCacheKey.create(new Object[] { Integer.valueOf(1), Integer.valueOf(2) }), PKCacheKey.create(new Object[] { Integer.valueOf(1) }));
+	}
+}
@@ -0,0 +1,191 @@
+/*
+ This file belongs to the Servoy development and deployment environment, Copyright (C) 1997-2021 Servoy BV
+
+ This program is free software; you can redistribute it and/or modify it under
+ the terms of the GNU Affero General Public License as published by the Free
+ Software Foundation; either version 3 of the License, or (at your option) any
+ later version.
+
+ This program is distributed in the hope that it will be useful, but WITHOUT
+ ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ FOR A PARTICULAR PURPOSE. See the GNU Affero General Public License for more details.
+
+ You should have received a copy of the GNU Affero General Public License along
+ with this program; if not, see http://www.gnu.org/licenses or write to the Free
+ Software Foundation,Inc., 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301
+ */
+
+package com.servoy.j2db.dataprocessing;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.Random;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import com.servoy.j2db.dataprocessing.ValueFactory.DbIdentValue;
+
+/**
+ * Tests for the pk hash index of {@link PKDataSet}.
+ *
+ * @author agent
+ *
+ */
+@SuppressWarnings("nls")
+public class PKDataSetTest
+{
+	private static final int SIZE = PKDataSet.PK_INDEX_MIN_SIZE * 2;
+
+	private PKDataSet pks;
+
+	@Before
+	public void createPks()
+	{
+		pks = new PKDataSet(new BufferedDataSet(new String[] { "id" }, new int[] { 4 }));
+		for (int i = 0; i < SIZE; i++)
+		{
+			pks.addRow(new Object[] { Integer.valueOf(i) });
+		}
+	}
+
+	private static String hash(int id)
+	{
+		return RowManager.createPKHashKey(new Object[] { Integer.valueOf(id) });
+	}
+
+	private void assertIndexMatchesScan()
+	{
+		for (int i = 0; i < pks.getRowCount(); i++)
+		{
+			String pkHash = RowManager.createPKHashKey(pks.getRow(i));
+			assertEquals("row " + i, i, pks.getIndexOfPkHash(pkHash));
+		}
+	}
+
+	@Test
+	public void lookupAfterAppend()
+	{
+		assertEquals(10, pks.getIndexOfPkHash(hash(10)));
+		assertEquals(-1, pks.getIndexOfPkHash(hash(SIZE)));
+
+		// appended with a built index
+		pks.addRow(new Object[] { Integer.valueOf(SIZE) });
+		assertEquals(SIZE, pks.getIndexOfPkHash(hash(SIZE)));
+		assertIndexMatchesScan();
+	}
+
+	@Test
+	public void lookupAfterInsert()
+	{
+		assertEquals(10, pks.getIndexOfPkHash(hash(10)));
+
+		pks.addRow(5, new Object[] { Integer.valueOf(-1) });
+		assertEquals(5, pks.getIndexOfPkHash(hash(-1)));
+		assertEquals(4, pks.getIndexOfPkHash(hash(4)));
+		assertEquals(6, pks.getIndexOfPkHash(hash(5)));
+		assertEquals(11, pks.getIndexOfPkHash(hash(10)));
+		assertIndexMatchesScan();
+
+		pks.addRow(0, new Object[] { Integer.valueOf(-2) });
+		assertEquals(0, pks.getIndexOfPkHash(hash(-2)));
+		assertEquals(12, pks.getIndexOfPkHash(hash(10)));
+		assertIndexMatchesScan();
+	}
+
+	@Test
+	public void lookupAfterRemove()
+	{
+		assertEquals(10, pks.getIndexOfPkHash(hash(10)));
+
+		pks.removeRow(5);
+		assertEquals(-1, pks.getIndexOfPkHash(hash(5)));
+		assertEquals(4, pks.getIndexOfPkHash(hash(4)));
+		assertEquals(9, pks.getIndexOfPkHash(hash(10)));
+		assertIndexMatchesScan();
+
+		pks.removeRow(pks.getRowCount() - 1);
+		assertEquals(-1, pks.getIndexOfPkHash(hash(SIZE - 1)));
+		assertIndexMatchesScan();
+	}
+
+	@Test
+	public void lookupAfterSet()
+	{
+		assertEquals(10, pks.getIndexOfPkHash(hash(10)));
+
+		pks.setRow(10, new Object[] { Integer.valueOf(1000) });
+		assertEquals(-1, pks.getIndexOfPkHash(hash(10)));
+		assertEquals(10, pks.getIndexOfPkHash(hash(1000)));
+		assertIndexMatchesScan();
+	}
+
+	@Test
+	public void lookupAfterChangeInPlace()
+	{
+		assertEquals(10, pks.getIndexOfPkHash(hash(10)));
+
+		// pk array changed without telling the set, a stale hit is detected and the index is rebuilt
+		pks.getRow(10)[0] = Integer.valueOf(11);
+		pks.getRow(11)[0] = Integer.valueOf(10);
+		assertEquals(11, pks.getIndexOfPkHash(hash(10)));
+		assertEquals(10, pks.getIndexOfPkHash(hash(11)));
+	}
+
+	@Test
+	public void lookupDbIdentRows()
+	{
+		DbIdentValue dbIdent = new DbIdentValue();
+		Object[] newPk = new Object[] { dbIdent };
+		pks.addRow(3, newPk);
+		assertEquals(3, pks.getIndexOfPkHash(RowManager.createPKHashKey(newPk)));
+		assertEquals(4, pks.getIndexOfPkHash(hash(3)));
+
+		// db generated value set after insert, the row keeps its index
+		newPk[0] = Integer.valueOf(5000);
+		assertEquals(3, pks.getIndexOfPkHash(hash(5000)));
+
+		pks.removeRow(3);
+		assertEquals(-1, pks.getIndexOfPkHash(hash(5000)));
+		assertIndexMatchesScan();
+	}
+
+	@Test
+	public void lookupSmallSet()
+	{
+		PKDataSet small = new PKDataSet(new BufferedDataSet(new String[] { "id" }, new int[] { 4 }));
+		small.addRow(new Object[] { Integer.valueOf(1) });
+		small.addRow(new Object[] { Integer.valueOf(2) });
+		assertEquals(1, small.getIndexOfPkHash(hash(2)));
+		small.removeRow(0);
+		assertEquals(0, small.getIndexOfPkHash(hash(2)));
+		assertEquals(-1, small.getIndexOfPkHash(hash(1)));
+	}
+
+	@Test
+	public void randomOperations()
+	{
+		Random random = new Random(42);
+		int nextId = SIZE;
+		for (int n = 0; n < 2000; n++)
+		{
+			int rowCount = pks.getRowCount();
+			switch (random.nextInt(4))
+			{
+				case 0 :
+					pks.addRow(random.nextInt(rowCount + 1), new Object[] { Integer.valueOf(nextId++) });
+					break;
+				case 1 :
+					if (rowCount > PKDataSet.PK_INDEX_MIN_SIZE) pks.removeRow(random.nextInt(rowCount));
+					break;
+				case 2 :
+					pks.setRow(random.nextInt(rowCount), new Object[] { Integer.valueOf(nextId++) });
+					break;
+				default :
+					int row = random.nextInt(rowCount);
+					assertEquals(row, pks.getIndexOfPkHash(RowManager.createPKHashKey(pks.getRow(row))));
+			}
+		}
+		assertIndexMatchesScan();
+	}
+}
@@ -0,0 +1,102 @@
+/*
+ This file belongs to the Servoy development and deployment environment, Copyright (C) 1997-2021 Servoy BV
+
+ This program is free software; you can redistribute it and/or modify it under
+ the terms of the GNU Affero General Public License as published by the Free
+ Software Foundation; either version 3 of the License, or (at your option) any
+ later version.
+
+ This program is distributed in the hope that it will be useful, but WITHOUT
+ ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ FOR A PARTICULAR PURPOSE. See the GNU Affero General Public License for more details.
+
+ You should have received a copy of the GNU Affero General Public License along
+ with this program; if not, see http://www.gnu.org/licenses or write to the Free
+ Software Foundation,Inc., 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301
+*/
+
+package com.servoy.j2db.dataprocessing;
+
+import static org.junit.Assert.assertEquals;
+
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Tests for the pk lookup of {@link PksAndRecordsHolder#getIndexOfPk(Object[], int)} that is used by the foundset to find a record by pk.
+ *
+ * @author agent
+ *
+ */
+@SuppressWarnings("nls")
+public class PksAndRecordsHolderTest
+{
+	private static final int SIZE = PKDataSet.PK_INDEX_MIN_SIZE * 2;
+
+	private PksAndRecordsHolder holder;
+
+	@Before
+	public void createHolder()
+	{
+		BufferedDataSet pks = new BufferedDataSet(new String[] { "id" }, new int[] { 4 });
+		for (int i = 0; i < SIZE; i++)
+		{
+			pks.addRow(new Object[] { Integer.valueOf(i) });
+		}
+		holder = new PksAndRecordsHolder(null, 200);
+		holder.setPks(pks, 0);
+	}
+
+	private int indexOf(Object pk)
+	{
+		return holder.getIndexOfPk(new Object[] { pk }, 0);
+	}
+
+	@Test
+	public void lookupViaIndex()
+	{
+		assertEquals(10, indexOf(Integer.valueOf(10)));
+		assertEquals(SIZE - 1, indexOf(Long.valueOf(SIZE - 1)));
+		assertEquals(-1, indexOf(Integer.valueOf(SIZE)));
+		assertEquals(-1, holder.getIndexOfPk(null, 0));
+		assertEquals(-1, holder.getIndexOfPk(new Object[] { Integer.valueOf(1), Integer.valueOf(2) }, 0));
+	}
+
+	@Test
+	public void equalValueWithOtherHashIsFound()
+	{
+		// a string pk value has another hash than the number, but the values are equal
+		assertEquals(10, indexOf("10"));
+	}
+
+	@Test
+	public void staleIndexAfterPkChange()
+	{
+		assertEquals(10, indexOf(Integer.valueOf(10)));
+
+		// the pk of the row was changed in the pk array, the index still has the old pk hash
+		holder.getPks().getRow(10)[0] = Integer.valueOf(SIZE + 10);
+		assertEquals(10, indexOf(Integer.valueOf(SIZE + 10)));
+		assertEquals(-1, indexOf(Integer.valueOf(10)));
+
+		// swapped pks, the hit on the old hash has other values
+		holder.getPks().getRow(20)[0] = Integer.valueOf(21);
+		holder.getPks().getRow(21)[0] = Integer.valueOf(20);
+		assertEquals(21, indexOf(Integer.valueOf(20)));
+		assertEquals(20, indexOf(Integer.valueOf(21)));
+	}
+
+	@Test
+	public void lookupInSmallSet()
+	{
+		BufferedDataSet pks = new BufferedDataSet(new String[] { "id" }, new int[] { 4 });
+		for (int i = 0; i < 5; i++)
+		{
+			pks.addRow(new Object[] { Integer.valueOf(i) });
+		}
+		holder.setPks(pks, 0);
+		assertEquals(3, holder.getIndexOfPk(new Object[] { Integer.valueOf(3) }, 4));
+		assertEquals(0, holder.getIndexOfPk(new Object[] { Integer.valueOf(0) }, 4));
+		assertEquals(-1, holder.getIndexOfPk(new Object[] { Integer.valueOf(5) }, 4));
+	}
+}
@@ -0,0 +1,272 @@
+/*
+ This file belongs to the Servoy development and deployment environment, Copyright (C) 1997-2021 Servoy BV
+
+ This program is free software; you can redistribute it and/or modify it under
+ the terms of the GNU Affero General Public License as published by the Free
+ Software Foundation; either version 3 of the License, or (at your option) any
+ later version.
+
+ This program is distributed in the hope that it will be useful, but WITHOUT
+ ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ FOR A PARTICULAR PURPOSE. See the GNU Affero General Public License for more details.
+
+ You should have received a copy of the GNU Affero General Public License along
+ with this program; if not, see http://www.gnu.org/licenses or write to the Free
+ Software Foundation,Inc., 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301
+*/
+
+package com.servoy.j2db.dataprocessing;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.math.BigDecimal;
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Test;
+
+import com.servoy.j2db.query.ColumnType;
+import com.servoy.j2db.util.SafeArrayList;
+import com.servoy.j2db.util.UUID;
+
+/**
+ * Tests dividing the results of the merged relation query and of the grouped aggregate query of sibling related foundsets over the siblings,
+ * and the fallback to separate queries.
+ *
+ * @author agent
+ *
+ */
+@SuppressWarnings("nls")
+public class RelatedFoundSetTest
+{
+	private static final String[] COLUMN_NAMES = { "id", "parent_id" };
+	private static final ColumnType[] COLUMN_TYPES = { ColumnType.getInstance(Types.INTEGER, 0, 0), ColumnType.getInstance(Types.BIGINT, 0, 0) };
+
+	// child rows of the relation: id, parent_id, amount
+	private static final Object[][] CHILDREN = { { Integer.valueOf(1), Long.valueOf(1), new BigDecimal("10.5") }, //
+		{ Integer.valueOf(2), Long.valueOf(1), new BigDecimal("4.5") }, //
+		{ Integer.valueOf(3), Long.valueOf(2), new BigDecimal("7") }, //
+		{ Integer.valueOf(4), Long.valueOf(3), null }, //
+		{ Integer.valueOf(5), Long.valueOf(2), new BigDecimal("1") } };
+
+	private static IDataSet mergedData(boolean hadMore, Object[]... rows)
+	{
+		return BufferedDataSetInternal.createBufferedDataSet(COLUMN_NAMES, COLUMN_TYPES, new SafeArrayList<Object[]>(Arrays.asList(rows)), hadMore);
+	}
+
+	private static Object[][] whereArgs(Object... keys)
+	{
+		Object[][] whereArgs = new Object[keys.length][];
+		for (int i = 0; i < keys.length; i++)
+		{
+			whereArgs[i] = new Object[] { keys[i] };
+		}
+		return whereArgs;
+	}
+
+	private static Object[] row(int id, Object parentId)
+	{
+		return new Object[] { Integer.valueOf(id), parentId };
+	}
+
+	private static Object[] ids(IDataSet set)
+	{
+		Object[] ids = new Object[set.getRowCount()];
+		for (int r = 0; r < ids.length; r++)
+		{
+			ids[r] = set.getRow(r)[0];
+		}
+		return ids;
+	}
+
+	@Test
+	public void rowsAreDividedInQueryOrder()
+	{
+		// sibling 3 is not in the merged query
+		Object[][] whereArgs = whereArgs(Integer.valueOf(1), Integer.valueOf(2), Integer.valueOf(3), Integer.valueOf(4));
+		List<Integer> mergedIndexes = Arrays.asList(Integer.valueOf(0), Integer.valueOf(1), Integer.valueOf(2));
+		IDataSet merged = mergedData(false, row(10, Long.valueOf(2)), row(11, Long.valueOf(1)), row(12, Long.valueOf(2)), row(13, Long.valueOf(1)));
+
+		IDataSet[] relationData = new IDataSet[4];
+		assertTrue(RelatedFoundSet.partitionMergedRelationData(merged, 1, whereArgs, mergedIndexes, 200, relationData));
+
+		assertArrayEquals(new Object[] { Integer.valueOf(11), Integer.valueOf(13) }, ids(relationData[0]));
+		assertArrayEquals(new Object[] { Integer.valueOf(10), Integer.valueOf(12) }, ids(relationData[1]));
+		assertEquals(0, relationData[2].getRowCount());
+		assertNull(relationData[3]);
+		for (int i = 0; i < 3; i++)
+		{
+			assertFalse(relationData[i].hadMoreRows());
+			assertArrayEquals(COLUMN_NAMES, relationData[i].getColumnNames());
+		}
+	}
+
+	@Test
+	public void siblingWithMoreRowsThanTheChunkHadMoreRows()
+	{
+		Object[][] whereArgs = whereArgs(Integer.valueOf(1), Integer.valueOf(2));
+		List<Integer> mergedIndexes = Arrays.asList(Integer.valueOf(0), Integer.valueOf(1));
+		IDataSet merged = mergedData(false, row(10, Long.valueOf(1)), row(11, Long.valueOf(1)), row(12, Long.valueOf(2)), row(13, Long.valueOf(1)));
+
+		IDataSet[] relationData = new IDataSet[2];
+		assertTrue(RelatedFoundSet.partitionMergedRelationData(merged, 1, whereArgs, mergedIndexes, 2, relationData));
+
+		// same as a separate query, the first chunk is loaded and the foundset queries the rest when needed
+		assertArrayEquals(new Object[] { Integer.valueOf(10), Integer.valueOf(11) }, ids(relationData[0]));
+		assertTrue(relationData[0].hadMoreRows());
+		assertArrayEquals(new Object[] { Integer.valueOf(12) }, ids(relationData[1]));
+		assertFalse(relationData[1].hadMoreRows());
+	}
+
+	@Test
+	public void siblingsWithTheSameKeyGetTheSameRows()
+	{
+		Object[][] whereArgs = whereArgs(Integer.valueOf(1), Double.valueOf(1));
+		List<Integer> mergedIndexes = Arrays.asList(Integer.valueOf(0), Integer.valueOf(1));
+		IDataSet merged = mergedData(false, row(10, new BigDecimal("1.00")));
+
+		IDataSet[] relationData = new IDataSet[2];
+		assertTrue(RelatedFoundSet.partitionMergedRelationData(merged, 1, whereArgs, mergedIndexes, 200, relationData));
+		assertArrayEquals(new Object[] { Integer.valueOf(10) }, ids(relationData[0]));
+		assertArrayEquals(new Object[] { Integer.valueOf(10) }, ids(relationData[1]));
+	}
+
+	@Test
+	public void uuidKeys()
+	{
+		UUID uuid = UUID.fromString("3f2504e0-4f89-11d3-9a0c-0305e82c3301");
+		assertEquals(uuid, RelatedFoundSet.normalizeMergeKey(uuid.toString()));
+		assertEquals(uuid, RelatedFoundSet.normalizeMergeKey(uuid.toBytes()));
+		assertEquals(RelatedFoundSet.normalizeMergeKey(Integer.valueOf(5)), RelatedFoundSet.normalizeMergeKey(Long.valueOf(5)));
+
+		Object[][] whereArgs = whereArgs(uuid, UUID.randomUUID());
+		List<Integer> mergedIndexes = Arrays.asList(Integer.valueOf(0), Integer.valueOf(1));
+		IDataSet merged = mergedData(false, row(10, uuid.toString().toUpperCase()));
+
+		IDataSet[] relationData = new IDataSet[2];
+		assertTrue(RelatedFoundSet.partitionMergedRelationData(merged, 1, whereArgs, mergedIndexes, 200, relationData));
+		assertArrayEquals(new Object[] { Integer.valueOf(10) }, ids(relationData[0]));
+		assertEquals(0, relationData[1].getRowCount());
+	}
+
+	@Test
+	public void truncatedResultIsQueriedSeparately()
+	{
+		Object[][] whereArgs = whereArgs(Integer.valueOf(1), Integer.valueOf(2));
+		List<Integer> mergedIndexes = Arrays.asList(Integer.valueOf(0), Integer.valueOf(1));
+		IDataSet merged = mergedData(true, row(10, Long.valueOf(1)), row(11, Long.valueOf(1)));
+
+		// the rows of sibling 2 may be after the rows that were returned
+		IDataSet[] relationData = new IDataSet[2];
+		assertFalse(RelatedFoundSet.partitionMergedRelationData(merged, 1, whereArgs, mergedIndexes, 200, relationData));
+		assertNull(relationData[0]);
+		assertNull(relationData[1]);
+	}
+
+	@Test
+	public void unmatchedRowIsQueriedSeparately()
+	{
+		Object[][] whereArgs = whereArgs(Integer.valueOf(1), Integer.valueOf(2));
+		List<Integer> mergedIndexes = Arrays.asList(Integer.valueOf(0), Integer.valueOf(1));
+		IDataSet merged = mergedData(false, row(10, Long.valueOf(1)), row(11, "one"));
+
+		IDataSet[] relationData = new IDataSet[2];
+		assertFalse(RelatedFoundSet.partitionMergedRelationData(merged, 1, whereArgs, mergedIndexes, 200, relationData));
+		assertNull(relationData[0]);
+		assertNull(relationData[1]);
+	}
+
+	/**
+	 * The aggregates count(amount), sum(amount), max(id) of the children of 1 parent, like the aggregate query of 1 related foundset returns them.
+	 */
+	private static Object[] aggregatesOfRelation(Object parentId)
+	{
+		long count = 0;
+		BigDecimal sum = null;
+		Integer max = null;
+		for (Object[] child : CHILDREN)
+		{
+			if (RelatedFoundSet.normalizeMergeKey(child[1]).equals(RelatedFoundSet.normalizeMergeKey(parentId)))
+			{
+				if (child[2] != null)
+				{
+					count++;
+					sum = sum == null ? (BigDecimal)child[2] : sum.add((BigDecimal)child[2]);
+				}
+				if (max == null || ((Integer)child[0]).intValue() > max.intValue()) max = (Integer)child[0];
+			}
+		}
+		return new Object[] { Long.valueOf(count), sum, max };
+	}
+
+	/**
+	 * The same aggregates grouped by parent_id with the parent_id as last column, like the grouped query returns them; parents without children have no row.
+	 */
+	private static IDataSet groupedAggregates(Object... parentIds)
+	{
+		List<Object> keys = new ArrayList<Object>();
+		for (Object[] child : CHILDREN)
+		{
+			for (Object parentId : parentIds)
+			{
+				if (RelatedFoundSet.normalizeMergeKey(child[1]).equals(RelatedFoundSet.normalizeMergeKey(parentId)) && !keys.contains(child[1]))
+				{
+					keys.add(child[1]);
+				}
+			}
+		}
+		BufferedDataSet set = new BufferedDataSet(new String[] { "count", "sum", "max", "parent_id" },
+			new int[] { Types.BIGINT, Types.NUMERIC, Types.INTEGER, Types.BIGINT });
+		for (Object key : keys)
+		{
+			Object[] aggregates = aggregatesOfRelation(key);
+			set.addRow(new Object[] { aggregates[0], aggregates[1], aggregates[2], key });
+		}
+		return set;
+	}
+
+	@Test
+	public void groupedAggregatesAreTheAggregatesPerRelation()
+	{
+		// the foundsets, by the relation key they were created with
+		Object[] parentIds = { Integer.valueOf(1), Integer.valueOf(2), Double.valueOf(3), Integer.valueOf(2) };
+		String[] foundsets = { "fs1", "fs2", "fs3", "fs2b" };
+		Map<Object, List<String>> foundsetsByKey = new HashMap<Object, List<String>>();
+		for (int i = 0; i < foundsets.length; i++)
+		{
+			foundsetsByKey.computeIfAbsent(RelatedFoundSet.normalizeMergeKey(parentIds[i]), k -> new ArrayList<String>(1)).add(foundsets[i]);
+		}
+
+		Map<String, IDataSet> aggregates = RelatedFoundSet.splitGroupedAggregates(groupedAggregates(parentIds), 3, foundsetsByKey);
+		assertEquals(foundsets.length, aggregates.size());
+		for (int i = 0; i < foundsets.length; i++)
+		{
+			IDataSet aggregateData = aggregates.get(foundsets[i]);
+			assertEquals(1, aggregateData.getRowCount());
+			assertArrayEquals(foundsets[i], aggregatesOfRelation(parentIds[i]), aggregateData.getRow(0));
+		}
+	}
+
+	@Test
+	public void relationWithoutRowsIsNotInTheGroupedAggregates()
+	{
+		Object[] parentIds = { Integer.valueOf(1), Integer.valueOf(99) };
+		Map<Object, List<String>> foundsetsByKey = new HashMap<Object, List<String>>();
+		foundsetsByKey.put(RelatedFoundSet.normalizeMergeKey(parentIds[0]), Arrays.asList("fs1"));
+		foundsetsByKey.put(RelatedFoundSet.normalizeMergeKey(parentIds[1]), Arrays.asList("fs99"));
+
+		// the foundset without rows queries its aggregates (count 0) separately
+		Map<String, IDataSet> aggregates = RelatedFoundSet.splitGroupedAggregates(groupedAggregates(parentIds), 3, foundsetsByKey);
+		assertEquals(1, aggregates.size());
+		assertArrayEquals(aggregatesOfRelation(parentIds[0]), aggregates.get("fs1").getRow(0));
+		assertNull(aggregates.get("fs99"));
+	}
+}
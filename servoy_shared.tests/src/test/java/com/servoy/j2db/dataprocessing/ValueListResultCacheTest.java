@@ -0,0 +1,162 @@
+/*
+ This file belongs to the Servoy development and deployment environment, Copyright (C) 1997-2021 Servoy BV
+
+ This program is free software; you can redistribute it and/or modify it under
+ the terms of the GNU Affero General Public License as published by the Free
+ Software Foundation; either version 3 of the License, or (at your option) any
+ later version.
+
+ This program is distributed in the hope that it will be useful, but WITHOUT
+ ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ FOR A PARTICULAR PURPOSE. See the GNU Affero General Public License for more details.
+
+ You should have received a copy of the GNU Affero General Public License along
+ with this program; if not, see http://www.gnu.org/licenses or write to the Free
+ Software Foundation,Inc., 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301
+*/
+
+package com.servoy.j2db.dataprocessing;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.lang.reflect.Proxy;
+import java.util.concurrent.Callable;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import com.servoy.j2db.dataprocessing.ValueListResultCache.ValueListKey;
+import com.servoy.j2db.persistence.ITable;
+import com.servoy.j2db.persistence.Table;
+import com.servoy.j2db.plugins.IDataNotifyListener;
+import com.servoy.j2db.plugins.IDataNotifyService;
+import com.servoy.j2db.util.DataSourceUtils;
+import com.servoy.j2db.util.Settings;
+
+/**
+ * Tests the sharing and invalidation of results in the {@link ValueListResultCache}.
+ *
+ * @author agent
+ *
+ */
+@SuppressWarnings("nls")
+public class ValueListResultCacheTest
+{
+	private static final String DATASOURCE = DataSourceUtils.createDBTableDataSource("example", "countries");
+
+	private static IDataNotifyListener listener;
+
+	private final AtomicInteger queries = new AtomicInteger();
+
+	@BeforeClass
+	public static void registerListener()
+	{
+		ValueListResultCache.registerDataNotifyListener((IDataNotifyService)Proxy.newProxyInstance(ValueListResultCacheTest.class.getClassLoader(),
+			new Class[] { IDataNotifyService.class }, (proxy, method, args) -> {
+				if (method.getName().equals("registerDataNotifyListener")) listener = (IDataNotifyListener)args[0];
+				return null;
+			}));
+	}
+
+	@Before
+	public void setUp()
+	{
+		Settings.getInstance().setProperty(ValueListResultCache.SERVOY_VALUELIST_SHARED_CACHE_PROPERTY, "true");
+		ValueListResultCache.flush();
+	}
+
+	@After
+	public void tearDown()
+	{
+		Settings.getInstance().remove(ValueListResultCache.SERVOY_VALUELIST_SHARED_CACHE_PROPERTY);
+		ValueListResultCache.flush();
+	}
+
+	private Callable<IDataSet> query()
+	{
+		return () -> {
+			queries.incrementAndGet();
+			BufferedDataSet set = new BufferedDataSet(new String[] { "name" }, new int[] { 12 });
+			set.addRow(new Object[] { "Netherlands" });
+			return set;
+		};
+	}
+
+	private static ValueListKey key(String dataProviderID)
+	{
+		return new ValueListKey(DATASOURCE, "countries", Integer.valueOf(1), dataProviderID, null);
+	}
+
+	@Test
+	public void resultIsShared() throws Exception
+	{
+		long hits = ValueListResultCache.getHitCount();
+		long misses = ValueListResultCache.getMissCount();
+
+		IDataSet set = ValueListResultCache.getResult(key("name"), query());
+		assertSame(set, ValueListResultCache.getResult(key("name"), query()));
+		assertEquals(1, queries.get());
+		assertEquals(1, ValueListResultCache.size());
+		assertEquals(hits + 1, ValueListResultCache.getHitCount());
+		assertEquals(misses + 1, ValueListResultCache.getMissCount());
+
+		// another column is another query
+		assertNotSame(set, ValueListResultCache.getResult(key("code"), query()));
+		assertEquals(2, queries.get());
+		assertEquals(2, ValueListResultCache.getCacheStatistics().getSize());
+	}
+
+	@Test
+	public void dataChangeInvalidatesTable() throws Exception
+	{
+		IDataSet set = ValueListResultCache.getResult(key("name"), query());
+		listener.notifyDataChange("example", "countries", null, ISQLActionTypes.UPDATE_ACTION, null, null);
+		assertNotSame(set, ValueListResultCache.getResult(key("name"), query()));
+		assertEquals(2, queries.get());
+
+		// changes on other tables keep the result
+		listener.notifyDataChange("example", "cities", null, ISQLActionTypes.UPDATE_ACTION, null, null);
+		ValueListResultCache.getResult(key("name"), query());
+		assertEquals(2, queries.get());
+
+		listener.flushCachedDatabaseData(null, null);
+		ValueListResultCache.getResult(key("name"), query());
+		assertEquals(3, queries.get());
+	}
+
+	@Test
+	public void resultOfQueryDuringChangeIsNotKept() throws Exception
+	{
+		Callable<IDataSet> query = query();
+		IDataSet set = ValueListResultCache.getResult(key("name"), () -> {
+			IDataSet result = query.call();
+			// the table is changed while the query is running
+			ValueListResultCache.invalidate(DATASOURCE);
+			return result;
+		});
+		assertEquals(1, set.getRowCount());
+		assertEquals(0, ValueListResultCache.size());
+
+		ValueListResultCache.getResult(key("name"), query);
+		assertEquals(2, queries.get());
+	}
+
+	@Test
+	public void cacheableTables()
+	{
+		Table table = new Table("example", "countries", true, ITable.TABLE, null, null);
+		assertTrue(ValueListResultCache.isCacheable(table, null, null, null));
+		assertFalse(ValueListResultCache.isCacheable(table, "transaction", null, null));
+		assertFalse(ValueListResultCache.isCacheable(null, null, null, null));
+
+		Settings.getInstance().remove(ValueListResultCache.SERVOY_VALUELIST_SHARED_CACHE_PROPERTY);
+		assertFalse(ValueListResultCache.isCacheable(table, null, null, null));
+	}
+}
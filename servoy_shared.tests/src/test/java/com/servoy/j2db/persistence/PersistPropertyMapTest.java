@@ -0,0 +1,273 @@
+/*
+ This file belongs to the Servoy development and deployment environment, Copyright (C) 1997-2021 Servoy BV
+
+ This program is free software; you can redistribute it and/or modify it under
+ the terms of the GNU Affero General Public License as published by the Free
+ Software Foundation; either version 3 of the License, or (at your option) any
+ later version.
+
+ This program is distributed in the hope that it will be useful, but WITHOUT
+ ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ FOR A PARTICULAR PURPOSE. See the GNU Affero General Public License for more details.
+
+ You should have received a copy of the GNU Affero General Public License along
+ with this program; if not, see http://www.gnu.org/licenses or write to the Free
+ Software Foundation,Inc., 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301
+ */
+
+package com.servoy.j2db.persistence;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.util.ConcurrentModificationException;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Random;
+
+import org.junit.Test;
+
+/**
+ * Runs the same operations on a {@link HashMap} and a {@link PersistPropertyMap} and checks they follow the same Map contract.
+ *
+ * @author agent
+ *
+ */
+@SuppressWarnings("nls")
+public class PersistPropertyMapTest
+{
+	private static class TestPersist
+	{
+	}
+
+	private static class OtherPersist
+	{
+	}
+
+	private static void assertSameContent(Map<String, Object> expected, PersistPropertyMap actual)
+	{
+		assertEquals(expected.size(), actual.size());
+		assertEquals(expected.isEmpty(), actual.isEmpty());
+		assertEquals(expected, actual);
+		assertEquals(actual, expected);
+		assertEquals(expected.hashCode(), actual.hashCode());
+		assertEquals(expected.keySet(), actual.keySet());
+		assertEquals(expected.entrySet(), actual.entrySet());
+		for (Entry<String, Object> entry : expected.entrySet())
+		{
+			assertTrue(entry.getKey(), actual.containsKey(entry.getKey()));
+			assertEquals(entry.getKey(), entry.getValue(), actual.get(entry.getKey()));
+		}
+	}
+
+	@Test
+	public void putAndGet()
+	{
+		PersistPropertyMap map = new PersistPropertyMap(TestPersist.class);
+		assertTrue(map.isEmpty());
+		assertNull(map.put("name", "label1"));
+		assertNull(map.put("text", "hello"));
+		assertNull(map.put("anchors", Integer.valueOf(3)));
+		assertEquals("hello", map.put("text", "changed"));
+		assertEquals(3, map.size());
+		assertEquals("changed", map.get("text"));
+		assertNull(map.get("unknown"));
+		assertNull(map.get(Integer.valueOf(1)));
+		assertNull(map.get(null));
+		assertFalse(map.containsKey("unknown"));
+		assertTrue(map.containsValue(Integer.valueOf(3)));
+	}
+
+	@Test
+	public void nullValues()
+	{
+		PersistPropertyMap map = new PersistPropertyMap(TestPersist.class);
+		Map<String, Object> expected = new HashMap<>();
+		map.put("text", null);
+		expected.put("text", null);
+		assertTrue(map.containsKey("text"));
+		assertNull(map.get("text"));
+		assertTrue(map.containsValue(null));
+		assertSameContent(expected, map);
+
+		assertNull(map.put("text", "value"));
+		assertEquals("value", map.remove("text"));
+		assertFalse(map.containsKey("text"));
+		assertNull(map.remove("text"));
+		assertTrue(map.isEmpty());
+	}
+
+	@Test
+	public void removeAndClear()
+	{
+		PersistPropertyMap map = new PersistPropertyMap(TestPersist.class);
+		Map<String, Object> expected = new HashMap<>();
+		for (int i = 0; i < 10; i++)
+		{
+			map.put("property" + i, Integer.valueOf(i));
+			expected.put("property" + i, Integer.valueOf(i));
+		}
+		assertEquals(Integer.valueOf(4), map.remove("property4"));
+		expected.remove("property4");
+		assertNull(map.remove("property4"));
+		assertNull(map.remove("unknown"));
+		assertNull(map.remove(null));
+		assertSameContent(expected, map);
+
+		map.trimToSize();
+		assertSameContent(expected, map);
+
+		map.clear();
+		expected.clear();
+		assertSameContent(expected, map);
+		map.put("property1", "again");
+		assertEquals("again", map.get("property1"));
+	}
+
+	@Test
+	public void entrySetIteration()
+	{
+		PersistPropertyMap map = new PersistPropertyMap(TestPersist.class);
+		Map<String, Object> expected = new HashMap<>();
+		for (int i = 0; i < 6; i++)
+		{
+			map.put("property" + i, Integer.valueOf(i));
+			expected.put("property" + i, Integer.valueOf(i));
+		}
+
+		Iterator<Entry<String, Object>> it = map.entrySet().iterator();
+		while (it.hasNext())
+		{
+			Entry<String, Object> entry = it.next();
+			int value = ((Integer)entry.getValue()).intValue();
+			if (value % 2 == 0)
+			{
+				it.remove();
+				expected.remove(entry.getKey());
+			}
+			else
+			{
+				assertEquals(Integer.valueOf(value), entry.setValue(Integer.valueOf(value * 10)));
+				expected.put(entry.getKey(), Integer.valueOf(value * 10));
+			}
+		}
+		assertSameContent(expected, map);
+
+		try
+		{
+			map.entrySet().iterator().remove();
+			fail("remove without next");
+		}
+		catch (IllegalStateException e)
+		{
+			// expected
+		}
+
+		// an entry stays valid when other properties are added or removed
+		Entry<String, Object> entry = map.entrySet().iterator().next();
+		map.put("aaa", "first");
+		map.remove("property5");
+		assertEquals(map.get(entry.getKey()), entry.getValue());
+	}
+
+	@Test
+	public void concurrentModification()
+	{
+		PersistPropertyMap map = new PersistPropertyMap(TestPersist.class);
+		map.put("a", "1");
+		map.put("b", "2");
+		Iterator<String> it = map.keySet().iterator();
+		it.next();
+		map.put("c", "3");
+		try
+		{
+			it.next();
+			fail("iterator not failing on a structural change");
+		}
+		catch (ConcurrentModificationException e)
+		{
+			// expected
+		}
+
+		// changing a value is not a structural change
+		it = map.keySet().iterator();
+		it.next();
+		map.put("a", "changed");
+		it.next();
+	}
+
+	@Test
+	public void equalsAndHashCode()
+	{
+		PersistPropertyMap map = new PersistPropertyMap(TestPersist.class);
+		PersistPropertyMap other = new PersistPropertyMap(OtherPersist.class);
+		// insertion order and schema do not matter
+		map.put("x", Integer.valueOf(1));
+		map.put("y", null);
+		other.put("y", null);
+		other.put("x", Integer.valueOf(1));
+		assertEquals(map, other);
+		assertEquals(map.hashCode(), other.hashCode());
+
+		other.put("y", "value");
+		assertFalse(map.equals(other));
+		other.put("y", null);
+		other.put("z", null);
+		assertFalse(map.equals(other));
+		assertFalse(map.equals("x"));
+	}
+
+	@Test
+	public void serialize() throws Exception
+	{
+		PersistPropertyMap map = new PersistPropertyMap(TestPersist.class);
+		map.put("name", "label1");
+		map.put("text", null);
+		map.put("anchors", Integer.valueOf(3));
+
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		try (ObjectOutputStream out = new ObjectOutputStream(bytes))
+		{
+			out.writeObject(map);
+		}
+		try (ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(bytes.toByteArray())))
+		{
+			PersistPropertyMap copy = (PersistPropertyMap)in.readObject();
+			assertSameContent(new HashMap<>(map), copy);
+			copy.put("extra", "value");
+			assertEquals("value", copy.get("extra"));
+		}
+	}
+
+	@Test
+	public void randomOperations()
+	{
+		Random random = new Random(5);
+		PersistPropertyMap map = new PersistPropertyMap(TestPersist.class);
+		Map<String, Object> expected = new HashMap<>();
+		for (int n = 0; n < 5000; n++)
+		{
+			String key = "property" + random.nextInt(40);
+			Object value = random.nextInt(5) == 0 ? null : Integer.valueOf(n);
+			switch (random.nextInt(3))
+			{
+				case 0 :
+					assertEquals(expected.remove(key), map.remove(key));
+					break;
+				default :
+					assertEquals(expected.put(key, value), map.put(key, value));
+			}
+			if (n % 500 == 0) map.trimToSize();
+		}
+		assertSameContent(expected, map);
+	}
+}
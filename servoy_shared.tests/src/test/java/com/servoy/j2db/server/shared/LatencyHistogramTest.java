@@ -0,0 +1,223 @@
+/*
+ This file belongs to the Servoy development and deployment environment, Copyright (C) 1997-2021 Servoy BV
+
+ This program is free software; you can redistribute it and/or modify it under
+ the terms of the GNU Affero General Public License as published by the Free
+ Software Foundation; either version 3 of the License, or (at your option) any
+ later version.
+
+ This program is distributed in the hope that it will be useful, but WITHOUT
+ ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ FOR A PARTICULAR PURPOSE. See the GNU Affero General Public License for more details.
+
+ You should have received a copy of the GNU Affero General Public License along
+ with this program; if not, see http://www.gnu.org/licenses or write to the Free
+ Software Foundation,Inc., 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301
+ */
+
+package com.servoy.j2db.server.shared;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import org.junit.Test;
+
+import com.servoy.j2db.dataprocessing.IDataServer;
+
+/**
+ * Tests for the percentiles of {@link LatencyHistogram} and of the {@link PerformanceTimingAggregate} that records them.
+ *
+ * @author agent
+ *
+ */
+@SuppressWarnings("nls")
+public class LatencyHistogramTest
+{
+	// 16 sub buckets per power of 2
+	private static final double MAX_RELATIVE_ERROR = 1d / 16;
+
+	private static void assertAccurate(long expected, long actual)
+	{
+		assertTrue("expected " + expected + " but was " + actual, actual >= expected && actual <= expected + expected * MAX_RELATIVE_ERROR);
+	}
+
+	private static long exactPercentile(long[] sortedValues, double percentile)
+	{
+		int index = (int)Math.ceil(percentile / 100 * sortedValues.length) - 1;
+		return sortedValues[Math.max(0, index)];
+	}
+
+	@Test
+	public void emptyHistogram()
+	{
+		LatencyHistogram histogram = new LatencyHistogram();
+		assertEquals(0, histogram.getTotalCount());
+		assertEquals(0, histogram.getValueAtPercentile(50));
+	}
+
+	@Test
+	public void smallValuesAreExact()
+	{
+		LatencyHistogram histogram = new LatencyHistogram();
+		for (int i = 0; i < 20; i++)
+		{
+			histogram.record(i);
+		}
+		assertEquals(20, histogram.getTotalCount());
+		assertEquals(0, histogram.getValueAtPercentile(0));
+		assertEquals(9, histogram.getValueAtPercentile(50));
+		assertEquals(18, histogram.getValueAtPercentile(95));
+		assertEquals(19, histogram.getValueAtPercentile(100));
+	}
+
+	@Test
+	public void bucketBoundsWithinPrecision()
+	{
+		for (long value = 0; value < 1000000; value = value < 100 ? value + 1 : value + value / 7)
+		{
+			long highest = LatencyHistogram.getHighestValueInBucket(LatencyHistogram.getBucketIndex(value));
+			assertAccurate(value, highest);
+		}
+	}
+
+	@Test
+	public void uniformPercentiles()
+	{
+		LatencyHistogram histogram = new LatencyHistogram();
+		long[] values = new long[100000];
+		for (int i = 0; i < values.length; i++)
+		{
+			values[i] = i + 1;
+			histogram.record(values[i]);
+		}
+		for (double percentile : new double[] { 50, 90, 95, 99, 99.9 })
+		{
+			assertAccurate(exactPercentile(values, percentile), histogram.getValueAtPercentile(percentile));
+		}
+	}
+
+	@Test
+	public void skewedPercentiles()
+	{
+		// log-normal like response times: mostly fast, with a long tail
+		Random random = new Random(7);
+		LatencyHistogram histogram = new LatencyHistogram();
+		long[] values = new long[50000];
+		for (int i = 0; i < values.length; i++)
+		{
+			values[i] = (long)Math.exp(3 + random.nextGaussian() * 1.5);
+			histogram.record(values[i]);
+		}
+		Arrays.sort(values);
+		for (double percentile : new double[] { 50, 75, 95, 99 })
+		{
+			assertAccurate(exactPercentile(values, percentile), histogram.getValueAtPercentile(percentile));
+		}
+	}
+
+	@Test
+	public void outOfRangeValues()
+	{
+		LatencyHistogram histogram = new LatencyHistogram();
+		histogram.record(-5);
+		assertEquals(0, histogram.getValueAtPercentile(100));
+		histogram.record(Long.MAX_VALUE);
+		assertEquals(2, histogram.getTotalCount());
+		assertTrue(histogram.getValueAtPercentile(100) >= Integer.MAX_VALUE);
+	}
+
+	@Test
+	public void copyAddAndClear()
+	{
+		LatencyHistogram histogram = new LatencyHistogram();
+		for (int i = 1; i <= 100; i++)
+		{
+			histogram.record(i * 10);
+		}
+		LatencyHistogram copy = new LatencyHistogram(histogram);
+		assertEquals(100, copy.getTotalCount());
+		assertEquals(histogram.getValueAtPercentile(50), copy.getValueAtPercentile(50));
+
+		copy.add(histogram);
+		assertEquals(200, copy.getTotalCount());
+		assertEquals(histogram.getValueAtPercentile(99), copy.getValueAtPercentile(99));
+
+		histogram.clear();
+		assertEquals(0, histogram.getTotalCount());
+		assertEquals(200, copy.getTotalCount());
+	}
+
+	@Test
+	public void recordWithCount()
+	{
+		LatencyHistogram histogram = new LatencyHistogram();
+		histogram.record(10, 3);
+		histogram.record(1000, 1);
+		histogram.record(5, 0);
+		assertEquals(4, histogram.getTotalCount());
+		assertEquals(10, histogram.getValueAtPercentile(75));
+		assertAccurate(1000, histogram.getValueAtPercentile(100));
+	}
+
+	@Test
+	public void aggregateHistogramIsWeightedLikeCount()
+	{
+		PerformanceTimingAggregate aggregate = new PerformanceTimingAggregate("select", IDataServer.CUSTOM_QUERY, 10);
+		aggregate.updateTime(100, 100, 4);
+		aggregate.updateTime(50, 50, 1);
+		assertEquals(5, aggregate.getCount());
+		// 4 records of 25 ms and 1 of 50 ms
+		assertEquals(25, aggregate.getPercentileTimeMS(80));
+		assertAccurate(50, aggregate.getPercentileTimeMS(100));
+	}
+
+	@Test
+	public void mergedAggregateIncludesHistogram()
+	{
+		PerformanceTimingAggregate aggregate = new PerformanceTimingAggregate("select", IDataServer.CUSTOM_QUERY, 10);
+		for (int i = 1; i <= 9; i++)
+		{
+			aggregate.updateTime(i, i, 1);
+		}
+		aggregate.updateTime(1000, 1000, 1);
+
+		PerformanceTimingAggregate merged = new PerformanceTimingAggregate("select", IDataServer.CUSTOM_QUERY, 10);
+		merged.updateTime(aggregate);
+		assertEquals(10, merged.getCount());
+		assertEquals(aggregate.getTotalTimeMS(), merged.getTotalTimeMS());
+		assertEquals(5, merged.getMedianTimeMS());
+		assertEquals(aggregate.get99PercentileTimeMS(), merged.get99PercentileTimeMS());
+
+		// without the histogram the average is recorded for each record
+		PerformanceTimingAggregate totals = new PerformanceTimingAggregate("select", IDataServer.CUSTOM_QUERY, 10);
+		totals.updateTime(aggregate.getTotalIntervalTimeMS(), aggregate.getTotalTimeMS(), aggregate.getMinTimeMS(), aggregate.getMaxTimeMS(),
+			aggregate.getS2(), aggregate.getCount());
+		assertAccurate(aggregate.getAverageTimeMS(), totals.getMedianTimeMS());
+	}
+
+	@Test
+	public void concurrentRecording() throws InterruptedException
+	{
+		LatencyHistogram histogram = new LatencyHistogram();
+		Thread[] threads = new Thread[4];
+		for (int t = 0; t < threads.length; t++)
+		{
+			threads[t] = new Thread(() -> {
+				for (int i = 0; i < 10000; i++)
+				{
+					histogram.record(i % 5000);
+				}
+			});
+			threads[t].start();
+		}
+		for (Thread thread : threads)
+		{
+			thread.join();
+		}
+		assertEquals(40000, histogram.getTotalCount());
+		assertAccurate(2500, histogram.getValueAtPercentile(50));
+	}
+}
@@ -18,18 +18,29 @@ package com.servoy.j2db;
 
 
 import java.rmi.RemoteException;
-import java.util.Stack;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
 
+import com.servoy.j2db.dataprocessing.BufferedDataSet;
 import com.servoy.j2db.dataprocessing.DataServerProxy;
 import com.servoy.j2db.dataprocessing.FoundSetManager;
 import com.servoy.j2db.dataprocessing.IClient;
 import com.servoy.j2db.dataprocessing.IDataServer;
 import com.servoy.j2db.dataprocessing.IDataSet;
+import com.servoy.j2db.dataprocessing.ISQLActionTypes;
+import com.servoy.j2db.dataprocessing.RowManager;
 import com.servoy.j2db.scripting.StartupArguments;
 import com.servoy.j2db.util.DataSourceUtils;
 import com.servoy.j2db.util.Debug;
 import com.servoy.j2db.util.IGetLastAccessed;
 import com.servoy.j2db.util.IGetStatusLine;
+import com.servoy.j2db.util.Utils;
 
 /**
  * Remote class for server calls to client
@@ -125,23 +136,7 @@ public class ClientStub implements IClient
 					public void run()
 					{
 						if (client.isShutDown() || !client.isSolutionLoaded()) return;
-						IDataServer dataServer = client.getDataServer();
-						if (dataServer instanceof DataServerProxy)
-						{
-							String[] dbServernameTablename = DataSourceUtils.getDBServernameTablename(dataSource);
-							if (dbServernameTablename != null)
-							{
-								// map from real db server to server names from before switch-server
-								for (String srv : ((DataServerProxy)dataServer).getReverseMappedServerNames(dbServernameTablename[0]))
-								{
-									((FoundSetManager)client.getFoundSetManager()).flushCachedDatabaseDataFromRemote(
-										DataSourceUtils.createDBTableDataSource(srv, dbServernameTablename[1]));
-								}
-								return;
-							}
-						}
-
-						((FoundSetManager)client.getFoundSetManager()).flushCachedDatabaseDataFromRemote(dataSource);
+						flushCachedDatabaseDataFromRemote(dataSource);
 					}
 				};
 
@@ -157,8 +152,36 @@ public class ClientStub implements IClient
 		});
 	}
 
-	private final Stack<Object[]> datachanges = new Stack<Object[]>();
+	private void flushCachedDatabaseDataFromRemote(String dataSource)
+	{
+		IDataServer dataServer = client.getDataServer();
+		if (dataServer instanceof DataServerProxy)
+		{
+			String[] dbServernameTablename = DataSourceUtils.getDBServernameTablename(dataSource);
+			if (dbServernameTablename != null)
+			{
+				// map from real db server to server names from before switch-server
+				for (String srv : ((DataServerProxy)dataServer).getReverseMappedServerNames(dbServernameTablename[0]))
+				{
+					((FoundSetManager)client.getFoundSetManager()).flushCachedDatabaseDataFromRemote(
+						DataSourceUtils.createDBTableDataSource(srv, dbServernameTablename[1]));
+				}
+				return;
+			}
+		}
+
+		((FoundSetManager)client.getFoundSetManager()).flushCachedDatabaseDataFromRemote(dataSource);
+	}
+
+	/**
+	 * Number of pks for one table in pending changes above which the changes are replaced by a flush of the table, 0 or less to never flush.
+	 */
+	public static final String DATA_BROADCAST_FLUSH_THRESHOLD_PROPERTY = "servoy.client.dataBroadcast.flushThreshold"; //$NON-NLS-1$
+
+	private final List<DataChange> datachanges = new ArrayList<DataChange>(); // pending changes in arrival order
+	private final Map<String, DataChange> lastDatachanges = new HashMap<String, DataChange>(); // last pending change per table, to merge into
 	private Runnable datachangesHandler;
+	private int dataBroadcastFlushThreshold = Integer.MIN_VALUE;
 
 	public void notifyDataChange(final String server_name, final String table_name, final IDataSet pks, final int sql_action, final Object[] insertColumnData)
 	{
@@ -170,54 +193,42 @@ public class ClientStub implements IClient
 		}
 		synchronized (datachanges)
 		{
-			datachanges.push(new Object[] { server_name, table_name, pks, new Integer(sql_action), insertColumnData });
+			// changes for other tables may be in between, the order of changes for the same table is kept
+			String dataSource = DataSourceUtils.createDBTableDataSource(server_name, table_name);
+			DataChange last = lastDatachanges.get(dataSource);
+			if (last == null || !last.merge(sql_action, pks, insertColumnData, getDataBroadcastFlushThreshold()))
+			{
+				DataChange change = new DataChange(server_name, table_name, pks, sql_action, insertColumnData);
+				change.checkFlushThreshold(getDataBroadcastFlushThreshold());
+				datachanges.add(change);
+				lastDatachanges.put(dataSource, change);
+			}
 			if (datachangesHandler == null)
 			{
 				datachangesHandler = new Runnable()
 				{
 					public void run()
 					{
-						while (datachangesHandler != null)
+						// apply all changes that are pending by then in one event, changes that come in meanwhile are merged with the pending ones
+						client.invokeLater(new Runnable()
 						{
-							final Object[] array;
-							synchronized (datachanges)
+							public void run()
 							{
-								if (datachanges.isEmpty())
+								List<DataChange> changes;
+								synchronized (datachanges)
 								{
-									datachangesHandler = null; // done
-									break;
+									changes = new ArrayList<DataChange>(datachanges);
+									datachanges.clear();
+									lastDatachanges.clear();
+									datachangesHandler = null; // done, a new change will schedule a new handler
 								}
-								array = datachanges.pop();
-							}
-
-							client.invokeLater(new Runnable()
-							{
-								public void run()
+								if (client.isShutDown() || !client.isSolutionLoaded()) return;
+								for (DataChange change : changes)
 								{
-									if (client.isShutDown() || !client.isSolutionLoaded()) return;
-									String sname = (String)array[0];
-									String tname = (String)array[1];
-									IDataSet pksDataSet = (IDataSet)array[2];
-									int action = ((Integer)array[3]).intValue();
-									Object[] insertColumndata = (Object[])array[4];
-
-									IDataServer ds = client.getDataServer();
-									if (ds instanceof DataServerProxy)
-									{
-										// possibly switched from multiple servers to the same destination server.
-										for (String srv : ((DataServerProxy)ds).getReverseMappedServerNames(sname))
-										{
-											((FoundSetManager)client.getFoundSetManager()).notifyDataChange(DataSourceUtils.createDBTableDataSource(srv, tname),
-												pksDataSet, action, insertColumndata);
-										}
-										return;
-									}
-									// not switched
-									((FoundSetManager)client.getFoundSetManager()).notifyDataChange(DataSourceUtils.createDBTableDataSource(sname, tname),
-										pksDataSet, action, insertColumndata);
+									applyDataChange(change);
 								}
-							});
-						}
+							}
+						});
 					}
 				};
 				client.getScheduledExecutor().execute(datachangesHandler);
@@ -225,6 +236,147 @@ public class ClientStub implements IClient
 		}
 	}
 
+	private int getDataBroadcastFlushThreshold()
+	{
+		if (dataBroadcastFlushThreshold == Integer.MIN_VALUE)
+		{
+			dataBroadcastFlushThreshold = Utils.getAsInteger(client.getSettings().getProperty(DATA_BROADCAST_FLUSH_THRESHOLD_PROPERTY, "1000")); //$NON-NLS-1$
+		}
+		return dataBroadcastFlushThreshold;
+	}
+
+	private void applyDataChange(DataChange change)
+	{
+		if (change.flush)
+		{
+			if (Debug.tracing())
+			{
+				Debug.trace("Too many changes received for table " + change.tableName + ", flushing the table"); //$NON-NLS-1$ //$NON-NLS-2$
+			}
+			flushCachedDatabaseDataFromRemote(DataSourceUtils.createDBTableDataSource(change.serverName, change.tableName));
+			return;
+		}
+
+		IDataServer ds = client.getDataServer();
+		if (ds instanceof DataServerProxy)
+		{
+			// possibly switched from multiple servers to the same destination server.
+			for (String srv : ((DataServerProxy)ds).getReverseMappedServerNames(change.serverName))
+			{
+				((FoundSetManager)client.getFoundSetManager()).notifyDataChange(DataSourceUtils.createDBTableDataSource(srv, change.tableName), change.pks,
+					change.action, change.insertColumnData);
+			}
+			return;
+		}
+		// not switched
+		((FoundSetManager)client.getFoundSetManager()).notifyDataChange(DataSourceUtils.createDBTableDataSource(change.serverName, change.tableName),
+			change.pks, change.action, change.insertColumnData);
+	}
+
+	/**
+	 * Pending data change for one table and action, pks of following changes of the same kind for the table are added (once) to it.
+	 */
+	private static class DataChange
+	{
+		final String serverName;
+		final String tableName;
+		final int action;
+		IDataSet pks;
+		Object[] insertColumnData;
+		boolean flush;
+		private Set<String> pkHashes; // only created once another change is merged in
+
+		DataChange(String serverName, String tableName, IDataSet pks, int action, Object[] insertColumnData)
+		{
+			this.serverName = serverName;
+			this.tableName = tableName;
+			this.pks = pks;
+			this.action = action;
+			this.insertColumnData = insertColumnData;
+		}
+
+		/**
+		 * Merge a following change for the same table into this one.
+		 *
+		 * @return false when the change could not be merged and has to be queued after this one
+		 */
+		boolean merge(int otherAction, IDataSet otherPks, Object[] otherInsertColumnData, int flushThreshold)
+		{
+			if (flush)
+			{
+				// the table will be flushed anyway
+				return true;
+			}
+			if (action != otherAction)
+			{
+				return false;
+			}
+			if (pks == null || otherPks == null || pks.getColumnCount() != otherPks.getColumnCount())
+			{
+				return false;
+			}
+			if (action == ISQLActionTypes.INSERT_ACTION && (insertColumnData != null || otherInsertColumnData != null))
+			{
+				// the inserted data belongs to the pks of that change
+				return false;
+			}
+
+			if (pkHashes == null)
+			{
+				// copy, the pks data set may be shared with other clients
+				BufferedDataSet merged = new BufferedDataSet(pks.getColumnNames(), pks.getColumnTypes());
+				pkHashes = new HashSet<String>();
+				addPks(merged, pks);
+				pks = merged;
+			}
+			addPks(pks, otherPks);
+
+			if (action == ISQLActionTypes.UPDATE_ACTION)
+			{
+				// changed columns, null means unknown
+				if (insertColumnData == null || otherInsertColumnData == null)
+				{
+					insertColumnData = null;
+				}
+				else
+				{
+					Set<Object> columns = new LinkedHashSet<Object>(Arrays.asList(insertColumnData));
+					columns.addAll(Arrays.asList(otherInsertColumnData));
+					insertColumnData = columns.toArray();
+				}
+			}
+
+			checkFlushThreshold(flushThreshold);
+			return true;
+		}
+
+		/**
+		 * Replace the change by a flush of the table when it has too many pks.
+		 */
+		void checkFlushThreshold(int flushThreshold)
+		{
+			if (flushThreshold > 0 && pks != null && pks.getRowCount() > flushThreshold)
+			{
+				flush = true;
+				pks = null;
+				pkHashes = null;
+				insertColumnData = null;
+			}
+		}
+
+		private void addPks(IDataSet target, IDataSet source)
+		{
+			for (int i = 0; i < source.getRowCount(); i++)
+			{
+				Object[] pk = source.getRow(i);
+				if (pkHashes.add(RowManager.createPKHashKey(pk)))
+				{
+					target.addRow(pk);
+				}
+			}
+		}
+	}
+
 	public void activateSolutionMethod(final String globalMethodName, final StartupArguments argumentsScope)
 	{
 		client.getScheduledExecutor().execute(new Runnable()
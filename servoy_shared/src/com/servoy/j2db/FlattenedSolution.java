@@ -428,7 +428,7 @@ public class FlattenedSolution implements IItemChangeListener<IPersist>, IDataPr
 
 		if (copyPersist != null)
 		{
-			((AbstractBase)copyPersist).copyPropertiesMap(((AbstractBase)persist).getPropertiesMap(), false);
+			((AbstractBase)copyPersist).copyPropertiesMap(((AbstractBase)persist).getPropertiesView(), false);
 			ISupportChilds parent = copyPersist.getParent();
 			flush(persist);
 			if (parent instanceof Form)
@@ -26,6 +26,7 @@ import java.sql.Types;
 import java.text.MessageFormat;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.List;
 import java.util.Locale;
 import java.util.MissingResourceException;
 import java.util.Properties;
@@ -270,6 +271,33 @@ public class Messages
 		}
 	}
 
+	/**
+	 * Check if the client has table filters on the i18n table, the messages of the client are then different from the messages of other clients.
+	 */
+	public static boolean hasI18NTableFilter(String i18nDatasource, Properties settings, IFoundSetManagerInternal fm)
+	{
+		if (fm == null) return false;
+		String[] names = getServerTableNames(i18nDatasource, settings);
+		return names[0] != null && names[1] != null && fm.hasTableFilter(names[0], names[1]);
+	}
+
+	/**
+	 * Get the datasources of the i18n tables that the messages of a solution are loaded from: the default messages table and the one of the solution.
+	 */
+	public static List<String> getI18NTableDataSources(String i18nDatasource, Properties settings)
+	{
+		List<String> dataSources = new ArrayList<String>(2);
+		for (String[] names : new String[][] { getServerTableNames(null, settings), getServerTableNames(i18nDatasource, settings) })
+		{
+			if (names[0] != null && names[1] != null)
+			{
+				String dataSource = DataSourceUtils.createDBTableDataSource(names[0], names[1]);
+				if (!dataSources.contains(dataSource)) dataSources.add(dataSource);
+			}
+		}
+		return dataSources;
+	}
+
 	private static String[] getServerTableNames(String i18nDatasource, Properties settings)
 	{
 		String[] names = new String[2];
@@ -731,6 +759,7 @@ public class Messages
 					fm != null ? fm.getTableFilterParams(serverName, delete) : null);
 
 				dataServer.performUpdates(clientId, new ISQLStatement[] { sqlStatement });
+				changedTime = System.currentTimeMillis();
 			}
 			catch (Exception e)
 			{
@@ -29,7 +29,9 @@ import org.slf4j.LoggerFactory;
 
 import com.servoy.j2db.persistence.AbstractBase;
 import com.servoy.j2db.persistence.Solution;
+import com.servoy.j2db.util.Settings;
 import com.servoy.j2db.util.UUID;
+import com.servoy.j2db.util.Utils;
 
 /**
  * @author jcompagner
@@ -39,6 +41,8 @@ public class PersistIndexCache
 {
 	private static final Logger LOG = LoggerFactory.getLogger("com.servoy.PersistIndexCache");
 
+	public static final String OVERLAY_PROPERTY = "servoy.client.persistIndexOverlay"; //$NON-NLS-1$
+
 	private static final ConcurrentMap<UUID, IPersistIndex> persistIndexCache = new ConcurrentHashMap<>();
 
 	public static IPersistIndex getPersistIndex(Solution solution, Solution[] modules)
@@ -56,7 +60,17 @@ public class PersistIndexCache
 					solutions.add(mod);
 				}
 			}
-			index = new PersistIndex(solutions);
+			IPersistIndex shared = isCloned && useOverlay() ? persistIndexCache.get(solution.getUUID()) : null;
+			if (shared instanceof PersistIndex && hasSameSolutions((PersistIndex)shared, solutions))
+			{
+				// only keep the differences with the shared index of the original solution
+				index = new PersistIndexOverlay((PersistIndex)shared, solutions);
+				LOG.debug("Persist Index overlay created for cloned " + solution + ": " + index);
+			}
+			else
+			{
+				index = new PersistIndex(solutions);
+			}
 
 			if (!isCloned)
 			{
@@ -69,6 +83,21 @@ public class PersistIndexCache
 		return index;
 	}
 
+	private static boolean useOverlay()
+	{
+		return Utils.getAsBoolean(Settings.getInstance().getProperty(OVERLAY_PROPERTY, "false")); //$NON-NLS-1$
+	}
+
+	private static boolean hasSameSolutions(PersistIndex index, List<Solution> solutions)
+	{
+		if (index.solutions.size() != solutions.size()) return false;
+		for (int i = 0; i < solutions.size(); i++)
+		{
+			if (!index.solutions.get(i).getUUID().equals(solutions.get(i).getUUID())) return false;
+		}
+		return true;
+	}
+
 	public static void flush()
 	{
 		LOG.debug("Persist Index Cache cleared");
@@ -0,0 +1,310 @@
+/*
+ This file belongs to the Servoy development and deployment environment, Copyright (C) 1997-2021 Servoy BV
+
+ This program is free software; you can redistribute it and/or modify it under
+ the terms of the GNU Affero General Public License as published by the Free
+ Software Foundation; either version 3 of the License, or (at your option) any
+ later version.
+
+ This program is distributed in the hope that it will be useful, but WITHOUT
+ ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ FOR A PARTICULAR PURPOSE. See the GNU Affero General Public License for more details.
+
+ You should have received a copy of the GNU Affero General Public License along
+ with this program; if not, see http://www.gnu.org/licenses or write to the Free
+ Software Foundation,Inc., 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301
+*/
+
+package com.servoy.j2db;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import com.servoy.j2db.persistence.IPersist;
+import com.servoy.j2db.persistence.IPersistVisitor;
+import com.servoy.j2db.persistence.ISupportChilds;
+import com.servoy.j2db.persistence.ISupportScope;
+import com.servoy.j2db.persistence.Solution;
+import com.servoy.j2db.util.IntHashMap;
+import com.servoy.j2db.util.UUID;
+
+/**
+ * Persist index for a cloned solution that uses the index of the original solution to locate persists.
+ * <p>
+ * Lookups only return persists of the cloned solution, never the instances of the original solution that are shared by all clients. A persist that is found
+ * in the base index is looked up in the cloned solution by the uuids of its parents and then kept in this index, so the index only holds the persists that
+ * were used. Persists that were added to the cloned solution are not in the base index, these are collected with one walk over the cloned solution the
+ * first time a lookup misses the base index or all persists of a class are requested; after that the persist listener events keep them up to date.
+ * The name, datasource and scope caches are created from the cloned solution itself, these are created lazily and only for what is used.
+ *
+ * @author agent
+ * @since 2021.06
+ */
+public class PersistIndexOverlay extends PersistIndex
+{
+	private final PersistIndex base;
+	// uuids of base persists that are not in the cloned solution
+	private final Set<String> removedUUIDs = ConcurrentHashMap.newKeySet();
+	// uuids of persists of the cloned solution that are not in the base index
+	private final Set<String> addedUUIDs = ConcurrentHashMap.newKeySet();
+	private volatile boolean addedCollected;
+
+	public PersistIndexOverlay(PersistIndex base, List<Solution> solutions)
+	{
+		this.base = base;
+		this.solutions.addAll(solutions);
+	}
+
+	/**
+	 * Find the persist of the cloned solution for a persist of the base index, by the uuids of the base persist and its parents.
+	 */
+	private IPersist getClonedPersist(IPersist basePersist)
+	{
+		String uuid = basePersist.getUUID().toString();
+		IPersist persist = uuidToPersist.get(uuid);
+		if (persist != null || removedUUIDs.contains(uuid))
+		{
+			return persist;
+		}
+
+		Deque<UUID> path = new ArrayDeque<>();
+		ISupportChilds root = null;
+		for (IPersist p = basePersist; p != null; p = p.getParent())
+		{
+			if (p instanceof Solution)
+			{
+				root = (Solution)p;
+				break;
+			}
+			path.push(p.getUUID());
+		}
+		if (root != null)
+		{
+			for (Solution solution : solutions)
+			{
+				if (solution.getUUID().equals(root.getUUID()))
+				{
+					persist = solution;
+					break;
+				}
+			}
+		}
+		while (persist != null && !path.isEmpty())
+		{
+			persist = persist instanceof ISupportChilds ? ((ISupportChilds)persist).getChild(path.pop()) : null;
+		}
+
+		if (persist == null || persist.getClass() != basePersist.getClass())
+		{
+			removedUUIDs.add(uuid);
+			return null;
+		}
+		putInCache(persist);
+		return persist;
+	}
+
+	/**
+	 * Collect the persists of the cloned solution that are not in the base index, only done once; later changes come in as persist listener events.
+	 */
+	private void collectAdded()
+	{
+		if (addedCollected) return;
+		synchronized (addedUUIDs)
+		{
+			if (addedCollected) return;
+			visit((persist) -> {
+				String uuid = persist.getUUID().toString();
+				if (base.getPersistByUUID(uuid) == null)
+				{
+					addedUUIDs.add(uuid);
+					putInCache(persist);
+				}
+				return IPersistVisitor.CONTINUE_TRAVERSAL;
+			});
+			addedCollected = true;
+		}
+	}
+
+	@Override
+	public IPersist getPersistByUUID(String uuid)
+	{
+		IPersist persist = uuidToPersist.get(uuid);
+		if (persist == null && !removedUUIDs.contains(uuid))
+		{
+			IPersist basePersist = base.getPersistByUUID(uuid);
+			if (basePersist != null)
+			{
+				persist = getClonedPersist(basePersist);
+			}
+			else if (!addedCollected)
+			{
+				collectAdded();
+				persist = uuidToPersist.get(uuid);
+			}
+		}
+		return persist;
+	}
+
+	@Override
+	@SuppressWarnings("unchecked")
+	public <T extends IPersist> T getPersistByUUID(String uuid, Class<T> clz)
+	{
+		IPersist persist = getPersistByUUID(uuid);
+		if (persist != null && clz.isInstance(persist)) return (T)persist;
+		return null;
+	}
+
+	@Override
+	@SuppressWarnings("unchecked")
+	public <T extends IPersist> T getPersistByID(int id, Class<T> clz)
+	{
+		T persist = super.getPersistByID(id, clz);
+		if (persist == null)
+		{
+			T basePersist = base.getPersistByID(id, clz);
+			if (basePersist != null)
+			{
+				persist = (T)getClonedPersist(basePersist);
+			}
+			else if (!addedCollected)
+			{
+				collectAdded();
+				persist = super.getPersistByID(id, clz);
+			}
+		}
+		return persist;
+	}
+
+	@Override
+	@SuppressWarnings("unchecked")
+	public <T extends IPersist> Iterator<T> getIterableFor(Class<T> clz)
+	{
+		collectAdded();
+		List<T> list = new ArrayList<>();
+		base.getIterableFor(clz).forEachRemaining(basePersist -> {
+			IPersist persist = getClonedPersist(basePersist);
+			if (persist != null) list.add((T)persist);
+		});
+		super.getIterableFor(clz).forEachRemaining(persist -> {
+			if (addedUUIDs.contains(persist.getUUID().toString())) list.add(persist);
+		});
+		return list.iterator();
+	}
+
+	@Override
+	public void reload()
+	{
+		uuidToPersist.clear();
+		idToPersist.clear();
+		nameToPersist.clear();
+		datasourceToPersist.clear();
+		scopeCacheByName.clear();
+		removedUUIDs.clear();
+		addedUUIDs.clear();
+		addedCollected = false;
+	}
+
+	@Override
+	public void destroy()
+	{
+		super.destroy();
+		removedUUIDs.clear();
+		addedUUIDs.clear();
+		addedCollected = false;
+	}
+
+	@Override
+	public void itemCreated(IPersist item)
+	{
+		if (isBasePersist(item)) return;
+		String uuid = item.getUUID().toString();
+		removedUUIDs.remove(uuid);
+		if (base.getPersistByUUID(uuid) == null) addedUUIDs.add(uuid);
+		putInCache(item);
+		testNameCache(item, EventType.CREATED);
+		testDatasourceCache(item);
+		if (item instanceof ISupportChilds)
+		{
+			Iterator<IPersist> allObjects = ((ISupportChilds)item).getAllObjects();
+			while (allObjects.hasNext())
+			{
+				itemCreated(allObjects.next());
+			}
+		}
+		if (item instanceof ISupportScope)
+		{
+			cleanScopeCache();
+		}
+	}
+
+	@Override
+	public void itemRemoved(IPersist item)
+	{
+		if (isBasePersist(item)) return;
+		String uuid = item.getUUID().toString();
+		uuidToPersist.remove(uuid);
+		IntHashMap<IPersist> idCache = idToPersist.get(item.getClass());
+		if (idCache != null)
+		{
+			synchronized (idCache)
+			{
+				idCache.remove(item.getID());
+			}
+		}
+		addedUUIDs.remove(uuid);
+		if (base.getPersistByUUID(uuid) != null)
+		{
+			removedUUIDs.add(uuid);
+		}
+		testNameCache(item, EventType.REMOVED);
+		testDatasourceCache(item);
+		if (item instanceof ISupportChilds)
+		{
+			Iterator<IPersist> allObjects = ((ISupportChilds)item).getAllObjects();
+			while (allObjects.hasNext())
+			{
+				itemRemoved(allObjects.next());
+			}
+		}
+		if (item instanceof ISupportScope)
+		{
+			cleanScopeCache();
+		}
+	}
+
+	@Override
+	public void itemChanged(IPersist item)
+	{
+		if (isBasePersist(item)) return;
+		String uuid = item.getUUID().toString();
+		removedUUIDs.remove(uuid);
+		if (base.getPersistByUUID(uuid) == null) addedUUIDs.add(uuid);
+		putInCache(item);
+		testNameCache(item, EventType.UPDATED);
+		testDatasourceCache(item);
+		if (item instanceof ISupportScope)
+		{
+			cleanScopeCache();
+		}
+	}
+
+	/**
+	 * Events for the persists of the original solution are handled by the base index, this index only has persists of the cloned solution.
+	 */
+	private boolean isBasePersist(IPersist item)
+	{
+		return base.getPersistByUUID(item.getUUID().toString()) == item;
+	}
+
+	@Override
+	public String toString()
+	{
+		return "PersistIndexOverlay[own=" + uuidToPersist.size() + ", added=" + addedUUIDs.size() + ", removed=" + removedUUIDs.size() + ", base=" + //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$ //$NON-NLS-4$
+			base.uuidToPersist.size() + "]"; //$NON-NLS-1$
+	}
+}
@@ -0,0 +1,275 @@
+/*
+ This file belongs to the Servoy development and deployment environment, Copyright (C) 1997-2021 Servoy BV
+
+ This program is free software; you can redistribute it and/or modify it under
+ the terms of the GNU Affero General Public License as published by the Free
+ Software Foundation; either version 3 of the License, or (at your option) any
+ later version.
+
+ This program is distributed in the hope that it will be useful, but WITHOUT
+ ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ FOR A PARTICULAR PURPOSE. See the GNU Affero General Public License for more details.
+
+ You should have received a copy of the GNU Affero General Public License along
+ with this program; if not, see http://www.gnu.org/licenses or write to the Free
+ Software Foundation,Inc., 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301
+*/
+
+package com.servoy.j2db;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.function.Supplier;
+
+import com.servoy.j2db.util.Debug;
+
+/**
+ * Application server wide store of i18n messages, so clients of the same solution share the messages instead of each loading their own copy.
+ * <p>
+ * Messages are stored per i18n datasource, locale and column filter. The shared messages are never modified, clients use a {@link MessagesOverlay}
+ * for messages that are set from scripting. Messages are loaded again the next time they are used when {@link Messages#changedTime} moves, when one of
+ * the i18n tables is changed (see {@link #invalidate(String)}) or when they are older than {@link #SHARED_MESSAGES_MAX_AGE_PROPERTY} seconds.
+ *
+ * @author agent
+ * @since 2021.06
+ */
+public class SharedMessages
+{
+	public static final String SHARED_MESSAGES_PROPERTY = "servoy.i18n.sharedMessages"; //$NON-NLS-1$
+	public static final String SHARED_MESSAGES_MAX_AGE_PROPERTY = "servoy.i18n.sharedMessages.maxAge"; //$NON-NLS-1$
+	public static final int DEFAULT_MAX_AGE = 300;
+
+	private static final ConcurrentMap<List<Object>, Holder> store = new ConcurrentHashMap<>();
+
+	// last change time per i18n table datasource
+	private static final ConcurrentMap<String, Long> changedTimes = new ConcurrentHashMap<>();
+
+	private SharedMessages()
+	{
+	}
+
+	/**
+	 * Get the shared messages for the key, load them when they were not loaded yet or when they are stale.
+	 *
+	 * @param tableDataSources datasources of the i18n tables the messages are loaded from
+	 * @param maxAge milliseconds after which the messages are loaded again, 0 for no maximum
+	 * @param loader fills the messages, returns false when the messages could not be loaded, these are not stored
+	 * @return the shared messages, these must not be modified
+	 */
+	public static SharedProperties getMessages(String i18nDatasource, Locale locale, String columnNameFilter, String[] columnValueFilter,
+		Collection<String> tableDataSources, long maxAge, MessagesLoader loader)
+	{
+		List<Object> key = Arrays.asList(i18nDatasource, locale, columnNameFilter, columnValueFilter == null ? null : Arrays.asList(columnValueFilter));
+		Holder holder = store.computeIfAbsent(key, k -> new Holder());
+		return holder.get(() -> {
+			SharedProperties messages = new SharedProperties(System.currentTimeMillis(), maxAge, tableDataSources, columnNameFilter, columnValueFilter);
+			if (!loader.load(messages))
+			{
+				return null;
+			}
+			if (Debug.tracing())
+			{
+				Debug.trace("Loaded " + messages.size() + " shared i18n messages for " + key); //$NON-NLS-1$ //$NON-NLS-2$
+			}
+			return messages;
+		});
+	}
+
+	/**
+	 * Remove all shared messages, they will be loaded again when used.
+	 */
+	public static void clear()
+	{
+		store.clear();
+	}
+
+	/**
+	 * The data of a table was changed, shared messages that were loaded from it are loaded again the next time they are used.
+	 */
+	public static void invalidate(String dataSource)
+	{
+		if (dataSource != null && !store.isEmpty())
+		{
+			changedTimes.put(dataSource, Long.valueOf(System.currentTimeMillis()));
+		}
+	}
+
+	@FunctionalInterface
+	public interface MessagesLoader
+	{
+		boolean load(Properties messages);
+	}
+
+	/**
+	 * Shared messages, not to be modified after they are loaded.
+	 */
+	@SuppressWarnings("serial")
+	public static final class SharedProperties extends Properties
+	{
+		private final long loadedTime;
+		private final long maxAge;
+		private final Collection<String> tableDataSources;
+		private final String columnNameFilter;
+		private final String[] columnValueFilter;
+
+		private SharedProperties(long loadedTime, long maxAge, Collection<String> tableDataSources, String columnNameFilter, String[] columnValueFilter)
+		{
+			this.loadedTime = loadedTime;
+			this.maxAge = maxAge;
+			this.tableDataSources = tableDataSources == null ? Collections.<String> emptyList() : tableDataSources;
+			this.columnNameFilter = columnNameFilter;
+			this.columnValueFilter = columnValueFilter;
+		}
+
+		public String getColumnNameFilter()
+		{
+			return columnNameFilter;
+		}
+
+		public String[] getColumnValueFilter()
+		{
+			return columnValueFilter;
+		}
+
+		/**
+		 * @return true when the i18n messages were changed after these were loaded or the messages are too old
+		 */
+		public boolean isStale()
+		{
+			if (Messages.changedTime >= loadedTime || (maxAge > 0 && System.currentTimeMillis() - loadedTime > maxAge))
+			{
+				return true;
+			}
+			for (String dataSource : tableDataSources)
+			{
+				Long changedTime = changedTimes.get(dataSource);
+				if (changedTime != null && changedTime.longValue() >= loadedTime)
+				{
+					return true;
+				}
+			}
+			return false;
+		}
+	}
+
+	/**
+	 * Client messages that use the shared messages as defaults, messages that are set on the overlay are only visible to the client.
+	 * Removing a message from the overlay hides the shared message for the client.
+	 */
+	@SuppressWarnings("serial")
+	public static final class MessagesOverlay extends Properties
+	{
+		// marks a removed message, so the shared message is not used
+		private static final Object REMOVED = new Object();
+
+		public MessagesOverlay(SharedProperties shared)
+		{
+			super(shared);
+		}
+
+		@Override
+		public synchronized Object get(Object key)
+		{
+			Object value = super.get(key);
+			return value == REMOVED ? null : value;
+		}
+
+		@Override
+		public String getProperty(String key)
+		{
+			return super.get(key) == REMOVED ? null : super.getProperty(key);
+		}
+
+		@Override
+		public synchronized Object remove(Object key)
+		{
+			Object value = super.put(key, REMOVED);
+			return value == REMOVED ? null : value;
+		}
+
+		@Override
+		public Enumeration< ? > propertyNames()
+		{
+			return Collections.enumeration(stringPropertyNames());
+		}
+
+		@Override
+		public synchronized Set<String> stringPropertyNames()
+		{
+			Set<String> names = new HashSet<String>(getShared().stringPropertyNames());
+			for (Map.Entry<Object, Object> entry : entrySet())
+			{
+				if (entry.getKey() instanceof String)
+				{
+					if (entry.getValue() == REMOVED)
+					{
+						names.remove(entry.getKey());
+					}
+					else if (entry.getValue() instanceof String)
+					{
+						names.add((String)entry.getKey());
+					}
+				}
+			}
+			return names;
+		}
+
+		public SharedProperties getShared()
+		{
+			return (SharedProperties)defaults;
+		}
+
+		public boolean isStale()
+		{
+			return getShared().isStale();
+		}
+
+		/**
+		 * Create an overlay on newer shared messages that keeps the messages that were set or removed on this overlay.
+		 */
+		public MessagesOverlay copyOnto(SharedProperties shared)
+		{
+			MessagesOverlay copy = new MessagesOverlay(shared);
+			copy.putAll(this);
+			return copy;
+		}
+	}
+
+	private static class Holder
+	{
+		private volatile SharedProperties messages;
+
+		SharedProperties get(Supplier<SharedProperties> loader)
+		{
+			SharedProperties current = messages;
+			if (current != null && !current.isStale())
+			{
+				return current;
+			}
+			synchronized (this)
+			{
+				// one client loads, the others wait for the result
+				current = messages;
+				if (current == null || current.isStale())
+				{
+					SharedProperties loaded = loader.get();
+					if (loaded != null)
+					{
+						messages = current = loaded;
+					}
+				}
+				return current;
+			}
+		}
+	}
+}
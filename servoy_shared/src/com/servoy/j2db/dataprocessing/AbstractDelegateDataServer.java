@@ -296,6 +296,13 @@ public abstract class AbstractDelegateDataServer implements IDataServer, IDelega
 		return dataserver.performCustomQuery(client_id, server_name, driverTableName, transaction_id, sqlSelect, filters, startRow, rowsToRetrieve);
 	}
 
+	@Override
+	public IDataSet performCursorQuery(String client_id, String server_name, String transaction_id, QuerySelect pageSelect, ArrayList<TableFilter> filters,
+		int startRow, int pageSize) throws ServoyException, RemoteException
+	{
+		return dataserver.performCursorQuery(client_id, server_name, transaction_id, pageSelect, filters, startRow, pageSize);
+	}
+
 	/**
 	 * @param client_id
 	 * @param server_name
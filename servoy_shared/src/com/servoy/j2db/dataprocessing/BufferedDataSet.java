@@ -451,7 +451,7 @@ public class BufferedDataSet implements ISerializableDataSet
 		return sb.toString();
 	}
 
-	private static class ArrayComparator implements Comparator<Object[]>
+	static class ArrayComparator implements Comparator<Object[]>
 	{
 		private final int column;
 		private final boolean acending;
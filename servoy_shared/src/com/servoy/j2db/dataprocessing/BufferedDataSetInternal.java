@@ -44,6 +44,10 @@ public class BufferedDataSetInternal
 		{
 			return ((BufferedDataSet)set).getColumnTypeInfo();
 		}
+		if (set instanceof ColumnarDataSet)
+		{
+			return ((ColumnarDataSet)set).getColumnTypeInfo();
+		}
 		if (set instanceof DataSetWithIndex)
 		{
 			return ((DataSetWithIndex)set).getColumnTypeInfo();
@@ -0,0 +1,910 @@
+/*
+ This file belongs to the Servoy development and deployment environment, Copyright (C) 1997-2021 Servoy BV
+
+ This program is free software; you can redistribute it and/or modify it under
+ the terms of the GNU Affero General Public License as published by the Free
+ Software Foundation; either version 3 of the License, or (at your option) any
+ later version.
+
+ This program is distributed in the hope that it will be useful, but WITHOUT
+ ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ FOR A PARTICULAR PURPOSE. See the GNU Affero General Public License for more details.
+
+ You should have received a copy of the GNU Affero General Public License along
+ with this program; if not, see http://www.gnu.org/licenses or write to the Free
+ Software Foundation,Inc., 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301
+*/
+
+package com.servoy.j2db.dataprocessing;
+
+import java.io.Serializable;
+import java.sql.Time;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.servoy.j2db.query.ColumnType;
+import com.servoy.j2db.util.Utils;
+
+/**
+ * Column oriented implementation of the {@link IDataSet} interface, for large results that are kept in memory (reports, exports).
+ * <p>
+ * Values are stored per column: Integer, Long and Double columns in primitive arrays, dates as long millis and strings dictionary encoded,
+ * nulls are kept in a bitmap. A column switches to plain object storage when it gets a value that does not fit its storage.
+ * <p>
+ * Rows are created on every {@link #getRow(int)} call, changes to a returned row must be stored with {@link #setRow(int, Object[])}.
+ * Use {@link #getValue(int, int)} to read single values without creating the row.
+ * <p>
+ * Like {@link BufferedDataSet}, getting or removing a row outside the set is ignored and setting or inserting a row beyond the end extends the set with null rows.
+ *
+ * @author agent
+ * @since 2021.06
+ */
+public class ColumnarDataSet implements ISerializableDataSet
+{
+	public static final long serialVersionUID = 3285467185349263785L;
+
+	private static final int MAX_DICTIONARY_SIZE = 1 << 16;
+
+	private String[] columnNames;
+	private ColumnType[] columnTypes;
+	private boolean hadMore;
+	private int columnCount;
+	private int rowCount;
+	private int capacity;
+	private ColumnStore[] columns; // null for columns with only null values
+	private BitSet nullRows; // rows that were stored as null (not a row with null values), null when there are none
+
+	public ColumnarDataSet()
+	{
+		this.columns = new ColumnStore[0];
+	}
+
+	public ColumnarDataSet(String[] columnNames, int[] columnTypes)
+	{
+		this.columnNames = columnNames;
+		setColumnTypes(columnTypes);
+		this.columnCount = columnNames == null ? 0 : columnNames.length;
+		this.columns = new ColumnStore[columnCount];
+	}
+
+	/**
+	 * Create a columnar copy of the data set.
+	 */
+	public ColumnarDataSet(IDataSet set)
+	{
+		this(set, false);
+	}
+
+	/**
+	 * Create a columnar set from the rows of a set that is not used anymore.
+	 * Every row is removed from the source set after it is copied, so the memory of the rows can be reclaimed while the rest is converted.
+	 */
+	public static ColumnarDataSet convert(IDataSet set)
+	{
+		return new ColumnarDataSet(set, true);
+	}
+
+	private ColumnarDataSet(IDataSet set, boolean releaseRows)
+	{
+		this.columnNames = set.getColumnNames() == null ? null : set.getColumnNames().clone();
+		this.columnTypes = BufferedDataSetInternal.getColumnTypeInfo(set);
+		if (this.columnTypes == null && set.getColumnTypes() != null)
+		{
+			setColumnTypes(set.getColumnTypes());
+		}
+		this.hadMore = set.hadMoreRows();
+		this.columnCount = set.getColumnCount();
+		this.columns = new ColumnStore[columnCount];
+		int count = set.getRowCount();
+		ensureCapacity(count);
+		for (int r = 0; r < count; r++)
+		{
+			addRow(set.getRow(r));
+			if (releaseRows) set.setRow(r, null);
+		}
+		if (releaseRows) set.removeRow(-1);
+		dropLookups();
+	}
+
+	@Override
+	public IDataSet clone()
+	{
+		return new ColumnarDataSet(this);
+	}
+
+	public int getRowCount()
+	{
+		return rowCount;
+	}
+
+	public Object[] getRow(int row)
+	{
+		if (row < 0 || row >= rowCount || isNullRow(row))
+		{
+			return null;
+		}
+		Object[] array = new Object[columnCount];
+		for (int c = 0; c < columnCount; c++)
+		{
+			ColumnStore store = columns[c];
+			array[c] = store == null ? null : store.get(row);
+		}
+		return array;
+	}
+
+	/**
+	 * Get a single value without creating the row.
+	 *
+	 * @return the value, null when the row or column is not in the set
+	 */
+	public Object getValue(int row, int column)
+	{
+		if (row < 0 || row >= rowCount || column < 0 || column >= columnCount)
+		{
+			return null;
+		}
+		return getCell(column, row);
+	}
+
+	public void removeRow(int index)
+	{
+		if (index == -1)
+		{
+			rowCount = 0;
+			capacity = 0;
+			columns = new ColumnStore[columnCount];
+			nullRows = null;
+		}
+		else if (index >= 0 && index < rowCount)
+		{
+			for (ColumnStore store : columns)
+			{
+				if (store != null)
+				{
+					store.move(index + 1, index, rowCount - 1 - index);
+					store.set(rowCount - 1, null);
+				}
+			}
+			if (nullRows != null)
+			{
+				for (int r = index; r < rowCount - 1; r++)
+				{
+					nullRows.set(r, nullRows.get(r + 1));
+				}
+				nullRows.clear(rowCount - 1);
+			}
+			rowCount--;
+		}
+	}
+
+	public void setRow(int index, Object[] array)
+	{
+		if (index < 0)
+		{
+			throw new IndexOutOfBoundsException("Row " + index + " of " + rowCount); //$NON-NLS-1$ //$NON-NLS-2$
+		}
+		if (index >= rowCount)
+		{
+			extend(index + 1);
+		}
+		storeRow(index, array);
+	}
+
+	public void addRow(Object[] array)
+	{
+		ensureCapacity(rowCount + 1);
+		storeRow(rowCount, array);
+		rowCount++;
+	}
+
+	public void addRow(int index, Object[] array)
+	{
+		if (index < 0)
+		{
+			throw new IndexOutOfBoundsException("Row " + index + " of " + rowCount); //$NON-NLS-1$ //$NON-NLS-2$
+		}
+		if (index >= rowCount)
+		{
+			extend(index);
+			addRow(array);
+			return;
+		}
+		ensureCapacity(rowCount + 1);
+		for (ColumnStore store : columns)
+		{
+			if (store != null)
+			{
+				store.move(index, index + 1, rowCount - index);
+			}
+		}
+		if (nullRows != null)
+		{
+			for (int r = rowCount; r > index; r--)
+			{
+				nullRows.set(r, nullRows.get(r - 1));
+			}
+		}
+		storeRow(index, array);
+		rowCount++;
+	}
+
+	/**
+	 * Add null rows up to the new row count.
+	 */
+	private void extend(int newRowCount)
+	{
+		if (newRowCount <= rowCount) return;
+		ensureCapacity(newRowCount);
+		if (nullRows == null) nullRows = new BitSet(newRowCount);
+		nullRows.set(rowCount, newRowCount);
+		rowCount = newRowCount;
+	}
+
+	private boolean isNullRow(int row)
+	{
+		return nullRows != null && nullRows.get(row);
+	}
+
+	private void storeRow(int row, Object[] array)
+	{
+		if (array == null)
+		{
+			if (nullRows == null) nullRows = new BitSet();
+			nullRows.set(row);
+		}
+		else if (nullRows != null)
+		{
+			nullRows.clear(row);
+		}
+		if (array != null && array.length > columnCount && columnNames == null)
+		{
+			// no column names, the width is determined by the rows
+			columns = Arrays.copyOf(columns, array.length);
+			columnCount = array.length;
+		}
+		for (int c = 0; c < columnCount; c++)
+		{
+			setCell(c, row, array != null && c < array.length ? array[c] : null);
+		}
+	}
+
+	private Object getCell(int column, int row)
+	{
+		ColumnStore store = columns[column];
+		return store == null ? null : store.get(row);
+	}
+
+	private void setCell(int column, int row, Object value)
+	{
+		ColumnStore store = columns[column];
+		if (store == null)
+		{
+			if (value == null) return;
+			store = columns[column] = createStore(value);
+			store.ensureCapacity(capacity);
+		}
+		if (!store.set(row, value))
+		{
+			// value does not fit in the column storage, switch to objects
+			ColumnStore objects = new ObjectStore();
+			objects.ensureCapacity(capacity);
+			for (int r = 0; r < capacity; r++) // not just rowCount, an insert may have moved a row beyond it
+			{
+				objects.set(r, store.get(r));
+			}
+			objects.set(row, value);
+			columns[column] = objects;
+		}
+	}
+
+	private void ensureCapacity(int needed)
+	{
+		if (needed > capacity)
+		{
+			capacity = Math.max(needed, Math.max(16, capacity + (capacity >> 1)));
+			for (ColumnStore store : columns)
+			{
+				if (store != null) store.ensureCapacity(capacity);
+			}
+		}
+	}
+
+	private static ColumnStore createStore(Object value)
+	{
+		Class< ? > cls = value.getClass();
+		if (cls == Integer.class) return new IntStore();
+		if (cls == Long.class) return new LongStore();
+		if (cls == Double.class) return new DoubleStore();
+		if (cls == String.class) return new StringStore();
+		if (cls == Timestamp.class || cls == Date.class || cls == java.sql.Date.class || cls == Time.class) return new DateStore(cls);
+		return new ObjectStore();
+	}
+
+	public List<Object[]> getRows()
+	{
+		List<Object[]> rows = new ArrayList<Object[]>(rowCount);
+		for (int r = 0; r < rowCount; r++)
+		{
+			rows.add(getRow(r));
+		}
+		return rows;
+	}
+
+	/*
+	 * Setter for json deserialisation
+	 */
+	public void setRows(List<Object[]> rows)
+	{
+		removeRow(-1);
+		ensureCapacity(rows.size());
+		for (Object[] row : rows)
+		{
+			addRow(row);
+		}
+		dropLookups();
+	}
+
+	/**
+	 * The string dictionaries only need their lookup map while values are added, drop them after the set is built.
+	 */
+	private void dropLookups()
+	{
+		for (ColumnStore store : columns)
+		{
+			if (store instanceof StringStore) ((StringStore)store).lookup = null;
+		}
+	}
+
+	public int getColumnCount()
+	{
+		return columnCount;
+	}
+
+	public String[] getColumnNames()
+	{
+		if (columnNames == null)
+		{
+			columnNames = new String[columnCount];
+			for (int i = 0; i < columnNames.length; i++)
+			{
+				columnNames[i] = "column" + i; //$NON-NLS-1$
+			}
+		}
+		return columnNames;
+	}
+
+	/*
+	 * Setter for json deserialisation
+	 */
+	public void setColumnNames(String[] columnNames)
+	{
+		this.columnNames = columnNames;
+		if (columnNames != null && columnNames.length != columnCount)
+		{
+			columns = Arrays.copyOf(columns, columnNames.length);
+			columnCount = columnNames.length;
+		}
+	}
+
+	public int[] getColumnTypes()
+	{
+		if (columnTypes == null)
+		{
+			return null;
+		}
+		int[] tps = new int[columnTypes.length];
+		for (int i = 0; i < columnTypes.length; i++)
+		{
+			tps[i] = columnTypes[i].getSqlType();
+		}
+		return tps;
+	}
+
+	/* package scope so it does not end up in javadoc */
+	ColumnType[] getColumnTypeInfo()
+	{
+		return columnTypes == null ? null : columnTypes.clone();
+	}
+
+	/*
+	 * Setter for json deserialisation
+	 */
+	public void setColumnTypes(int[] intTypes)
+	{
+		this.columnTypes = ColumnType.getColumnTypes(intTypes);
+	}
+
+	public boolean hadMoreRows()
+	{
+		return hadMore;
+	}
+
+	public void clearHadMoreRows()
+	{
+		hadMore = false;
+	}
+
+	public void sort(int column, boolean ascending)
+	{
+		sort(new BufferedDataSet.ArrayComparator(column, ascending));
+	}
+
+	public void sort(Comparator<Object[]> rowComparator)
+	{
+		Object[][] array = new Object[rowCount][];
+		for (int r = 0; r < rowCount; r++)
+		{
+			array[r] = getRow(r);
+		}
+		Arrays.sort(array, rowComparator);
+		for (int r = 0; r < rowCount; r++)
+		{
+			storeRow(r, array[r]);
+		}
+	}
+
+	public boolean addColumn(int columnIndex, String columnName, int columnType)
+	{
+		int size = getColumnCount();
+		int index = (columnIndex == -1) ? size : columnIndex;
+		if (index < 0 || index > size || Utils.stringIsEmpty(columnName))
+		{
+			return false;
+		}
+
+		columnNames = Utils.arrayInsert(getColumnNames(), new String[] { columnName }, index, 1);
+
+		if (size == 0 || columnTypes != null)
+		{
+			columnTypes = Utils.arrayInsert(columnTypes, new ColumnType[] { ColumnType.getInstance(columnType, Integer.MAX_VALUE, 0) }, index, 1);
+		}
+
+		columns = Utils.arrayInsert(columns, new ColumnStore[] { null }, index, 1);
+		columnCount++;
+		return true;
+	}
+
+	public boolean removeColumn(int columnIndex)
+	{
+		int size = getColumnCount();
+		if (columnIndex < 0 || columnIndex >= size)
+		{
+			return false;
+		}
+
+		String[] oldColumns = getColumnNames();
+		String[] newColumns = new String[size - 1];
+		System.arraycopy(oldColumns, 0, newColumns, 0, columnIndex);
+		System.arraycopy(oldColumns, columnIndex + 1, newColumns, columnIndex, size - 1 - columnIndex);
+		columnNames = newColumns;
+
+		if (columnTypes != null)
+		{
+			if (size == 1)
+			{
+				columnTypes = null;
+			}
+			else
+			{
+				ColumnType[] newColumnTypes = new ColumnType[size - 1];
+				System.arraycopy(columnTypes, 0, newColumnTypes, 0, columnIndex);
+				System.arraycopy(columnTypes, columnIndex + 1, newColumnTypes, columnIndex, size - 1 - columnIndex);
+				columnTypes = newColumnTypes;
+			}
+		}
+
+		ColumnStore[] newStores = new ColumnStore[size - 1];
+		System.arraycopy(columns, 0, newStores, 0, columnIndex);
+		System.arraycopy(columns, columnIndex + 1, newStores, columnIndex, size - 1 - columnIndex);
+		columns = newStores;
+		columnCount--;
+		return true;
+	}
+
+	public void setColumnName(int columnIndex, String columnName)
+	{
+		if (columnIndex >= 0 && columnIndex < getColumnCount() && !Utils.stringIsEmpty(columnName))
+		{
+			getColumnNames()[columnIndex] = columnName;
+		}
+	}
+
+	@Override
+	public String toString()
+	{
+		StringBuilder sb = new StringBuilder();
+		sb.append("ColumnarDataSet "); //$NON-NLS-1$
+		if (columnNames != null && columnNames.length > 0)
+		{
+			sb.append('{');
+			sb.append("Columnnames "); //$NON-NLS-1$
+			sb.append(Arrays.toString(columnNames));
+			sb.append("} "); //$NON-NLS-1$
+		}
+		int count = rowCount > 100 ? 100 : rowCount;
+		for (int i = 0; i < count; i++)
+		{
+			sb.append("\nrow_"); //$NON-NLS-1$
+			sb.append(i + 1);
+			sb.append('=');
+			sb.append(Arrays.toString(getRow(i)));
+			sb.append(' ');
+		}
+		return sb.toString();
+	}
+
+	/**
+	 * Storage of the values of one column, nulls are kept in a bitmap.
+	 */
+	private abstract static class ColumnStore implements Serializable
+	{
+		private long[] present = new long[0]; // bit is set for non-null values
+
+		abstract int capacity();
+
+		abstract void grow(int newCapacity);
+
+		abstract Object getValue(int row);
+
+		/**
+		 * @return false when the value cannot be stored in this column
+		 */
+		abstract boolean setValue(int row, Object value);
+
+		/**
+		 * Copy the values like {@link System#arraycopy(Object, int, Object, int, int)} within this column.
+		 */
+		abstract void moveValues(int from, int to, int length);
+
+		void clearValue(int row)
+		{
+		}
+
+		/**
+		 * Move a range of rows including their null state, the ranges may overlap.
+		 */
+		final void move(int from, int to, int length)
+		{
+			if (length <= 0) return;
+			moveValues(from, to, length);
+			if (from < to)
+			{
+				for (int i = length - 1; i >= 0; i--)
+				{
+					movePresent(from + i, to + i);
+				}
+			}
+			else
+			{
+				for (int i = 0; i < length; i++)
+				{
+					movePresent(from + i, to + i);
+				}
+			}
+		}
+
+		private void movePresent(int from, int to)
+		{
+			if ((present[from >>> 6] & (1L << from)) != 0)
+			{
+				present[to >>> 6] |= (1L << to);
+			}
+			else
+			{
+				present[to >>> 6] &= ~(1L << to);
+			}
+		}
+
+		final Object get(int row)
+		{
+			return (present[row >>> 6] & (1L << row)) != 0 ? getValue(row) : null;
+		}
+
+		final boolean set(int row, Object value)
+		{
+			if (value == null)
+			{
+				present[row >>> 6] &= ~(1L << row);
+				clearValue(row);
+				return true;
+			}
+			if (!setValue(row, value))
+			{
+				return false;
+			}
+			present[row >>> 6] |= (1L << row);
+			return true;
+		}
+
+		final void ensureCapacity(int needed)
+		{
+			if (needed > capacity())
+			{
+				grow(needed);
+				present = Arrays.copyOf(present, (needed + 63) >>> 6);
+			}
+		}
+	}
+
+	private static class IntStore extends ColumnStore
+	{
+		private int[] values = new int[0];
+
+		@Override
+		int capacity()
+		{
+			return values.length;
+		}
+
+		@Override
+		void grow(int newCapacity)
+		{
+			values = Arrays.copyOf(values, newCapacity);
+		}
+
+		@Override
+		void moveValues(int from, int to, int length)
+		{
+			System.arraycopy(values, from, values, to, length);
+		}
+
+		@Override
+		Object getValue(int row)
+		{
+			return Integer.valueOf(values[row]);
+		}
+
+		@Override
+		boolean setValue(int row, Object value)
+		{
+			if (value.getClass() != Integer.class) return false;
+			values[row] = ((Integer)value).intValue();
+			return true;
+		}
+	}
+
+	private static class LongStore extends ColumnStore
+	{
+		private long[] values = new long[0];
+
+		@Override
+		int capacity()
+		{
+			return values.length;
+		}
+
+		@Override
+		void grow(int newCapacity)
+		{
+			values = Arrays.copyOf(values, newCapacity);
+		}
+
+		@Override
+		void moveValues(int from, int to, int length)
+		{
+			System.arraycopy(values, from, values, to, length);
+		}
+
+		@Override
+		Object getValue(int row)
+		{
+			return Long.valueOf(values[row]);
+		}
+
+		@Override
+		boolean setValue(int row, Object value)
+		{
+			if (value.getClass() != Long.class) return false;
+			values[row] = ((Long)value).longValue();
+			return true;
+		}
+	}
+
+	private static class DoubleStore extends ColumnStore
+	{
+		private double[] values = new double[0];
+
+		@Override
+		int capacity()
+		{
+			return values.length;
+		}
+
+		@Override
+		void grow(int newCapacity)
+		{
+			values = Arrays.copyOf(values, newCapacity);
+		}
+
+		@Override
+		void moveValues(int from, int to, int length)
+		{
+			System.arraycopy(values, from, values, to, length);
+		}
+
+		@Override
+		Object getValue(int row)
+		{
+			return Double.valueOf(values[row]);
+		}
+
+		@Override
+		boolean setValue(int row, Object value)
+		{
+			if (value.getClass() != Double.class) return false;
+			values[row] = ((Double)value).doubleValue();
+			return true;
+		}
+	}
+
+	/**
+	 * Dates of one class as millis, for timestamps the sub-millisecond nanos are only kept when there are any.
+	 */
+	private static class DateStore extends ColumnStore
+	{
+		private final Class< ? > dateClass;
+		private long[] millis = new long[0];
+		private int[] nanos;
+
+		DateStore(Class< ? > dateClass)
+		{
+			this.dateClass = dateClass;
+		}
+
+		@Override
+		int capacity()
+		{
+			return millis.length;
+		}
+
+		@Override
+		void grow(int newCapacity)
+		{
+			millis = Arrays.copyOf(millis, newCapacity);
+			if (nanos != null) nanos = Arrays.copyOf(nanos, newCapacity);
+		}
+
+		@Override
+		void moveValues(int from, int to, int length)
+		{
+			System.arraycopy(millis, from, millis, to, length);
+			if (nanos != null) System.arraycopy(nanos, from, nanos, to, length);
+		}
+
+		@Override
+		Object getValue(int row)
+		{
+			long ms = millis[row];
+			if (dateClass == Timestamp.class)
+			{
+				Timestamp ts = new Timestamp(ms);
+				if (nanos != null && nanos[row] != 0) ts.setNanos(ts.getNanos() + nanos[row]);
+				return ts;
+			}
+			if (dateClass == java.sql.Date.class) return new java.sql.Date(ms);
+			if (dateClass == Time.class) return new Time(ms);
+			return new Date(ms);
+		}
+
+		@Override
+		boolean setValue(int row, Object value)
+		{
+			if (value.getClass() != dateClass) return false;
+			millis[row] = ((Date)value).getTime();
+			if (value instanceof Timestamp)
+			{
+				int subMillis = ((Timestamp)value).getNanos() % 1000000;
+				if (subMillis != 0 && nanos == null) nanos = new int[millis.length];
+				if (nanos != null) nanos[row] = subMillis;
+			}
+			return true;
+		}
+	}
+
+	/**
+	 * Dictionary encoded strings, columns with too many different values are switched to object storage.
+	 */
+	private static class StringStore extends ColumnStore
+	{
+		private int[] codes = new int[0];
+		private final List<String> dictionary = new ArrayList<String>();
+		private transient Map<String, Integer> lookup;
+
+		@Override
+		int capacity()
+		{
+			return codes.length;
+		}
+
+		@Override
+		void grow(int newCapacity)
+		{
+			codes = Arrays.copyOf(codes, newCapacity);
+		}
+
+		@Override
+		void moveValues(int from, int to, int length)
+		{
+			System.arraycopy(codes, from, codes, to, length);
+		}
+
+		@Override
+		Object getValue(int row)
+		{
+			return dictionary.get(codes[row]);
+		}
+
+		@Override
+		boolean setValue(int row, Object value)
+		{
+			if (value.getClass() != String.class) return false;
+			if (lookup == null)
+			{
+				lookup = new HashMap<String, Integer>(Math.max(16, dictionary.size() * 2));
+				for (int i = 0; i < dictionary.size(); i++)
+				{
+					lookup.put(dictionary.get(i), Integer.valueOf(i));
+				}
+			}
+			Integer code = lookup.get(value);
+			if (code == null)
+			{
+				if (dictionary.size() >= MAX_DICTIONARY_SIZE) return false;
+				code = Integer.valueOf(dictionary.size());
+				dictionary.add((String)value);
+				lookup.put((String)value, code);
+			}
+			codes[row] = code.intValue();
+			return true;
+		}
+	}
+
+	private static class ObjectStore extends ColumnStore
+	{
+		private Object[] values = new Object[0];
+
+		@Override
+		int capacity()
+		{
+			return values.length;
+		}
+
+		@Override
+		void grow(int newCapacity)
+		{
+			values = Arrays.copyOf(values, newCapacity);
+		}
+
+		@Override
+		void moveValues(int from, int to, int length)
+		{
+			System.arraycopy(values, from, values, to, length);
+		}
+
+		@Override
+		Object getValue(int row)
+		{
+			return values[row];
+		}
+
+		@Override
+		boolean setValue(int row, Object value)
+		{
+			values[row] = value;
+			return true;
+		}
+
+		@Override
+		void clearValue(int row)
+		{
+			values[row] = null;
+		}
+	}
+}
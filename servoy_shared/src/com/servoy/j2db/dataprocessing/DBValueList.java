@@ -27,6 +27,7 @@ import com.servoy.j2db.FlattenedSolution;
 import com.servoy.j2db.IApplication;
 import com.servoy.j2db.IServiceProvider;
 import com.servoy.j2db.persistence.Column;
+import com.servoy.j2db.persistence.ColumnInfo;
 import com.servoy.j2db.persistence.IDataProvider;
 import com.servoy.j2db.persistence.IRepository;
 import com.servoy.j2db.persistence.ITable;
@@ -39,6 +40,7 @@ import com.servoy.j2db.query.IQuerySort;
 import com.servoy.j2db.query.QuerySelect;
 import com.servoy.j2db.query.QuerySort;
 import com.servoy.j2db.query.QueryTable;
+import com.servoy.j2db.util.DataSourceUtils;
 import com.servoy.j2db.util.Debug;
 import com.servoy.j2db.util.SafeArrayList;
 import com.servoy.j2db.util.Settings;
@@ -225,37 +227,62 @@ public class DBValueList extends CustomValueList implements ITableChangeListener
 	{
 		try
 		{
-			if (table == null) return;
+			if (table == null || isLoaded) return;
 
 			FoundSetManager foundSetManager = ((FoundSetManager)application.getFoundSetManager());
-			List<SortColumn> sortColumns = foundSetManager.getSortColumns(table, valueList.getSortOptions());
-			FoundSet fs = (FoundSet)foundSetManager.getNewFoundSet(table, null, sortColumns);
-			if (fs == null)
+
+			int showValues = valueList.getShowDataProviders();
+			int returnValues = valueList.getReturnDataProviders();
+			int total = (showValues | returnValues);
+
+			boolean singleColumn = (total & 7) == 1 || (total & 7) == 2 || (total & 7) == 4;
+
+			// check the shared result cache before loading the foundset, a cached result needs no query at all;
+			// the raw query result is not converted, so columns with a converter are loaded via the records
+			IDataSet cachedSet = null;
+			if (singleColumn && !containsCalculation && ValueListResultCache.isEnabled() && !hasColumnConverter(total))
 			{
-				return;
+				QuerySelect creationSQLParts = createValuelistQuery(application, valueList, table);
+				if (creationSQLParts != null && creationSQLParts.isDistinct())
+				{
+					ArrayList<TableFilter> tableFilterParams = getValuelistTableFilterParams(foundSetManager, creationSQLParts);
+					String transaction_id = foundSetManager.getTransactionID(table.getServerName());
+					SQLStatement trackingInfo = getTrackingInfo(foundSetManager, creationSQLParts);
+					if (ValueListResultCache.isCacheable(table, transaction_id, trackingInfo, tableFilterParams))
+					{
+						cachedSet = ValueListResultCache.getResult(createResultCacheKey(total, tableFilterParams),
+							() -> application.getDataServer().performQuery(application.getClientID(), table.getServerName(), transaction_id, creationSQLParts,
+								null, tableFilterParams, !creationSQLParts.isUnique(), 0, maxValuelistRows, IDataServer.VALUELIST_QUERY, null));
+					}
+				}
 			}
 
-			if (valueList.getUseTableFilter())//apply name as filter on column valuelist_name
+			FoundSet fs = null;
+			if (cachedSet == null)
 			{
-				fs.addFilterParam("valueList.nameColumn", NAME_COLUMN, "=", valueList.getName()); //$NON-NLS-1$
-			}
+				List<SortColumn> sortColumns = foundSetManager.getSortColumns(table, valueList.getSortOptions());
+				fs = (FoundSet)foundSetManager.getNewFoundSet(table, null, sortColumns);
+				if (fs == null)
+				{
+					return;
+				}
 
-			fs.browseAllInternal();//we do nothing with related foundsets so don't touch these
+				if (valueList.getUseTableFilter())//apply name as filter on column valuelist_name
+				{
+					fs.addFilterParam("valueList.nameColumn", NAME_COLUMN, "=", valueList.getName()); //$NON-NLS-1$
+				}
+
+				fs.browseAllInternal();//we do nothing with related foundsets so don't touch these
+			}
 
 			// browse all could trigger also a fill
 			if (isLoaded) return;
 			isLoaded = true;
 
-			int showValues = valueList.getShowDataProviders();
-			int returnValues = valueList.getReturnDataProviders();
-			int total = (showValues | returnValues);
-
 			//more than one value -> concat
 			boolean concatShowValues = willConcat(showValues);
 			boolean concatReturnValues = willConcat(returnValues);
 
-			boolean singleColumn = (total & 7) == 1 || (total & 7) == 2 || (total & 7) == 4;
-
 			try
 			{
 				startBundlingEvents();
@@ -267,33 +294,23 @@ public class DBValueList extends CustomValueList implements ITableChangeListener
 				}
 
 				QuerySelect creationSQLParts = null;
-				if (singleColumn && fs.getSize() >= ((FoundSetManager)application.getFoundSetManager()).pkChunkSize && !containsCalculation)
+				if (cachedSet == null && singleColumn && fs.getSize() >= ((FoundSetManager)application.getFoundSetManager()).pkChunkSize &&
+					!containsCalculation)
 				{
 					creationSQLParts = createValuelistQuery(application, valueList, table);
 				}
-				if (creationSQLParts != null && creationSQLParts.isDistinct() &&
-					fs.getSize() >= ((FoundSetManager)application.getFoundSetManager()).pkChunkSize && !containsCalculation)
+				if (cachedSet != null || (creationSQLParts != null && creationSQLParts.isDistinct() &&
+					fs.getSize() >= ((FoundSetManager)application.getFoundSetManager()).pkChunkSize && !containsCalculation))
 				{
-					ArrayList<TableFilter> tableFilterParams = foundSetManager.getTableFilterParams(table.getServerName(), creationSQLParts);
-					if (valueList.getUseTableFilter()) //apply name as filter on column valuelist_name in creationSQLParts
+					IDataSet set = cachedSet;
+					if (set == null)
 					{
-						if (tableFilterParams == null)
-						{
-							tableFilterParams = new ArrayList<TableFilter>();
-						}
-						tableFilterParams.add(new TableFilter("dbValueList.nameFilter", table.getServerName(), table.getName(), table.getSQLName(), NAME_COLUMN, //$NON-NLS-1$
-							IBaseSQLCondition.EQUALS_OPERATOR, valueList.getName()));
+						ArrayList<TableFilter> tableFilterParams = getValuelistTableFilterParams(foundSetManager, creationSQLParts);
+						String transaction_id = foundSetManager.getTransactionID(table.getServerName());
+						SQLStatement trackingInfo = getTrackingInfo(foundSetManager, creationSQLParts);
+						set = application.getDataServer().performQuery(application.getClientID(), table.getServerName(), transaction_id, creationSQLParts,
+							null, tableFilterParams, !creationSQLParts.isUnique(), 0, maxValuelistRows, IDataServer.VALUELIST_QUERY, trackingInfo);
 					}
-					String transaction_id = foundSetManager.getTransactionID(table.getServerName());
-					SQLStatement trackingInfo = null;
-					if (foundSetManager.getEditRecordList().hasAccess(table, IRepository.TRACKING_VIEWS))
-					{
-						trackingInfo = new SQLStatement(ISQLActionTypes.SELECT_ACTION, table.getServerName(), table.getName(), null, null);
-						trackingInfo.setTrackingData(creationSQLParts.getColumnNames(), new Object[][] { }, new Object[][] { }, application.getUserUID(),
-							foundSetManager.getTrackingInfo(), application.getClientID());
-					}
-					IDataSet set = application.getDataServer().performQuery(application.getClientID(), table.getServerName(), transaction_id, creationSQLParts,
-						null, tableFilterParams, !creationSQLParts.isUnique(), 0, maxValuelistRows, IDataServer.VALUELIST_QUERY, trackingInfo);
 					if (set.getRowCount() >= maxValuelistRows)
 					{
 						if (Utils.getAsBoolean(Settings.getInstance().getProperty("servoy.client.report.max.valuelist.items", "true")))
@@ -376,6 +393,72 @@ public class DBValueList extends CustomValueList implements ITableChangeListener
 		}
 	}
 
+	/**
+	 * Does one of the selected valuelist columns have a column converter.
+	 */
+	private boolean hasColumnConverter(int total)
+	{
+		String[] dataProviderIDs = { valueList.getDataProviderID1(), valueList.getDataProviderID2(), valueList.getDataProviderID3() };
+		for (int i = 0; i < dataProviderIDs.length; i++)
+		{
+			if ((total & (1 << i)) != 0)
+			{
+				Column column = table.getColumn(dataProviderIDs[i]);
+				ColumnInfo ci = column == null ? null : column.getColumnInfo();
+				if (ci != null && ci.getConverterName() != null && ci.getConverterName().trim().length() != 0)
+				{
+					return true;
+				}
+			}
+		}
+		return false;
+	}
+
+	private ArrayList<TableFilter> getValuelistTableFilterParams(FoundSetManager foundSetManager, QuerySelect creationSQLParts)
+	{
+		ArrayList<TableFilter> tableFilterParams = foundSetManager.getTableFilterParams(table.getServerName(), creationSQLParts);
+		if (valueList.getUseTableFilter()) //apply name as filter on column valuelist_name in creationSQLParts
+		{
+			if (tableFilterParams == null)
+			{
+				tableFilterParams = new ArrayList<TableFilter>();
+			}
+			tableFilterParams.add(new TableFilter("dbValueList.nameFilter", table.getServerName(), table.getName(), table.getSQLName(), NAME_COLUMN, //$NON-NLS-1$
+				IBaseSQLCondition.EQUALS_OPERATOR, valueList.getName()));
+		}
+		return tableFilterParams;
+	}
+
+	private SQLStatement getTrackingInfo(FoundSetManager foundSetManager, QuerySelect creationSQLParts)
+	{
+		if (foundSetManager.getEditRecordList().hasAccess(table, IRepository.TRACKING_VIEWS))
+		{
+			SQLStatement trackingInfo = new SQLStatement(ISQLActionTypes.SELECT_ACTION, table.getServerName(), table.getName(), null, null);
+			trackingInfo.setTrackingData(creationSQLParts.getColumnNames(), new Object[][] { }, new Object[][] { }, application.getUserUID(),
+				foundSetManager.getTrackingInfo(), application.getClientID());
+			return trackingInfo;
+		}
+		return null;
+	}
+
+	/**
+	 * Key for the shared result cache, describes the query created in {@link #createValuelistQuery(IServiceProvider, ValueList, ITable)}.
+	 * The query itself cannot be used, table aliases are different for each query instance.
+	 */
+	private ValueListResultCache.ValueListKey createResultCacheKey(int total, List<TableFilter> tableFilterParams)
+	{
+		return new ValueListResultCache.ValueListKey(DataSourceUtils.createDBTableDataSource(table.getServerName(), table.getName()), //
+			table.getSQLName(), //
+			Integer.valueOf(total & 7), //
+			(total & 1) != 0 ? valueList.getDataProviderID1() : null, //
+			(total & 2) != 0 ? valueList.getDataProviderID2() : null, //
+			(total & 4) != 0 ? valueList.getDataProviderID3() : null, //
+			Integer.valueOf(valueList.getShowDataProviders() & 7), // determines the default sort
+			valueList.getSortOptions(), //
+			tableFilterParams == null ? null : new ArrayList<>(tableFilterParams), //
+			Integer.valueOf(maxValuelistRows));
+	}
+
 	public static boolean willConcat(int selectedColumnValuesBitmask)
 	{
 		boolean concatShowValues = false;
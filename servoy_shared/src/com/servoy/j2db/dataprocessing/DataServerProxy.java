@@ -134,6 +134,13 @@ public class DataServerProxy implements IDataServer
 		return ds.performCustomQuery(client_id, getMappedServerName(serverName), driverTableName, transaction_id, sqlSelect, filters, startRow, rowsToRetrieve);
 	}
 
+	@Override
+	public IDataSet performCursorQuery(String client_id, String serverName, String transaction_id, QuerySelect pageSelect, ArrayList<TableFilter> filters,
+		int startRow, int pageSize) throws ServoyException, RemoteException
+	{
+		return ds.performCursorQuery(client_id, getMappedServerName(serverName), transaction_id, pageSelect, filters, startRow, pageSize);
+	}
+
 	public IDataSet performQuery(String client_id, String serverName, String transaction_id, ISQLSelect sqlSelect, ColumnType[] resultTypes,
 		ArrayList<TableFilter> filters,
 		boolean distinctInMemory, int startRow, int rowsToRetrieve, boolean updateIdleTimestamp) throws ServoyException, RemoteException
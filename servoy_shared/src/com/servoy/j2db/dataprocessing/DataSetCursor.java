@@ -0,0 +1,380 @@
+/*
+ This file belongs to the Servoy development and deployment environment, Copyright (C) 1997-2021 Servoy BV
+
+ This program is free software; you can redistribute it and/or modify it under
+ the terms of the GNU Affero General Public License as published by the Free
+ Software Foundation; either version 3 of the License, or (at your option) any
+ later version.
+
+ This program is distributed in the hope that it will be useful, but WITHOUT
+ ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ FOR A PARTICULAR PURPOSE. See the GNU Affero General Public License for more details.
+
+ You should have received a copy of the GNU Affero General Public License along
+ with this program; if not, see http://www.gnu.org/licenses or write to the Free
+ Software Foundation,Inc., 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301
+*/
+
+package com.servoy.j2db.dataprocessing;
+
+import static com.servoy.j2db.util.Utils.iterate;
+
+import java.rmi.RemoteException;
+import java.util.ArrayList;
+import java.util.List;
+
+import com.servoy.base.query.BaseQueryTable;
+import com.servoy.base.query.IBaseSQLCondition;
+import com.servoy.j2db.persistence.Column;
+import com.servoy.j2db.persistence.ITable;
+import com.servoy.j2db.persistence.RepositoryException;
+import com.servoy.j2db.query.AbstractBaseQuery;
+import com.servoy.j2db.query.AndCondition;
+import com.servoy.j2db.query.CompareCondition;
+import com.servoy.j2db.query.IQuerySelectValue;
+import com.servoy.j2db.query.IQuerySort;
+import com.servoy.j2db.query.ISQLCondition;
+import com.servoy.j2db.query.ISQLJoin;
+import com.servoy.j2db.query.ISQLTableJoin;
+import com.servoy.j2db.query.OrCondition;
+import com.servoy.j2db.query.QueryAggregate;
+import com.servoy.j2db.query.QueryColumn;
+import com.servoy.j2db.query.QuerySelect;
+import com.servoy.j2db.query.QuerySort;
+import com.servoy.j2db.util.Debug;
+import com.servoy.j2db.util.ServoyException;
+import com.servoy.j2db.util.TypePredicate;
+
+/**
+ * Cursor over the result of a query that reads the rows in pages of a fixed size, so only one page at a time has to be held in memory.
+ * <p>
+ * The ordering of the query has to be stable for the pages to be consistent, the primary key columns of the table are added to the sort as final tie-breaker.
+ * A join can repeat the rows of the table, so the primary key columns of the joined tables are added as well; queries with a join on something else
+ * than a table with a primary key (like a derived table) cannot be paged.
+ * For distinct queries all result columns are added to the sort and for grouped queries the group by columns.
+ * <p>
+ * When all sort columns are non-null columns of the table, the next page is selected with a condition on the sort values of the last row of the
+ * previous page (keyset paging), so the database does not have to skip the rows of the earlier pages. Other queries are paged with a start row.
+ * The pages are read with {@link IDataServer#performCursorQuery(String, String, String, QuerySelect, java.util.ArrayList, int, int)}.
+ * Rows that are inserted or deleted by others while the pages are read may be skipped or seen twice, just like with foundset chunk loading.
+ *
+ * @author agent
+ * @since 2021.06
+ */
+public class DataSetCursor
+{
+	public static final int DEFAULT_PAGE_SIZE = 1000;
+
+	private static final String CONDITION_KEYSET = SQLGenerator.SERVOY_CONDITION_PREFIX + 'K';
+
+	private final FoundSetManager fsm;
+	private final IDataServer dataServer;
+	private final String serverName;
+	private final QuerySelect select;
+	private final boolean includeFilters;
+	private final int pageSize;
+
+	// keyset paging, the sort values are selected at these column indexes, the columns from resultColumnCount on are not part of the query result
+	private final int[] keysetColumnIndexes;
+	private final int resultColumnCount;
+	private Object[] lastKeys;
+
+	private int rowCount = 0;
+	private boolean done = false;
+
+	/**
+	 * @param dataServer the data server that the pages are read from, normally the data server of the foundset manager
+	 * @throws RepositoryException when the select has a join that can repeat rows without a primary key to sort them on
+	 */
+	public DataSetCursor(FoundSetManager fsm, IDataServer dataServer, String serverName, QuerySelect select, boolean includeFilters, int pageSize)
+		throws RepositoryException
+	{
+		this.fsm = fsm;
+		this.dataServer = dataServer;
+		this.serverName = serverName;
+		this.select = createStableSelect(fsm, select);
+		this.includeFilters = includeFilters;
+		this.pageSize = pageSize > 0 ? pageSize : DEFAULT_PAGE_SIZE;
+		this.resultColumnCount = select.getColumns() == null ? 0 : select.getColumns().size();
+		this.keysetColumnIndexes = createKeysetColumns(fsm, this.select);
+	}
+
+	/**
+	 * Create a copy of the select with a sort that gives each row a fixed position.
+	 */
+	static QuerySelect createStableSelect(FoundSetManager fsm, QuerySelect select) throws RepositoryException
+	{
+		QuerySelect stableSelect = AbstractBaseQuery.deepClone(select);
+		List<IQuerySelectValue> tieBreakers;
+		if (stableSelect.isDistinct())
+		{
+			// distinct rows are unique over all result columns, the pk is not in the result and cannot be used in the sort
+			tieBreakers = stableSelect.getColumns();
+		}
+		else if (stableSelect.getGroupBy() != null && stableSelect.getGroupBy().size() > 0)
+		{
+			tieBreakers = stableSelect.getGroupBy();
+		}
+		else
+		{
+			tieBreakers = getPkColumns(fsm, stableSelect);
+		}
+		for (IQuerySelectValue column : iterate(tieBreakers))
+		{
+			if (!isSorted(stableSelect, column))
+			{
+				stableSelect.addSort(new QuerySort(column, true));
+			}
+		}
+		return stableSelect;
+	}
+
+	private static List<IQuerySelectValue> getPkColumns(FoundSetManager fsm, QuerySelect select) throws RepositoryException
+	{
+		List<IQuerySelectValue> pkColumns = new ArrayList<IQuerySelectValue>();
+		addPkColumns(fsm, select.getTable(), pkColumns);
+		// a 1:n join repeats the rows of the table, the pk of the joined table is needed to make the sort unique
+		for (ISQLJoin join : iterate(select.getJoins()))
+		{
+			if (!(join instanceof ISQLTableJoin) || !addPkColumns(fsm, ((ISQLTableJoin)join).getForeignTable(), pkColumns))
+			{
+				throw new RepositoryException("Cannot page over the rows of query with join '" + join.getName() + //$NON-NLS-1$
+					"', the joined rows have no primary key to give them a fixed position"); //$NON-NLS-1$
+			}
+		}
+		return pkColumns;
+	}
+
+	/**
+	 * @return false when the table has no primary key
+	 */
+	private static boolean addPkColumns(FoundSetManager fsm, BaseQueryTable queryTable, List<IQuerySelectValue> pkColumns)
+	{
+		ITable table = getTable(fsm, queryTable);
+		if (table == null || table.getRowIdentColumnsCount() == 0)
+		{
+			return false;
+		}
+		for (Column column : table.getRowIdentColumns())
+		{
+			pkColumns.add(column.queryColumn(queryTable));
+		}
+		return true;
+	}
+
+	private static ITable getTable(FoundSetManager fsm, BaseQueryTable queryTable)
+	{
+		try
+		{
+			return queryTable.getDataSource() == null ? null : fsm.getTable(queryTable.getDataSource());
+		}
+		catch (RepositoryException e)
+		{
+			Debug.error(e);
+			return null;
+		}
+	}
+
+	private static boolean isSorted(QuerySelect select, IQuerySelectValue column)
+	{
+		for (IQuerySort sort : iterate(select.getSorts()))
+		{
+			if (sort instanceof QuerySort && isSameColumn(((QuerySort)sort).getColumn(), column))
+			{
+				return true;
+			}
+		}
+		return false;
+	}
+
+	private static boolean isSameColumn(IQuerySelectValue value1, IQuerySelectValue value2)
+	{
+		if (value1 instanceof QueryColumn && value2 instanceof QueryColumn)
+		{
+			QueryColumn column1 = (QueryColumn)value1;
+			QueryColumn column2 = (QueryColumn)value2;
+			return column1.getTable() == column2.getTable() && column1.getName().equalsIgnoreCase(column2.getName());
+		}
+		return value1 != null && value1.equals(value2);
+	}
+
+	/**
+	 * Check if the select can be paged on the sort values and add the sort columns to the result when they are not selected.
+	 *
+	 * @return the indexes of the sort columns in the result, null when the select has to be paged with a start row
+	 */
+	private static int[] createKeysetColumns(FoundSetManager fsm, QuerySelect select)
+	{
+		List<IQuerySort> sorts = select.getSorts();
+		if (select.isDistinct() || (select.getGroupBy() != null && select.getGroupBy().size() > 0) || select.getColumns() == null || sorts == null ||
+			sorts.size() == 0 || AbstractBaseQuery.searchOne(select.getColumns(), new TypePredicate<>(QueryAggregate.class)).isPresent())
+		{
+			return null;
+		}
+		ITable table = getTable(fsm, select.getTable());
+		if (table == null)
+		{
+			return null;
+		}
+		for (IQuerySort sort : sorts)
+		{
+			// a condition on the sort values only works when they cannot be null, sorts on joined columns are paged with a start row
+			IQuerySelectValue sortColumn = sort instanceof QuerySort ? ((QuerySort)sort).getColumn() : null;
+			Column column = sortColumn instanceof QueryColumn && ((QueryColumn)sortColumn).getTable() == select.getTable()
+				? table.getColumn(((QueryColumn)sortColumn).getName()) : null;
+			if (column == null || (column.getAllowNull() && !table.getRowIdentColumns().contains(column)))
+			{
+				return null;
+			}
+		}
+
+		int[] indexes = new int[sorts.size()];
+		for (int i = 0; i < sorts.size(); i++)
+		{
+			IQuerySelectValue sortColumn = ((QuerySort)sorts.get(i)).getColumn();
+			List<IQuerySelectValue> columns = select.getColumns();
+			indexes[i] = -1;
+			for (int c = 0; indexes[i] < 0 && c < columns.size(); c++)
+			{
+				if (isSameColumn(columns.get(c), sortColumn))
+				{
+					indexes[i] = c;
+				}
+			}
+			if (indexes[i] < 0)
+			{
+				indexes[i] = columns.size();
+				select.addColumn(sortColumn);
+			}
+		}
+		return indexes;
+	}
+
+	/**
+	 * Condition for the rows after the last row of the previous page: s1 > v1 or (s1 = v1 and (s2 > v2 or (s2 = v2 and ...))), with &lt; for descending sorts.
+	 */
+	private ISQLCondition createKeysetCondition(List<IQuerySort> sorts)
+	{
+		ISQLCondition condition = null;
+		for (int i = sorts.size(); --i >= 0;)
+		{
+			QuerySort sort = (QuerySort)sorts.get(i);
+			ISQLCondition after = new CompareCondition(sort.isAscending() ? IBaseSQLCondition.GT_OPERATOR : IBaseSQLCondition.LT_OPERATOR, sort.getColumn(),
+				lastKeys[i]);
+			condition = condition == null ? after
+				: OrCondition.or(after, AndCondition.and(new CompareCondition(IBaseSQLCondition.EQUALS_OPERATOR, sort.getColumn(), lastKeys[i]), condition));
+		}
+		return condition;
+	}
+
+	/**
+	 * Get the next page of rows.
+	 *
+	 * @return the next page or null when all rows have been read
+	 */
+	public IDataSet nextPage() throws ServoyException
+	{
+		if (done)
+		{
+			return null;
+		}
+
+		QuerySelect pageSelect = select;
+		int startRow = rowCount;
+		if (keysetColumnIndexes != null)
+		{
+			startRow = 0;
+			if (lastKeys != null)
+			{
+				pageSelect = AbstractBaseQuery.deepClone(select);
+				pageSelect.setCondition(CONDITION_KEYSET, createKeysetCondition(pageSelect.getSorts()));
+			}
+		}
+
+		IDataSet page;
+		try
+		{
+			long time = System.currentTimeMillis();
+			page = dataServer.performCursorQuery(fsm.getApplication().getClientID(), serverName, fsm.getTransactionID(serverName), pageSelect,
+				includeFilters ? fsm.getTableFilterParams(serverName, pageSelect) : null, startRow, pageSize);
+			if (Debug.tracing())
+			{
+				Debug.trace("Cursor query, row: " + rowCount + ", time: " + (System.currentTimeMillis() - time) + " thread: " + //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
+					Thread.currentThread().getName() + " SQL: " + pageSelect); //$NON-NLS-1$
+			}
+		}
+		catch (RemoteException e)
+		{
+			done = true;
+			throw new RepositoryException(e);
+		}
+
+		// do not rely on hadMoreRows, a page smaller than requested is the last one
+		if (page == null || page.getRowCount() < pageSize)
+		{
+			done = true;
+		}
+		if (page == null || page.getRowCount() == 0)
+		{
+			return null;
+		}
+		rowCount += page.getRowCount();
+
+		if (keysetColumnIndexes != null)
+		{
+			Object[] lastRow = page.getRow(page.getRowCount() - 1);
+			lastKeys = new Object[keysetColumnIndexes.length];
+			for (int i = 0; i < keysetColumnIndexes.length; i++)
+			{
+				lastKeys[i] = lastRow[keysetColumnIndexes[i]];
+			}
+			// remove the sort columns that were only selected for the paging
+			for (int i = page.getColumnCount(); --i >= resultColumnCount;)
+			{
+				page.removeColumn(i);
+			}
+		}
+		return page;
+	}
+
+	/**
+	 * Stop reading, next calls to {@link #nextPage()} return null.
+	 */
+	public void close()
+	{
+		done = true;
+	}
+
+	public boolean isClosed()
+	{
+		return done;
+	}
+
+	/**
+	 * @return number of rows that have been read so far
+	 */
+	public int getRowCount()
+	{
+		return rowCount;
+	}
+
+	public int getPageSize()
+	{
+		return pageSize;
+	}
+
+	/**
+	 * @return true when the pages are selected on the sort values of the previous page instead of with a start row
+	 */
+	public boolean isKeysetPaging()
+	{
+		return keysetColumnIndexes != null;
+	}
+
+	@Override
+	public String toString()
+	{
+		return "DataSetCursor[server=" + serverName + ", pageSize=" + pageSize + ", rowsRead=" + rowCount + ", keyset=" + isKeysetPaging() + ", done=" + //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$ //$NON-NLS-4$ //$NON-NLS-5$
+			done + "]"; //$NON-NLS-1$
+	}
+}
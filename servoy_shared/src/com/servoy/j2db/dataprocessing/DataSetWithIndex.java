@@ -71,6 +71,21 @@ public class DataSetWithIndex implements IDataSetWithIndex, ISerializableDataSet
 		return dataset.getRow(row);
 	}
 
+	/**
+	 * Get a single value, a column oriented data set does not have to create the whole row for this.
+	 *
+	 * @return the value, null when the row or column is not in the set
+	 */
+	public Object getValue(int row, int column)
+	{
+		if (dataset instanceof ColumnarDataSet)
+		{
+			return ((ColumnarDataSet)dataset).getValue(row, column);
+		}
+		Object[] array = dataset.getRow(row);
+		return array != null && column >= 0 && column < array.length ? array[column] : null;
+	}
+
 	@Override
 	public void removeRow(int index)
 	{
@@ -830,6 +830,7 @@ public class EditRecordList
 
 			Map<FoundSet, List<Record>> foundsetToRecords = new HashMap<FoundSet, List<Record>>();
 			Map<FoundSet, List<String>> foundsetToAggregateDeletes = new HashMap<FoundSet, List<String>>();
+			Map<FoundSet, List<RowUpdateInfo>> foundsetToAggregateUpdates = new HashMap<FoundSet, List<RowUpdateInfo>>();
 			List<Runnable> fires = new ArrayList<Runnable>(infos.length);
 			// Walk in reverse over it, so that related rows are update in there row manger before they are required by there parents.
 			for (int i = infos.length; --i >= 0;)
@@ -840,11 +841,13 @@ public class EditRecordList
 
 				String oldKey = row.getPKHashKey();
 				Record record = rowUpdateInfo.getRecord();
+				boolean updated = true;
 				if (idents != null && idents.length != 0 && idents[i] != null)
 				{
 					Object retValue = idents[i];
 					if (retValue instanceof Exception)
 					{
+						updated = false;
 						log.debug("stopEditing(" + javascriptStop + ") encountered an exception - could be expected and treated by solution code or not", //$NON-NLS-1$//$NON-NLS-2$
 							(Exception)retValue);
 						lastStopEditingException = (Exception)retValue;
@@ -917,6 +920,7 @@ public class EditRecordList
 				}
 				catch (Exception e)
 				{
+					updated = false;
 					log.debug("stopEditing(" + javascriptStop + ") encountered an exception - could be expected and treated by solution code or not", e); //$NON-NLS-1$//$NON-NLS-2$
 					lastStopEditingException = e;
 					failedCount++;
@@ -941,6 +945,17 @@ public class EditRecordList
 
 				infosToBePostProcessed.add(infos[i]);
 
+				if (updated && rowUpdateInfo.getAggregatesToRemove().size() > 0)
+				{
+					List<RowUpdateInfo> aggregateUpdates = foundsetToAggregateUpdates.get(foundSet);
+					if (aggregateUpdates == null)
+					{
+						aggregateUpdates = new ArrayList<RowUpdateInfo>(3);
+						foundsetToAggregateUpdates.put(foundSet, aggregateUpdates);
+					}
+					aggregateUpdates.add(rowUpdateInfo);
+				}
+
 				List<Record> lst = foundsetToRecords.get(foundSet);
 				if (lst == null)
 				{
@@ -952,7 +967,8 @@ public class EditRecordList
 				List<String> aggregates = foundsetToAggregateDeletes.get(foundSet);
 				if (aggregates == null)
 				{
-					foundsetToAggregateDeletes.put(foundSet, rowUpdateInfo.getAggregatesToRemove());
+					// copy, the list is changed when aggregates of other rows are merged and when aggregates are updated
+					foundsetToAggregateDeletes.put(foundSet, new ArrayList<String>(rowUpdateInfo.getAggregatesToRemove()));
 				}
 				else
 				{
@@ -1023,6 +1039,8 @@ public class EditRecordList
 			for (Map.Entry<FoundSet, List<Record>> entry : foundsetToRecords.entrySet())
 			{
 				FoundSet fs = entry.getKey();
+				// aggregates that can be calculated from the saved values are not removed
+				fs.updateAggregates(foundsetToAggregateDeletes.get(fs), foundsetToAggregateUpdates.get(fs));
 				fs.recordsUpdated(entry.getValue(), foundsetToAggregateDeletes.get(fs));
 			}
 			boolean shouldFireEditChange;
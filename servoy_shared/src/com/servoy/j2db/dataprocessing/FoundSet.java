@@ -37,6 +37,7 @@ import java.util.Map;
 import java.util.Objects;
 import java.util.Set;
 import java.util.StringTokenizer;
+import java.util.concurrent.Callable;
 
 import org.mozilla.javascript.BaseFunction;
 import org.mozilla.javascript.Context;
@@ -115,6 +116,7 @@ import com.servoy.j2db.util.Pair;
 import com.servoy.j2db.util.SafeArrayList;
 import com.servoy.j2db.util.ScopesUtils;
 import com.servoy.j2db.util.ServoyException;
+import com.servoy.j2db.util.TypePredicate;
 import com.servoy.j2db.util.UUID;
 import com.servoy.j2db.util.Utils;
 
@@ -164,7 +166,9 @@ public abstract class FoundSet implements IFoundSetInternal, IRowListener, Scrip
 	private List<TableFilter> foundSetFilters;
 
 	protected transient Map<String, Object> aggregateCache;
-	protected transient IDataSet omittedPKs;
+	// aggregates that were queried in a batch for sibling foundsets, applied on first read, see RelatedFoundSet.queryForAggregatesWithSiblings()
+	private transient volatile Pair<QuerySelect, IDataSet> pendingAggregates;
+	protected transient PKDataSet omittedPKs;
 
 	protected List<SortColumn> lastSortColumns;
 	protected List<SortColumn> defaultSort;//as defined on a form
@@ -1228,7 +1232,7 @@ public abstract class FoundSet implements IFoundSetInternal, IRowListener, Scrip
 	@JSFunction
 	public JSDataSet getOmittedPKs()
 	{
-		BufferedDataSet set = omittedPKs != null ? (BufferedDataSet)omittedPKs.clone() : new BufferedDataSet();
+		BufferedDataSet set = omittedPKs != null ? (BufferedDataSet)omittedPKs.getDelegate().clone() : new BufferedDataSet();
 		set.setColumnNames(sheet.getPKColumnDataProvidersAsArray());
 		return new JSDataSet(set);
 	}
@@ -1679,50 +1683,12 @@ public abstract class FoundSet implements IFoundSetInternal, IRowListener, Scrip
 
 	protected int getRecordIndex(Object[] pk)
 	{
-		IDataSet pks = pksAndRecords.getPks();
-		if (pk != null && pk.length != 0 && pks != null && pks.getColumnCount() == pk.length)
+		int index = pksAndRecords.getIndexOfPk(pk, lastReturnedRecordIndex);
+		if (index >= 0)
 		{
-			int rowCount = pks.getRowCount();
-			// we try to optimize this search assuming next index is located near the last one
-			int startIndex = Math.min(lastReturnedRecordIndex - 10, rowCount);
-			if (startIndex < 0) startIndex = 0;
-			for (int r = startIndex; r < rowCount; r++)
-			{
-				int matchingIndex = getMatchingRecordIndex(pk, pks, r);
-				if (matchingIndex >= 0)
-				{
-					return matchingIndex;
-				}
-			}
-			for (int r = 0; r < startIndex; r++)
-			{
-				int matchingIndex = getMatchingRecordIndex(pk, pks, r);
-				if (matchingIndex >= 0)
-				{
-					return matchingIndex;
-				}
-			}
+			lastReturnedRecordIndex = index;
 		}
-		return -1;
-	}
-
-	private int getMatchingRecordIndex(Object[] pk, IDataSet pks, int r)
-	{
-		Object[] pkrow = pks.getRow(r);
-		if (pkrow != null)
-		{
-			boolean match = pkrow.length == pk.length;
-			for (int c = 0; c < pkrow.length; c++)
-			{
-				match = match && Utils.equalObjects(pk[c], pkrow[c]);
-			}
-			if (match)
-			{
-				lastReturnedRecordIndex = r;
-				return r;
-			}
-		}
-		return -1;
+		return index;
 	}
 
 	protected boolean selectRecord(Object[] pk)
@@ -2648,6 +2614,7 @@ public abstract class FoundSet implements IFoundSetInternal, IRowListener, Scrip
 			findMode = false;
 			if (fireModeChangeIfNecessary) fireFindModeChange();
 		}
+		pendingAggregates = null;
 		if (aggregateCache.size() > 0)
 		{
 			fireAggregateChangeWithEvents(null);
@@ -2811,6 +2778,64 @@ public abstract class FoundSet implements IFoundSetInternal, IRowListener, Scrip
 		return retval.toArray(new IRecordInternal[retval.size()]);
 	}
 
+	/**
+	 * Create a loader for the rows of a range of already loaded pks that are not in the row cache yet. The loader does not use the foundset or the row
+	 * cache, so it can be run on another thread to do the queries, the loaded rows are added to the cache with {@link #addRowsToCache(List)}.
+	 * This does not load more pks. Like the other foundset methods this must be called on the event thread of the client.
+	 * Nothing is loaded in find mode or when a transaction is active.
+	 *
+	 * @return the loader, null when all rows are cached
+	 */
+	public Callable<List<IDataSet>> createRowsLoader(int startRow, int count)
+	{
+		if (findMode || count <= 0 || fsm.getGlobalTransaction() != null) return null;
+
+		IDataSet pks = pksAndRecords.getPks();
+		if (pks == null) return null;
+
+		List<Object[]> notCached = new ArrayList<Object[]>();
+		int end = Math.min(startRow + count, pks.getRowCount());
+		for (int i = Math.max(0, startRow); i < end; i++)
+		{
+			Object[] pk = pks.getRow(i);
+			if (pk != null && rowManager.getCachedRow(pk).getLeft() == null) notCached.add(pk);
+		}
+		if (notCached.isEmpty()) return null;
+
+		List<Callable<IDataSet>> chunkLoaders = new ArrayList<Callable<IDataSet>>();
+		for (int i = 0; i < notCached.size(); i += fsm.pkChunkSize)
+		{
+			IDataSet chunk = new BufferedDataSet(null, new ArrayList<Object[]>(notCached.subList(i, Math.min(i + fsm.pkChunkSize, notCached.size()))));
+			chunkLoaders.add(rowManager.createRowsLoader(chunk));
+		}
+		return () -> {
+			List<IDataSet> rowData = new ArrayList<IDataSet>(chunkLoaders.size());
+			for (Callable<IDataSet> chunkLoader : chunkLoaders)
+			{
+				rowData.add(chunkLoader.call());
+			}
+			return rowData;
+		};
+	}
+
+	/**
+	 * Add the rows that were loaded by a loader of {@link #createRowsLoader(int, int)} to the row cache, this does not create records or fire events.
+	 * Must be called on the event thread of the client, nothing is added when the foundset went in find mode or a transaction was started in the mean time.
+	 *
+	 * @return the rows that were cached, the row cache only holds soft references so callers should keep these until the records are created
+	 */
+	public List<Row> addRowsToCache(List<IDataSet> rowData)
+	{
+		if (findMode || fsm.getGlobalTransaction() != null) return Collections.emptyList();
+
+		List<Row> rows = new ArrayList<Row>();
+		for (IDataSet data : rowData)
+		{
+			rows.addAll(rowManager.addRowsToCache(data));
+		}
+		return rows;
+	}
+
 
 	@Override
 	public Object forEach(IRecordCallback callback)
@@ -3938,6 +3963,7 @@ public abstract class FoundSet implements IFoundSetInternal, IRowListener, Scrip
 		int size = getSize(); // get size outside sync block
 		synchronized (aggregateCache)
 		{
+			applyPendingAggregates();
 			if (aggregateCache.containsKey(dataProviderID))
 			{
 				obj = aggregateCache.get(dataProviderID);
@@ -3964,10 +3990,49 @@ public abstract class FoundSet implements IFoundSetInternal, IRowListener, Scrip
 
 	private Object getAggregateValue(String dataProviderID)
 	{
-		queryForAggregate(getAggregateSelect(sheet, pksAndRecords.getQuerySelectForReading()));
+		if (!queryForAggregatesWithSiblings())
+		{
+			queryForAggregate(getAggregateSelect(sheet, pksAndRecords.getQuerySelectForReading()));
+		}
 		return aggregateCache.get(dataProviderID);
 	}
 
+	/**
+	 * Query the aggregates for this foundset together with similar foundsets, called with the aggregateCache locked.
+	 *
+	 * @return true when the aggregateCache was filled
+	 */
+	protected boolean queryForAggregatesWithSiblings()
+	{
+		return false;
+	}
+
+	/**
+	 * Aggregates for this foundset were queried by another foundset, keep them until the first read.
+	 */
+	void setPendingAggregates(QuerySelect select, IDataSet ds)
+	{
+		pendingAggregates = new Pair<QuerySelect, IDataSet>(select, ds);
+	}
+
+	boolean hasAggregatesLoaded()
+	{
+		return pendingAggregates != null || aggregateCache.size() > 0;
+	}
+
+	private void applyPendingAggregates()
+	{
+		Pair<QuerySelect, IDataSet> pending = pendingAggregates;
+		if (pending != null)
+		{
+			pendingAggregates = null;
+			if (aggregateCache.size() == 0)
+			{
+				fillAggregates(pending.getLeft(), pending.getRight());
+			}
+		}
+	}
+
 	public static QuerySelect getAggregateSelect(SQLSheet sheet, QuerySelect sqlSelect)
 	{
 		Map<String, QuerySelect> aggregate = sheet.getAggregates();
@@ -4605,7 +4670,8 @@ public abstract class FoundSet implements IFoundSetInternal, IRowListener, Scrip
 
 		if (toDelete >= 0) fireFoundSetEvent(toDelete, toDelete, FoundSetEvent.CHANGE_DELETE);
 
-		if (aggregateCache.size() > 0)
+		pendingAggregates = null;
+		if (aggregateCache.size() > 0 && !(state != null && removeFromAggregates(state)))
 		{
 			fireAggregateChangeWithEvents(null);
 		}
@@ -4618,7 +4684,7 @@ public abstract class FoundSet implements IFoundSetInternal, IRowListener, Scrip
 
 	public boolean showOmitted() throws ServoyException
 	{
-		if (omittedPKs == null) omittedPKs = new BufferedDataSet();
+		if (omittedPKs == null) omittedPKs = new PKDataSet(new BufferedDataSet());
 		boolean b = loadExternalPKList(omittedPKs);
 		omittedPKs = null;
 		return b;
@@ -4692,6 +4758,7 @@ public abstract class FoundSet implements IFoundSetInternal, IRowListener, Scrip
 			}
 		}
 
+		pendingAggregates = null;
 		if (aggregateCache.size() > 0)
 		{
 			fireAggregateChangeWithEvents(null);
@@ -4734,7 +4801,7 @@ public abstract class FoundSet implements IFoundSetInternal, IRowListener, Scrip
 
 		if (recordsToOmit.size() > 0)
 		{
-			if (omittedPKs == null) omittedPKs = new BufferedDataSet();
+			if (omittedPKs == null) omittedPKs = new PKDataSet(new BufferedDataSet());
 
 			for (IRecordInternal dsState : recordsToOmit)
 			{
@@ -5598,10 +5665,15 @@ public abstract class FoundSet implements IFoundSetInternal, IRowListener, Scrip
 	@Override
 	public int getRecordIndex(String pkHash, int startHint)
 	{
+		PKDataSet pks = getPksAndRecords().getPks();
+		if (pks != null && pks.getRowCount() >= PKDataSet.PK_INDEX_MIN_SIZE)
+		{
+			return getPksAndRecords().getIndexOfPkHash(pkHash, true);
+		}
+
 		int hintStart = Math.min(startHint + 5, getSize());
 
 		SafeArrayList<IRecordInternal> cachedRecords = getPksAndRecords().getCachedRecords();
-		PKDataSet pks = getPksAndRecords().getPks();
 		int start = (hintStart < 0 || hintStart > pks.getRowCount()) ? 0 : hintStart;
 
 		for (int i = start; --i >= 0;)
@@ -5732,32 +5804,28 @@ public abstract class FoundSet implements IFoundSetInternal, IRowListener, Scrip
 						if (pks != null && row != null)
 						{
 							String pkHash = row.getPKHashKey();
-							for (int i = pks.getRowCount() - 1; i >= 0; i--)
+							int i = pksAndRecords.getIndexOfPkHash(pkHash, false);
+							if (i >= 0)
 							{
-								Object[] pk = pks.getRow(i);
-								if (RowManager.createPKHashKey(pk).equals(pkHash))
+								if (e.getType() == RowEvent.UPDATE)
 								{
-									if (e.getType() == RowEvent.UPDATE)
+									if (isAggregatedColumnChanged(e.getChangedColumnNames()))
 									{
 										clearAggregates();
-										fireFoundSetEvent(i, i, FoundSetEvent.CHANGE_UPDATE);
-									}
-									else if (e.getType() == RowEvent.DELETE)
-									{
-										removeRecordInternal(i);//does fireIntervalRemoved(this,i,i);
 									}
-									break;
+									fireFoundSetEvent(i, i, FoundSetEvent.CHANGE_UPDATE);
+								}
+								else if (e.getType() == RowEvent.DELETE)
+								{
+									removeRecordInternal(i);//does fireIntervalRemoved(this,i,i);
 								}
 							}
 							if (e.getType() == RowEvent.DELETE && omittedPKs != null && omittedPKs.getRowCount() > 0)
 							{
-								for (int i = 0; i < omittedPKs.getRowCount(); i++)
+								int omittedIndex = omittedPKs.getIndexOfPkHash(pkHash);
+								if (omittedIndex >= 0)
 								{
-									if (Utils.equalObjects(pkHash, RowManager.createPKHashKey(omittedPKs.getRow(i))))
-									{
-										omittedPKs.removeRow(i);
-										break;
-									}
+									omittedPKs.removeRow(omittedIndex);
 								}
 							}
 						}
@@ -5857,6 +5925,7 @@ public abstract class FoundSet implements IFoundSetInternal, IRowListener, Scrip
 
 	protected void clearAggregates()
 	{
+		pendingAggregates = null;
 		if (aggregateCache.size() > 0)
 		{
 			aggregateCache.clear();
@@ -5864,10 +5933,232 @@ public abstract class FoundSet implements IFoundSetInternal, IRowListener, Scrip
 		}
 	}
 
+	/**
+	 * Update the cached aggregates with the saved values instead of querying them again.
+	 * Only for count, sum, min and max on foundsets that have all pks loaded, other aggregates are removed from the cache as before.
+	 * Inserted records are only included when the foundset has no conditions or filters, otherwise the record may not be part of the foundset query.
+	 *
+	 * @param aggregateNames the aggregates that are affected by the saved records, the ones that are updated are removed from this list
+	 * @param updates the saved records of this foundset
+	 */
+	void updateAggregates(List<String> aggregateNames, List<RowUpdateInfo> updates)
+	{
+		if (aggregateNames == null || aggregateNames.size() == 0 || updates == null || !canUpdateAggregates())
+		{
+			return;
+		}
+		Set<String> conditionColumnNames = getConditionColumnNames();
+		synchronized (aggregateCache)
+		{
+			pendingAggregates = null;
+			Iterator<String> it = aggregateNames.iterator();
+			while (it.hasNext())
+			{
+				String name = it.next();
+				if (!aggregateCache.containsKey(name))
+				{
+					continue;
+				}
+				Object value = aggregateCache.get(name);
+				int type = sheet.getAggregateType(name);
+				String dataProviderID = sheet.getAggregatedDataProviderID(name);
+				for (int i = 0; value != IncrementalAggregates.NOT_INCREMENTAL && i < updates.size(); i++)
+				{
+					RowUpdateInfo update = updates.get(i);
+					boolean insert = update.getISQLStatement().getAction() == ISQLActionTypes.INSERT_ACTION;
+					Object[] oldAndNew = update.getAggregatedValues() == null ? null : update.getAggregatedValues().get(dataProviderID);
+					if (!isInFoundSetQuery(update, insert, conditionColumnNames))
+					{
+						value = IncrementalAggregates.NOT_INCREMENTAL;
+					}
+					else if (oldAndNew != null)
+					{
+						value = IncrementalAggregates.apply(type, value, insert ? null : oldAndNew[0], oldAndNew[1]);
+					}
+					else if (insert)
+					{
+						// value is generated by the database
+						value = IncrementalAggregates.NOT_INCREMENTAL;
+					}
+				}
+				if (value != IncrementalAggregates.NOT_INCREMENTAL)
+				{
+					aggregateCache.put(name, value);
+					it.remove();
+					fireAggregateModificationEvent(name, value);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Check if the saved row is still part of the result of the foundset query, so it is included in the aggregates queried for this foundset.
+	 * An inserted row is only known to be included when the query has no conditions or filters, an updated row when no condition column changed.
+	 *
+	 * @param conditionColumnNames see {@link #getConditionColumnNames()}
+	 */
+	private boolean isInFoundSetQuery(RowUpdateInfo update, boolean insert, Set<String> conditionColumnNames)
+	{
+		if (conditionColumnNames == null)
+		{
+			return false;
+		}
+		if (insert)
+		{
+			return conditionColumnNames.isEmpty();
+		}
+		ISQLStatement statement = update.getISQLStatement();
+		String[] changedColumns = statement instanceof ITrackingSQLStatement ? ((ITrackingSQLStatement)statement).getChangedColumns() : null;
+		if (changedColumns == null)
+		{
+			return false;
+		}
+		for (String columnName : changedColumns)
+		{
+			Column column = sheet.getTable().getColumn(columnName);
+			if (column == null || conditionColumnNames.contains(column.getSQLName().toLowerCase()))
+			{
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Update the cached aggregates for a record that was removed from this foundset.
+	 *
+	 * @return false when the aggregates could not be updated and must be cleared
+	 */
+	private boolean removeFromAggregates(IRecordInternal state)
+	{
+		if (findMode)
+		{
+			return false;
+		}
+		if (!state.existInDataSource())
+		{
+			// new record, not included in the aggregates
+			return true;
+		}
+		if (!canUpdateAggregates() || state.getRawData() == null || state.getRawData().isChanged())
+		{
+			// unsaved changes, the values in the database are not known here
+			return false;
+		}
+		synchronized (aggregateCache)
+		{
+			Map<String, Object> updated = new HashMap<String, Object>();
+			for (Map.Entry<String, Object> entry : aggregateCache.entrySet())
+			{
+				Object value = IncrementalAggregates.apply(sheet.getAggregateType(entry.getKey()), entry.getValue(), state.getRawData().getRawValue(
+					sheet.getAggregatedDataProviderID(entry.getKey())), null);
+				if (value == IncrementalAggregates.NOT_INCREMENTAL)
+				{
+					return false;
+				}
+				updated.put(entry.getKey(), value);
+			}
+			aggregateCache.putAll(updated);
+			for (Map.Entry<String, Object> entry : updated.entrySet())
+			{
+				fireAggregateModificationEvent(entry.getKey(), entry.getValue());
+			}
+		}
+		return true;
+	}
+
+	private boolean canUpdateAggregates()
+	{
+		if (findMode || mustQueryForUpdates)
+		{
+			return false;
+		}
+		IDataSet pks = pksAndRecords.getPks();
+		return pks != null && !pks.hadMoreRows();
+	}
+
+	/**
+	 * Check if a row update may change the aggregates, because an aggregated column changed or a column that is used in the conditions or filters
+	 * of this foundset, then the record may have moved in or out of the foundset.
+	 *
+	 * @param changedColumnNames column names from a row event, null when not known
+	 */
+	private boolean isAggregatedColumnChanged(Object[] changedColumnNames)
+	{
+		if (changedColumnNames == null || sheet.getAggregates() == null || sheet.getAggregates().size() == 0)
+		{
+			return true;
+		}
+		Set<String> conditionColumnNames = getConditionColumnNames();
+		if (conditionColumnNames == null)
+		{
+			return true;
+		}
+		for (Object columnName : changedColumnNames)
+		{
+			Column column = columnName instanceof String ? sheet.getTable().getColumn((String)columnName) : null;
+			if (column == null || sheet.isUsedByAggregate(column.getDataProviderID()) ||
+				conditionColumnNames.contains(column.getSQLName().toLowerCase()))
+			{
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Names (lower case) of the columns used in the conditions and joins of the foundset query and in the table filters.
+	 *
+	 * @return null when the columns are not known, for example for custom sql conditions
+	 */
+	private Set<String> getConditionColumnNames()
+	{
+		QuerySelect query = pksAndRecords.getQuerySelectForReading();
+		if (query == null)
+		{
+			return null;
+		}
+		List<Object> conditions = new ArrayList<Object>();
+		conditions.add(query.getWhere());
+		conditions.add(query.getJoins());
+		Set<String> columnNames = new HashSet<String>();
+		for (TableFilter filter : iterate(fsm.getTableFilterParams(sheet.getServerName(), query)))
+		{
+			TableFilterdefinition tableFilterdefinition = filter.getTableFilterdefinition();
+			if (tableFilterdefinition instanceof DataproviderTableFilterdefinition)
+			{
+				Column column = sheet.getTable().getColumn(((DataproviderTableFilterdefinition)tableFilterdefinition).getDataprovider());
+				if (column == null)
+				{
+					return null;
+				}
+				columnNames.add(column.getSQLName().toLowerCase());
+			}
+			else if (tableFilterdefinition instanceof QueryTableFilterdefinition)
+			{
+				conditions.add(((QueryTableFilterdefinition)tableFilterdefinition).getQuerySelect().getWhere());
+			}
+			else
+			{
+				return null;
+			}
+		}
+		if (AbstractBaseQuery.searchOne(conditions, new TypePredicate<>(CustomCondition.class)).isPresent())
+		{
+			return null;
+		}
+		for (QueryColumn column : AbstractBaseQuery.<QueryColumn> search(conditions, new TypePredicate<>(QueryColumn.class)))
+		{
+			columnNames.add(column.getName().toLowerCase());
+		}
+		return columnNames;
+	}
+
 	protected void recordsUpdated(List<Record> records, List<String> aggregatesToRemove)
 	{
 		if (aggregatesToRemove.size() > 0)
 		{
+			pendingAggregates = null;
 			aggregateCache.keySet().removeAll(aggregatesToRemove);
 			for (String aggregate : aggregatesToRemove)
 			{
@@ -6210,7 +6501,7 @@ public abstract class FoundSet implements IFoundSetInternal, IRowListener, Scrip
 	{
 		Map<String, QuerySelect> aggregate = sheet.getAggregates();
 		if (aggregate == null || aggregate.size() == 0) return false;
-		return (aggregateCache.size() == 0 && getSize() > 0);
+		return (!hasAggregatesLoaded() && getSize() > 0);
 	}
 
 	public void put(int index, Scriptable start, Object value)
@@ -6596,7 +6887,7 @@ public abstract class FoundSet implements IFoundSetInternal, IRowListener, Scrip
 			fs.pksAndRecords.setPksAndQuery(new BufferedDataSet(pksAndRecords.getPks()), pksAndRecords.getDbIndexLastPk(), fs_sqlSelect);
 		}
 		fs.initialized = initialized;
-		if (omittedPKs != null) fs.omittedPKs = new BufferedDataSet(omittedPKs.getColumnNames(), omittedPKs.getColumnTypes(), omittedPKs.getRows());
+		if (omittedPKs != null) fs.omittedPKs = new PKDataSet(new BufferedDataSet(omittedPKs.getColumnNames(), omittedPKs.getColumnTypes(), omittedPKs.getRows()));
 
 		SafeArrayList<IRecordInternal> cachedRecords = pksAndRecords.getCachedRecords();
 		SafeArrayList<IRecordInternal> fsCachedRecords = fs.pksAndRecords.getCachedRecords();
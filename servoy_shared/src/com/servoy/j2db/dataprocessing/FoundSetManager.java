@@ -40,10 +40,14 @@ import java.util.Map.Entry;
 import java.util.Objects;
 import java.util.Set;
 import java.util.StringTokenizer;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutionException;
 import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
 
@@ -64,7 +68,9 @@ import com.servoy.j2db.ApplicationException;
 import com.servoy.j2db.ClientState;
 import com.servoy.j2db.FlattenedSolution;
 import com.servoy.j2db.IApplication;
+import com.servoy.j2db.ISmartClientApplication;
 import com.servoy.j2db.Messages;
+import com.servoy.j2db.SharedMessages;
 import com.servoy.j2db.component.ComponentFactory;
 import com.servoy.j2db.dataprocessing.SQLSheet.ConverterInfo;
 import com.servoy.j2db.dataprocessing.ValueFactory.DbIdentValue;
@@ -108,6 +114,8 @@ import com.servoy.j2db.querybuilder.impl.QBFactory;
 import com.servoy.j2db.querybuilder.impl.QBSelect;
 import com.servoy.j2db.scripting.GlobalScope;
 import com.servoy.j2db.scripting.IExecutingEnviroment;
+import com.servoy.j2db.server.shared.IPerformanceRegistry;
+import com.servoy.j2db.server.shared.PerformanceData;
 import com.servoy.j2db.util.DataSourceUtils;
 import com.servoy.j2db.util.DatabaseUtils;
 import com.servoy.j2db.util.Debug;
@@ -115,8 +123,6 @@ import com.servoy.j2db.util.ILogLevel;
 import com.servoy.j2db.util.Pair;
 import com.servoy.j2db.util.ServoyException;
 import com.servoy.j2db.util.ServoyJSONObject;
-import com.servoy.j2db.util.SortedList;
-import com.servoy.j2db.util.StringComparator;
 import com.servoy.j2db.util.TypePredicate;
 import com.servoy.j2db.util.Utils;
 import com.servoy.j2db.util.serialize.JSONSerializerWrapper;
@@ -149,7 +155,10 @@ public class FoundSetManager implements IFoundSetManagerInternal
 	private Map<String, ITable> viewDataSources;
 	protected Map<String, ConcurrentMap<String, RelatedFoundSet>> cachedSubStates; // Map based on guava soft values cache
 	protected Map<String, List<RelatedHashedArguments>> dbIdentArguments;
-	protected List<String> locks = new SortedList<String>(StringComparator.INSTANCE);
+	// related foundsets that are being created, per relation name and hash
+	private final ConcurrentMap<String, CompletableFuture<RelatedFoundSet>> relatedFoundSetsInFlight = new ConcurrentHashMap<>();
+	private final AtomicLong relatedFoundSetWaitCount = new AtomicLong();
+	private final AtomicLong relatedFoundSetWaitTime = new AtomicLong();
 
 	private final GlobalFoundSetEventListener globalFoundSetEventListener = new GlobalFoundSetEventListener();
 
@@ -163,6 +172,9 @@ public class FoundSetManager implements IFoundSetManagerInternal
 	public final boolean disableInsertsReorder;
 	public final boolean verifyPKDatasetAgainstTableFilters;
 	public final boolean experimentalFoundSetNotifyChange;
+	public final int columnarDataSetThreshold;
+	public final boolean mergeRelatedQueries;
+	public final boolean groupRelatedAggregates;
 
 	private final List<Runnable> fireRunabbles = new ArrayList<Runnable>();
 
@@ -186,6 +198,9 @@ public class FoundSetManager implements IFoundSetManagerInternal
 		disableInsertsReorder = Utils.getAsBoolean(app.getSettings().getProperty("servoy.disable.record.insert.reorder", "false")); //$NON-NLS-1$ //$NON-NLS-2$
 		verifyPKDatasetAgainstTableFilters = Utils.getAsBoolean(app.getSettings().getProperty("servoy.foundset.verifyPKDatasetAgainstTableFilters", "true")); // when false we do not trigger a query with fs.loadRecords(pk) icw table filters
 		experimentalFoundSetNotifyChange = Utils.getAsBoolean(app.getSettings().getProperty("servoy.foundset.experimental.notifyChange", "false")); // whether to use new optimized mechanism to call notifyChange on IRowListeners
+		columnarDataSetThreshold = Utils.getAsInteger(app.getSettings().getProperty("servoy.dataset.columnarThreshold", "0")); // query results with at least this many rows are stored column wise, 0 is disabled //$NON-NLS-1$ //$NON-NLS-2$
+		mergeRelatedQueries = Utils.getAsBoolean(app.getSettings().getProperty("servoy.foundset.mergeRelatedQueries", "false")); // whether prefetched sibling related foundsets are loaded with 1 fk IN (...) query //$NON-NLS-1$ //$NON-NLS-2$
+		groupRelatedAggregates = Utils.getAsBoolean(app.getSettings().getProperty("servoy.foundset.groupRelatedAggregates", "false")); // whether aggregates of cached sibling related foundsets are loaded with 1 GROUP BY fk query //$NON-NLS-1$ //$NON-NLS-2$
 	}
 
 	/**
@@ -196,6 +211,15 @@ public class FoundSetManager implements IFoundSetManagerInternal
 		return cachedSubStates;
 	}
 
+	/**
+	 * @return the related foundsets of the relation that are currently cached
+	 */
+	Collection<RelatedFoundSet> getCachedRelatedFoundSets(String relationName)
+	{
+		ConcurrentMap<String, RelatedFoundSet> rfs = getCachedSubStates().get(relationName);
+		return rfs == null ? Collections.<RelatedFoundSet> emptyList() : rfs.values();
+	}
+
 	private Runnable createFlushAction(final String dataSource)
 	{
 		return new Runnable()
@@ -247,6 +271,7 @@ public class FoundSetManager implements IFoundSetManagerInternal
 	 */
 	public boolean notifyDataChange(String dataSource, IDataSet pks, int action)
 	{
+		SharedMessages.invalidate(dataSource);
 		if (pks == null)
 		{
 			flushCachedDatabaseData(dataSource);
@@ -531,39 +556,56 @@ public class FoundSetManager implements IFoundSetManagerInternal
 
 		IFoundSetInternal retval = getCachedRelatedFoundset(relation.getName(), relatedArguments);
 
-		List<RelatedHashedArgumentsWithState> toFetch = null;
 		if (retval == null)
 		{
 			String lockString = relationName + relatedArguments.hashedArguments.hash;
-			ConcurrentMap<String, RelatedFoundSet> rfs;
-			synchronized (locks)
+			ConcurrentMap<String, RelatedFoundSet> rfs = getCachedSubStates().computeIfAbsent(relationName,
+				name -> CacheBuilder.newBuilder().softValues().<String, RelatedFoundSet> build().asMap());
+
+			// only wait for a foundset that is being created by another thread for the same key
+			CompletableFuture<RelatedFoundSet> ownFuture = null;
+			while (retval == null && ownFuture == null)
 			{
-				rfs = getCachedSubStates().get(relationName);
-				if (rfs == null)
-				{
-					rfs = CacheBuilder.newBuilder().softValues().<String, RelatedFoundSet> build().asMap();
-					getCachedSubStates().put(relationName, rfs);
-				}
-				while (locks.contains(lockString))
+				retval = rfs.get(relatedArguments.hashedArguments.hash);
+				if (retval == null)
 				{
-					try
+					CompletableFuture<RelatedFoundSet> newFuture = new CompletableFuture<>();
+					CompletableFuture<RelatedFoundSet> inFlight = relatedFoundSetsInFlight.putIfAbsent(lockString, newFuture);
+					if (inFlight == null)
 					{
-						locks.wait();
+						// check again, it could have been created just before we registered
+						RelatedFoundSet cached = rfs.get(relatedArguments.hashedArguments.hash);
+						if (cached == null)
+						{
+							ownFuture = newFuture;
+						}
+						else
+						{
+							relatedFoundSetsInFlight.remove(lockString, newFuture);
+							newFuture.complete(cached);
+							retval = cached;
+						}
 					}
-					catch (InterruptedException e)
+					else
 					{
-						Debug.error(e);
+						// null when the other thread failed, then try to create it here
+						retval = waitForRelatedFoundSet(relationName, inFlight);
 					}
 				}
-				retval = rfs.get(relatedArguments.hashedArguments.hash);
-				if (retval == null)
-				{
-					locks.add(lockString);
+			}
 
-					// pre-fetch a number of sibling related found sets
-					toFetch = new ArrayList<>();
-					toFetch.add(relatedArguments); // first to fetch is the one currently requested
+			if (retval == null)
+			{
+				// pre-fetch a number of sibling related found sets
+				List<RelatedHashedArgumentsWithState> toFetch = new ArrayList<>();
+				List<CompletableFuture<RelatedFoundSet>> futures = new ArrayList<>();
+				toFetch.add(relatedArguments); // first to fetch is the one currently requested
+				futures.add(ownFuture);
 
+				RelatedFoundSet[] retvals = null;
+				try
+				{
+					// registered in-flight futures are completed in the finally, also when collecting the siblings fails
 					IFoundSetInternal parent = state.getParentFoundSet();
 					int currIndex = parent.getRecordIndex(state);
 					if (currIndex >= 0 && parent instanceof FoundSet)
@@ -578,24 +620,17 @@ public class FoundSetManager implements IFoundSetManagerInternal
 								RelatedHashedArgumentsWithState extra = calculateFKHash(sibling, relation, true);
 								if (extra != null && !rfs.containsKey(extra.hashedArguments.hash) /* already cached */)
 								{
-									String extraLockString = relationName + extra.hashedArguments.hash;
-									if (!locks.contains(extraLockString))
+									CompletableFuture<RelatedFoundSet> extraFuture = new CompletableFuture<>();
+									if (relatedFoundSetsInFlight.putIfAbsent(relationName + extra.hashedArguments.hash, extraFuture) == null)
 									{
-										locks.add(extraLockString);
 										toFetch.add(extra);
+										futures.add(extraFuture);
 									}
 								}
 							}
 						}
 					}
-				}
-			}
 
-			if (retval == null)
-			{
-				RelatedFoundSet[] retvals = null;
-				try
-				{
 					IRecordInternal[] states = new IRecordInternal[toFetch.size()];
 					Object[][] whereArgsList = new Object[toFetch.size()][];
 					for (int f = 0; f < toFetch.size(); f++)
@@ -614,29 +649,22 @@ public class FoundSetManager implements IFoundSetManagerInternal
 				}
 				finally
 				{
-					synchronized (locks)
+					for (int f = 0; f < toFetch.size(); f++)
 					{
-						for (int f = 0; f < toFetch.size(); f++)
+						RelatedHashedArgumentsWithState relargs = toFetch.get(f);
+						if (retvals != null)
 						{
-							RelatedHashedArgumentsWithState relargs = toFetch.get(f);
-							if (retvals != null)
+							rfs.put(relargs.hashedArguments.hash, retvals[f]);
+							if (relargs.hashedArguments.isDBIdentity())
 							{
-								rfs.put(relargs.hashedArguments.hash, retvals[f]);
-								if (relargs.hashedArguments.isDBIdentity())
-								{
-									List<RelatedHashedArguments> storedDBIdentArguments = dbIdentArguments.get(relationName);
-									if (storedDBIdentArguments == null)
-									{
-										storedDBIdentArguments = Collections.synchronizedList(new ArrayList<>());
-										dbIdentArguments.put(relationName, storedDBIdentArguments);
-									}
-									storedDBIdentArguments.add(relargs.hashedArguments);
-								}
+								dbIdentArguments.computeIfAbsent(relationName, name -> Collections.synchronizedList(new ArrayList<>())).add(
+									relargs.hashedArguments);
 							}
-							locks.remove(relationName + relargs.hashedArguments.hash);
 						}
-
-						locks.notifyAll();
+						// first in the cache, then remove from in-flight, so other threads always find one of them
+						CompletableFuture<RelatedFoundSet> future = futures.get(f);
+						relatedFoundSetsInFlight.remove(relationName + relargs.hashedArguments.hash, future);
+						future.complete(retvals == null ? null : retvals[f]);
 					}
 				}
 
@@ -662,6 +690,76 @@ public class FoundSetManager implements IFoundSetManagerInternal
 		return retval;
 	}
 
+	private RelatedFoundSet waitForRelatedFoundSet(String relationName, CompletableFuture<RelatedFoundSet> inFlight)
+	{
+		long start = System.currentTimeMillis();
+		try
+		{
+			return inFlight.get();
+		}
+		catch (InterruptedException e)
+		{
+			// the foundset is still needed, keep waiting and restore the interrupt status for the caller
+			Thread.currentThread().interrupt();
+			try
+			{
+				return inFlight.join();
+			}
+			catch (CompletionException ex)
+			{
+				return null;
+			}
+		}
+		catch (ExecutionException e)
+		{
+			return null;
+		}
+		finally
+		{
+			recordRelatedFoundSetWait(relationName, System.currentTimeMillis() - start);
+		}
+	}
+
+	private void recordRelatedFoundSetWait(String relationName, long waitTime)
+	{
+		relatedFoundSetWaitCount.incrementAndGet();
+		relatedFoundSetWaitTime.addAndGet(waitTime);
+		if (application instanceof ISmartClientApplication || application.getApplicationServerAccess() == null)
+		{
+			// smart client has a remote registry
+			return;
+		}
+		try
+		{
+			IPerformanceRegistry performanceRegistry = application.getApplicationServerAccess().getFunctionPerfomanceRegistry();
+			PerformanceData performanceData = performanceRegistry != null ? performanceRegistry.getPerformanceData(application.getSolutionName()) : null;
+			if (performanceData != null)
+			{
+				performanceData.addTiming("Wait for related foundset " + relationName, waitTime, waitTime, IDataServer.RELATED_FOUNDSET_WAIT, null, 1); //$NON-NLS-1$
+			}
+		}
+		catch (Exception e)
+		{
+			Debug.trace(e);
+		}
+	}
+
+	/**
+	 * @return number of times a thread had to wait for a related foundset that was created by another thread
+	 */
+	public long getRelatedFoundSetWaitCount()
+	{
+		return relatedFoundSetWaitCount.get();
+	}
+
+	/**
+	 * @return total time in ms threads waited for related foundsets that were created by another thread
+	 */
+	public long getRelatedFoundSetWaitTimeMS()
+	{
+		return relatedFoundSetWaitTime.get();
+	}
+
 	private RelatedFoundSet getCachedRelatedFoundset(String relationName, RelatedHashedArgumentsWithState relatedArguments)
 	{
 		ConcurrentMap<String, RelatedFoundSet> rfsCache = getCachedSubStates().get(relationName);
@@ -1565,6 +1663,22 @@ public class FoundSetManager implements IFoundSetManagerInternal
 	 * @param tableName
 	 * @return true if there is a filter defined for the table, otherwise false
 	 */
+	/**
+	 * Get a copy of all table filters of this client, per server name.
+	 */
+	public Map<String, List<TableFilter>> getTableFilterParams()
+	{
+		Map<String, List<TableFilter>> copy = new HashMap<String, List<TableFilter>>();
+		for (Map.Entry<String, List<TableFilter>> entry : tableFilterParams.entrySet())
+		{
+			if (!entry.getValue().isEmpty())
+			{
+				copy.put(entry.getKey(), new ArrayList<TableFilter>(entry.getValue()));
+			}
+		}
+		return copy;
+	}
+
 	public boolean hasTableFilter(String serverName, String tableName)
 	{
 		if (serverName == null || tableName == null) return false;
@@ -2435,6 +2549,12 @@ public class FoundSetManager implements IFoundSetManagerInternal
 			long time = System.currentTimeMillis();
 			set = ds.performCustomQuery(application.getClientID(), serverName, "<user_query>", transaction_id, sqlSelect,
 				includeFilters ? getTableFilterParams(serverName, sqlSelect) : null, 0, maxNumberOfRowsToRetrieve);
+			if (set != null && columnarDataSetThreshold > 0 && set.getRowCount() >= columnarDataSetThreshold)
+			{
+				// large results take a lot less memory when stored per column; the data server still returns the complete row based result,
+				// the rows are released while converting so both forms are not kept in full at the same time
+				set = ColumnarDataSet.convert(set);
+			}
 			if (Debug.tracing())
 			{
 				Debug.trace(
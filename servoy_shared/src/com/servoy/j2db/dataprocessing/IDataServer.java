@@ -61,6 +61,7 @@ public interface IDataServer extends Remote
 	public static final int META_DATA_QUERY = 17;
 	public static final int METHOD_CALL = 18;
 	public static final int METHOD_CALL_WAITING_FOR_USER_INPUT = 19;
+	public static final int RELATED_FOUNDSET_WAIT = 20;
 
 
 	public static final String BLOB_MARKER_COLUMN_ALIAS = "SV_BLOB_M"; //$NON-NLS-1$
@@ -108,6 +109,22 @@ public interface IDataServer extends Remote
 	public IDataSet performCustomQuery(String client_id, String server_name, String driverTableName, String transaction_id, ISQLSelect sqlSelect,
 		ArrayList<TableFilter> filters, int startRow, int rowsToRetrieve) throws ServoyException, RemoteException;
 
+	/**
+	 * Read one page of a user query for a {@link DataSetCursor}, the cursor calls this for every page until a page has less rows than requested.
+	 * The select already has a stable sort and, when paged on the sort values, the condition for the rows after the previous page.
+	 * <p>
+	 * The default implementation performs a custom query per page, a server can keep a database cursor open between the pages instead.
+	 *
+	 * @param startRow start row in the query result, 0 when the select is paged on the sort values
+	 * @param pageSize number of rows to retrieve
+	 * @return IDataSet the rows of the page
+	 */
+	public default IDataSet performCursorQuery(String client_id, String server_name, String transaction_id, QuerySelect pageSelect,
+		ArrayList<TableFilter> filters, int startRow, int pageSize) throws ServoyException, RemoteException
+	{
+		return performCustomQuery(client_id, server_name, "<user_query>", transaction_id, pageSelect, filters, startRow, pageSize); //$NON-NLS-1$
+	}
+
 	public IDataSet[] performQuery(String client_id, String server_name, String transaction_id, QueryData[] array) throws ServoyException, RemoteException;
 
 
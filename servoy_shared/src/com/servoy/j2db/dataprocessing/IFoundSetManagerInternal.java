@@ -21,6 +21,7 @@ import java.util.ArrayList;
 import java.util.Collection;
 import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 import com.servoy.j2db.IApplication;
 import com.servoy.j2db.persistence.Column;
@@ -165,6 +166,8 @@ public interface IFoundSetManagerInternal extends IFoundSetManager, IDatabaseMan
 
 	public boolean hasTableFilter(String serverName, String tableName);
 
+	public Map<String, List<TableFilter>> getTableFilterParams();
+
 	public Collection<String> getInMemDataSourceNames();
 
 	boolean dataSourceExists(String dataSource) throws RepositoryException;
@@ -0,0 +1,232 @@
+/*
+ This file belongs to the Servoy development and deployment environment, Copyright (C) 1997-2021 Servoy BV
+
+ This program is free software; you can redistribute it and/or modify it under
+ the terms of the GNU Affero General Public License as published by the Free
+ Software Foundation; either version 3 of the License, or (at your option) any
+ later version.
+
+ This program is distributed in the hope that it will be useful, but WITHOUT
+ ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ FOR A PARTICULAR PURPOSE. See the GNU Affero General Public License for more details.
+
+ You should have received a copy of the GNU Affero General Public License along
+ with this program; if not, see http://www.gnu.org/licenses or write to the Free
+ Software Foundation,Inc., 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301
+*/
+
+package com.servoy.j2db.dataprocessing;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.util.Date;
+
+import com.servoy.j2db.query.QueryAggregate;
+
+/**
+ * Calculation of a new aggregate value from the cached value and a changed record, so the aggregate does not have to be queried again.
+ * <p>
+ * Supported are count, sum, min and max with the same null handling as sql: count only counts non-null values, sum, min and max are null when there are no non-null values.
+ * Sums of floating point values are not updated, the database may round them differently depending on the order of the values.
+ * The new value keeps the type of the cached value, when that is not possible {@link #NOT_INCREMENTAL} is returned.
+ * When the new value cannot be determined without the other records (like removing the current minimum) {@link #NOT_INCREMENTAL} is returned.
+ *
+ * @author agent
+ * @since 2021.06
+ */
+final class IncrementalAggregates
+{
+	static final Object NOT_INCREMENTAL = new Object();
+
+	private IncrementalAggregates()
+	{
+	}
+
+	/**
+	 * Calculate the aggregate value after a value was removed from and/or added to the aggregated values.
+	 *
+	 * @param type the aggregate type, see {@link QueryAggregate#getType()}
+	 * @param current the cached aggregate value
+	 * @param oldValue the value that is no longer aggregated, null for inserts
+	 * @param newValue the value that is now aggregated, null for deletes
+	 * @return the new aggregate value or {@link #NOT_INCREMENTAL}
+	 */
+	static Object apply(int type, Object current, Object oldValue, Object newValue)
+	{
+		try
+		{
+			switch (type)
+			{
+				case QueryAggregate.COUNT :
+					return count(current, oldValue, newValue);
+				case QueryAggregate.SUM :
+					return sum(current, oldValue, newValue);
+				case QueryAggregate.MIN :
+				case QueryAggregate.MAX :
+					return extreme(type, current, oldValue, newValue);
+				default :
+					return NOT_INCREMENTAL;
+			}
+		}
+		catch (NumberFormatException | ArithmeticException e)
+		{
+			// NaN, infinity or overflow
+			return NOT_INCREMENTAL;
+		}
+	}
+
+	private static Object count(Object current, Object oldValue, Object newValue)
+	{
+		if (!(current instanceof Number))
+		{
+			return NOT_INCREMENTAL;
+		}
+		int delta = (newValue == null ? 0 : 1) - (oldValue == null ? 0 : 1);
+		if (delta == 0)
+		{
+			return current;
+		}
+		return toType(toBigDecimal((Number)current).add(BigDecimal.valueOf(delta)), current);
+	}
+
+	private static Object sum(Object current, Object oldValue, Object newValue)
+	{
+		if (!isNumberOrNull(current) || !isNumberOrNull(oldValue) || !isNumberOrNull(newValue))
+		{
+			return NOT_INCREMENTAL;
+		}
+		if (oldValue == null && newValue == null)
+		{
+			return current;
+		}
+		if (current == null)
+		{
+			// no non-null values yet, so there cannot be one to remove
+			return oldValue == null ? newValue : NOT_INCREMENTAL;
+		}
+		if (newValue == null)
+		{
+			// sum becomes null when this was the last non-null value, that cannot be seen here
+			return NOT_INCREMENTAL;
+		}
+		if (isFloatingPoint(current) || isFloatingPoint(oldValue) || isFloatingPoint(newValue))
+		{
+			return NOT_INCREMENTAL;
+		}
+		BigDecimal sum = toBigDecimal((Number)current).add(toBigDecimal((Number)newValue));
+		if (oldValue != null)
+		{
+			sum = sum.subtract(toBigDecimal((Number)oldValue));
+		}
+		return toType(sum, current);
+	}
+
+	private static Object extreme(int type, Object current, Object oldValue, Object newValue)
+	{
+		if (!isComparableOrNull(current) || !isComparableOrNull(oldValue) || !isComparableOrNull(newValue))
+		{
+			return NOT_INCREMENTAL;
+		}
+		if (oldValue != null)
+		{
+			if (current == null)
+			{
+				return NOT_INCREMENTAL;
+			}
+			int c = compareExtreme(type, oldValue, current);
+			if (c < 0)
+			{
+				// old value was beyond the extreme, cache is not consistent
+				return NOT_INCREMENTAL;
+			}
+			if (c == 0)
+			{
+				// the old value may have been the only one with the extreme value, only ok when the new value replaces it
+				return newValue != null && compareExtreme(type, newValue, oldValue) <= 0 ? newValue : NOT_INCREMENTAL;
+			}
+		}
+		if (newValue != null && (current == null || compareExtreme(type, newValue, current) < 0))
+		{
+			return newValue;
+		}
+		return current;
+	}
+
+	/**
+	 * @return negative when value1 is more extreme (lower for min, higher for max) than value2
+	 */
+	private static int compareExtreme(int type, Object value1, Object value2)
+	{
+		int c;
+		if (value1 instanceof Number && value2 instanceof Number)
+		{
+			c = toBigDecimal((Number)value1).compareTo(toBigDecimal((Number)value2));
+		}
+		else if (value1 instanceof Date && value2 instanceof Date)
+		{
+			c = Long.compare(((Date)value1).getTime(), ((Date)value2).getTime());
+		}
+		else
+		{
+			throw new ArithmeticException("Cannot compare " + value1.getClass() + " with " + value2.getClass()); //$NON-NLS-1$ //$NON-NLS-2$
+		}
+		return type == QueryAggregate.MIN ? c : -c;
+	}
+
+	private static boolean isFloatingPoint(Object value)
+	{
+		return value instanceof Double || value instanceof Float;
+	}
+
+	private static boolean isNumberOrNull(Object value)
+	{
+		return value == null || value instanceof Number;
+	}
+
+	/**
+	 * Text is not supported, the database may use a different collation.
+	 */
+	private static boolean isComparableOrNull(Object value)
+	{
+		return value == null || value instanceof Number || value instanceof Date;
+	}
+
+	private static BigDecimal toBigDecimal(Number number)
+	{
+		if (number instanceof BigDecimal) return (BigDecimal)number;
+		if (number instanceof BigInteger) return new BigDecimal((BigInteger)number);
+		if (number instanceof Double || number instanceof Float) return BigDecimal.valueOf(number.doubleValue());
+		return BigDecimal.valueOf(number.longValue());
+	}
+
+	/**
+	 * Convert the result to the type of the cached value, so the value does not change type compared to the queried one.
+	 */
+	private static Object toType(BigDecimal value, Object template)
+	{
+		if (template instanceof BigDecimal)
+		{
+			return value;
+		}
+		if (template instanceof Double || template instanceof Float)
+		{
+			return Double.valueOf(value.doubleValue());
+		}
+		if (value.signum() == 0 || value.stripTrailingZeros().scale() <= 0)
+		{
+			if (template instanceof Integer || template instanceof Short || template instanceof Byte)
+			{
+				return Integer.valueOf(value.intValueExact());
+			}
+			if (template instanceof Long)
+			{
+				return Long.valueOf(value.longValueExact());
+			}
+			if (template instanceof BigInteger)
+			{
+				return value.toBigIntegerExact();
+			}
+		}
+		return NOT_INCREMENTAL;
+	}
+}
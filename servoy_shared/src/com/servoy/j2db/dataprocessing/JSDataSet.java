@@ -558,7 +558,7 @@ public class JSDataSet implements Wrapper, IDelegate<IDataSet>, Scriptable, Seri
 				Object[] array = new Object[set.getRowCount()];
 				for (int j = 0; j < set.getRowCount(); j++)
 				{
-					array[j] = set.getRow(j)[index - 1];//all Javascript calls are 1 based
+					array[j] = getCellValue(j, index - 1);//all Javascript calls are 1 based
 				}
 				return array;
 			}
@@ -1026,7 +1026,7 @@ public class JSDataSet implements Wrapper, IDelegate<IDataSet>, Scriptable, Seri
 				for (int x = 0; x < numberOfColumns; x++)
 				{
 					out.append(value_delimiter);
-					Object val = set.getRow(j)[x];
+					Object val = getCellValue(j, x);
 					out.append(Utils.stringReplace((val != null ? val.toString() : ""), value_delimiter, value_delimiter + value_delimiter)); //$NON-NLS-1$
 					out.append(value_delimiter);
 					if (x < numberOfColumns - 1) out.append(column_separator);
@@ -1086,16 +1086,22 @@ public class JSDataSet implements Wrapper, IDelegate<IDataSet>, Scriptable, Seri
 		{
 			if (r >= 0 && r < set.getRowCount())
 			{
-				Object[] array = set.getRow(r);
-				if (c >= 0 && c < array.length)
-				{
-					return array[c];
-				}
+				return getCellValue(r, c);
 			}
 		}
 		return null;
 	}
 
+	private Object getCellValue(int r, int c)
+	{
+		if (set instanceof DataSetWithIndex)
+		{
+			return ((DataSetWithIndex)set).getValue(r, c);
+		}
+		Object[] array = set.getRow(r);
+		return array != null && c >= 0 && c < array.length ? array[c] : null;
+	}
+
 	private Map<Pair<Integer, Integer>, Map<String, String>> htmlAttributes = null;
 
 	/**
@@ -1467,33 +1473,45 @@ public class JSDataSet implements Wrapper, IDelegate<IDataSet>, Scriptable, Seri
 			}
 			else
 			{
-				Object[] array = set.getRow(index);
-				if (array != null)
-				{
-					Context cx = Context.enter();
-					try
-					{
-						Scriptable arrayScriptable = (Scriptable)cx.getWrapFactory().wrap(cx, start, array, Object[].class);
-						String[] colNamesSorted = getColumnNamesSorted();
-
-						for (int i = 0; i < colNamesSorted.length; i++)
-						{
-							String name = colNamesSorted[i];
-							Object object = array[i];
-							arrayScriptable.put(name, arrayScriptable, object != null ? cx.getWrapFactory().wrap(cx, start, object, object.getClass()) : null);
-						}
-						return arrayScriptable;
-					}
-					finally
-					{
-						Context.exit();
-					}
-				}
+				return getRowWithColumnNames(index, start);
 			}
 		}
 		return null;
 	}
 
+	/**
+	 * The row as a scripting array, the values can also be accessed by column name.
+	 *
+	 * @param index 0-based row index
+	 * @return null when the row does not exist
+	 */
+	Scriptable getRowWithColumnNames(int index, Scriptable scope)
+	{
+		Object[] array = set == null ? null : set.getRow(index);
+		if (array == null)
+		{
+			return null;
+		}
+		Context cx = Context.enter();
+		try
+		{
+			Scriptable arrayScriptable = (Scriptable)cx.getWrapFactory().wrap(cx, scope, array, Object[].class);
+			String[] colNamesSorted = getColumnNamesSorted();
+
+			for (int i = 0; i < colNamesSorted.length; i++)
+			{
+				String name = colNamesSorted[i];
+				Object object = array[i];
+				arrayScriptable.put(name, arrayScriptable, object != null ? cx.getWrapFactory().wrap(cx, scope, object, object.getClass()) : null);
+			}
+			return arrayScriptable;
+		}
+		finally
+		{
+			Context.exit();
+		}
+	}
+
 	private void makeColumnMap()
 	{
 		if (columnameMap == null) columnameMap = new HashMap<String, Integer>();
@@ -34,8 +34,10 @@ import java.util.Map;
 import java.util.StringTokenizer;
 import java.util.concurrent.ConcurrentMap;
 
+import org.mozilla.javascript.Function;
 import org.mozilla.javascript.NativeObject;
 import org.mozilla.javascript.Scriptable;
+import org.mozilla.javascript.Undefined;
 import org.mozilla.javascript.Wrapper;
 import org.mozilla.javascript.annotations.JSFunction;
 
@@ -1550,6 +1552,149 @@ public class JSDatabaseManager implements IJSDatabaseManager
 		}
 	}
 
+	/**
+	 * Performs a query with a query builder object and calls the callback function for every row of the result.
+	 * The rows are read in pages from the database, so also very large results (like exports) can be handled without loading all of them in memory.
+	 * If the callback function returns a non null value the traversal will be stopped, no more rows are queried, and that value is returned.
+	 * The primary key is added to the sort of the query, so the pages are consistent; for queries with joins also the primary keys of the joined tables.
+	 *
+	 * @sample
+	 * var q = datasources.db.example_data.orders.createSelect()
+	 * q.result.add(q.columns.orderid).add(q.columns.customerid).add(q.columns.freight)
+	 * q.sort.add(q.columns.orderid)
+	 * databaseManager.forEachRowByQuery(q, function(row, rowIndex) {
+	 * 	// row is an array with the column values of the current row, the values can also be accessed by column name
+	 * 	application.output(rowIndex + ': ' + row[0] + ' ' + row.customerid)
+	 * 	if (row.freight > 1000) return row[0]; // stop
+	 * });
+	 *
+	 * @param query QBSelect query.
+	 * @param callback The callback function to be called for each row of the result. Receives two parameters: an array with the column values that can also be accessed by column name, and the row index (1-based).
+	 *
+	 * @return Object the return value of the callback that stopped the traversal, null when all rows were traversed.
+	 */
+	@JSFunction
+	public Object forEachRowByQuery(QBSelect query, Function callback) throws ServoyException
+	{
+		return forEachRowByQuery(query, callback, Integer.valueOf(DataSetCursor.DEFAULT_PAGE_SIZE));
+	}
+
+	/**
+	 * @clonedesc forEachRowByQuery(QBSelect, Function)
+	 *
+	 * @sampleas forEachRowByQuery(QBSelect, Function)
+	 *
+	 * @param query QBSelect query.
+	 * @param callback The callback function to be called for each row of the result. Receives two parameters: an array with the column values that can also be accessed by column name, and the row index (1-based).
+	 * @param pageSize The number of rows that is read from the database at once (default 1000).
+	 *
+	 * @return Object the return value of the callback that stopped the traversal, null when all rows were traversed.
+	 */
+	@JSFunction
+	public Object forEachRowByQuery(QBSelect query, Function callback, Number pageSize) throws ServoyException
+	{
+		return forEachPage(query, Utils.getAsInteger(pageSize), callback, true);
+	}
+
+	/**
+	 * Performs a query with a query builder object and calls the callback function for every page of rows of the result.
+	 * Only one page is held in memory at a time, so also very large results (like exports) can be handled.
+	 * If the callback function returns a non null value the traversal will be stopped, no more rows are queried, and that value is returned.
+	 * The primary key is added to the sort of the query, so the pages are consistent; for queries with joins also the primary keys of the joined tables.
+	 *
+	 * @sample
+	 * var q = datasources.db.example_data.orders.createSelect()
+	 * q.result.add(q.columns.orderid).add(q.columns.customerid)
+	 * databaseManager.forEachPageByQuery(q, 5000, function(dataset, firstRowIndex) {
+	 * 	// dataset is a JSDataSet with at most 5000 rows
+	 * 	plugins.file.appendToTXTFile(exportFile, dataset.getAsText(',', '\n', '"', false));
+	 * });
+	 *
+	 * @param query QBSelect query.
+	 * @param pageSize The number of rows that is read from the database at once.
+	 * @param callback The callback function to be called for each page. Receives two parameters: a JSDataSet with the rows of the page and the index (1-based) of the first row of the page.
+	 *
+	 * @return Object the return value of the callback that stopped the traversal, null when all rows were traversed.
+	 */
+	@JSFunction
+	public Object forEachPageByQuery(QBSelect query, Number pageSize, Function callback) throws ServoyException
+	{
+		return forEachPage(query, Utils.getAsInteger(pageSize), callback, false);
+	}
+
+	private Object forEachPage(QBSelect query, int pageSize, Function callback, boolean perRow) throws ServoyException
+	{
+		checkAuthorized();
+		if (callback == null)
+		{
+			return null;
+		}
+
+		String serverName = DataSourceUtils.getDataSourceServerName(query.getDataSource());
+		if (serverName == null)
+			throw new RuntimeException(new ServoyException(ServoyException.InternalCodes.SERVER_NOT_FOUND, new Object[] { query.getDataSource() }));
+		QuerySelect select = query.build();
+		if (!validateQueryArguments(select))
+		{
+			return null;
+		}
+
+		FoundSetManager fsm = (FoundSetManager)application.getFoundSetManager();
+		DataSetCursor cursor = new DataSetCursor(fsm, fsm.getDataServer(), serverName, select, true, pageSize);
+		try
+		{
+			IDataSet page;
+			while ((page = cursor.nextPage()) != null)
+			{
+				int firstRowIndex = cursor.getRowCount() - page.getRowCount() + 1;
+				if (perRow)
+				{
+					JSDataSet rows = new JSDataSet(application, page);
+					for (int i = 0; i < page.getRowCount(); i++)
+					{
+						Object returnValue = callCursorCallback(callback,
+							new Object[] { rows.getRowWithColumnNames(i, callback.getParentScope()), Integer.valueOf(firstRowIndex + i) });
+						if (returnValue != null && returnValue != Undefined.instance)
+						{
+							return returnValue;
+						}
+					}
+				}
+				else
+				{
+					Object returnValue = callCursorCallback(callback, new Object[] { new JSDataSet(application, page), Integer.valueOf(firstRowIndex) });
+					if (returnValue != null && returnValue != Undefined.instance)
+					{
+						return returnValue;
+					}
+				}
+			}
+			return null;
+		}
+		finally
+		{
+			cursor.close();
+		}
+	}
+
+	private Object callCursorCallback(Function callback, Object[] args)
+	{
+		Scriptable callbackScope = callback.getParentScope();
+		try
+		{
+			return application.getScriptEngine().executeFunction(callback, callbackScope, callbackScope, args, false, true);
+		}
+		catch (Exception ex)
+		{
+			Debug.error("Error executing callback: ", ex); //$NON-NLS-1$
+			if (ex instanceof RuntimeException)
+			{
+				throw (RuntimeException)ex;
+			}
+			throw new RuntimeException(ex);
+		}
+	}
+
 	/**
 	 * @deprecated As of release 3.5, replaced by {@link plugins.rawSQL#executeStoredProcedure(String, String, Object[], int[], int)}.
 	 */
@@ -0,0 +1,209 @@
+/*
+ This file belongs to the Servoy development and deployment environment, Copyright (C) 1997-2021 Servoy BV
+
+ This program is free software; you can redistribute it and/or modify it under
+ the terms of the GNU Affero General Public License as published by the Free
+ Software Foundation; either version 3 of the License, or (at your option) any
+ later version.
+
+ This program is distributed in the hope that it will be useful, but WITHOUT
+ ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ FOR A PARTICULAR PURPOSE. See the GNU Affero General Public License for more details.
+
+ You should have received a copy of the GNU Affero General Public License along
+ with this program; if not, see http://www.gnu.org/licenses or write to the Free
+ Software Foundation,Inc., 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301
+*/
+
+package com.servoy.j2db.dataprocessing;
+
+import com.servoy.j2db.util.UUID;
+
+/**
+ * Key of a row in the row cache of the {@link RowManager}.
+ * <p>
+ * Single column pks with a whole number or uuid value, the most common pks, are kept as their binary value, so looking up a cached row by its pk values does
+ * not build the pk hash key string. Other pks are kept as the pk hash key of {@link RowManager#createPKHashKey(Object[])}.
+ * The key of pk values equals the key of the pk hash key of these values, so rows can be looked up with both.
+ *
+ * @author agent
+ * @since 2021.06
+ */
+final class PKCacheKey
+{
+	private static final int NUMBER_KEY = 1;
+	private static final int UUID_KEY = 2;
+	private static final int STRING_KEY = 3;
+
+	private static final int UUID_LENGTH = 36;
+
+	private final int type;
+	private final long high;
+	private final long low;
+	private final String pkHashKey;
+
+	private PKCacheKey(int type, long high, long low, String pkHashKey)
+	{
+		this.type = type;
+		this.high = high;
+		this.low = low;
+		this.pkHashKey = pkHashKey;
+	}
+
+	static PKCacheKey create(Object[] pk)
+	{
+		if (pk != null && pk.length == 1)
+		{
+			Object val = RowManager.getPKHashKeyValue(pk[0]);
+			if (RowManager.isWholeNumberPKValue(val))
+			{
+				return new PKCacheKey(NUMBER_KEY, 0, RowManager.getWholeNumberPKValue(val), null);
+			}
+			if (val instanceof UUID)
+			{
+				return new PKCacheKey(UUID_KEY, ((UUID)val).getMostSignificantBits(), ((UUID)val).getLeastSignificantBits(), null);
+			}
+		}
+		return create(RowManager.createPKHashKey(pk));
+	}
+
+	static PKCacheKey create(String pkHashKey)
+	{
+		// a single value has the format length.value;
+		int dot = pkHashKey.indexOf('.');
+		if (dot > 0 && dot <= 2 && pkHashKey.charAt(pkHashKey.length() - 1) == ';')
+		{
+			int valueLength = parseDigits(pkHashKey, 0, dot);
+			if (valueLength > 0 && dot + valueLength + 2 == pkHashKey.length())
+			{
+				int start = dot + 1;
+				int end = start + valueLength;
+				if (valueLength == UUID_LENGTH)
+				{
+					PKCacheKey key = parseUUID(pkHashKey, start);
+					if (key != null) return key;
+				}
+				else if (isCanonicalLong(pkHashKey, start, end))
+				{
+					return new PKCacheKey(NUMBER_KEY, 0, Long.parseLong(pkHashKey.substring(start, end)), null);
+				}
+			}
+		}
+		return new PKCacheKey(STRING_KEY, 0, 0, pkHashKey);
+	}
+
+	/**
+	 * @return the pk hash key of the pk, see {@link RowManager#createPKHashKey(Object[])}
+	 */
+	String getPKHashKey()
+	{
+		switch (type)
+		{
+			case NUMBER_KEY :
+				return RowManager.createPKHashKey(new Object[] { Long.valueOf(low) });
+			case UUID_KEY :
+				return RowManager.createPKHashKey(new Object[] { new UUID(high, low) });
+			default :
+				return pkHashKey;
+		}
+	}
+
+	/**
+	 * The same digits as Long.toString() would give, so the key of the number has the same pk hash key.
+	 */
+	private static boolean isCanonicalLong(String str, int start, int end)
+	{
+		int digitsStart = str.charAt(start) == '-' ? start + 1 : start;
+		int digits = end - digitsStart;
+		if (digits <= 0 || digits > 19) return false;
+		if (str.charAt(digitsStart) == '0' && (digits > 1 || digitsStart > start)) return false;
+		for (int i = digitsStart; i < end; i++)
+		{
+			char c = str.charAt(i);
+			if (c < '0' || c > '9') return false;
+		}
+		// 19 digits can be out of range
+		if (digits == 19)
+		{
+			try
+			{
+				Long.parseLong(str.substring(start, end));
+			}
+			catch (NumberFormatException e)
+			{
+				return false;
+			}
+		}
+		return true;
+	}
+
+	private static int parseDigits(String str, int start, int end)
+	{
+		int value = 0;
+		for (int i = start; i < end; i++)
+		{
+			char c = str.charAt(i);
+			if (c < '0' || c > '9') return -1;
+			value = value * 10 + (c - '0');
+		}
+		return value;
+	}
+
+	/**
+	 * Parse a lowercase uuid string like the pk hash key has them, so the key of the uuid has the same pk hash key.
+	 */
+	private static PKCacheKey parseUUID(String str, int start)
+	{
+		long msb = 0;
+		long lsb = 0;
+		int nibbles = 0;
+		for (int i = 0; i < UUID_LENGTH; i++)
+		{
+			char c = str.charAt(start + i);
+			if (i == 8 || i == 13 || i == 18 || i == 23)
+			{
+				if (c != '-') return null;
+				continue;
+			}
+			int nibble;
+			if (c >= '0' && c <= '9') nibble = c - '0';
+			else if (c >= 'a' && c <= 'f') nibble = c - 'a' + 10;
+			else return null;
+
+			if (nibbles < 16) msb = (msb << 4) | nibble;
+			else lsb = (lsb << 4) | nibble;
+			nibbles++;
+		}
+		return new PKCacheKey(UUID_KEY, msb, lsb, null);
+	}
+
+	@Override
+	public int hashCode()
+	{
+		switch (type)
+		{
+			case NUMBER_KEY :
+				return Long.hashCode(low);
+			case UUID_KEY :
+				return Long.hashCode(high ^ low);
+			default :
+				return pkHashKey.hashCode();
+		}
+	}
+
+	@Override
+	public boolean equals(Object obj)
+	{
+		if (this == obj) return true;
+		if (!(obj instanceof PKCacheKey)) return false;
+		PKCacheKey other = (PKCacheKey)obj;
+		if (type != other.type) return false;
+		return type == STRING_KEY ? pkHashKey.equals(other.pkHashKey) : high == other.high && low == other.low;
+	}
+
+	@Override
+	public String toString()
+	{
+		return getPKHashKey();
+	}
+}
@@ -16,9 +16,15 @@
  */
 package com.servoy.j2db.dataprocessing;
 
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
 
+import com.servoy.j2db.dataprocessing.ValueFactory.DbIdentValue;
 import com.servoy.j2db.persistence.ITransactable;
 import com.servoy.j2db.query.AbstractBaseQuery.PlaceHolderSetter;
 import com.servoy.j2db.query.Placeholder;
@@ -91,8 +97,17 @@ public class PKDataSet implements IDataSet, IDelegate<IDataSet>
 		}
 	};
 
+	/**
+	 * Minimum number of pks before lookups on pk hash use an index, smaller sets are just scanned.
+	 */
+	static final int PK_INDEX_MIN_SIZE = 64;
+
 	private final IDataSet pks;
 	private transient SortedList<Object[]> sortedPKs; // cache of pks for fast lookup, used for matching the the next chunk in FoundSet with the current set.
+	private transient Map<String, RowIndex> pkIndex; // lazy cache of pk hash -> row index, kept up to date on add, remove and set
+	private transient List<RowIndex> unindexedRows; // rows with a db ident pk, their hash changes when the db generated value is set
+	private transient int indexedRowCount;
+	private transient boolean duplicatePkHashes; // the index only holds the first row of a pk hash, rows cannot be removed from it one by one
 	private transient PksAndRecordsHolder pksAndRecordsHolder;
 
 	private transient ITransactable transactionListener;
@@ -123,6 +138,7 @@ public class PKDataSet implements IDataSet, IDelegate<IDataSet>
 	public boolean addColumn(int columnIndex, String columnName, int columnType)
 	{
 		sortedPKs = null;
+		pkIndex = null;
 		return pks.addColumn(columnIndex, columnName, columnType);
 	}
 
@@ -138,6 +154,16 @@ public class PKDataSet implements IDataSet, IDelegate<IDataSet>
 		{
 			sortedPKs.add(pk);
 		}
+		if (isPkIndexValid() && index >= 0 && index <= indexedRowCount)
+		{
+			shiftPkIndex(index, 1);
+			indexPk(index, pk);
+			indexedRowCount++;
+		}
+		else
+		{
+			pkIndex = null;
+		}
 		pks.addRow(index, pk);
 
 		// pk is added, update the dynamic pk values holder.
@@ -196,6 +222,7 @@ public class PKDataSet implements IDataSet, IDelegate<IDataSet>
 	public boolean removeColumn(int columnIndex)
 	{
 		sortedPKs = null;
+		pkIndex = null;
 		return pks.removeColumn(columnIndex);
 	}
 
@@ -265,6 +292,19 @@ public class PKDataSet implements IDataSet, IDelegate<IDataSet>
 		{
 			sortedPKs.remove(pk);
 		}
+		if (isPkIndexValid() && index >= 0 && index < indexedRowCount)
+		{
+			unindexPk(index, pk);
+			if (pkIndex != null)
+			{
+				shiftPkIndex(index + 1, -1);
+				indexedRowCount--;
+			}
+		}
+		else
+		{
+			pkIndex = null;
+		}
 		pks.removeRow(index);
 
 		// pk is removed, update the dynamic pk values holder.
@@ -307,6 +347,16 @@ public class PKDataSet implements IDataSet, IDelegate<IDataSet>
 			}
 		}
 		Object[] oldpk = pks.getRow(index);
+		if (isPkIndexValid() && index >= 0 && index < indexedRowCount)
+		{
+			unindexPk(index, oldpk);
+			if (pkIndex != null) indexPk(index, pk);
+		}
+		else
+		{
+			// set beyond the end extends the set
+			pkIndex = null;
+		}
 		pks.setRow(index, pk);
 
 		// // pk is updated, update the dynamic pk values holder if needed.
@@ -335,11 +385,13 @@ public class PKDataSet implements IDataSet, IDelegate<IDataSet>
 
 	public void sort(int column, boolean ascending)
 	{
+		pkIndex = null;
 		pks.sort(column, ascending);
 	}
 
 	public void sort(Comparator<Object[]> rowComparator)
 	{
+		pkIndex = null;
 		pks.sort(rowComparator);
 	}
 
@@ -375,6 +427,188 @@ public class PKDataSet implements IDataSet, IDelegate<IDataSet>
 		return sortedPKs.contains(pk);
 	}
 
+	/**
+	 * Get the row index of the pk with given hash (see {@link RowManager#createPKHashKey(Object[])}).
+	 * Larger sets (see {@link #PK_INDEX_MIN_SIZE}) use a lazily built index that is kept up to date when rows are added, removed or set,
+	 * smaller sets are scanned.
+	 *
+	 * @return the index or -1 when the pk hash is not found
+	 */
+	public int getIndexOfPkHash(String pkHash)
+	{
+		int index = getIndexOfPkHashInIndex(pkHash);
+		if (index >= 0 || pks.getRowCount() < PK_INDEX_MIN_SIZE)
+		{
+			return index;
+		}
+		for (RowIndex row : unindexedRows)
+		{
+			if (pkHash.equals(RowManager.createPKHashKey(pks.getRow(row.row))))
+			{
+				return row.row;
+			}
+		}
+		return -1;
+	}
+
+	/**
+	 * Get the row index of the pk with given hash using the index only, rows with a db ident pk are not in the index, these have
+	 * to be checked separately via {@link #getUnindexedRows()}. Smaller sets are scanned completely.
+	 *
+	 * @return the index or -1 when the pk hash is not in the index
+	 */
+	int getIndexOfPkHashInIndex(String pkHash)
+	{
+		int rowCount = pks.getRowCount();
+		if (rowCount < PK_INDEX_MIN_SIZE)
+		{
+			pkIndex = null;
+			unindexedRows = Collections.emptyList();
+			for (int i = 0; i < rowCount; i++)
+			{
+				if (pkHash.equals(RowManager.createPKHashKey(pks.getRow(i))))
+				{
+					return i;
+				}
+			}
+			return -1;
+		}
+
+		if (!isPkIndexValid())
+		{
+			createPkIndex();
+		}
+		RowIndex index = pkIndex.get(pkHash);
+		if (index == null)
+		{
+			return -1;
+		}
+		if (index.row < rowCount && pkHash.equals(RowManager.createPKHashKey(pks.getRow(index.row))))
+		{
+			return index.row;
+		}
+
+		// pk array was changed in place, rebuild once
+		createPkIndex();
+		index = pkIndex.get(pkHash);
+		return index == null ? -1 : index.row;
+	}
+
+	/**
+	 * Row indexes that are not in the pk hash index, only valid after {@link #getIndexOfPkHashInIndex(String)} was called.
+	 */
+	List<Integer> getUnindexedRows()
+	{
+		if (unindexedRows == null || unindexedRows.isEmpty()) return Collections.emptyList();
+		List<Integer> rows = new ArrayList<Integer>(unindexedRows.size());
+		for (RowIndex row : unindexedRows)
+		{
+			rows.add(Integer.valueOf(row.row));
+		}
+		return rows;
+	}
+
+	private boolean isPkIndexValid()
+	{
+		return pkIndex != null && indexedRowCount == pks.getRowCount();
+	}
+
+	private void createPkIndex()
+	{
+		int rowCount = pks.getRowCount();
+		pkIndex = new HashMap<String, RowIndex>(Math.max(16, (int)(rowCount / 0.75f) + 1));
+		unindexedRows = new ArrayList<RowIndex>(2);
+		duplicatePkHashes = false;
+		for (int i = 0; i < rowCount; i++)
+		{
+			indexPk(i, pks.getRow(i));
+		}
+		indexedRowCount = rowCount;
+	}
+
+	private void indexPk(int row, Object[] pk)
+	{
+		if (pk == null) return;
+		for (Object val : pk)
+		{
+			if (val instanceof DbIdentValue)
+			{
+				unindexedRows.add(new RowIndex(row));
+				return;
+			}
+		}
+		// keep the first occurrence, like a scan from the start would find
+		String pkHash = RowManager.createPKHashKey(pk);
+		RowIndex existing = pkIndex.get(pkHash);
+		if (existing == null)
+		{
+			pkIndex.put(pkHash, new RowIndex(row));
+		}
+		else
+		{
+			duplicatePkHashes = true;
+			if (row < existing.row)
+			{
+				existing.row = row;
+			}
+		}
+	}
+
+	private void unindexPk(int row, Object[] pk)
+	{
+		for (Iterator<RowIndex> it = unindexedRows.iterator(); it.hasNext();)
+		{
+			if (it.next().row == row)
+			{
+				// db ident value may have been replaced in place by the db generated value, so check this first
+				it.remove();
+				return;
+			}
+		}
+		if (pk == null) return;
+		if (duplicatePkHashes)
+		{
+			// another row may have the same pk hash, rebuild on the next lookup
+			pkIndex = null;
+			return;
+		}
+		String pkHash = RowManager.createPKHashKey(pk);
+		RowIndex existing = pkIndex.get(pkHash);
+		if (existing != null && existing.row == row)
+		{
+			pkIndex.remove(pkHash);
+		}
+	}
+
+	/**
+	 * Move rows starting at fromRow with delta positions.
+	 */
+	private void shiftPkIndex(int fromRow, int delta)
+	{
+		if (fromRow >= indexedRowCount) return; // appended or removed the last row
+		for (RowIndex index : pkIndex.values())
+		{
+			if (index.row >= fromRow) index.row += delta;
+		}
+		for (RowIndex index : unindexedRows)
+		{
+			if (index.row >= fromRow) index.row += delta;
+		}
+	}
+
+	/**
+	 * Mutable row index, so rows can be moved without creating new map values.
+	 */
+	private static final class RowIndex
+	{
+		int row;
+
+		RowIndex(int row)
+		{
+			this.row = row;
+		}
+	}
+
 	@Override
 	public List<Object[]> getRows()
 	{
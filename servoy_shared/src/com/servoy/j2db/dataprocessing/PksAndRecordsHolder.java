@@ -245,13 +245,90 @@ public class PksAndRecordsHolder
 
 	public synchronized void rowPkUpdated(String oldPkHash, Row row)
 	{
-		for (int i = 0; pks != null && i < pks.getRowCount(); i++)
+		int index = getIndexOfPkHash(oldPkHash, false);
+		if (index >= 0)
 		{
-			if (oldPkHash.equals(RowManager.createPKHashKey(pks.getRow(i))))
+			pks.setRow(index, row.getPK());
+		}
+	}
+
+	/**
+	 * Find the index of the pk, larger sets (see {@link PKDataSet#PK_INDEX_MIN_SIZE}) use the pk hash index. A hit is only returned when the pk values are
+	 * equal, when the hash is not found or the values differ the pks are scanned, pk values can be equal (see {@link Utils#equalObjects(Object, Object)})
+	 * with a different hash.
+	 *
+	 * @param lastIndex the previous found index, the scan starts near it
+	 * @return the index or -1 when the pk is not found
+	 */
+	public synchronized int getIndexOfPk(Object[] pk, int lastIndex)
+	{
+		if (pk == null || pk.length == 0 || pks == null || pks.getColumnCount() != pk.length)
+		{
+			return -1;
+		}
+
+		int rowCount = pks.getRowCount();
+		if (rowCount >= PKDataSet.PK_INDEX_MIN_SIZE)
+		{
+			int index = getIndexOfPkHash(RowManager.createPKHashKey(pk), true);
+			if (index >= 0 && pkEquals(pk, pks.getRow(index)))
+			{
+				return index;
+			}
+		}
+
+		// we try to optimize this search assuming next index is located near the last one
+		int startIndex = Math.max(0, Math.min(lastIndex - 10, rowCount));
+		for (int r = startIndex; r < rowCount; r++)
+		{
+			if (pkEquals(pk, pks.getRow(r))) return r;
+		}
+		for (int r = 0; r < startIndex; r++)
+		{
+			if (pkEquals(pk, pks.getRow(r))) return r;
+		}
+		return -1;
+	}
+
+	private static boolean pkEquals(Object[] pk, Object[] pkrow)
+	{
+		if (pkrow == null || pkrow.length != pk.length) return false;
+		for (int c = 0; c < pkrow.length; c++)
+		{
+			if (!Utils.equalObjects(pk[c], pkrow[c])) return false;
+		}
+		return true;
+	}
+
+	/**
+	 * Find the index of the pk hash via the pk index of the pks, smaller sets (see {@link PKDataSet#PK_INDEX_MIN_SIZE}) are scanned.
+	 *
+	 * @param useRecordPkHash when true compare against the pk hash of the cached record for rows that could not be indexed
+	 */
+	public synchronized int getIndexOfPkHash(String pkHash, boolean useRecordPkHash)
+	{
+		if (pks == null || pkHash == null)
+		{
+			return -1;
+		}
+
+		int index = pks.getIndexOfPkHashInIndex(pkHash);
+		if (index >= 0)
+		{
+			return index;
+		}
+
+		// rows with a db ident pk are not indexed, there are usually only a few (new records)
+		for (Integer row : pks.getUnindexedRows())
+		{
+			int i = row.intValue();
+			IRecordInternal record = useRecordPkHash ? cachedRecords.get(i) : null;
+			String recordPkHash = record != null ? record.getPKHashKey() : RowManager.createPKHashKey(pks.getRow(i));
+			if (pkHash.equals(recordPkHash))
 			{
-				pks.setRow(i, row.getPK());
-				return;
+				return i;
 			}
 		}
+		return -1;
 	}
 }
@@ -19,8 +19,10 @@ package com.servoy.j2db.dataprocessing;
 
 import java.io.ByteArrayOutputStream;
 import java.io.ObjectOutputStream;
+import java.math.BigDecimal;
 import java.rmi.RemoteException;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.Iterator;
 import java.util.List;
@@ -32,24 +34,29 @@ import java.util.stream.IntStream.Builder;
 import org.mozilla.javascript.NativeJavaMethod;
 import org.mozilla.javascript.Scriptable;
 
+import com.servoy.base.persistence.IBaseColumn;
 import com.servoy.base.query.IBaseSQLCondition;
 import com.servoy.base.scripting.annotations.ServoyClientSupport;
 import com.servoy.j2db.dataprocessing.ValueFactory.DbIdentValue;
 import com.servoy.j2db.persistence.Column;
+import com.servoy.j2db.persistence.IColumnTypes;
 import com.servoy.j2db.persistence.IRepository;
 import com.servoy.j2db.persistence.Relation;
 import com.servoy.j2db.persistence.RepositoryException;
 import com.servoy.j2db.query.AbstractBaseQuery;
 import com.servoy.j2db.query.AndOrCondition;
+import com.servoy.j2db.query.ColumnType;
 import com.servoy.j2db.query.IQuerySelectValue;
 import com.servoy.j2db.query.ISQLSelect;
 import com.servoy.j2db.query.Placeholder;
+import com.servoy.j2db.query.QueryColumn;
 import com.servoy.j2db.query.QuerySelect;
 import com.servoy.j2db.query.TablePlaceholderKey;
 import com.servoy.j2db.querybuilder.impl.QBSelect;
 import com.servoy.j2db.util.Debug;
 import com.servoy.j2db.util.SafeArrayList;
 import com.servoy.j2db.util.ServoyException;
+import com.servoy.j2db.util.UUID;
 import com.servoy.j2db.util.Utils;
 import com.servoy.j2db.util.visitor.PackVisitor;
 
@@ -184,14 +191,19 @@ public abstract class RelatedFoundSet extends FoundSet
 
 		QuerySelect[] sqlSelects = new QuerySelect[whereArsgLists.length]; // all queries
 		QuerySelect[] aggregateSelects = new QuerySelect[whereArsgLists.length]; // all aggregates
-		List<Integer> queryIndex = new ArrayList<Integer>(whereArsgLists.length);
+		QueryData[] relationQueryDatas = new QueryData[whereArsgLists.length];
+		QueryData[] aggregateQueryDatas = new QueryData[whereArsgLists.length];
 		Map<Integer, Row> cachedRows = new HashMap<Integer, Row>();
-		List<QueryData> queryDatas = new ArrayList<QueryData>(whereArsgLists.length);
 
 		String transactionID = fsm.getTransactionID(sheet);
 		String clientID = fsm.getApplication().getClientID();
 		ArrayList<TableFilter> sqlFilters = fsm.getTableFilterParams(sheet.getServerName(), cleanSelect);
 
+		// when enabled, the relation queries of the siblings are merged into 1 query, keep a clone before the placeholder is set in cleanSelect
+		int mergeKeyIndex = whereArsgLists.length > 1 ? getMergeKeyIndex(fsm, relation, cleanSelect) : -1;
+		QuerySelect mergeSelect = mergeKeyIndex == -1 ? null : AbstractBaseQuery.deepClone(cleanSelect);
+		SQLStatement mergeTrackingInfo = null;
+
 		for (int i = 0; i < whereArsgLists.length; i++)
 		{
 			Object[] whereArgs = whereArsgLists[i];
@@ -259,90 +271,122 @@ public abstract class RelatedFoundSet extends FoundSet
 						trackingInfo.setTrackingData(sheet.getColumnNames(), new Object[][] { }, new Object[][] { }, fsm.getApplication().getUserUID(),
 							fsm.getTrackingInfo(), fsm.getApplication().getClientID());
 					}
-					queryDatas.add(new QueryData(selectStatement, sqlFilters, !sqlSelect.isUnique(), 0, fsm.initialRelatedChunkSize, IDataServer.RELATION_QUERY,
-						trackingInfo));
-					queryIndex.add(Integer.valueOf(i));
+					relationQueryDatas[i] = new QueryData(selectStatement, sqlFilters, !sqlSelect.isUnique(), 0, fsm.initialRelatedChunkSize,
+						IDataServer.RELATION_QUERY, trackingInfo);
+					mergeTrackingInfo = trackingInfo;
 
 					QuerySelect aggregateSelect = FoundSet.getAggregateSelect(sheet, sqlSelect);
 					if (aggregateSelect != null)
 					{
 						// Note: see note about clone above.
-						queryDatas.add(new QueryData(AbstractBaseQuery.deepClone((ISQLSelect)aggregateSelect),
-							fsm.getTableFilterParams(sheet.getServerName(), aggregateSelect), false, 0, 1, IDataServer.AGGREGATE_QUERY, null));
-						queryIndex.add(Integer.valueOf(i)); // same index for aggregates
+						aggregateQueryDatas[i] = new QueryData(AbstractBaseQuery.deepClone((ISQLSelect)aggregateSelect),
+							fsm.getTableFilterParams(sheet.getServerName(), aggregateSelect), false, 0, 1, IDataServer.AGGREGATE_QUERY, null);
 						aggregateSelects[i] = aggregateSelect;
 					}
 				}
 			}
 		}
 
-		IDataSet[] dataSets = null;
-		if (queryDatas.size() > 0)
+		// the indexes of the siblings that are queried with the merged query
+		List<Integer> mergedIndexes = new ArrayList<Integer>();
+		if (mergeSelect != null)
 		{
-			try
+			for (int i = 0; i < relationQueryDatas.length; i++)
 			{
-				// pack is safe here because queryDatas contains only cloned ISQLSelect objects
-				QueryData[] qDatas = queryDatas.toArray(new QueryData[queryDatas.size()]);
-				AbstractBaseQuery.acceptVisitor(qDatas, new PackVisitor());
-
-				int size = 0;
-				if (Debug.tracing()) // trace the message size
-				{
-					try
-					{
-						ByteArrayOutputStream bs = new ByteArrayOutputStream();
-						ObjectOutputStream os = new ObjectOutputStream(bs);
-						os.writeObject(qDatas);
-						os.close();
-						size = bs.size();
-					}
-					catch (Exception e)
-					{
-						Debug.trace(e);
-					}
-				}
+				if (relationQueryDatas[i] != null) mergedIndexes.add(Integer.valueOf(i));
+			}
+			if (mergedIndexes.size() < 2)
+			{
+				mergedIndexes.clear();
+			}
+		}
 
-				long time = System.currentTimeMillis();
-				dataSets = fsm.getDataServer().performQuery(clientID, sheet.getServerName(), transactionID, qDatas);
-				if (Debug.tracing())
-				{
-					Debug.trace(Thread.currentThread().getName() + ": Relation query: " + relation.getName() + " with: " + qDatas.length + //$NON-NLS-1$ //$NON-NLS-2$
-						" queries,query size: " + size + ",time: " + (System.currentTimeMillis() - time) + "ms"); //$NON-NLS-1$//$NON-NLS-2$ //$NON-NLS-3$
-				}
+		List<QueryData> queryDatas = new ArrayList<QueryData>(whereArsgLists.length);
+		List<Integer> queryIndex = new ArrayList<Integer>(whereArsgLists.length); // index of the foundset, negative (-index-1) for aggregates
+		if (mergedIndexes.size() > 0)
+		{
+			Object[] keyValues = new Object[mergedIndexes.size()];
+			for (int m = 0; m < keyValues.length; m++)
+			{
+				keyValues[m] = whereArsgLists[mergedIndexes.get(m).intValue()][0];
 			}
-			catch (RepositoryException re)
+			if (mergeSelect.setPlaceholderValue(placeHolderKey, new Object[][] { keyValues }))
 			{
-				testException(clientID, re);
-				throw re;
+				// 1 query with fk IN (...) for all siblings, partitioned over the foundsets afterwards, see partitionMergedRelationData()
+				queryDatas.add(new QueryData(mergeSelect, sqlFilters, !mergeSelect.isUnique(), 0, fsm.initialRelatedChunkSize * keyValues.length,
+					IDataServer.RELATION_QUERY, mergeTrackingInfo));
+				queryIndex.add(null);
 			}
-			catch (RemoteException e)
+			else
 			{
-				testException(clientID, e.getCause());
-				throw new RepositoryException(e);
+				mergedIndexes.clear();
 			}
 		}
-
-		IFoundSetInternal[] foundsets = new RelatedFoundSet[whereArsgLists.length];
-		int d = 0;
 		for (int i = 0; i < whereArsgLists.length; i++)
 		{
-			IDataSet data;
-			IDataSet aggregateData = null;
-			int index = (d >= queryIndex.size()) ? -1 : queryIndex.get(d).intValue();
-			if (index == i)
+			if (relationQueryDatas[i] != null && !mergedIndexes.contains(Integer.valueOf(i)))
+			{
+				queryDatas.add(relationQueryDatas[i]);
+				queryIndex.add(Integer.valueOf(i));
+			}
+			if (aggregateQueryDatas[i] != null)
 			{
-				// regular query
-				data = dataSets[d++];
+				queryDatas.add(aggregateQueryDatas[i]);
+				queryIndex.add(Integer.valueOf(-i - 1));
+			}
+		}
 
-				// optionally followed by aggregate
-				index = (d >= queryIndex.size()) ? -1 : queryIndex.get(d).intValue();
-				if (index == i)
+		IDataSet[] relationData = new IDataSet[whereArsgLists.length];
+		IDataSet[] aggregateData = new IDataSet[whereArsgLists.length];
+		if (queryDatas.size() > 0)
+		{
+			IDataSet[] dataSets = performRelatedQueries(fsm, clientID, sheet, transactionID, relation, queryDatas);
+			if (dataSets.length != queryDatas.size())
+			{
+				// should never happen!
+				throw new RepositoryException("Related query parameters out of sync " + dataSets.length + '/' + queryDatas.size()); //$NON-NLS-1$
+			}
+			for (int d = 0; d < dataSets.length; d++)
+			{
+				Integer index = queryIndex.get(d);
+				if (index == null)
+				{
+					if (!partitionMergedRelationData(dataSets[d], mergeKeyIndex, whereArsgLists, mergedIndexes, fsm.initialRelatedChunkSize, relationData))
+					{
+						// the merged result could not be divided over the siblings, query them separately after all
+						if (Debug.tracing())
+						{
+							Debug.trace(Thread.currentThread().getName() + ": Merged relation query for " + relation.getName() + //$NON-NLS-1$
+								" could not be partitioned, querying separately"); //$NON-NLS-1$
+						}
+						List<QueryData> separateQueryDatas = new ArrayList<QueryData>(mergedIndexes.size());
+						for (Integer i : mergedIndexes)
+						{
+							separateQueryDatas.add(relationQueryDatas[i.intValue()]);
+						}
+						IDataSet[] separateDataSets = performRelatedQueries(fsm, clientID, sheet, transactionID, relation, separateQueryDatas);
+						for (int m = 0; m < mergedIndexes.size(); m++)
+						{
+							relationData[mergedIndexes.get(m).intValue()] = separateDataSets[m];
+						}
+					}
+				}
+				else if (index.intValue() < 0)
 				{
-					// aggregate
-					aggregateData = dataSets[d++];
+					aggregateData[-index.intValue() - 1] = dataSets[d];
+				}
+				else
+				{
+					relationData[index.intValue()] = dataSets[d];
 				}
 			}
-			else
+		}
+
+		IFoundSetInternal[] foundsets = new RelatedFoundSet[whereArsgLists.length];
+		for (int i = 0; i < whereArsgLists.length; i++)
+		{
+			IDataSet data = relationData[i];
+			if (data == null)
 			{
 				data = new BufferedDataSet();
 				Row row = cachedRows.get(Integer.valueOf(i));
@@ -355,20 +399,335 @@ public abstract class RelatedFoundSet extends FoundSet
 			}
 
 			foundsets[i] = factory.createRelatedFoundSet(data, sqlSelects[i], app, parents[i], relation.getName(), sheet, sortColumns, aggregateSelects[i],
-				aggregateData);
-			if (aggregateData != null && foundsets[i] instanceof FoundSet)
+				aggregateData[i]);
+			if (aggregateData[i] != null && foundsets[i] instanceof FoundSet)
 			{
-				((FoundSet)foundsets[i]).fillAggregates(aggregateSelects[i], aggregateData);
+				((FoundSet)foundsets[i]).fillAggregates(aggregateSelects[i], aggregateData[i]);
 			}
 		}
 
-		if (d != queryIndex.size())
+		return foundsets;
+	}
+
+	private static IDataSet[] performRelatedQueries(FoundSetManager fsm, String clientID, SQLSheet sheet, String transactionID, Relation relation,
+		List<QueryData> queryDatas) throws ServoyException
+	{
+		try
+		{
+			// pack is safe here because queryDatas contains only cloned ISQLSelect objects
+			QueryData[] qDatas = queryDatas.toArray(new QueryData[queryDatas.size()]);
+			AbstractBaseQuery.acceptVisitor(qDatas, new PackVisitor());
+
+			int size = 0;
+			if (Debug.tracing()) // trace the message size
+			{
+				try
+				{
+					ByteArrayOutputStream bs = new ByteArrayOutputStream();
+					ObjectOutputStream os = new ObjectOutputStream(bs);
+					os.writeObject(qDatas);
+					os.close();
+					size = bs.size();
+				}
+				catch (Exception e)
+				{
+					Debug.trace(e);
+				}
+			}
+
+			long time = System.currentTimeMillis();
+			IDataSet[] dataSets = fsm.getDataServer().performQuery(clientID, sheet.getServerName(), transactionID, qDatas);
+			if (Debug.tracing())
+			{
+				Debug.trace(Thread.currentThread().getName() + ": Relation query: " + relation.getName() + " with: " + qDatas.length + //$NON-NLS-1$ //$NON-NLS-2$
+					" queries,query size: " + size + ",time: " + (System.currentTimeMillis() - time) + "ms"); //$NON-NLS-1$//$NON-NLS-2$ //$NON-NLS-3$
+			}
+			return dataSets;
+		}
+		catch (RepositoryException re)
+		{
+			testException(clientID, re);
+			throw re;
+		}
+		catch (RemoteException e)
 		{
-			// should never happen!
-			throw new RepositoryException("Related query parameters out of sync " + d + '/' + queryIndex.size()); //$NON-NLS-1$
+			testException(clientID, e.getCause());
+			throw new RepositoryException(e);
 		}
+	}
 
-		return foundsets;
+	/**
+	 * Queries of siblings can be merged into 1 query when the relation is a single = condition on a numeric or uuid column.
+	 * For other types the database may match values that are not equal in java (like case insensitive text), those would not be partitioned correctly.
+	 *
+	 * @return the foreign column of the relation, null when the queries cannot be merged
+	 */
+	private static Column getMergeKeyColumn(FoundSetManager fsm, Relation relation) throws RepositoryException
+	{
+		int[] operators = relation.getOperators();
+		if (operators == null || operators.length != 1 || operators[0] != IBaseSQLCondition.EQUALS_OPERATOR)
+		{
+			return null;
+		}
+		Column[] foreignColumns = relation.getForeignColumns(fsm.getApplication().getFlattenedSolution());
+		if (foreignColumns == null || foreignColumns.length != 1)
+		{
+			return null;
+		}
+		Column foreignColumn = foreignColumns[0];
+		int type = foreignColumn.getDataProviderType();
+		if (type != IColumnTypes.INTEGER && type != IColumnTypes.NUMBER && !foreignColumn.hasFlag(IBaseColumn.UUID_COLUMN))
+		{
+			return null;
+		}
+		return foreignColumn;
+	}
+
+	/**
+	 * @return the index of the foreign column in the selected columns, -1 when the relation queries cannot be merged
+	 */
+	private static int getMergeKeyIndex(FoundSetManager fsm, Relation relation, QuerySelect select) throws RepositoryException
+	{
+		Column foreignColumn = fsm.mergeRelatedQueries ? getMergeKeyColumn(fsm, relation) : null;
+		if (foreignColumn == null)
+		{
+			return -1;
+		}
+		List<IQuerySelectValue> columns = select.getColumns();
+		for (int c = 0; c < columns.size(); c++)
+		{
+			IQuerySelectValue column = columns.get(c);
+			if (column instanceof QueryColumn && foreignColumn.getSQLName().equalsIgnoreCase(((QueryColumn)column).getName()))
+			{
+				return c;
+			}
+		}
+		return -1;
+	}
+
+	/**
+	 * Query the aggregates of this foundset and of the cached related foundsets of the same relation in 1 query grouped by the foreign key.
+	 * The aggregates of the other foundsets are kept until they are read, so a list showing an aggregate per row needs 1 aggregate query.
+	 */
+	@Override
+	protected boolean queryForAggregatesWithSiblings()
+	{
+		if (!fsm.groupRelatedAggregates || findMode)
+		{
+			return false;
+		}
+		try
+		{
+			Relation relation = fsm.getApplication().getFlattenedSolution().getRelation(relationName);
+			Column keyColumn = relation == null ? null : getMergeKeyColumn(fsm, relation);
+			if (keyColumn == null)
+			{
+				return false;
+			}
+
+			QuerySelect querySelect = getPksAndRecords().getQuerySelectForReading();
+			Object keyValue = getRelationKeyValue(querySelect);
+			if (keyValue == null || !querySelect.equals(creationSqlSelect))
+			{
+				// foundset was searched or sorted after creation
+				return false;
+			}
+
+			List<Object> keyValues = new ArrayList<Object>();
+			Map<Object, List<FoundSet>> foundsetsByKey = new HashMap<Object, List<FoundSet>>();
+			keyValues.add(keyValue);
+			foundsetsByKey.computeIfAbsent(normalizeMergeKey(keyValue), k -> new ArrayList<FoundSet>(1)).add(this);
+			for (RelatedFoundSet sibling : fsm.getCachedRelatedFoundSets(relationName))
+			{
+				if (keyValues.size() >= fsm.pkChunkSize)
+				{
+					break;
+				}
+				if (sibling != this && sibling.getSQLSheet() == sheet && !sibling.isInFindMode() && !sibling.mustQueryForUpdates() &&
+					sibling.getRawSize() > 0 && !sibling.hasAggregatesLoaded())
+				{
+					QuerySelect siblingSelect = sibling.getPksAndRecords().getQuerySelectForReading();
+					Object siblingKeyValue = sibling.getRelationKeyValue(siblingSelect);
+					if (siblingKeyValue != null && siblingSelect.equals(sibling.creationSqlSelect))
+					{
+						keyValues.add(siblingKeyValue);
+						foundsetsByKey.computeIfAbsent(normalizeMergeKey(siblingKeyValue), k -> new ArrayList<FoundSet>(1)).add(sibling);
+					}
+				}
+			}
+			if (keyValues.size() == 1)
+			{
+				return false;
+			}
+
+			QuerySelect aggregateSelect = getAggregateSelect(sheet, querySelect);
+			if (aggregateSelect == null)
+			{
+				return false;
+			}
+			QuerySelect groupedSelect = AbstractBaseQuery.deepClone(aggregateSelect);
+			if (!groupedSelect.setPlaceholderValue(SQLGenerator.createRelationKeyPlaceholderKey(querySelect.getTable(), relationName),
+				new Object[][] { keyValues.toArray() }))
+			{
+				return false;
+			}
+			int keyIndex = groupedSelect.getColumns().size();
+			QueryColumn keyQueryColumn = keyColumn.queryColumn(groupedSelect.getTable());
+			groupedSelect.addColumn(keyQueryColumn);
+			groupedSelect.addGroupBy(keyQueryColumn);
+
+			long time = System.currentTimeMillis();
+			IDataSet ds = performQuery(fsm.getTransactionID(sheet), groupedSelect, null, 0, keyValues.size(), IDataServer.AGGREGATE_QUERY);
+			if (Debug.tracing())
+			{
+				Debug.trace("Grouped aggregate query for " + keyValues.size() + " related foundsets, time: " + (System.currentTimeMillis() - time) + //$NON-NLS-1$ //$NON-NLS-2$
+					", thread: " + Thread.currentThread().getName() + ", SQL: " + groupedSelect.toString()); //$NON-NLS-1$ //$NON-NLS-2$
+			}
+
+			boolean filled = false;
+			for (Map.Entry<FoundSet, IDataSet> entry : splitGroupedAggregates(ds, keyIndex, foundsetsByKey).entrySet())
+			{
+				if (entry.getKey() == this)
+				{
+					fillAggregates(aggregateSelect, entry.getValue());
+					filled = true;
+				}
+				else
+				{
+					entry.getKey().setPendingAggregates(aggregateSelect, entry.getValue());
+				}
+			}
+			return filled;
+		}
+		catch (Exception e)
+		{
+			// query separately, errors of that query are reported there
+			Debug.warn("Could not query grouped aggregates for relation " + relationName + ", querying them per foundset: " + e); //$NON-NLS-1$ //$NON-NLS-2$
+			return false;
+		}
+	}
+
+	/**
+	 * Split the result of the grouped aggregate query over the foundsets, each foundset gets the row that its own aggregate query would return.
+	 * Foundsets with a key that is not in the result are left out, they query their aggregates separately.
+	 *
+	 * @param keyIndex the index of the group by column, the aggregates are the columns before it
+	 * @param foundsetsByKey the foundsets per normalized relation key, see {@link #normalizeMergeKey(Object)}
+	 */
+	static <T> Map<T, IDataSet> splitGroupedAggregates(IDataSet groupedData, int keyIndex, Map<Object, List<T>> foundsetsByKey)
+	{
+		Map<T, IDataSet> aggregateDataPerFoundset = new HashMap<T, IDataSet>();
+		for (int r = 0; r < groupedData.getRowCount(); r++)
+		{
+			Object[] row = groupedData.getRow(r);
+			List<T> foundsets = foundsetsByKey.get(normalizeMergeKey(row[keyIndex]));
+			if (foundsets == null) continue; // not matched, those foundsets query separately
+
+			BufferedDataSet aggregateData = new BufferedDataSet();
+			aggregateData.addRow(Arrays.copyOf(row, keyIndex));
+			for (T foundset : foundsets)
+			{
+				aggregateDataPerFoundset.put(foundset, aggregateData);
+			}
+		}
+		return aggregateDataPerFoundset;
+	}
+
+	/**
+	 * @return the value of the relation key in the query, null if not set or when the relation has multiple keys
+	 */
+	private Object getRelationKeyValue(QuerySelect select)
+	{
+		if (select == null) return null;
+		Placeholder placeholder = select.getPlaceholder(SQLGenerator.createRelationKeyPlaceholderKey(select.getTable(), relationName));
+		if (placeholder != null && placeholder.isSet() && placeholder.getValue() instanceof Object[][])
+		{
+			Object[][] values = (Object[][])placeholder.getValue();
+			if (values.length == 1 && values[0] != null && values[0].length == 1)
+			{
+				return values[0][0];
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * Divide the rows of the merged relation query over the siblings, the rows keep the sort order of the query.
+	 *
+	 * @return false when a row could not be matched to a sibling or when the merged query did not return all rows
+	 */
+	static boolean partitionMergedRelationData(IDataSet mergedData, int keyIndex, Object[][] whereArsgLists, List<Integer> mergedIndexes,
+		int chunkSize, IDataSet[] relationData)
+	{
+		if (mergedData.hadMoreRows())
+		{
+			// some siblings may miss rows
+			return false;
+		}
+
+		Map<Object, List<Integer>> siblingsByKey = new HashMap<Object, List<Integer>>();
+		for (Integer i : mergedIndexes)
+		{
+			siblingsByKey.computeIfAbsent(normalizeMergeKey(whereArsgLists[i.intValue()][0]), k -> new ArrayList<Integer>(1)).add(i);
+		}
+
+		Map<Integer, List<Object[]>> rowsPerSibling = new HashMap<Integer, List<Object[]>>();
+		for (int r = 0; r < mergedData.getRowCount(); r++)
+		{
+			Object[] row = mergedData.getRow(r);
+			List<Integer> siblings = siblingsByKey.get(normalizeMergeKey(row[keyIndex]));
+			if (siblings == null)
+			{
+				return false;
+			}
+			for (Integer i : siblings)
+			{
+				rowsPerSibling.computeIfAbsent(i, k -> new SafeArrayList<Object[]>(chunkSize)).add(row);
+			}
+		}
+
+		String[] columnNames = mergedData.getColumnNames();
+		ColumnType[] columnTypes = BufferedDataSetInternal.getColumnTypeInfo(mergedData);
+		for (Integer i : mergedIndexes)
+		{
+			List<Object[]> rows = rowsPerSibling.get(i);
+			boolean hadMore = false;
+			if (rows == null)
+			{
+				rows = new SafeArrayList<Object[]>(0);
+			}
+			else if (rows.size() > chunkSize)
+			{
+				// same as the separate query, the foundset loads the rest when needed
+				rows = new SafeArrayList<Object[]>(rows.subList(0, chunkSize));
+				hadMore = true;
+			}
+			relationData[i.intValue()] = new BufferedDataSet(columnNames, columnTypes, rows, hadMore);
+		}
+		return true;
+	}
+
+	static Object normalizeMergeKey(Object value)
+	{
+		Object val = value instanceof DbIdentValue ? ((DbIdentValue)value).getPkValue() : value;
+		if (val instanceof Number)
+		{
+			try
+			{
+				// the database may return another number type than the parent value
+				return new BigDecimal(val.toString()).stripTrailingZeros();
+			}
+			catch (NumberFormatException e)
+			{
+				return val;
+			}
+		}
+		if (val instanceof String || val instanceof byte[])
+		{
+			UUID uuid = Utils.getAsUUID(val, false);
+			if (uuid != null) return uuid;
+		}
+		return val;
 	}
 
 	private static void testException(String clientID, Throwable t)
@@ -777,29 +1136,21 @@ public abstract class RelatedFoundSet extends FoundSet
 				{
 					retval = false;
 					//row is not longer part of this related foundset, so remove in myself
-					for (int ii = pks.getRowCount() - 1; ii >= 0; ii--)
+					int ii = getPksAndRecords().getIndexOfPkHash(pkHash, false);
+					if (ii >= 0)
 					{
-						Object[] pk = pks.getRow(ii);
-						if (RowManager.createPKHashKey(pk).equals(pkHash))
-						{
-							removeRecordInternal(ii);//does fireIntervalRemoved(this,ii,ii);
-							break;
-						}
+						removeRecordInternal(ii);//does fireIntervalRemoved(this,ii,ii);
 					}
 					break;
 				}
 			}
 			if (retval && updateTest)
 			{
-				for (int ii = pks.getRowCount() - 1; ii >= 0; ii--)
+				int ii = getPksAndRecords().getIndexOfPkHash(pkHash, false);
+				if (ii >= 0)
 				{
-					Object[] pk = pks.getRow(ii);
-					if (RowManager.createPKHashKey(pk).equals(pkHash))
-					{
-						fireAggregateChangeWithEvents(getRecord(ii));
-						retval = false;
-						break;
-					}
+					fireAggregateChangeWithEvents(getRecord(ii));
+					retval = false;
 				}
 			}
 		}
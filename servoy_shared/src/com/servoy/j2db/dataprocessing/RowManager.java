@@ -35,6 +35,7 @@ import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Set;
+import java.util.concurrent.Callable;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
 
@@ -84,7 +85,7 @@ public class RowManager implements IModificationListener, IFoundSetEventListener
 {
 	private final FoundSetManager fsm;
 	private final ReferenceQueue<Row> referenceQueue;
-	private final Map<String, SoftReferenceWithData<Row, Pair<Map<String, List<CalculationDependency>>, CalculationDependencyData>>> pkRowMap; // pkString -> SoftReference(Row)
+	private final Map<PKCacheKey, SoftReferenceWithData<Row, Pair<Map<String, List<CalculationDependency>>, CalculationDependencyData>>> pkRowMap; // pk -> SoftReference(Row)
 	private final SQLSheet sheet;
 	private final ConcurrentMap<IRowListener, Object> listeners;
 	private final ConcurrentHashMap<String, ConcurrentSoftvaluesMultimap<String, RelatedFoundSet>> listenersByRelationEqualValues;
@@ -195,62 +196,148 @@ public class RowManager implements IModificationListener, IFoundSetEventListener
 	//See ALSO Row.getPKHashKey
 	public static String createPKHashKey(Object[] pk)
 	{
-		StringBuilder sb = new StringBuilder();
-		if (pk != null)
+		if (pk == null || pk.length == 0)
 		{
-			for (Object val : pk)
+			return ""; //$NON-NLS-1$
+		}
+		if (pk.length == 1)
+		{
+			// most common case, a single numeric pk: build the key in an exactly sized buffer
+			Object val = getPKHashKeyValue(pk[0]);
+			if (isWholeNumberPKValue(val))
 			{
-				if (val instanceof DbIdentValue)
-				{
-					val = createPKHashKeyFromDBIdent((DbIdentValue)val);
-				}
-				else if (val instanceof QueryColumnValue)
-				{
-					val = ((QueryColumnValue)val).getValue();
-				}
-				String str;
-				if (val instanceof byte[])
-				{
-					str = Utils.encodeBASE64((byte[])val); // UUID
-				}
-				else if (val instanceof UUID)
-				{
-					// make sure UUID PKs are matched regardless of casing
-					str = val.toString().toLowerCase();
-				}
-				else if (val instanceof String && ((String)val).length() == 36 && ((String)val).split("-").length == 5) //$NON-NLS-1$
-				{
-					// make sure UUID PKs are matched regardless of casing (MSQ Sqlserver returns uppercase UUID strings for uniqueidentifier columns)
-					str = ((String)val).toLowerCase();
-				}
-				else if (val instanceof Date)
-				{
-					str = Long.toString(((Date)val).getTime());
-				}
-				else if (val instanceof Float && ((Float)val).longValue() == ((Float)val).floatValue())
-				{
-					str = Long.toString(((Float)val).longValue());
-				}
-				else if (val instanceof Double && ((Double)val).longValue() == ((Double)val).doubleValue())
-				{
-					str = Long.toString(((Double)val).longValue());
-				}
-				else
-				{
-					str = Utils.convertToString(val);
-				}
-				if (val != null)
-				{
-					sb.append(str.length());
-				}
-				sb.append('.');
-				sb.append(str);
-				sb.append(';');
+				long value = getWholeNumberPKValue(val);
+				int valueLength = decimalLength(value);
+				StringBuilder sb = new StringBuilder(decimalLength(valueLength) + valueLength + 2);
+				appendPKHashKeyPart(sb, value, valueLength);
+				return sb.toString();
+			}
+		}
+
+		int capacity = 0;
+		for (Object pkValue : pk)
+		{
+			// numbers are at most 20 digits plus the length prefix, uuids 36 characters plus the length prefix
+			capacity += isWholeNumberPKValue(pkValue) ? 24 : 40;
+		}
+		StringBuilder sb = new StringBuilder(capacity);
+		for (Object pkValue : pk)
+		{
+			Object val = getPKHashKeyValue(pkValue);
+			if (isWholeNumberPKValue(val))
+			{
+				long value = getWholeNumberPKValue(val);
+				appendPKHashKeyPart(sb, value, decimalLength(value));
+				continue;
+			}
+
+			String str;
+			if (val instanceof byte[])
+			{
+				str = Utils.encodeBASE64((byte[])val); // UUID
+			}
+			else if (val instanceof UUID)
+			{
+				// make sure UUID PKs are matched regardless of casing; toString() is cached and toLowerCase() does not copy an already lowercase string
+				str = val.toString().toLowerCase();
+			}
+			else if (val instanceof String && isUUIDLikeString((String)val))
+			{
+				// make sure UUID PKs are matched regardless of casing (MSQ Sqlserver returns uppercase UUID strings for uniqueidentifier columns)
+				str = ((String)val).toLowerCase();
+			}
+			else
+			{
+				str = Utils.convertToString(val);
+			}
+			if (val != null)
+			{
+				sb.append(str.length());
 			}
+			sb.append('.');
+			sb.append(str);
+			sb.append(';');
 		}
 		return sb.toString();
 	}
 
+	static Object getPKHashKeyValue(Object val)
+	{
+		if (val instanceof DbIdentValue)
+		{
+			return createPKHashKeyFromDBIdent((DbIdentValue)val);
+		}
+		if (val instanceof QueryColumnValue)
+		{
+			return ((QueryColumnValue)val).getValue();
+		}
+		return val;
+	}
+
+	/**
+	 * Values that are keyed on their long value: integer types, dates and floating point values without fraction.
+	 */
+	static boolean isWholeNumberPKValue(Object val)
+	{
+		return val instanceof Long || val instanceof Integer || val instanceof Short || val instanceof Byte || val instanceof Date ||
+			(val instanceof Float && ((Float)val).longValue() == ((Float)val).floatValue()) ||
+			(val instanceof Double && ((Double)val).longValue() == ((Double)val).doubleValue());
+	}
+
+	static long getWholeNumberPKValue(Object val)
+	{
+		return val instanceof Date ? ((Date)val).getTime() : ((Number)val).longValue();
+	}
+
+	/**
+	 * Append the hash key part for a numeric value, same format as for its string representation: length.value;
+	 */
+	private static void appendPKHashKeyPart(StringBuilder sb, long value, int valueLength)
+	{
+		sb.append(valueLength);
+		sb.append('.');
+		sb.append(value);
+		sb.append(';');
+	}
+
+	private static int decimalLength(long value)
+	{
+		if (value == Long.MIN_VALUE) return 20;
+		int length = 1;
+		long v = value;
+		if (v < 0)
+		{
+			length++;
+			v = -v;
+		}
+		while (v >= 10)
+		{
+			v /= 10;
+			length++;
+		}
+		return length;
+	}
+
+	/**
+	 * Same check as str.length() == 36 &amp;&amp; str.split("-").length == 5 but without creating the split array.
+	 */
+	private static boolean isUUIDLikeString(String str)
+	{
+		if (str.length() != 36) return false;
+		// split() drops trailing empty parts, so ignore trailing dashes
+		int end = str.length();
+		while (end > 0 && str.charAt(end - 1) == '-')
+		{
+			end--;
+		}
+		int dashes = 0;
+		for (int i = 0; i < end; i++)
+		{
+			if (str.charAt(i) == '-' && ++dashes > 4) return false;
+		}
+		return dashes == 4;
+	}
+
 	/**
 	 * @param val has to be non-null, otherwise a {@link NullPointerException} will be thrown.
 	 */
@@ -266,14 +353,19 @@ public class RowManager implements IModificationListener, IFoundSetEventListener
 
 	Pair<Row, Pair<Map<String, List<CalculationDependency>>, CalculationDependencyData>> getCachedRow(Object[] pk)
 	{
-		return getCachedRow(createPKHashKey(pk));
+		return getCachedRow(PKCacheKey.create(pk));
 	}
 
 	private Pair<Row, Pair<Map<String, List<CalculationDependency>>, CalculationDependencyData>> getCachedRow(String pkhashKey)
+	{
+		return getCachedRow(PKCacheKey.create(pkhashKey));
+	}
+
+	private Pair<Row, Pair<Map<String, List<CalculationDependency>>, CalculationDependencyData>> getCachedRow(PKCacheKey key)
 	{
 		Row rowData = null;
 		Pair<Map<String, List<CalculationDependency>>, CalculationDependencyData> data = null;
-		SoftReferenceWithData<Row, Pair<Map<String, List<CalculationDependency>>, CalculationDependencyData>> sr = pkRowMap.get(pkhashKey);
+		SoftReferenceWithData<Row, Pair<Map<String, List<CalculationDependency>>, CalculationDependencyData>> sr = pkRowMap.get(key);
 		if (sr != null)
 		{
 			data = sr.getData();
@@ -283,8 +375,8 @@ public class RowManager implements IModificationListener, IFoundSetEventListener
 				Debug.trace("-----------CacheMiss"); //$NON-NLS-1$
 				if (canRemove(sr))
 				{
-					removeRowReferences(pkhashKey, null);
-					pkRowMap.remove(pkhashKey);
+					removeRowReferences(key, null);
+					pkRowMap.remove(key);
 					data = null;
 				}
 			}
@@ -328,11 +420,11 @@ public class RowManager implements IModificationListener, IFoundSetEventListener
 			pk[i] = val;
 		}
 		Row rowData = null;
-		String pkHashKey = createPKHashKey(pk);
+		PKCacheKey key = PKCacheKey.create(pk);
 		boolean fireCalcs = false;
 		synchronized (this)
 		{
-			Pair<Row, Pair<Map<String, List<CalculationDependency>>, CalculationDependencyData>> cachedRow = getCachedRow(pkHashKey);
+			Pair<Row, Pair<Map<String, List<CalculationDependency>>, CalculationDependencyData>> cachedRow = getCachedRow(key);
 			rowData = cachedRow.getLeft();
 			Pair<Map<String, List<CalculationDependency>>, CalculationDependencyData> data = cachedRow.getRight();
 			if (rowData == null)
@@ -340,7 +432,7 @@ public class RowManager implements IModificationListener, IFoundSetEventListener
 				rowData = createExistInDBRowObject(columndata);
 				SoftReferenceWithData<Row, Pair<Map<String, List<CalculationDependency>>, CalculationDependencyData>> sr = new SoftReferenceWithData<Row, Pair<Map<String, List<CalculationDependency>>, CalculationDependencyData>>(
 					rowData, referenceQueue);
-				pkRowMap.put(rowData.getPKHashKey(), sr);
+				pkRowMap.put(key, sr);
 				if (data != null)
 				{
 					// use existing dependencies if row was GD'd before
@@ -352,7 +444,7 @@ public class RowManager implements IModificationListener, IFoundSetEventListener
 		}
 		if (fireCalcs)
 		{
-			fireDependingCalcs(pkHashKey, null, fires);
+			fireDependingCalcs(rowData.getPKHashKey(), null, fires);
 		}
 		return rowData;
 	}
@@ -372,7 +464,7 @@ public class RowManager implements IModificationListener, IFoundSetEventListener
 		Row row = new Row(this, data, sheet.getAllUnstoredCalculationNamesWithNoValue(), existInDB);
 		if (addToMap)
 		{
-			pkRowMap.put(row.getPKHashKey(),
+			pkRowMap.put(PKCacheKey.create(row.getPKHashKey()),
 				new SoftReferenceWithData<Row, Pair<Map<String, List<CalculationDependency>>, CalculationDependencyData>>(row, referenceQueue));
 			clearAndCheckCache();
 		}
@@ -494,7 +586,7 @@ public class RowManager implements IModificationListener, IFoundSetEventListener
 				// the row is in memory but not longer referenced from any record or it was deleted.
 				// do remove it so that it will be re queried when needed (when it was not deleted)
 				removeRowReferences(pkHashKey, null);
-				pkRowMap.remove(pkHashKey);
+				pkRowMap.remove(PKCacheKey.create(pkHashKey));
 			}
 			return false;
 		}
@@ -504,10 +596,10 @@ public class RowManager implements IModificationListener, IFoundSetEventListener
 			if (insertedRow != null)
 			{
 				fireNotifyChange(null, insertedRow, insertedRow.getPKHashKey(), null, RowEvent.INSERT);
-				if (!insertedRow.hasListeners() && canRemove(pkRowMap.get(pkHashKey))) //new row is not in use
+				if (!insertedRow.hasListeners() && canRemove(pkRowMap.get(PKCacheKey.create(pkHashKey)))) //new row is not in use
 				{
 					removeRowReferences(pkHashKey, null);
-					pkRowMap.remove(pkHashKey);
+					pkRowMap.remove(PKCacheKey.create(pkHashKey));
 					return false;
 				}
 				return true;
@@ -528,7 +620,7 @@ public class RowManager implements IModificationListener, IFoundSetEventListener
 							sr.setData(cachedRow.getRight());
 							fireCalcs = true;
 						}
-						pkRowMap.put(rowData.getPKHashKey(), sr);
+						pkRowMap.put(PKCacheKey.create(rowData.getPKHashKey()), sr);
 					}
 					if (fireCalcs)
 					{
@@ -557,101 +649,28 @@ public class RowManager implements IModificationListener, IFoundSetEventListener
 		Row rowData = queryAll ? null : getCachedRow(pk).getLeft();
 		if (rowData == null)
 		{
-			String transaction_id = null;
-			GlobalTransaction gt = fsm.getGlobalTransaction();
-			if (gt != null)
-			{
-				transaction_id = gt.getTransactionID(sheet.getServerName());
-			}
-
-			IDataSet formdata = null;
 			QuerySelect select = (QuerySelect)sheet.getSQL(SQLSheet.SELECT);
 			int maxRow = Math.min(row + sizeHint, pks.getRowCount());
-			// get the PK array
-			int ncols = pks.getColumnCount();
-			int nvals = 0;
-			@SuppressWarnings("unchecked")
-			List<Object>[] valueLists = new List[ncols];
-			for (int c = 0; c < ncols; c++)
-			{
-				valueLists[c] = new ArrayList<Object>();
-			}
-			for (int i = 0; i < maxRow - row; i++)
-			{
-				Object[] data = pks.getRow(row + i);
-				if (data != null)
-				{
-					if (data.length != ncols)
-					{
-						throw new RuntimeException("Inconsistent PK set width"); //$NON-NLS-1$
-					}
-					boolean add = true;
-					for (int c = 0; add && c < ncols; c++)
-					{
-						add = !(data[c] instanceof DbIdentValue);
-					}
-					if (add)
-					{
-						nvals++;
-						for (int c = 0; c < ncols; c++)
-						{
-							valueLists[c].add(data[c]);
-						}
-					}
-				}
-			}
-
-			Object[][] values = new Object[ncols][];
-			for (int c = 0; c < ncols; c++)
-			{
-				values[c] = valueLists[c].toArray();
-			}
-
-			if (!select.setPlaceholderValue(new TablePlaceholderKey(select.getTable(), SQLGenerator.PLACEHOLDER_PRIMARY_KEY), values))
-			{
-				Debug.error(
-					new RuntimeException("Could not set placeholder " + new TablePlaceholderKey(select.getTable(), SQLGenerator.PLACEHOLDER_PRIMARY_KEY) + //$NON-NLS-1$
-						" in query " + select + "-- continuing")); //$NON-NLS-1$//$NON-NLS-2$
-			}
+			int nvals = setPKPlaceholder(select, pks, row, maxRow);
+			IDataSet formdata = performRowsQuery(select, nvals, getTransactionId(), fsm.getTableFilterParams(sheet.getServerName(), select),
+				createTrackingInfo(pks));
 
-			long time = System.currentTimeMillis();
-			try
-			{
-				SQLStatement trackingInfo = null;
-				if (fsm.getEditRecordList().hasAccess(sheet.getTable(), IRepository.TRACKING_VIEWS))
-				{
-					trackingInfo = new SQLStatement(ISQLActionTypes.SELECT_ACTION, sheet.getServerName(), sheet.getTable().getName(), pks, null);
-					trackingInfo.setTrackingData(sheet.getColumnNames(), new Object[][] { }, new Object[][] { }, fsm.getApplication().getUserUID(),
-						fsm.getTrackingInfo(), fsm.getApplication().getClientID());
-				}
-				formdata = fsm.getDataServer()
-					.performQuery(fsm.getApplication().getClientID(), sheet.getServerName(), transaction_id, select, null /* use types as reported by the db */,
-						fsm.getTableFilterParams(sheet.getServerName(), select), false, 0, nvals, IDataServer.FOUNDSET_LOAD_QUERY, trackingInfo);
-				if (Debug.tracing())
-				{
-					Debug.trace(Thread.currentThread().getName() + ": getting RowData time: " + (System.currentTimeMillis() - time) + ", SQL: " + //$NON-NLS-1$ //$NON-NLS-2$
-						select.toString());
-				}
-			}
-			catch (RemoteException e)
+			//construct Rows, index them once on pk so the reorder below is linear in the chunk size
+			int fetchedCount = formdata.getRowCount();
+			Map<PKCacheKey, Row> fetchedRows = new HashMap<PKCacheKey, Row>(Math.max(16, (int)(fetchedCount / 0.75f) + 1));
+			for (int r = 0; r < fetchedCount; r++)
 			{
-				throw new RepositoryException(e);
+				rowData = getRowBasedonPKFromEntireColumnArray(formdata.getRow(r));
+				fetchedRows.putIfAbsent(PKCacheKey.create(rowData.getPK()), rowData);
 			}
 
-			//construct Rows
+			//reorder based on pk in mem,cannot do related sort icw SELECT_IN
 			for (int k = row; k < maxRow; k++)
 			{
-				String pkHash = createPKHashKey(pks.getRow(k));
-				//reorder based on pk in mem,cannot do related sort icw SELECT_IN
-				for (int r = 0; r < formdata.getRowCount(); r++)
+				Row fetched = fetchedRows.get(PKCacheKey.create(pks.getRow(k)));
+				if (fetched != null)
 				{
-					Object[] columndata = formdata.getRow(r);
-					rowData = getRowBasedonPKFromEntireColumnArray(columndata);
-					if (pkHash.equals(createPKHashKey(rowData.getPK())))
-					{
-						retval.set(k - row, rowData);
-						break;
-					}
+					retval.set(k - row, fetched);
 				}
 			}
 			if (retval.size() < maxRow - row)
@@ -681,6 +700,131 @@ public class RowManager implements IModificationListener, IFoundSetEventListener
 		return retval;
 	}
 
+	private String getTransactionId()
+	{
+		GlobalTransaction gt = fsm.getGlobalTransaction();
+		return gt == null ? null : gt.getTransactionID(sheet.getServerName());
+	}
+
+	/**
+	 * Set the pks of rows row until maxRow as values of the pk placeholder of the select.
+	 *
+	 * @return the number of pks that were set
+	 */
+	private int setPKPlaceholder(QuerySelect select, IDataSet pks, int row, int maxRow)
+	{
+		int ncols = pks.getColumnCount();
+		int nvals = 0;
+		@SuppressWarnings("unchecked")
+		List<Object>[] valueLists = new List[ncols];
+		for (int c = 0; c < ncols; c++)
+		{
+			valueLists[c] = new ArrayList<Object>();
+		}
+		for (int i = 0; i < maxRow - row; i++)
+		{
+			Object[] data = pks.getRow(row + i);
+			if (data != null)
+			{
+				if (data.length != ncols)
+				{
+					throw new RuntimeException("Inconsistent PK set width"); //$NON-NLS-1$
+				}
+				boolean add = true;
+				for (int c = 0; add && c < ncols; c++)
+				{
+					add = !(data[c] instanceof DbIdentValue);
+				}
+				if (add)
+				{
+					nvals++;
+					for (int c = 0; c < ncols; c++)
+					{
+						valueLists[c].add(data[c]);
+					}
+				}
+			}
+		}
+
+		Object[][] values = new Object[ncols][];
+		for (int c = 0; c < ncols; c++)
+		{
+			values[c] = valueLists[c].toArray();
+		}
+
+		if (!select.setPlaceholderValue(new TablePlaceholderKey(select.getTable(), SQLGenerator.PLACEHOLDER_PRIMARY_KEY), values))
+		{
+			Debug.error(
+				new RuntimeException("Could not set placeholder " + new TablePlaceholderKey(select.getTable(), SQLGenerator.PLACEHOLDER_PRIMARY_KEY) + //$NON-NLS-1$
+					" in query " + select + "-- continuing")); //$NON-NLS-1$//$NON-NLS-2$
+		}
+		return nvals;
+	}
+
+	private SQLStatement createTrackingInfo(IDataSet pks)
+	{
+		SQLStatement trackingInfo = null;
+		if (fsm.getEditRecordList().hasAccess(sheet.getTable(), IRepository.TRACKING_VIEWS))
+		{
+			trackingInfo = new SQLStatement(ISQLActionTypes.SELECT_ACTION, sheet.getServerName(), sheet.getTable().getName(), pks, null);
+			trackingInfo.setTrackingData(sheet.getColumnNames(), new Object[][] { }, new Object[][] { }, fsm.getApplication().getUserUID(),
+				fsm.getTrackingInfo(), fsm.getApplication().getClientID());
+		}
+		return trackingInfo;
+	}
+
+	private IDataSet performRowsQuery(QuerySelect select, int nvals, String transaction_id, ArrayList<TableFilter> filters, SQLStatement trackingInfo)
+		throws ServoyException
+	{
+		long time = System.currentTimeMillis();
+		try
+		{
+			IDataSet formdata = fsm.getDataServer()
+				.performQuery(fsm.getApplication().getClientID(), sheet.getServerName(), transaction_id, select, null /* use types as reported by the db */,
+					filters, false, 0, nvals, IDataServer.FOUNDSET_LOAD_QUERY, trackingInfo);
+			if (Debug.tracing())
+			{
+				Debug.trace(Thread.currentThread().getName() + ": getting RowData time: " + (System.currentTimeMillis() - time) + ", SQL: " + //$NON-NLS-1$ //$NON-NLS-2$
+					select.toString());
+			}
+			return formdata;
+		}
+		catch (RemoteException e)
+		{
+			throw new RepositoryException(e);
+		}
+	}
+
+	/**
+	 * Create a loader for the rows of the pks that does not use the row cache, so it can be run on another thread than the event thread.
+	 * The query, table filters, transaction and tracking info are determined here, so this must be called on the event thread.
+	 * The loaded rows can be added to the cache with {@link #addRowsToCache(IDataSet)} on the event thread.
+	 */
+	Callable<IDataSet> createRowsLoader(IDataSet pks)
+	{
+		QuerySelect select = AbstractBaseQuery.deepClone((QuerySelect)sheet.getSQL(SQLSheet.SELECT));
+		int nvals = setPKPlaceholder(select, pks, 0, pks.getRowCount());
+		String transaction_id = getTransactionId();
+		ArrayList<TableFilter> filters = fsm.getTableFilterParams(sheet.getServerName(), select);
+		SQLStatement trackingInfo = createTrackingInfo(pks);
+		return () -> performRowsQuery(select, nvals, transaction_id, filters, trackingInfo);
+	}
+
+	/**
+	 * Add rows that were loaded by a loader of {@link #createRowsLoader(IDataSet)} to the cache, rows that were cached in the mean time are kept.
+	 *
+	 * @return the cached rows
+	 */
+	List<Row> addRowsToCache(IDataSet formdata)
+	{
+		List<Row> rows = new ArrayList<Row>(formdata.getRowCount());
+		for (int r = 0; r < formdata.getRowCount(); r++)
+		{
+			rows.add(getRowBasedonPKFromEntireColumnArray(formdata.getRow(r)));
+		}
+		return rows;
+	}
+
 	void fireNotifyChange(IRowListener skip, Row r, String pkHashKey, Object[] changedColumns, int eventType)
 	{
 		fireNotifyChange(skip, r, pkHashKey, changedColumns, eventType, false);
@@ -767,6 +911,7 @@ public class RowManager implements IModificationListener, IFoundSetEventListener
 			Table table = sheet.getTable();
 			boolean doesExistInDB = row.existInDB();
 			List<String> aggregatesToRemove = new ArrayList<String>(8);
+			Map<String, Object[]> aggregatedValues = new HashMap<String, Object[]>(8); // old and new values for incremental aggregates
 			List<String> changedColumns = null;
 			if (doesExistInDB)
 			{
@@ -806,11 +951,12 @@ public class RowManager implements IModificationListener, IFoundSetEventListener
 						}
 						if (!Utils.equalObjects(olddata[i], newdata[i]))
 						{
+							Object robj = c.getAsRightType(newdata[i]);
 							if (sheet.isUsedByAggregate(dataProviderID))
 							{
 								aggregatesToRemove.addAll(sheet.getAggregateName(dataProviderID));
+								aggregatedValues.put(dataProviderID, new Object[] { olddata[i], robj });
 							}
-							Object robj = c.getAsRightType(newdata[i]);
 							if (robj == null) robj = ValueFactory.createNullValue(c.getType());
 							((QueryUpdate)sqlUpdate).addValue(c.queryColumn(((QueryUpdate)sqlUpdate).getTable()), robj);
 							if (changedColumns == null)
@@ -895,6 +1041,11 @@ public class RowManager implements IModificationListener, IFoundSetEventListener
 						else
 						{
 							Object robj = c.getAsRightType(row.getRawValue(columnIndex, false));
+							if (sheet.isUsedByAggregate(dataProviderID))
+							{
+								// only values that are not generated by the database, aggregates on the others are queried again
+								aggregatedValues.put(dataProviderID, new Object[] { null, robj });
+							}
 
 							if (robj == null) robj = ValueFactory.createNullValue(c.getType());
 							argsArray.add(robj);
@@ -952,7 +1103,7 @@ public class RowManager implements IModificationListener, IFoundSetEventListener
 					row.getRawColumnData() != null ? new Object[][] { row.getRawColumnData() } : null, fsm.getApplication().getUserUID(), fsm.getTrackingInfo(),
 					fsm.getApplication().getClientID());
 			}
-			return new RowUpdateInfo(row, statement, dbPKReturnValues, aggregatesToRemove);
+			return new RowUpdateInfo(row, statement, dbPKReturnValues, aggregatesToRemove, aggregatedValues);
 		}
 		catch (RemoteException e)
 		{
@@ -1057,8 +1208,8 @@ public class RowManager implements IModificationListener, IFoundSetEventListener
 		String newKeyHash = row.recalcPKHashKey();
 		if (!oldKeyHash.equals(newKeyHash))
 		{
-			final SoftReferenceWithData<Row, Pair<Map<String, List<CalculationDependency>>, CalculationDependencyData>> srOld = pkRowMap.get(oldKeyHash);
-			pkRowMap.put(newKeyHash,
+			final SoftReferenceWithData<Row, Pair<Map<String, List<CalculationDependency>>, CalculationDependencyData>> srOld = pkRowMap.get(PKCacheKey.create(oldKeyHash));
+			pkRowMap.put(PKCacheKey.create(newKeyHash),
 				new SoftReferenceWithData<Row, Pair<Map<String, List<CalculationDependency>>, CalculationDependencyData>>(row, referenceQueue));// (over)write new
 			if (srOld != null)
 			{
@@ -1069,16 +1220,16 @@ public class RowManager implements IModificationListener, IFoundSetEventListener
 					{
 						// calcs depending on old pk are invalid
 						fireDependingCalcs(srOld, null, null);
-						pkRowMap.remove(oldKeyHash);//remove old
+						pkRowMap.remove(PKCacheKey.create(oldKeyHash));//remove old
 					}
 				});
 			}
 		}
 		else
 		{
-			if (!pkRowMap.containsKey(newKeyHash))
+			if (!pkRowMap.containsKey(PKCacheKey.create(newKeyHash)))
 			{
-				pkRowMap.put(newKeyHash,
+				pkRowMap.put(PKCacheKey.create(newKeyHash),
 					new SoftReferenceWithData<Row, Pair<Map<String, List<CalculationDependency>>, CalculationDependencyData>>(row, referenceQueue));
 				clearAndCheckCache();
 			}
@@ -1088,9 +1239,9 @@ public class RowManager implements IModificationListener, IFoundSetEventListener
 	void pkUpdated(Row row)
 	{
 		String newKeyHash = row.recalcPKHashKey();
-		if (!pkRowMap.containsKey(newKeyHash))
+		if (!pkRowMap.containsKey(PKCacheKey.create(newKeyHash)))
 		{
-			pkRowMap.put(newKeyHash,
+			pkRowMap.put(PKCacheKey.create(newKeyHash),
 				new SoftReferenceWithData<Row, Pair<Map<String, List<CalculationDependency>>, CalculationDependencyData>>(row, referenceQueue));
 			clearAndCheckCache();
 		}
@@ -1106,12 +1257,12 @@ public class RowManager implements IModificationListener, IFoundSetEventListener
 			}
 
 			// test the hashmap for empty  Softreferences
-			Iterator<Entry<String, SoftReferenceWithData<Row, Pair<Map<String, List<CalculationDependency>>, CalculationDependencyData>>>> it = pkRowMap
+			Iterator<Entry<PKCacheKey, SoftReferenceWithData<Row, Pair<Map<String, List<CalculationDependency>>, CalculationDependencyData>>>> it = pkRowMap
 				.entrySet()
 				.iterator();
 			while (it.hasNext())
 			{
-				Entry<String, SoftReferenceWithData<Row, Pair<Map<String, List<CalculationDependency>>, CalculationDependencyData>>> entry = it.next();
+				Entry<PKCacheKey, SoftReferenceWithData<Row, Pair<Map<String, List<CalculationDependency>>, CalculationDependencyData>>> entry = it.next();
 				SoftReferenceWithData<Row, Pair<Map<String, List<CalculationDependency>>, CalculationDependencyData>> value = entry.getValue();
 				if (value == null || (value.get() == null && canRemove(value)))
 				{
@@ -1192,7 +1343,7 @@ public class RowManager implements IModificationListener, IFoundSetEventListener
 			SoftReferenceWithData<Row, Pair<Map<String, List<CalculationDependency>>, CalculationDependencyData>> removed;
 			synchronized (this)
 			{
-				removed = pkRowMap.remove(r.getPKHashKey());
+				removed = pkRowMap.remove(PKCacheKey.create(r.getPKHashKey()));
 			}
 			fireDependingCalcs(removed, null, null);
 		}
@@ -1200,7 +1351,7 @@ public class RowManager implements IModificationListener, IFoundSetEventListener
 		{
 			synchronized (this)
 			{
-				pkRowMap.remove(r.getPKHashKey());
+				pkRowMap.remove(PKCacheKey.create(r.getPKHashKey()));
 			}
 		}
 		fireNotifyChange(src, r, r.getPKHashKey(), null, RowEvent.DELETE);
@@ -1212,7 +1363,7 @@ public class RowManager implements IModificationListener, IFoundSetEventListener
 		{
 			synchronized (this)
 			{
-				pkRowMap.remove(r.getPKHashKey());
+				pkRowMap.remove(PKCacheKey.create(r.getPKHashKey()));
 			}
 		}
 	}
@@ -1309,10 +1460,10 @@ public class RowManager implements IModificationListener, IFoundSetEventListener
 	{
 		//expensive but safe
 		@SuppressWarnings("unchecked")
-		Entry<String, SoftReferenceWithData<Row, Pair<Map<String, List<CalculationDependency>>, CalculationDependencyData>>>[] array = pkRowMap.entrySet()
+		Entry<PKCacheKey, SoftReferenceWithData<Row, Pair<Map<String, List<CalculationDependency>>, CalculationDependencyData>>>[] array = pkRowMap.entrySet()
 			.toArray(
 				new Entry[pkRowMap.size()]);
-		for (Entry<String, SoftReferenceWithData<Row, Pair<Map<String, List<CalculationDependency>>, CalculationDependencyData>>> entry : array)
+		for (Entry<PKCacheKey, SoftReferenceWithData<Row, Pair<Map<String, List<CalculationDependency>>, CalculationDependencyData>>> entry : array)
 		{
 			SoftReferenceWithData<Row, Pair<Map<String, List<CalculationDependency>>, CalculationDependencyData>> ref = entry.getValue();
 			Row row = ref.get();
@@ -1460,13 +1611,13 @@ public class RowManager implements IModificationListener, IFoundSetEventListener
 					List<CalculationDependency> calculationDependencies = new ArrayList<CalculationDependency>();
 
 					// go over each row to see if there are calcs depending on the RFS(whereArgs)
-					Iterator<Map.Entry<String, SoftReferenceWithData<Row, Pair<Map<String, List<CalculationDependency>>, CalculationDependencyData>>>> it = pkRowMap
+					Iterator<Map.Entry<PKCacheKey, SoftReferenceWithData<Row, Pair<Map<String, List<CalculationDependency>>, CalculationDependencyData>>>> it = pkRowMap
 						.entrySet()
 						.iterator();
 					while (it.hasNext())
 					{
-						Entry<String, SoftReferenceWithData<Row, Pair<Map<String, List<CalculationDependency>>, CalculationDependencyData>>> entry = it.next();
-						String pkHash = entry.getKey();
+						Entry<PKCacheKey, SoftReferenceWithData<Row, Pair<Map<String, List<CalculationDependency>>, CalculationDependencyData>>> entry = it.next();
+						String pkHash = entry.getKey().getPKHashKey();
 						SoftReferenceWithData<Row, Pair<Map<String, List<CalculationDependency>>, CalculationDependencyData>> sr = entry.getValue();
 						synchronized (sr)
 						{
@@ -1582,12 +1733,12 @@ public class RowManager implements IModificationListener, IFoundSetEventListener
 	private synchronized boolean clearCalc(String dp, List<RowFireNotifyChange> fires)
 	{
 		boolean changed = false;
-		Iterator<Map.Entry<String, SoftReferenceWithData<Row, Pair<Map<String, List<CalculationDependency>>, CalculationDependencyData>>>> it = pkRowMap
+		Iterator<Map.Entry<PKCacheKey, SoftReferenceWithData<Row, Pair<Map<String, List<CalculationDependency>>, CalculationDependencyData>>>> it = pkRowMap
 			.entrySet()
 			.iterator();
 		while (it.hasNext())
 		{
-			Entry<String, SoftReferenceWithData<Row, Pair<Map<String, List<CalculationDependency>>, CalculationDependencyData>>> entry = it.next();
+			Entry<PKCacheKey, SoftReferenceWithData<Row, Pair<Map<String, List<CalculationDependency>>, CalculationDependencyData>>> entry = it.next();
 			SoftReferenceWithData<Row, Pair<Map<String, List<CalculationDependency>>, CalculationDependencyData>> sr = entry.getValue();
 			Row row = sr.get();
 			if (row != null)
@@ -1605,7 +1756,7 @@ public class RowManager implements IModificationListener, IFoundSetEventListener
 
 	public void flagAllRowCalcsForRecalculation(String pkHashKey)
 	{
-		SoftReferenceWithData<Row, Pair<Map<String, List<CalculationDependency>>, CalculationDependencyData>> sr = pkRowMap.get(pkHashKey);
+		SoftReferenceWithData<Row, Pair<Map<String, List<CalculationDependency>>, CalculationDependencyData>> sr = pkRowMap.get(PKCacheKey.create(pkHashKey));
 		if (sr != null)
 		{
 			List<String> calcsUptodate = null;
@@ -1625,7 +1776,7 @@ public class RowManager implements IModificationListener, IFoundSetEventListener
 	{
 		if (calcs != null && calcs.size() > 0)
 		{
-			SoftReferenceWithData<Row, Pair<Map<String, List<CalculationDependency>>, CalculationDependencyData>> sr = pkRowMap.get(pkHashKey);
+			SoftReferenceWithData<Row, Pair<Map<String, List<CalculationDependency>>, CalculationDependencyData>> sr = pkRowMap.get(PKCacheKey.create(pkHashKey));
 			if (sr != null)
 			{
 				for (String calc : calcs)
@@ -1638,7 +1789,7 @@ public class RowManager implements IModificationListener, IFoundSetEventListener
 
 	public boolean flagRowCalcForRecalculation(String pkHashKey, String calc)
 	{
-		SoftReferenceWithData<Row, Pair<Map<String, List<CalculationDependency>>, CalculationDependencyData>> sr = pkRowMap.get(pkHashKey);
+		SoftReferenceWithData<Row, Pair<Map<String, List<CalculationDependency>>, CalculationDependencyData>> sr = pkRowMap.get(PKCacheKey.create(pkHashKey));
 		if (sr != null)
 		{
 			Row row = sr.get();
@@ -1659,7 +1810,12 @@ public class RowManager implements IModificationListener, IFoundSetEventListener
 	 */
 	public void removeRowReferences(String pkHashKey, String calc)
 	{
-		SoftReferenceWithData<Row, Pair<Map<String, List<CalculationDependency>>, CalculationDependencyData>> sr = pkRowMap.get(pkHashKey);
+		removeRowReferences(PKCacheKey.create(pkHashKey), calc);
+	}
+
+	private void removeRowReferences(PKCacheKey key, String calc)
+	{
+		SoftReferenceWithData<Row, Pair<Map<String, List<CalculationDependency>>, CalculationDependencyData>> sr = pkRowMap.get(key);
 		if (sr != null)
 		{
 			CalculationDependencyData rowRefs = null;
@@ -1693,6 +1849,7 @@ public class RowManager implements IModificationListener, IFoundSetEventListener
 			if (rowRefs != null)
 			{
 				String dataSource = fsm.getDataSource(sheet.getTable());
+				String pkHashKey = key.getPKHashKey();
 				for (Entry<String, List<RowReference>> entry : rowRefs.getRowReferencesEntrySet())
 				{
 					for (RowReference reference : entry.getValue())
@@ -1870,7 +2027,7 @@ public class RowManager implements IModificationListener, IFoundSetEventListener
 	 */
 	public void fireDependingCalcs(String pkHashKey, String dataProviderId, List<RowFireNotifyChange> fires)
 	{
-		fireDependingCalcs(pkRowMap.get(pkHashKey), dataProviderId, fires);
+		fireDependingCalcs(pkRowMap.get(PKCacheKey.create(pkHashKey)), dataProviderId, fires);
 	}
 
 	/**
@@ -1994,7 +2151,7 @@ public class RowManager implements IModificationListener, IFoundSetEventListener
 	 */
 	public void addCalculationDependency(String pkHashKey, String dataproviderId, String dependingDataSource, String dependingPkHashKey, String dependingCalc)
 	{
-		SoftReferenceWithData<Row, Pair<Map<String, List<CalculationDependency>>, CalculationDependencyData>> sr = pkRowMap.get(pkHashKey);
+		SoftReferenceWithData<Row, Pair<Map<String, List<CalculationDependency>>, CalculationDependencyData>> sr = pkRowMap.get(PKCacheKey.create(pkHashKey));
 		if (sr != null)
 		{
 			synchronized (sr)
@@ -2045,7 +2202,7 @@ public class RowManager implements IModificationListener, IFoundSetEventListener
 	public void removeCalculationDependency(String pkHashKey, String dataproviderId, String dependingDataSource, String dependingPkHashKey,
 		String dependingCalc)
 	{
-		SoftReferenceWithData<Row, Pair<Map<String, List<CalculationDependency>>, CalculationDependencyData>> sr = pkRowMap.get(pkHashKey);
+		SoftReferenceWithData<Row, Pair<Map<String, List<CalculationDependency>>, CalculationDependencyData>> sr = pkRowMap.get(PKCacheKey.create(pkHashKey));
 		if (sr != null)
 		{
 			synchronized (sr)
@@ -2091,7 +2248,7 @@ public class RowManager implements IModificationListener, IFoundSetEventListener
 	 */
 	private void addCalculationDependencyBackReference(RowReference rowReference, String pkHashKey, String calc)
 	{
-		SoftReferenceWithData<Row, Pair<Map<String, List<CalculationDependency>>, CalculationDependencyData>> sr = pkRowMap.get(pkHashKey);
+		SoftReferenceWithData<Row, Pair<Map<String, List<CalculationDependency>>, CalculationDependencyData>> sr = pkRowMap.get(PKCacheKey.create(pkHashKey));
 		if (sr != null)
 		{
 			synchronized (sr)
@@ -2139,7 +2296,7 @@ public class RowManager implements IModificationListener, IFoundSetEventListener
 		}
 
 		// add a relation dependency for the calc
-		SoftReferenceWithData<Row, Pair<Map<String, List<CalculationDependency>>, CalculationDependencyData>> sr = pkRowMap.get(dependingPkHashKey);
+		SoftReferenceWithData<Row, Pair<Map<String, List<CalculationDependency>>, CalculationDependencyData>> sr = pkRowMap.get(PKCacheKey.create(dependingPkHashKey));
 		if (sr != null)
 		{
 			synchronized (sr)
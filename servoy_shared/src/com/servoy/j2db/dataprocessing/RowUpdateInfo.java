@@ -17,6 +17,7 @@
 package com.servoy.j2db.dataprocessing;
 
 import java.util.List;
+import java.util.Map;
 
 /**
  * @author jcompagner
@@ -28,6 +29,7 @@ public class RowUpdateInfo
 	private final SQLStatement statement;
 	private final List dbPKReturnValues;
 	private final List aggregatesToRemove;
+	private final Map<String, Object[]> aggregatedValues;
 	private final Row row;
 	private Record record;
 
@@ -38,13 +40,15 @@ public class RowUpdateInfo
 	 * @param mustRequeryRow
 	 * @param dbPKReturnValues
 	 * @param aggregatesToRemove
+	 * @param aggregatedValues
 	 */
-	public RowUpdateInfo(Row row, SQLStatement statement, List dbPKReturnValues, List aggregatesToRemove)
+	public RowUpdateInfo(Row row, SQLStatement statement, List dbPKReturnValues, List aggregatesToRemove, Map<String, Object[]> aggregatedValues)
 	{
 		this.row = row;
 		this.statement = statement;
 		this.dbPKReturnValues = dbPKReturnValues;
 		this.aggregatesToRemove = aggregatesToRemove;
+		this.aggregatedValues = aggregatedValues;
 	}
 
 	/**
@@ -71,6 +75,16 @@ public class RowUpdateInfo
 		return this.aggregatesToRemove;
 	}
 
+	/**
+	 * The old and new values of the changed columns that are used by aggregates, for inserts all aggregated columns with a known value are included.
+	 *
+	 * @return map of dataprovider to { old value, new value }
+	 */
+	public Map<String, Object[]> getAggregatedValues()
+	{
+		return aggregatedValues;
+	}
+
 	/**
 	 * @return
 	 */
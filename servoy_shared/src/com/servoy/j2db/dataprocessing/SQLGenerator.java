@@ -47,6 +47,7 @@ import com.servoy.j2db.IApplication;
 import com.servoy.j2db.IServiceProvider;
 import com.servoy.j2db.dataprocessing.FindState.RelatedFindState;
 import com.servoy.j2db.dataprocessing.SQLSheet.ConverterInfo;
+import com.servoy.j2db.dataprocessing.SQLSheetTemplateCache.SQLSheetTemplate;
 import com.servoy.j2db.persistence.AbstractBase;
 import com.servoy.j2db.persistence.AggregateVariable;
 import com.servoy.j2db.persistence.Column;
@@ -1092,6 +1093,25 @@ public class SQLGenerator
 
 		if (cache) cachedDataSourceSQLSheets.put(dataSource, retval);//never remove this line, due to recursive behaviour, register a state when immediately!
 
+		SQLSheetTemplate template = SQLSheetTemplateCache.getTemplate(table);
+		if (template == null)
+		{
+			// client specific table, not shared
+			template = createTableSQLTemplate(table, null);
+		}
+		QueryTable queryTable = template.applyTo(retval, cache);
+
+		//related stuff
+		createAggregates(retval, queryTable);
+
+		return retval;
+	}
+
+	/**
+	 * Create the table based statements of a sheet, these do not depend on the client.
+	 */
+	static SQLSheetTemplate createTableSQLTemplate(Table table, List<Object> signature) throws RepositoryException
+	{
 		QueryTable queryTable = new QueryTable(table.getSQLName(), table.getDataSource(), table.getCatalog(), table.getSchema());
 
 		QuerySelect select = new QuerySelect(queryTable);
@@ -1143,15 +1163,7 @@ public class SQLGenerator
 			dataProviderIDsDilivery.add(col.getDataProviderID());
 		}
 
-		retval.addSelect(select, dataProviderIDsDilivery, requiredDataProviderIDs, null);
-		retval.addDelete(delete, requiredDataProviderIDs);
-		retval.addInsert(insert, dataProviderIDsDilivery);
-		retval.addUpdate(update, dataProviderIDsDilivery, requiredDataProviderIDs);
-
-		//related stuff
-		createAggregates(retval, queryTable);
-
-		return retval;
+		return new SQLSheetTemplate(signature, select, delete, insert, update, dataProviderIDsDilivery, requiredDataProviderIDs);
 	}
 
 
@@ -43,6 +43,7 @@ import com.servoy.j2db.persistence.ScriptMethod;
 import com.servoy.j2db.persistence.Table;
 import com.servoy.j2db.query.ISQLQuery;
 import com.servoy.j2db.query.Placeholder;
+import com.servoy.j2db.query.QueryAggregate;
 import com.servoy.j2db.query.QueryDelete;
 import com.servoy.j2db.query.QueryInsert;
 import com.servoy.j2db.query.QuerySelect;
@@ -706,6 +707,14 @@ public class SQLSheet
 		columnIndexes = indexes;
 	}
 
+	/**
+	 * Use a column index map that is shared with other sheets for the same table, the map must not be modified.
+	 */
+	void setSharedDataProviderIDsColumnMap(Map<String, Integer> indexes)
+	{
+		columnIndexes = indexes;
+	}
+
 	/**
 	 * Get the column index based on a dataProviderID
 	 *
@@ -908,6 +917,7 @@ public class SQLSheet
 
 	private HashMap<String, QuerySelect> aggregate;
 	private HashMap<String, Collection<String>> aggregate_dataproviders;
+	private HashMap<String, String> aggregated_dataprovider;
 
 	void addAggregate(String name, String dataProviderIDToAggregate, QuerySelect sqlSelect)
 	{
@@ -915,8 +925,10 @@ public class SQLSheet
 		{
 			aggregate = new HashMap<String, QuerySelect>(3);
 			aggregate_dataproviders = new HashMap<String, Collection<String>>(3);
+			aggregated_dataprovider = new HashMap<String, String>(3);
 		}
 		aggregate.put(name, sqlSelect);
+		aggregated_dataprovider.put(name, dataProviderIDToAggregate);
 		Collection<String> aggregates = aggregate_dataproviders.get(dataProviderIDToAggregate);
 		if (aggregates == null)
 		{
@@ -943,6 +955,33 @@ public class SQLSheet
 		return aggregate_dataproviders.get(dataProviderIDToAggregate);
 	}
 
+	/**
+	 * @return the dataprovider that is aggregated by the aggregate
+	 */
+	String getAggregatedDataProviderID(String name)
+	{
+		if (aggregated_dataprovider == null) return null;
+		return aggregated_dataprovider.get(name);
+	}
+
+	/**
+	 * @return the type of the aggregate as in {@link QueryAggregate#getType()}, -1 when unknown or for distinct aggregates
+	 */
+	int getAggregateType(String name)
+	{
+		QuerySelect sqlSelect = aggregate == null ? null : aggregate.get(name);
+		if (sqlSelect != null && sqlSelect.getColumns() != null && sqlSelect.getColumns().size() == 1 &&
+			sqlSelect.getColumns().get(0) instanceof QueryAggregate)
+		{
+			QueryAggregate queryAggregate = (QueryAggregate)sqlSelect.getColumns().get(0);
+			if (queryAggregate.getQuantifier() == QueryAggregate.ALL)
+			{
+				return queryAggregate.getType();
+			}
+		}
+		return -1;
+	}
+
 	public boolean containsAggregate(String name)
 	{
 		if (aggregate == null || name == null) return false;
@@ -0,0 +1,249 @@
+/*
+ This file belongs to the Servoy development and deployment environment, Copyright (C) 1997-2021 Servoy BV
+
+ This program is free software; you can redistribute it and/or modify it under
+ the terms of the GNU Affero General Public License as published by the Free
+ Software Foundation; either version 3 of the License, or (at your option) any
+ later version.
+
+ This program is distributed in the hope that it will be useful, but WITHOUT
+ ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ FOR A PARTICULAR PURPOSE. See the GNU Affero General Public License for more details.
+
+ You should have received a copy of the GNU Affero General Public License along
+ with this program; if not, see http://www.gnu.org/licenses or write to the Free
+ Software Foundation,Inc., 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301
+*/
+
+package com.servoy.j2db.dataprocessing;
+
+import static com.servoy.j2db.query.AbstractBaseQuery.deepClone;
+import static java.util.Collections.unmodifiableList;
+import static java.util.Collections.unmodifiableMap;
+
+import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.servoy.j2db.persistence.Column;
+import com.servoy.j2db.persistence.ColumnInfo;
+import com.servoy.j2db.persistence.RepositoryException;
+import com.servoy.j2db.persistence.Table;
+import com.servoy.j2db.query.ISQLQuery;
+import com.servoy.j2db.query.QueryDelete;
+import com.servoy.j2db.query.QueryInsert;
+import com.servoy.j2db.query.QuerySelect;
+import com.servoy.j2db.query.QueryTable;
+import com.servoy.j2db.query.QueryUpdate;
+import com.servoy.j2db.server.shared.CacheStatistics;
+import com.servoy.j2db.util.DataSourceUtils;
+
+/**
+ * Server wide cache of the table based part of a {@link SQLSheet}, shared by all clients in this vm.
+ * <p>
+ * The select/insert/update/delete statements and the column lists of a sheet only depend on the table definition, not on the client or solution.
+ * Each client gets its own copy of the statements because placeholder values are set on them, the column lists and column index map are shared.
+ * Solution dependent parts (aggregates, related sheets) are still added per client by the {@link SQLGenerator}.
+ * <p>
+ * Entries are validated against a signature of the table columns, so a changed table definition results in a new template.
+ * The signature is only built again when the {@link Table#getDefinitionVersion() definition version} of the table has changed since the last check,
+ * or when the table was loaded again.
+ *
+ * @author agent
+ * @since 2021.06
+ */
+public class SQLSheetTemplateCache
+{
+	private static final Logger LOG = LoggerFactory.getLogger("com.servoy.SQLSheetTemplateCache"); //$NON-NLS-1$
+
+	private static final ConcurrentMap<String, SQLSheetTemplate> templates = new ConcurrentHashMap<>();
+
+	private static final AtomicLong hits = new AtomicLong();
+	private static final AtomicLong misses = new AtomicLong();
+
+	private SQLSheetTemplateCache()
+	{
+	}
+
+	/**
+	 * Get the template for the table, create it when not cached yet or when the table definition has changed.
+	 * Returns null for in-memory and view datasources, those tables are client specific.
+	 */
+	static SQLSheetTemplate getTemplate(Table table) throws RepositoryException
+	{
+		if (table.getDataSource() == null || table.getDataSource().startsWith(DataSourceUtils.INMEM_DATASOURCE_SCHEME_COLON) ||
+			table.getDataSource().startsWith(DataSourceUtils.VIEW_DATASOURCE_SCHEME_COLON))
+		{
+			return null;
+		}
+
+		String key = table.getServerName() + ':' + table.getDataSource();
+		SQLSheetTemplate template = templates.get(key);
+		if (template != null && template.isCheckedFor(table))
+		{
+			hits.incrementAndGet();
+			return template;
+		}
+
+		// get the version before the signature, a change while creating the signature results in another check next time
+		int version = table.getDefinitionVersion();
+		List<Object> signature = createSignature(table);
+		if (template != null && template.signature.equals(signature))
+		{
+			template.checked(table, version);
+			hits.incrementAndGet();
+			return template;
+		}
+
+		misses.incrementAndGet();
+		template = SQLGenerator.createTableSQLTemplate(table, signature);
+		template.checked(table, version);
+		templates.put(key, template);
+		if (LOG.isDebugEnabled())
+		{
+			LOG.debug("SQLSheet template created for " + key); //$NON-NLS-1$
+		}
+		return template;
+	}
+
+	public static void flush()
+	{
+		LOG.debug("SQLSheet template cache cleared"); //$NON-NLS-1$
+		templates.clear();
+	}
+
+	public static long getHitCount()
+	{
+		return hits.get();
+	}
+
+	public static long getMissCount()
+	{
+		return misses.get();
+	}
+
+	public static int size()
+	{
+		return templates.size();
+	}
+
+	public static CacheStatistics getCacheStatistics()
+	{
+		return new CacheStatistics("SQLSheet templates", size(), getHitCount(), getMissCount()); //$NON-NLS-1$
+	}
+
+	/**
+	 * Everything from the table that is used when creating the template.
+	 */
+	private static List<Object> createSignature(Table table)
+	{
+		List<Object> signature = new ArrayList<>(table.getColumnCount() * 8 + 8);
+		signature.add(table.getSQLName());
+		signature.add(table.getCatalog());
+		signature.add(table.getSchema());
+		for (Column column : table.getColumns())
+		{
+			ColumnInfo ci = column.getColumnInfo();
+			signature.add(column.getDataProviderID());
+			signature.add(column.getSQLName());
+			signature.add(Integer.valueOf(column.getID()));
+			signature.add(column.getColumnType());
+			signature.add(column.getNativeTypename());
+			signature.add(Integer.valueOf(column.getFlags()));
+			signature.add(Boolean.valueOf(column.isDBIdentity()));
+			signature.add(Boolean.valueOf(ci != null && ci.isExcluded()));
+		}
+		for (Column column : table.getRowIdentColumns())
+		{
+			signature.add(column.getDataProviderID());
+		}
+		return signature;
+	}
+
+	/**
+	 * Immutable table based statements and column lists for a sheet.
+	 */
+	static class SQLSheetTemplate
+	{
+		private final List<Object> signature;
+		private final ISQLQuery[] statements; // select, delete, insert, update
+		private final List<String> dataProviderIDsDilivery;
+		private final List<String> requiredDataProviderIDs;
+		private final Map<String, Integer> columnIndexes;
+		private volatile CheckedTable checkedTable;
+
+		SQLSheetTemplate(List<Object> signature, QuerySelect select, QueryDelete delete, QueryInsert insert, QueryUpdate update,
+			List<String> dataProviderIDsDilivery, List<String> requiredDataProviderIDs)
+		{
+			this.signature = signature;
+			this.statements = new ISQLQuery[] { select, delete, insert, update };
+			this.dataProviderIDsDilivery = unmodifiableList(dataProviderIDsDilivery);
+			this.requiredDataProviderIDs = unmodifiableList(requiredDataProviderIDs);
+			Map<String, Integer> indexes = new HashMap<String, Integer>(dataProviderIDsDilivery.size() * 2);
+			for (int i = 0; i < dataProviderIDsDilivery.size(); i++)
+			{
+				indexes.put(dataProviderIDsDilivery.get(i), Integer.valueOf(i));
+			}
+			this.columnIndexes = unmodifiableMap(indexes);
+		}
+
+		/**
+		 * Remember that the signature matched this version of the table definition.
+		 */
+		void checked(Table table, int version)
+		{
+			checkedTable = new CheckedTable(table, version);
+		}
+
+		/**
+		 * Is the signature already checked against the current definition of this table.
+		 */
+		boolean isCheckedFor(Table table)
+		{
+			CheckedTable checked = checkedTable;
+			return checked != null && checked.table.get() == table && checked.version == table.getDefinitionVersion();
+		}
+
+		/**
+		 * Fill the sheet with a private copy of the statements, returns the query table used in the copied statements.
+		 */
+		QueryTable applyTo(SQLSheet sheet, boolean shareColumnIndexes)
+		{
+			// clone in one go so the statements keep sharing the same query table
+			ISQLQuery[] copy = deepClone(statements);
+			QuerySelect select = (QuerySelect)copy[0];
+			sheet.addSelect(select, dataProviderIDsDilivery, requiredDataProviderIDs, null);
+			sheet.addDelete((QueryDelete)copy[1], requiredDataProviderIDs);
+			sheet.addInsert((QueryInsert)copy[2], dataProviderIDsDilivery);
+			sheet.addUpdate((QueryUpdate)copy[3], dataProviderIDsDilivery, requiredDataProviderIDs);
+			if (shareColumnIndexes)
+			{
+				sheet.setSharedDataProviderIDsColumnMap(columnIndexes);
+			}
+			return (QueryTable)select.getTable();
+		}
+	}
+
+	/**
+	 * Table and definition version that a template was last checked against, weak so a reloaded table is not kept in memory.
+	 */
+	private static class CheckedTable
+	{
+		final WeakReference<Table> table;
+		final int version;
+
+		CheckedTable(Table table, int version)
+		{
+			this.table = new WeakReference<>(table);
+			this.version = version;
+		}
+	}
+}
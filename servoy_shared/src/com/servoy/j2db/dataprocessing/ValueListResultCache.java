@@ -0,0 +1,328 @@
+/*
+ This file belongs to the Servoy development and deployment environment, Copyright (C) 1997-2021 Servoy BV
+
+ This program is free software; you can redistribute it and/or modify it under
+ the terms of the GNU Affero General Public License as published by the Free
+ Software Foundation; either version 3 of the License, or (at your option) any
+ later version.
+
+ This program is distributed in the hope that it will be useful, but WITHOUT
+ ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ FOR A PARTICULAR PURPOSE. See the GNU Affero General Public License for more details.
+
+ You should have received a copy of the GNU Affero General Public License along
+ with this program; if not, see http://www.gnu.org/licenses or write to the Free
+ Software Foundation,Inc., 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301
+*/
+
+package com.servoy.j2db.dataprocessing;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.util.concurrent.UncheckedExecutionException;
+import com.servoy.j2db.persistence.ITable;
+import com.servoy.j2db.plugins.IDataNotifyListener;
+import com.servoy.j2db.plugins.IDataNotifyService;
+import com.servoy.j2db.plugins.IServerAccess;
+import com.servoy.j2db.server.shared.ApplicationServerRegistry;
+import com.servoy.j2db.server.shared.CacheStatistics;
+import com.servoy.j2db.util.DataSourceUtils;
+import com.servoy.j2db.util.Debug;
+import com.servoy.j2db.util.Settings;
+import com.servoy.j2db.util.Utils;
+
+/**
+ * Server wide cache of the raw results of database valuelist queries, shared by all clients in the application server.
+ * <p>
+ * Only the query result is shared, display formatting and i18n are still applied per client on the cached values, so the locale is not part of the key.
+ * Entries are invalidated through the data broadcast of the application server, every change or flush on a table drops the results for that table.
+ * <p>
+ * The cache is opt-in via the {@link #SERVOY_VALUELIST_SHARED_CACHE_PROPERTY} setting, it is meant for (mostly) static lookup tables.
+ *
+ * @author agent
+ * @since 2021.06
+ */
+public class ValueListResultCache
+{
+	public static final String SERVOY_VALUELIST_SHARED_CACHE_PROPERTY = "servoy.valuelist.sharedResultCache"; //$NON-NLS-1$
+	public static final String SERVOY_VALUELIST_SHARED_CACHE_SIZE_PROPERTY = "servoy.valuelist.sharedResultCache.size"; //$NON-NLS-1$
+
+	private static final Logger LOG = LoggerFactory.getLogger("com.servoy.ValueListResultCache"); //$NON-NLS-1$
+
+	private static final AtomicLong hits = new AtomicLong();
+	private static final AtomicLong misses = new AtomicLong();
+
+	// invalidation stamps, results of queries started before the last invalidation of their table are never used
+	private static final AtomicLong invalidationCounter = new AtomicLong();
+	private static final ConcurrentMap<String, Long> invalidations = new ConcurrentHashMap<>();
+	private static volatile long flushStamp = 0;
+
+	private static volatile Cache<ValueListKey, CachedResult> results;
+	private static volatile boolean listenerRegistered = false;
+
+	private ValueListResultCache()
+	{
+	}
+
+	public static boolean isEnabled()
+	{
+		return Utils.getAsBoolean(Settings.getInstance().getProperty(SERVOY_VALUELIST_SHARED_CACHE_PROPERTY, "false")); //$NON-NLS-1$
+	}
+
+	/**
+	 * Can the result of a valuelist query on this table be shared with other clients.
+	 * Not when the client has a transaction open or when selects are tracked, in-memory and view tables are client specific.
+	 * Filters based on a query are not supported because the key of the query can not be compared over clients.
+	 */
+	static boolean isCacheable(ITable table, String transactionId, SQLStatement trackingInfo, List<TableFilter> tableFilterParams)
+	{
+		if (transactionId != null || trackingInfo != null || table == null || table.getDataSource() == null ||
+			table.getDataSource().startsWith(DataSourceUtils.INMEM_DATASOURCE_SCHEME_COLON) ||
+			table.getDataSource().startsWith(DataSourceUtils.VIEW_DATASOURCE_SCHEME_COLON))
+		{
+			return false;
+		}
+		if (tableFilterParams != null)
+		{
+			for (TableFilter filter : tableFilterParams)
+			{
+				if (!(filter.getTableFilterdefinition() instanceof DataproviderTableFilterdefinition))
+				{
+					return false;
+				}
+			}
+		}
+		return isEnabled() && getCache() != null;
+	}
+
+	/**
+	 * Get the result for the key from the cache, run the query when not cached.
+	 * When multiple clients ask for the same result at the same time the query is only run once.
+	 * <p>
+	 * The returned set is shared, callers must not modify it.
+	 */
+	static IDataSet getResult(ValueListKey key, Callable<IDataSet> query) throws Exception
+	{
+		Cache<ValueListKey, CachedResult> cache = getCache();
+		if (cache == null)
+		{
+			return query.call();
+		}
+
+		boolean[] loaded = { false };
+		CachedResult result;
+		try
+		{
+			result = cache.get(key, () -> {
+				loaded[0] = true;
+				long stamp = invalidationCounter.get();
+				return new CachedResult(query.call(), stamp);
+			});
+		}
+		catch (ExecutionException | UncheckedExecutionException e)
+		{
+			throw e.getCause() instanceof Exception ? (Exception)e.getCause() : e;
+		}
+
+		if (isValid(result, key.dataSource))
+		{
+			(loaded[0] ? misses : hits).incrementAndGet();
+			return result.set;
+		}
+
+		// table was changed while the query was running, do not keep this result
+		cache.asMap().remove(key, result);
+		misses.incrementAndGet();
+		return loaded[0] ? result.set : query.call();
+	}
+
+	private static boolean isValid(CachedResult result, String dataSource)
+	{
+		Long invalidated = invalidations.get(dataSource);
+		return result.stamp >= flushStamp && (invalidated == null || result.stamp >= invalidated.longValue());
+	}
+
+	/**
+	 * Drop all results for the table.
+	 */
+	public static void invalidate(String dataSource)
+	{
+		invalidations.put(dataSource, Long.valueOf(invalidationCounter.incrementAndGet()));
+		Cache<ValueListKey, CachedResult> cache = results;
+		if (cache != null)
+		{
+			cache.asMap().keySet().removeIf(key -> key.dataSource.equals(dataSource));
+			if (LOG.isDebugEnabled())
+			{
+				LOG.debug("Valuelist results invalidated for " + dataSource); //$NON-NLS-1$
+			}
+		}
+	}
+
+	public static void flush()
+	{
+		flushStamp = invalidationCounter.incrementAndGet();
+		invalidations.clear();
+		Cache<ValueListKey, CachedResult> cache = results;
+		if (cache != null)
+		{
+			LOG.debug("Valuelist result cache cleared"); //$NON-NLS-1$
+			cache.invalidateAll();
+		}
+	}
+
+	public static long getHitCount()
+	{
+		return hits.get();
+	}
+
+	public static long getMissCount()
+	{
+		return misses.get();
+	}
+
+	public static long size()
+	{
+		Cache<ValueListKey, CachedResult> cache = results;
+		return cache == null ? 0 : cache.size();
+	}
+
+	public static CacheStatistics getCacheStatistics()
+	{
+		return new CacheStatistics("Valuelist results", size(), getHitCount(), getMissCount()); //$NON-NLS-1$
+	}
+
+	/**
+	 * The cache is only created when it can be invalidated, that is when we are running in the application server and the data broadcast listener is registered.
+	 */
+	private static Cache<ValueListKey, CachedResult> getCache()
+	{
+		if (!listenerRegistered && !registerDataNotifyListener())
+		{
+			return null;
+		}
+		Cache<ValueListKey, CachedResult> cache = results;
+		if (cache == null)
+		{
+			synchronized (ValueListResultCache.class)
+			{
+				cache = results;
+				if (cache == null)
+				{
+					results = cache = CacheBuilder.newBuilder() //
+						.maximumSize(Utils.getAsInteger(Settings.getInstance().getProperty(SERVOY_VALUELIST_SHARED_CACHE_SIZE_PROPERTY, "1000"))) //$NON-NLS-1$
+						.softValues() //
+						.build();
+				}
+			}
+		}
+		return cache;
+	}
+
+	private static synchronized boolean registerDataNotifyListener()
+	{
+		if (!listenerRegistered && ApplicationServerRegistry.exists())
+		{
+			try
+			{
+				IServerAccess serverAccess = ApplicationServerRegistry.get().getServerAccess();
+				IDataNotifyService dataNotifyService = serverAccess == null ? null : serverAccess.getDataNotifyService();
+				if (dataNotifyService != null)
+				{
+					registerDataNotifyListener(dataNotifyService);
+				}
+			}
+			catch (Exception e)
+			{
+				Debug.error("Could not register the valuelist result cache for data broadcasts", e); //$NON-NLS-1$
+			}
+		}
+		return listenerRegistered;
+	}
+
+	/**
+	 * Invalidate the cache through the data broadcasts of this service, the cache is used from now on.
+	 */
+	static synchronized void registerDataNotifyListener(IDataNotifyService dataNotifyService)
+	{
+		dataNotifyService.registerDataNotifyListener(new DataNotifyListener());
+		listenerRegistered = true;
+	}
+
+	private static class DataNotifyListener implements IDataNotifyListener
+	{
+		@Override
+		public void flushCachedDatabaseData(String dataSource, Object[] tenantValue)
+		{
+			if (dataSource == null)
+			{
+				flush();
+			}
+			else
+			{
+				invalidate(dataSource);
+			}
+		}
+
+		@Override
+		public void notifyDataChange(String server_name, String table_name, IDataSet pks, int action, Object[] insertColumnData, Object[] tenantValue)
+		{
+			invalidate(DataSourceUtils.createDBTableDataSource(server_name, table_name));
+		}
+	}
+
+	/**
+	 * Key for a valuelist result, the datasource is used for invalidation, the parts describe the query.
+	 */
+	static final class ValueListKey
+	{
+		private final String dataSource;
+		private final Object[] parts;
+		private final int hash;
+
+		ValueListKey(String dataSource, Object... parts)
+		{
+			this.dataSource = dataSource;
+			this.parts = parts;
+			this.hash = 31 * dataSource.hashCode() + Arrays.hashCode(parts);
+		}
+
+		@Override
+		public int hashCode()
+		{
+			return hash;
+		}
+
+		@Override
+		public boolean equals(Object obj)
+		{
+			if (this == obj) return true;
+			if (!(obj instanceof ValueListKey)) return false;
+			ValueListKey other = (ValueListKey)obj;
+			return hash == other.hash && dataSource.equals(other.dataSource) && Arrays.equals(parts, other.parts);
+		}
+	}
+
+	private static final class CachedResult
+	{
+		final IDataSet set;
+		final long stamp;
+
+		CachedResult(IDataSet set, long stamp)
+		{
+			this.set = set;
+			this.stamp = stamp;
+		}
+	}
+}
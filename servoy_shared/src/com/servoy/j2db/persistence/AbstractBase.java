@@ -88,7 +88,7 @@ public abstract class AbstractBase implements IPersist
 	private CopyOnWriteArrayList<IPersist> allobjects = null;
 	private transient Map<UUID, IPersist> allobjectsMap = null;
 
-	private Map<String, Object> propertiesMap = new HashMap<String, Object>();
+	private PersistPropertyMap propertiesMap = new PersistPropertyMap(getClass());
 	private Map<String, Object> bufferPropertiesMap = null;
 
 	/*
@@ -112,6 +112,15 @@ public abstract class AbstractBase implements IPersist
 		return new HashMap<String, Object>(propertiesMap);
 	}
 
+	/**
+	 * Read-only view on the properties of this persist, unlike {@link #getPropertiesMap()} this does not copy the properties.
+	 * The view reflects later changes to the properties, so it should not be used while properties of this persist are set.
+	 */
+	public Map<String, Object> getPropertiesView()
+	{
+		return Collections.unmodifiableMap(propertiesMap);
+	}
+
 	public void clearProperty(String propertyName)
 	{
 		// TODO is it ok here to also clear custom properties? jsonCustomProperties get/set have different methods for that; and now a separate clear is added for custom properties as well
@@ -629,6 +638,7 @@ public abstract class AbstractBase implements IPersist
 	public void clearChanged()
 	{
 		isChanged = false;
+		propertiesMap.trimToSize(); // loaded or saved, properties are not likely to change anymore
 		setRuntimeProperty(NameChangeProperty, null);
 	}
 
@@ -858,8 +868,8 @@ public abstract class AbstractBase implements IPersist
 	protected void fillClone(AbstractBase cloned)
 	{
 		cloned.allobjectsMap = null;
-		cloned.propertiesMap = new HashMap<String, Object>();
-		cloned.copyPropertiesMap(getPropertiesMap(), true);
+		cloned.propertiesMap = new PersistPropertyMap(cloned.getClass());
+		cloned.copyPropertiesMap(getPropertiesView(), true);
 		if (cloned.allobjects != null)
 		{
 			// would be nicer to make the copy on write with the full copy of the list
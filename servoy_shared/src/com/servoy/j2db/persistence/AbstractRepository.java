@@ -30,6 +30,9 @@ import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.locks.ReentrantLock;
 
 import com.servoy.j2db.PersistIndexCache;
+import com.servoy.j2db.dataprocessing.SQLSheetTemplateCache;
+import com.servoy.j2db.dataprocessing.ValueListResultCache;
+import com.servoy.j2db.scripting.SharedCompiledScriptCache;
 import com.servoy.j2db.util.Debug;
 import com.servoy.j2db.util.UUID;
 
@@ -377,6 +380,9 @@ public abstract class AbstractRepository extends AbstractPersistFactory implemen
 		synchronized (ROOT_OBJECT_SYNC)
 		{
 			PersistIndexCache.flush();
+			SQLSheetTemplateCache.flush();
+			ValueListResultCache.flush();
+			SharedCompiledScriptCache.flush();
 			rootObjectCache = null;
 		}
 	}
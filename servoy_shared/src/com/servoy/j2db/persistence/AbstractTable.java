@@ -43,6 +43,7 @@ public abstract class AbstractTable implements ITable, Serializable
 	protected final List<Column> keyColumns = new ArrayList<Column>();
 	protected final AliasKeyMap<String, String, Column> columns = new AliasKeyMap<String, String, Column>(new LinkedHashMap<String, Column>());
 	private transient volatile boolean initialized = false;
+	private transient volatile int definitionVersion = 0;
 
 	public Iterator<String> getRowIdentColumnNames()
 	{
@@ -84,21 +85,36 @@ public abstract class AbstractTable implements ITable, Serializable
 	{
 		if (!keyColumns.contains(c)) keyColumns.add(c);
 		Collections.sort(keyColumns, NameComparator.INSTANCE);
+		definitionChanged();
 	}
 
 	public void removeRowIdentColumn(Column c)
 	{
 		keyColumns.remove(c);
+		definitionChanged();
+	}
+
+	public int getDefinitionVersion()
+	{
+		return definitionVersion;
+	}
+
+	public void definitionChanged()
+	{
+		// not atomic, a lost increment still results in another version than the one before the change
+		definitionVersion++;
 	}
 
 	protected void fireIColumnCreated(IColumn column)
 	{
+		definitionChanged();
 		ColumnChangeHandler.getInstance().fireItemCreated(this, column);
 	}
 
 	public void columnDataProviderIDChanged(String oldDataProviderID)
 	{
 		columns.updateAlias(oldDataProviderID);
+		definitionChanged();
 	}
 
 	public void fireIColumnChanged(IColumn column)
@@ -108,6 +124,7 @@ public abstract class AbstractTable implements ITable, Serializable
 
 	public void fireIColumnsChanged(Collection<IColumn> cols)
 	{
+		definitionChanged();
 		ColumnChangeHandler.getInstance().fireItemChanged(this, cols);
 	}
 
@@ -138,6 +155,7 @@ public abstract class AbstractTable implements ITable, Serializable
 	public void addColumn(Column c)
 	{
 		columns.put(c.getName(), c);
+		definitionChanged();
 	}
 
 	public Collection<Column> getColumns()
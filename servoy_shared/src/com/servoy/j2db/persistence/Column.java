@@ -799,6 +799,7 @@ public class Column extends BaseColumn implements Serializable, IColumn, ISuppor
 		plainSQLName = name;
 		hasBadName = null; // clear notify, so checks are run again
 		normalizedName = null; // should be recalculated
+		table.definitionChanged();
 	}
 
 
@@ -1036,6 +1037,7 @@ public class Column extends BaseColumn implements Serializable, IColumn, ISuppor
 //			dbPK = ((newFlags & PK_COLUMN) != 0);
 			this.flags = newFlags;
 		}
+		table.definitionChanged();
 	}
 
 	protected void updateTableIdentColumns(int newFlags)
@@ -1311,6 +1313,7 @@ public class Column extends BaseColumn implements Serializable, IColumn, ISuppor
 		{
 			sequenceType = i;
 		}
+		table.definitionChanged();
 	}
 
 	public void setDatabaseSequenceName(String databaseSequenceName)
@@ -1332,6 +1335,7 @@ public class Column extends BaseColumn implements Serializable, IColumn, ISuppor
 	public void setNativeTypename(String nativeTypename)
 	{
 		this.nativeTypename = nativeTypename;
+		table.definitionChanged();
 	}
 
 	public String getNativeTypename()
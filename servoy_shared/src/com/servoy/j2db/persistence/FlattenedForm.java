@@ -133,7 +133,7 @@ public class FlattenedForm extends Form implements IFlattenedPersistWrapper<Form
 	{
 		List<Form> allForms = flattenedSolution.getFormHierarchy(form);
 
-		copyPropertiesMap(form.getPropertiesMap(), false);
+		copyPropertiesMap(form.getPropertiesView(), false);
 
 		// caches for the duplicate (over the form hierarchy) methods/variables, so that only
 		// the first method based on its name is added.
@@ -227,7 +227,7 @@ public class FlattenedForm extends Form implements IFlattenedPersistWrapper<Form
 		Collections.reverse(allForms); // change from sub-first to super-first
 		for (Form f : allForms)
 		{
-			allProperties.putAll(f.getPropertiesMap());
+			allProperties.putAll(f.getPropertiesView());
 			// Add parts
 			Iterator<Part> parts = f.getParts();
 			while (parts.hasNext())
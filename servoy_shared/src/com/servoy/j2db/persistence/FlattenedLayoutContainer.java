@@ -117,6 +117,12 @@ public class FlattenedLayoutContainer extends LayoutContainer implements IFlatte
 		return layoutContainer.getPropertiesMap();
 	}
 
+	@Override
+	public Map<String, Object> getPropertiesView()
+	{
+		return layoutContainer.getPropertiesView();
+	}
+
 	@Override
 	public int hashCode()
 	{
@@ -24,6 +24,7 @@ import java.util.Map;
 import java.util.TreeMap;
 
 import com.servoy.base.query.IBaseSQLCondition;
+import com.servoy.j2db.Messages;
 import com.servoy.j2db.dataprocessing.FoundSetManager;
 import com.servoy.j2db.dataprocessing.IDataServer;
 import com.servoy.j2db.dataprocessing.IDataSet;
@@ -277,6 +278,7 @@ public class I18NUtil
 					st.setDataType(ISQLStatement.I18N_DATA_TYPE);
 				}
 				dataServer.performUpdates(clientID, updateStatements.toArray(new ISQLStatement[updateStatements.size()]));
+				Messages.changedTime = System.currentTimeMillis();
 
 			}
 		}
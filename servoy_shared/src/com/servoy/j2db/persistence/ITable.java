@@ -257,6 +257,17 @@ public interface ITable
 	 */
 	public void removeRowIdentColumn(Column column);
 
+	/**
+	 * Version of the table definition, increased whenever a column is added, removed or changed.
+	 * Caches of data that is derived from the table definition can compare it to see if they are still valid.
+	 */
+	public int getDefinitionVersion();
+
+	/**
+	 * Increase the definition version, called by the column when a property that is used in generated sql changes.
+	 */
+	public void definitionChanged();
+
 	public void setInitialized(boolean initialized);
 
 	public boolean isInitialized();
@@ -0,0 +1,376 @@
+/*
+ This file belongs to the Servoy development and deployment environment, Copyright (C) 1997-2021 Servoy BV
+
+ This program is free software; you can redistribute it and/or modify it under
+ the terms of the GNU Affero General Public License as published by the Free
+ Software Foundation; either version 3 of the License, or (at your option) any
+ later version.
+
+ This program is distributed in the hope that it will be useful, but WITHOUT
+ ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ FOR A PARTICULAR PURPOSE. See the GNU Affero General Public License for more details.
+
+ You should have received a copy of the GNU Affero General Public License along
+ with this program; if not, see http://www.gnu.org/licenses or write to the Free
+ Software Foundation,Inc., 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301
+*/
+
+package com.servoy.j2db.persistence;
+
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Arrays;
+import java.util.ConcurrentModificationException;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Compact map for the properties of a persist.
+ * <p>
+ * Property names are mapped to a slot by a schema that is shared by all persists of the same class, the map itself only holds the sorted slots
+ * of the properties that are set and an array with their values. This saves the entry objects and hash table of a HashMap per persist,
+ * persists only set a small part of the properties of their content spec.
+ * <p>
+ * Like HashMap this map is not thread safe and allows null values, the schema is thread safe.
+ * Slots are only valid within one vm, the map is serialized as names and values.
+ *
+ * @author agent
+ * @since 2021.06
+ */
+public final class PersistPropertyMap extends AbstractMap<String, Object> implements Serializable
+{
+	private static final long serialVersionUID = 1L;
+
+	private static final short[] NO_SLOTS = new short[0];
+	private static final Object[] NO_VALUES = new Object[0];
+
+	private static final ConcurrentMap<Class< ? >, Schema> schemas = new ConcurrentHashMap<>();
+
+	private final Class< ? > persistClass;
+	private transient Schema schema;
+	private transient short[] slots; // sorted, only the first size are used
+	private transient Object[] values;
+	private transient int size;
+	private transient int modCount;
+	private transient Set<Entry<String, Object>> entrySet;
+
+	public PersistPropertyMap(Class< ? > persistClass)
+	{
+		this.persistClass = persistClass;
+		this.schema = getSchema(persistClass);
+		this.slots = NO_SLOTS;
+		this.values = NO_VALUES;
+	}
+
+	private static Schema getSchema(Class< ? > persistClass)
+	{
+		return schemas.computeIfAbsent(persistClass, clz -> new Schema());
+	}
+
+	/**
+	 * @return index in slots of the property or -(insertion point) - 1 when not set
+	 */
+	private int indexOf(int slot)
+	{
+		return Arrays.binarySearch(slots, 0, size, (short)slot);
+	}
+
+	private int indexOf(Object key)
+	{
+		if (!(key instanceof String)) return -1;
+		int slot = schema.getSlot((String)key);
+		return slot < 0 ? -1 : indexOf(slot);
+	}
+
+	@Override
+	public int size()
+	{
+		return size;
+	}
+
+	@Override
+	public boolean containsKey(Object key)
+	{
+		return indexOf(key) >= 0;
+	}
+
+	@Override
+	public Object get(Object key)
+	{
+		int index = indexOf(key);
+		return index < 0 ? null : values[index];
+	}
+
+	@Override
+	public Object put(String key, Object value)
+	{
+		int slot = schema.getOrCreateSlot(key);
+		int index = indexOf(slot);
+		if (index >= 0)
+		{
+			Object old = values[index];
+			values[index] = value;
+			return old;
+		}
+
+		index = -index - 1;
+		if (size == slots.length)
+		{
+			int capacity = size < 4 ? size + 2 : size + (size >> 1);
+			slots = Arrays.copyOf(slots, capacity);
+			values = Arrays.copyOf(values, capacity);
+		}
+		System.arraycopy(slots, index, slots, index + 1, size - index);
+		System.arraycopy(values, index, values, index + 1, size - index);
+		slots[index] = (short)slot;
+		values[index] = value;
+		size++;
+		modCount++;
+		return null;
+	}
+
+	@Override
+	public Object remove(Object key)
+	{
+		int index = indexOf(key);
+		if (index < 0) return null;
+		Object old = values[index];
+		removeAt(index);
+		return old;
+	}
+
+	private void removeAt(int index)
+	{
+		int moved = size - index - 1;
+		System.arraycopy(slots, index + 1, slots, index, moved);
+		System.arraycopy(values, index + 1, values, index, moved);
+		size--;
+		values[size] = null;
+		modCount++;
+		if (size == 0)
+		{
+			slots = NO_SLOTS;
+			values = NO_VALUES;
+		}
+	}
+
+	@Override
+	public void clear()
+	{
+		if (size > 0)
+		{
+			slots = NO_SLOTS;
+			values = NO_VALUES;
+			size = 0;
+			modCount++;
+		}
+	}
+
+	/**
+	 * Shrink the arrays to the number of properties, for persists that are not changed anymore.
+	 */
+	public void trimToSize()
+	{
+		if (size < slots.length)
+		{
+			slots = size == 0 ? NO_SLOTS : Arrays.copyOf(slots, size);
+			values = size == 0 ? NO_VALUES : Arrays.copyOf(values, size);
+		}
+	}
+
+	@Override
+	public Set<Entry<String, Object>> entrySet()
+	{
+		if (entrySet == null)
+		{
+			entrySet = new AbstractSet<Entry<String, Object>>()
+			{
+				@Override
+				public Iterator<Entry<String, Object>> iterator()
+				{
+					return new EntryIterator();
+				}
+
+				@Override
+				public int size()
+				{
+					return size;
+				}
+
+				@Override
+				public void clear()
+				{
+					PersistPropertyMap.this.clear();
+				}
+			};
+		}
+		return entrySet;
+	}
+
+	private void writeObject(ObjectOutputStream out) throws IOException
+	{
+		out.defaultWriteObject();
+		out.writeInt(size);
+		for (int i = 0; i < size; i++)
+		{
+			out.writeObject(schema.getName(slots[i]));
+			out.writeObject(values[i]);
+		}
+	}
+
+	private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException
+	{
+		in.defaultReadObject();
+		schema = getSchema(persistClass);
+		int n = in.readInt();
+		slots = n == 0 ? NO_SLOTS : new short[n];
+		values = n == 0 ? NO_VALUES : new Object[n];
+		for (int i = 0; i < n; i++)
+		{
+			put((String)in.readObject(), in.readObject());
+		}
+	}
+
+	private class EntryIterator implements Iterator<Entry<String, Object>>
+	{
+		private int next = 0;
+		private int last = -1;
+		private int expectedModCount = modCount;
+
+		@Override
+		public boolean hasNext()
+		{
+			return next < size;
+		}
+
+		@Override
+		public Entry<String, Object> next()
+		{
+			if (modCount != expectedModCount) throw new ConcurrentModificationException();
+			if (next >= size) throw new NoSuchElementException();
+			last = next++;
+			return new PropertyEntry(slots[last]);
+		}
+
+		@Override
+		public void remove()
+		{
+			if (last < 0) throw new IllegalStateException();
+			if (modCount != expectedModCount) throw new ConcurrentModificationException();
+			removeAt(last);
+			next = last;
+			last = -1;
+			expectedModCount = modCount;
+		}
+	}
+
+	/**
+	 * Entry that looks up its value by slot, so it stays valid when other properties are added or removed.
+	 */
+	private class PropertyEntry implements Map.Entry<String, Object>
+	{
+		private final short slot;
+
+		PropertyEntry(short slot)
+		{
+			this.slot = slot;
+		}
+
+		@Override
+		public String getKey()
+		{
+			return schema.getName(slot);
+		}
+
+		@Override
+		public Object getValue()
+		{
+			int index = indexOf(slot);
+			return index < 0 ? null : values[index];
+		}
+
+		@Override
+		public Object setValue(Object value)
+		{
+			int index = indexOf(slot);
+			if (index < 0) throw new IllegalStateException("Property " + getKey() + " was removed"); //$NON-NLS-1$ //$NON-NLS-2$
+			Object old = values[index];
+			values[index] = value;
+			return old;
+		}
+
+		@Override
+		public boolean equals(Object o)
+		{
+			if (!(o instanceof Map.Entry)) return false;
+			Map.Entry< ? , ? > e = (Map.Entry< ? , ? >)o;
+			Object value = getValue();
+			return getKey().equals(e.getKey()) && (value == null ? e.getValue() == null : value.equals(e.getValue()));
+		}
+
+		@Override
+		public int hashCode()
+		{
+			Object value = getValue();
+			return getKey().hashCode() ^ (value == null ? 0 : value.hashCode());
+		}
+
+		@Override
+		public String toString()
+		{
+			return getKey() + "=" + getValue(); //$NON-NLS-1$
+		}
+	}
+
+	/**
+	 * Property name to slot mapping for one persist class, slots are added when a new property name is used and never removed.
+	 */
+	private static final class Schema
+	{
+		private final ConcurrentMap<String, Integer> nameToSlot = new ConcurrentHashMap<>();
+		private volatile String[] names = new String[0];
+
+		int getSlot(String name)
+		{
+			Integer slot = nameToSlot.get(name);
+			return slot == null ? -1 : slot.intValue();
+		}
+
+		int getOrCreateSlot(String name)
+		{
+			Integer slot = nameToSlot.get(name);
+			if (slot != null) return slot.intValue();
+			synchronized (this)
+			{
+				slot = nameToSlot.get(name);
+				if (slot == null)
+				{
+					String[] current = names;
+					if (current.length == Short.MAX_VALUE)
+					{
+						throw new IllegalStateException("Too many property names for persist class"); //$NON-NLS-1$
+					}
+					String[] newNames = Arrays.copyOf(current, current.length + 1);
+					newNames[current.length] = name.intern();
+					names = newNames;
+					slot = Integer.valueOf(current.length);
+					nameToSlot.put(newNames[current.length], slot);
+				}
+				return slot.intValue();
+			}
+		}
+
+		String getName(int slot)
+		{
+			return names[slot];
+		}
+	}
+}
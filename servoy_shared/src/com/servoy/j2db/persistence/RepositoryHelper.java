@@ -180,14 +180,14 @@ public class RepositoryHelper
 			// top-most super-element first
 			for (int i = overrideHierarchy.size() - 1; i >= 0; i--)
 			{
-				((AbstractBase)clone).copyPropertiesMap(overrideHierarchy.get(i).getPropertiesMap(), false);
+				((AbstractBase)clone).copyPropertiesMap(overrideHierarchy.get(i).getPropertiesView(), false);
 			}
 			// no longer an override
 			((AbstractBase)clone).clearTypedProperty(StaticContentSpecLoader.PROPERTY_EXTENDSID);
 		}
 		else
 		{
-			((AbstractBase)clone).copyPropertiesMap(((AbstractBase)original).getPropertiesMap(), false);
+			((AbstractBase)clone).copyPropertiesMap(((AbstractBase)original).getPropertiesView(), false);
 		}
 	}
 
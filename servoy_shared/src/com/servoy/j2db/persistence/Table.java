@@ -241,6 +241,7 @@ public class Table extends AbstractTable implements ITable, Serializable, ISuppo
 		this.plainSQLName = table_dbname;
 		this.catalog = table_cat;
 		this.schema = table_schem;
+		definitionChanged();
 	}
 
 	/**
@@ -415,6 +416,7 @@ public class Table extends AbstractTable implements ITable, Serializable, ISuppo
 	// How to call these ones?? deletes/changes are not through solution.
 	protected void fireIColumnRemoved(IColumn column)
 	{
+		definitionChanged();
 		ColumnChangeHandler.getInstance().fireItemRemoved(this, column);
 	}
 
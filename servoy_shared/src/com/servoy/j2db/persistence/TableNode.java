@@ -590,7 +590,7 @@ public class TableNode extends AbstractBase implements ISupportChilds
 			return false;
 		}
 
-		Map<String, Object> props = getPropertiesMap();
+		Map<String, Object> props = getPropertiesView();
 		return props.isEmpty() || (props.size() == 1 && props.containsKey(StaticContentSpecLoader.PROPERTY_DATASOURCE.getPropertyName()));
 	}
 
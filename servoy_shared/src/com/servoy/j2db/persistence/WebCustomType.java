@@ -368,7 +368,7 @@ public class WebCustomType extends AbstractBase implements IChildWebObject, ISup
 	@Override
 	public JSONObject getFullJsonInFrmFile()
 	{
-		return (JSONObject)getPropertiesMap().get(StaticContentSpecLoader.PROPERTY_JSON.getPropertyName());
+		return (JSONObject)getPropertiesView().get(StaticContentSpecLoader.PROPERTY_JSON.getPropertyName());
 	}
 
 	@Override
@@ -543,7 +543,8 @@ public class ScriptEngine implements IScriptSupport
 		}
 		try
 		{
-			if (Utils.getAsBoolean(System.getProperty(SERVOY_DISABLE_SCRIPT_COMPILE_PROPERTY, "false"))) //flag should only be used in rich client
+			boolean interpreted = Utils.getAsBoolean(System.getProperty(SERVOY_DISABLE_SCRIPT_COMPILE_PROPERTY, "false"));
+			if (interpreted) //flag should only be used in rich client
 			{
 				cx.setOptimizationLevel(-1);
 			}
@@ -552,6 +553,17 @@ public class ScriptEngine implements IScriptSupport
 				cx.setOptimizationLevel(9);
 			}
 			cx.setGeneratingSource(Boolean.getBoolean("servoy.generateJavascriptSource"));
+			if (!interpreted && SharedCompiledScriptCache.isEnabled())
+			{
+				// reuse the classes generated for this method by other clients
+				String declaration = getFunctionDeclaration(sp);
+				Function f = SharedCompiledScriptCache.getFunction(cx, sp, declaration, sourceName, scope);
+				if (f != null)
+				{
+					setFunctionProperties(sp, f, declaration);
+					return f;
+				}
+			}
 			return compileScriptProvider(sp, scope, cx, sourceName);
 		}
 		catch (Exception e)
@@ -572,22 +584,29 @@ public class ScriptEngine implements IScriptSupport
 	 * @param cx
 	 * @return
 	 */
-	@SuppressWarnings("nls")
 	protected Function compileScriptProvider(IScriptProvider sp, Scriptable scope, Context cx, String sourceName)
 	{
-		String declaration = sp.getDeclaration();
+		String declaration = getFunctionDeclaration(sp);
+		Function f = cx.compileFunction(scope, declaration, sourceName, sp.getLineNumberOffset(), null);
+		setFunctionProperties(sp, f, declaration);
+		return f;
+	}
+
+	@SuppressWarnings("nls")
+	private static String getFunctionDeclaration(IScriptProvider sp)
+	{
 		// for script calcs we change the name a bit so that references to itself
 		// dont return the calc function itself but still the value.
 		if (sp instanceof ScriptCalculation)
 		{
-			declaration = extractFunction(declaration, "function $1_");
-		}
-		else
-		{
-			declaration = extractFunction(declaration, "function $1");
+			return extractFunction(sp.getDeclaration(), "function $1_");
 		}
+		return extractFunction(sp.getDeclaration(), "function $1");
+	}
 
-		Function f = cx.compileFunction(scope, declaration, sourceName, sp.getLineNumberOffset(), null);
+	@SuppressWarnings("nls")
+	private static void setFunctionProperties(IScriptProvider sp, Function f, String declaration)
+	{
 		if (!(sp instanceof ScriptCalculation))
 		{
 			if (sp.getScopeName() != null)
@@ -598,7 +617,6 @@ public class ScriptEngine implements IScriptSupport
 			f.put("_AllowToRunInFind_", f, Boolean.valueOf(sp.getDeclaration().indexOf("@AllowToRunInFind") != -1 || declaration.indexOf(".search") != -1 || //$NON-NLS-1$//$NON-NLS-2$//$NON-NLS-3$
 				declaration.indexOf("controller.loadAllRecords") != -1));
 		}
-		return f;
 	}
 
 	public Object executeFunction(Function f, Scriptable scope, Scriptable thisObject, Object[] args, boolean focusEvent, boolean throwException)
@@ -0,0 +1,173 @@
+/*
+ This file belongs to the Servoy development and deployment environment, Copyright (C) 1997-2021 Servoy BV
+
+ This program is free software; you can redistribute it and/or modify it under
+ the terms of the GNU Affero General Public License as published by the Free
+ Software Foundation; either version 3 of the License, or (at your option) any
+ later version.
+
+ This program is distributed in the hope that it will be useful, but WITHOUT
+ ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ FOR A PARTICULAR PURPOSE. See the GNU Affero General Public License for more details.
+
+ You should have received a copy of the GNU Affero General Public License along
+ with this program; if not, see http://www.gnu.org/licenses or write to the Free
+ Software Foundation,Inc., 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301
+*/
+
+package com.servoy.j2db.scripting;
+
+import java.util.concurrent.ExecutionException;
+
+import org.mozilla.javascript.Context;
+import org.mozilla.javascript.Function;
+import org.mozilla.javascript.NativeObject;
+import org.mozilla.javascript.Script;
+import org.mozilla.javascript.Scriptable;
+import org.mozilla.javascript.ScriptableObject;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheStats;
+import com.servoy.j2db.persistence.IScriptProvider;
+import com.servoy.j2db.server.shared.CacheStatistics;
+import com.servoy.j2db.util.Debug;
+import com.servoy.j2db.util.UUID;
+import com.servoy.j2db.util.Utils;
+
+/**
+ * Vm wide cache of compiled method scripts, so that clients running the same solution do not each generate and load their own classes for the same method.
+ * <p>
+ * A method declaration is compiled once into a {@link Script} that declares the function, each client executes that script to get its own function
+ * instance that is then linked to the client scope. Compilation is done with the optimizer, executing the cached script only creates new instances of
+ * the already generated class.
+ * <p>
+ * The key contains the declaration itself so methods changed via the solution model or a solution update are never shared with the old version.
+ * <p>
+ * Disabled by default, enable it with the system property servoy.script.sharedCompileCache=true.
+ *
+ * @author agent
+ * @since 2021.06
+ */
+public class SharedCompiledScriptCache
+{
+	public static final String SERVOY_SHARED_SCRIPT_CACHE_PROPERTY = "servoy.script.sharedCompileCache"; //$NON-NLS-1$
+	public static final String SERVOY_SHARED_SCRIPT_CACHE_SIZE_PROPERTY = "servoy.script.sharedCompileCache.size"; //$NON-NLS-1$
+
+	private static final boolean enabled = Utils.getAsBoolean(System.getProperty(SERVOY_SHARED_SCRIPT_CACHE_PROPERTY, "false")); //$NON-NLS-1$
+
+	private static final Cache<ScriptKey, Script> scripts = CacheBuilder.newBuilder() //
+		.maximumSize(Utils.getAsInteger(System.getProperty(SERVOY_SHARED_SCRIPT_CACHE_SIZE_PROPERTY, "20000"))) //$NON-NLS-1$
+		.softValues() // allow the generated classes to be unloaded under memory pressure
+		.recordStats() //
+		.build();
+
+	private SharedCompiledScriptCache()
+	{
+	}
+
+	public static boolean isEnabled()
+	{
+		return enabled;
+	}
+
+	/**
+	 * Get the function for the declaration, compile the declaration only when no other client did that before.
+	 *
+	 * @return the function with scope as parent scope, or null when the declaration could not be handled as a single function declaration
+	 */
+	static Function getFunction(Context cx, IScriptProvider sp, String declaration, String sourceName, Scriptable scope) throws Exception
+	{
+		ScriptKey key = new ScriptKey(sp.getUUID(), declaration, sourceName, sp.getLineNumberOffset(), cx.getLanguageVersion(), cx.getOptimizationLevel());
+		Script script;
+		try
+		{
+			script = scripts.get(key, () -> cx.compileString(declaration, sourceName, sp.getLineNumberOffset(), null));
+		}
+		catch (ExecutionException e)
+		{
+			throw e.getCause() instanceof Exception ? (Exception)e.getCause() : e;
+		}
+
+		// execute the script in a holder scope, the function declaration will be defined on the holder.
+		NativeObject holder = new NativeObject();
+		holder.setParentScope(scope);
+		script.exec(cx, holder);
+
+		Object[] ids = holder.getIds();
+		Object f = ids.length == 1 ? holder.get(String.valueOf(ids[0]), holder) : null;
+		if (!(f instanceof Function))
+		{
+			// not a single function, do not share it
+			scripts.invalidate(key);
+			Debug.warn("Method " + sourceName + " is not compiled as a single function, not using the shared script cache"); //$NON-NLS-1$//$NON-NLS-2$
+			return null;
+		}
+
+		// link it to the scope directly, like Context.compileFunction() does
+		((ScriptableObject)f).setParentScope(scope);
+		return (Function)f;
+	}
+
+	/**
+	 * The size is the number of compiled scripts currently cached, each of them is a set of generated classes that is loaded once instead of once per client.
+	 */
+	public static CacheStatistics getCacheStatistics()
+	{
+		CacheStats stats = scripts.stats();
+		return new CacheStatistics("Shared compiled scripts", scripts.size(), stats.hitCount(), stats.missCount()); //$NON-NLS-1$
+	}
+
+	/**
+	 * Remove all compiled scripts, clients that are running keep the functions they already have.
+	 */
+	public static void flush()
+	{
+		scripts.invalidateAll();
+	}
+
+	private static final class ScriptKey
+	{
+		private final UUID uuid;
+		private final String declaration;
+		private final String sourceName;
+		private final int lineNumberOffset;
+		private final int languageVersion;
+		private final int optimizationLevel;
+		private final int hash;
+
+		ScriptKey(UUID uuid, String declaration, String sourceName, int lineNumberOffset, int languageVersion, int optimizationLevel)
+		{
+			this.uuid = uuid;
+			this.declaration = declaration;
+			this.sourceName = sourceName;
+			this.lineNumberOffset = lineNumberOffset;
+			this.languageVersion = languageVersion;
+			this.optimizationLevel = optimizationLevel;
+
+			int h = uuid == null ? 0 : uuid.hashCode();
+			h = 31 * h + declaration.hashCode();
+			h = 31 * h + (sourceName == null ? 0 : sourceName.hashCode());
+			h = 31 * h + lineNumberOffset;
+			h = 31 * h + languageVersion;
+			this.hash = 31 * h + optimizationLevel;
+		}
+
+		@Override
+		public int hashCode()
+		{
+			return hash;
+		}
+
+		@Override
+		public boolean equals(Object obj)
+		{
+			if (this == obj) return true;
+			if (!(obj instanceof ScriptKey)) return false;
+			ScriptKey other = (ScriptKey)obj;
+			return hash == other.hash && lineNumberOffset == other.lineNumberOffset && languageVersion == other.languageVersion &&
+				optimizationLevel == other.optimizationLevel && Utils.equalObjects(uuid, other.uuid) && Utils.stringSafeEquals(sourceName, other.sourceName) &&
+				declaration.equals(other.declaration);
+		}
+	}
+}
@@ -16,8 +16,12 @@
  */
 package com.servoy.j2db.server.shared;
 
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.concurrent.atomic.AtomicReference;
 
+import com.servoy.j2db.util.Debug;
+
 /**
  * This class holds a reference to the single application server instance in this JVM and provides the registry (services).
  * @author rgansevles, jblok
@@ -26,6 +30,7 @@ public final class ApplicationServerRegistry
 {
 	private static final AtomicReference<IApplicationServerSingleton> as_instanceRef = new AtomicReference<IApplicationServerSingleton>();
 	private static final AtomicReference<IServiceRegistry> reg_instanceRef = new AtomicReference<IServiceRegistry>();
+	private static final List<Runnable> destroyHooks = new CopyOnWriteArrayList<Runnable>();
 	private static volatile boolean destroyed = false;
 
 	//cannot be created
@@ -98,8 +103,29 @@ public final class ApplicationServerRegistry
 		return reg_instanceRef.get();
 	}
 
+	/**
+	 * Add a hook that is run when the application server is destroyed, before the instance is removed from this registry.
+	 * @param hook
+	 */
+	public static void addDestroyHook(Runnable hook)
+	{
+		destroyHooks.add(hook);
+	}
+
 	public static void destroy()
 	{
+		for (Runnable hook : destroyHooks)
+		{
+			try
+			{
+				hook.run();
+			}
+			catch (Exception e)
+			{
+				Debug.error(e);
+			}
+		}
+		destroyHooks.clear();
 		destroyed = true;
 		as_instanceRef.set(null);
 		reg_instanceRef.set(null);
@@ -0,0 +1,66 @@
+/*
+ This file belongs to the Servoy development and deployment environment, Copyright (C) 1997-2021 Servoy BV
+
+ This program is free software; you can redistribute it and/or modify it under
+ the terms of the GNU Affero General Public License as published by the Free
+ Software Foundation; either version 3 of the License, or (at your option) any
+ later version.
+
+ This program is distributed in the hope that it will be useful, but WITHOUT
+ ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ FOR A PARTICULAR PURPOSE. See the GNU Affero General Public License for more details.
+
+ You should have received a copy of the GNU Affero General Public License along
+ with this program; if not, see http://www.gnu.org/licenses or write to the Free
+ Software Foundation,Inc., 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301
+*/
+
+package com.servoy.j2db.server.shared;
+
+/**
+ * Size and hit/miss counts of a server wide cache, shown on the admin pages.
+ *
+ * @author agent
+ * @since 2021.06
+ */
+public class CacheStatistics
+{
+	private final String name;
+	private final long size;
+	private final long hitCount;
+	private final long missCount;
+
+	public CacheStatistics(String name, long size, long hitCount, long missCount)
+	{
+		this.name = name;
+		this.size = size;
+		this.hitCount = hitCount;
+		this.missCount = missCount;
+	}
+
+	public String getName()
+	{
+		return name;
+	}
+
+	public long getSize()
+	{
+		return size;
+	}
+
+	public long getHitCount()
+	{
+		return hitCount;
+	}
+
+	public long getMissCount()
+	{
+		return missCount;
+	}
+
+	@Override
+	public String toString()
+	{
+		return name + ": size " + size + ", hits " + hitCount + ", misses " + missCount; //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
+	}
+}
@@ -20,6 +20,9 @@ package com.servoy.j2db.server.shared;
 import java.util.Map;
 
 import com.servoy.j2db.dataprocessing.IClient;
+import com.servoy.j2db.dataprocessing.SQLSheetTemplateCache;
+import com.servoy.j2db.dataprocessing.ValueListResultCache;
+import com.servoy.j2db.scripting.SharedCompiledScriptCache;
 
 /**
  * Access to the status of the server.
@@ -45,4 +48,13 @@ public interface IServerStatus
 	int getNumberOfConnectedClients();
 
 	Map<String, IClient> getClients();
+
+	/**
+	 * Statistics of the caches that are shared by all clients of the server.
+	 */
+	default CacheStatistics[] getCacheStatistics()
+	{
+		return new CacheStatistics[] { SharedCompiledScriptCache.getCacheStatistics(), SQLSheetTemplateCache.getCacheStatistics(),
+			ValueListResultCache.getCacheStatistics() };
+	}
 }
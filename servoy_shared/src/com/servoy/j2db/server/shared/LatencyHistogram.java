@@ -0,0 +1,214 @@
+/*
+ This file belongs to the Servoy development and deployment environment, Copyright (C) 1997-2021 Servoy BV
+
+ This program is free software; you can redistribute it and/or modify it under
+ the terms of the GNU Affero General Public License as published by the Free
+ Software Foundation; either version 3 of the License, or (at your option) any
+ later version.
+
+ This program is distributed in the hope that it will be useful, but WITHOUT
+ ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ FOR A PARTICULAR PURPOSE. See the GNU Affero General Public License for more details.
+
+ You should have received a copy of the GNU Affero General Public License along
+ with this program; if not, see http://www.gnu.org/licenses or write to the Free
+ Software Foundation,Inc., 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301
+*/
+
+package com.servoy.j2db.server.shared;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Lock free histogram of timings in ms, used to calculate percentiles of actions.
+ * <p>
+ * Buckets are log-linear (like HdrHistogram): values below {@link #LINEAR_BUCKETS} have their own bucket, above that every power of 2 is divided into
+ * {@link #SUB_BUCKETS} buckets, so a percentile is accurate to about 6% of its value. Values above {@link #MAX_VALUE} (about 24 days) are counted in the last bucket.
+ * <p>
+ * The buckets of a power of 2 are only allocated when a value in that range is recorded, most actions only use a few ranges.
+ *
+ * @author agent
+ * @since 2021.06
+ */
+public class LatencyHistogram
+{
+	private static final int SUB_BUCKET_BITS = 4;
+	private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+	private static final int LINEAR_BUCKETS = SUB_BUCKETS * 2;
+	private static final int MAX_VALUE_BITS = 31;
+	private static final long MAX_VALUE = (1L << MAX_VALUE_BITS) - 1;
+	private static final int BUCKET_COUNT = LINEAR_BUCKETS + (MAX_VALUE_BITS - SUB_BUCKET_BITS - 1) * SUB_BUCKETS;
+
+	// group 0 holds the linear buckets, group n the sub buckets of values with n + SUB_BUCKET_BITS significant bits
+	private static final int GROUP_COUNT = 1 + (BUCKET_COUNT - LINEAR_BUCKETS) / SUB_BUCKETS;
+
+	private final AtomicReferenceArray<AtomicLongArray> groups = new AtomicReferenceArray<>(GROUP_COUNT);
+
+	public LatencyHistogram()
+	{
+	}
+
+	/**
+	 * Creates a copy.
+	 */
+	public LatencyHistogram(LatencyHistogram copy)
+	{
+		add(copy);
+	}
+
+	public void record(long value_ms)
+	{
+		record(value_ms, 1);
+	}
+
+	/**
+	 * Record the value count times.
+	 */
+	public void record(long value_ms, long count)
+	{
+		if (count <= 0) return;
+		int index = getBucketIndex(value_ms);
+		getOrCreateGroup(getGroup(index)).addAndGet(getIndexInGroup(index), count);
+	}
+
+	/**
+	 * Add all counts of the other histogram to this one.
+	 */
+	public void add(LatencyHistogram other)
+	{
+		for (int g = 0; g < GROUP_COUNT; g++)
+		{
+			AtomicLongArray otherCounts = other.groups.get(g);
+			if (otherCounts == null) continue;
+			AtomicLongArray counts = null;
+			for (int i = 0; i < otherCounts.length(); i++)
+			{
+				long count = otherCounts.get(i);
+				if (count != 0)
+				{
+					if (counts == null) counts = getOrCreateGroup(g);
+					counts.addAndGet(i, count);
+				}
+			}
+		}
+	}
+
+	public long getTotalCount()
+	{
+		long total = 0;
+		for (int g = 0; g < GROUP_COUNT; g++)
+		{
+			AtomicLongArray counts = groups.get(g);
+			if (counts == null) continue;
+			for (int i = 0; i < counts.length(); i++)
+			{
+				total += counts.get(i);
+			}
+		}
+		return total;
+	}
+
+	/**
+	 * Get the value at the percentile, the highest value that is in the same bucket is returned.
+	 *
+	 * @param percentile between 0 and 100
+	 * @return the value in ms, 0 when nothing was recorded
+	 */
+	public long getValueAtPercentile(double percentile)
+	{
+		// copy the counts first, other threads may record while we are walking the buckets
+		long[] snapshot = new long[BUCKET_COUNT];
+		long total = 0;
+		for (int g = 0; g < GROUP_COUNT; g++)
+		{
+			AtomicLongArray counts = groups.get(g);
+			if (counts == null) continue;
+			int offset = getFirstIndexOfGroup(g);
+			for (int i = 0; i < counts.length(); i++)
+			{
+				snapshot[offset + i] = counts.get(i);
+				total += snapshot[offset + i];
+			}
+		}
+		if (total == 0) return 0;
+
+		long target = Math.max(1, (long)Math.ceil(Math.min(100, Math.max(0, percentile)) / 100 * total));
+		long cumulative = 0;
+		for (int i = 0; i < BUCKET_COUNT; i++)
+		{
+			cumulative += snapshot[i];
+			if (cumulative >= target)
+			{
+				return getHighestValueInBucket(i);
+			}
+		}
+		return getHighestValueInBucket(BUCKET_COUNT - 1);
+	}
+
+	public void clear()
+	{
+		for (int g = 0; g < GROUP_COUNT; g++)
+		{
+			AtomicLongArray counts = groups.get(g);
+			if (counts == null) continue;
+			for (int i = 0; i < counts.length(); i++)
+			{
+				counts.set(i, 0);
+			}
+		}
+	}
+
+	private AtomicLongArray getOrCreateGroup(int group)
+	{
+		AtomicLongArray counts = groups.get(group);
+		if (counts == null)
+		{
+			counts = new AtomicLongArray(group == 0 ? LINEAR_BUCKETS : SUB_BUCKETS);
+			if (!groups.compareAndSet(group, null, counts))
+			{
+				// another thread was first
+				counts = groups.get(group);
+			}
+		}
+		return counts;
+	}
+
+	private static int getGroup(int index)
+	{
+		return index < LINEAR_BUCKETS ? 0 : (index - LINEAR_BUCKETS) / SUB_BUCKETS + 1;
+	}
+
+	private static int getFirstIndexOfGroup(int group)
+	{
+		return group == 0 ? 0 : LINEAR_BUCKETS + (group - 1) * SUB_BUCKETS;
+	}
+
+	private static int getIndexInGroup(int index)
+	{
+		return index - getFirstIndexOfGroup(getGroup(index));
+	}
+
+	static int getBucketIndex(long value)
+	{
+		if (value < LINEAR_BUCKETS)
+		{
+			return value < 0 ? 0 : (int)value;
+		}
+		long v = Math.min(value, MAX_VALUE);
+		int shift = 63 - Long.numberOfLeadingZeros(v) - SUB_BUCKET_BITS; // >= 1 because v >= LINEAR_BUCKETS
+		int subBucket = (int)(v >>> shift) - SUB_BUCKETS; // the top SUB_BUCKET_BITS + 1 bits, without the leading 1
+		return LINEAR_BUCKETS + (shift - 1) * SUB_BUCKETS + subBucket;
+	}
+
+	static long getHighestValueInBucket(int index)
+	{
+		if (index < LINEAR_BUCKETS)
+		{
+			return index;
+		}
+		int shift = (index - LINEAR_BUCKETS) / SUB_BUCKETS + 1;
+		long subBucket = (index - LINEAR_BUCKETS) % SUB_BUCKETS + SUB_BUCKETS;
+		return ((subBucket + 1) << shift) - 1;
+	}
+}
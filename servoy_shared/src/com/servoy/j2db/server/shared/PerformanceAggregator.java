@@ -17,16 +17,19 @@
 
 package com.servoy.j2db.server.shared;
 
+import java.util.Arrays;
 import java.util.Collections;
-import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
 
-import com.servoy.j2db.server.shared.PerformanceData.TimeComparator;
-import com.servoy.j2db.util.SortedList;
 import com.servoy.j2db.util.UUID;
 
 /**
  * A class that can aggregate the results of multiple actions/operations.
+ * <p>
+ * Recording is lock free, the aggregates themselves use striped counters, so concurrent actions do not contend on this aggregator.
+ * The aggregates are only sorted when they are read, when more than maxEntriesToKeep actions are recorded the least expensive ones are pruned in batches.
  *
  * @author acostescu
  */
@@ -35,8 +38,8 @@ public class PerformanceAggregator
 
 	public static final int DEFAULT_MAX_ENTRIES_TO_KEEP_IN_PRODUCTION = 500;
 
-	private SortedList<PerformanceTimingAggregate> sortedAggregates;
-	private Map<String, PerformanceTimingAggregate> aggregatesByAction;
+	private final Map<String, PerformanceTimingAggregate> aggregatesByAction = new ConcurrentHashMap<String, PerformanceTimingAggregate>();
+	private final AtomicBoolean pruning = new AtomicBoolean();
 
 	protected final int maxEntriesToKeep;
 
@@ -51,70 +54,99 @@ public class PerformanceAggregator
 	public PerformanceAggregator(PerformanceAggregator copy)
 	{
 		this.maxEntriesToKeep = copy.maxEntriesToKeep;
-		if (copy.sortedAggregates != null)
+		for (PerformanceTimingAggregate a : copy.aggregatesByAction.values())
 		{
-			sortedAggregates = new SortedList<PerformanceTimingAggregate>(new TimeComparator());
-			aggregatesByAction = new HashMap<String, PerformanceTimingAggregate>(maxEntriesToKeep);
-			for (PerformanceTimingAggregate a : copy.sortedAggregates)
-			{
-				PerformanceTimingAggregate copyOfA = new PerformanceTimingAggregate(a);
-				sortedAggregates.add(copyOfA);
-				aggregatesByAction.put(a.getAction(), copyOfA);
-			}
+			aggregatesByAction.put(a.getAction(), new PerformanceTimingAggregate(a));
 		}
 	}
 
 	/**
 	 * Please use {@link #startAction(String, long, int)} / {@link #endAction(UUID)} / {@link #intervalAction(UUID)} whenever possible instead.
 	 */
-	public synchronized void addTiming(String action, long interval_ms, long total_ms, int type, Map<String, PerformanceTimingAggregate> subActionTimings,
-		int nrecords)
+	public void addTiming(String action, long interval_ms, long total_ms, int type, Map<String, PerformanceTimingAggregate> subActionTimings, int nrecords)
 	{
 		if (maxEntriesToKeep == IPerformanceRegistry.OFF) return;
 
-		if (aggregatesByAction == null) aggregatesByAction = new HashMap<String, PerformanceTimingAggregate>(
-			maxEntriesToKeep > 0 ? maxEntriesToKeep : DEFAULT_MAX_ENTRIES_TO_KEEP_IN_PRODUCTION);
-		if (sortedAggregates == null) sortedAggregates = new SortedList<PerformanceTimingAggregate>(new TimeComparator());
-
 		PerformanceTimingAggregate time = aggregatesByAction.get(action);
 		if (time == null)
 		{
-			time = new PerformanceTimingAggregate(action, type, getSubActionMaxEntries());
-			aggregatesByAction.put(action, time);
+			time = aggregatesByAction.computeIfAbsent(action, a -> new PerformanceTimingAggregate(a, type, getSubActionMaxEntries()));
+			pruneIfNeeded();
 		}
-		// remove it because it will need to be sorted again after update
-		sortedAggregates.remove(time);
 
 		// update obj
 		time.updateTime(interval_ms, total_ms, nrecords);
 		time.updateSubActionTimes(subActionTimings, nrecords);
+	}
 
-		// do sort again
-		sortedAggregates.add(time);
+	/**
+	 * Remove the least expensive actions when there are too many, this is done in batches to not have to sort for every new action.
+	 */
+	private void pruneIfNeeded()
+	{
+		if (maxEntriesToKeep == IPerformanceRegistry.UNLIMITED_ENTRIES || aggregatesByAction.size() <= maxEntriesToKeep + getPruneMargin()) return;
 
-		// do clean
-		if (maxEntriesToKeep != IPerformanceRegistry.UNLIMITED_ENTRIES && sortedAggregates.size() > maxEntriesToKeep)
+		// only one thread prunes, the others just continue recording
+		if (pruning.compareAndSet(false, true))
 		{
-			PerformanceTimingAggregate old = sortedAggregates.remove(maxEntriesToKeep);
-			aggregatesByAction.remove(old.getAction());
+			try
+			{
+				PerformanceTimingAggregate[] sorted = getSortedAggregates();
+				for (int i = maxEntriesToKeep; i < sorted.length; i++)
+				{
+					aggregatesByAction.remove(sorted[i].getAction(), sorted[i]);
+				}
+			}
+			finally
+			{
+				pruning.set(false);
+			}
 		}
 	}
 
-	public synchronized void clear()
+	private int getPruneMargin()
+	{
+		return Math.max(10, maxEntriesToKeep / 5);
+	}
+
+	public void clear()
+	{
+		aggregatesByAction.clear();
+	}
+
+	/**
+	 * The aggregates sorted on total interval time, most expensive first.
+	 */
+	public PerformanceTimingAggregate[] toArray()
 	{
-		if (sortedAggregates != null) sortedAggregates.clear();
-		if (aggregatesByAction != null) aggregatesByAction.clear();
+		PerformanceTimingAggregate[] sorted = getSortedAggregates();
+		if (maxEntriesToKeep != IPerformanceRegistry.UNLIMITED_ENTRIES && sorted.length > maxEntriesToKeep)
+		{
+			return Arrays.copyOf(sorted, maxEntriesToKeep);
+		}
+		return sorted;
 	}
 
-	public synchronized PerformanceTimingAggregate[] toArray()
+	public Map<String, PerformanceTimingAggregate> toMap()
 	{
-		return (sortedAggregates != null ? sortedAggregates.toArray(new PerformanceTimingAggregate[sortedAggregates.size()])
-			: new PerformanceTimingAggregate[0]);
+		return Collections.unmodifiableMap(aggregatesByAction);
 	}
 
-	public synchronized Map<String, PerformanceTimingAggregate> toMap()
+	private PerformanceTimingAggregate[] getSortedAggregates()
 	{
-		return (aggregatesByAction != null ? Collections.unmodifiableMap(aggregatesByAction) : new HashMap<String, PerformanceTimingAggregate>());
+		// sort on a snapshot of the times, the aggregates can be updated while sorting
+		PerformanceTimingAggregate[] aggregates = aggregatesByAction.values().toArray(new PerformanceTimingAggregate[0]);
+		SortEntry[] entries = new SortEntry[aggregates.length];
+		for (int i = 0; i < aggregates.length; i++)
+		{
+			entries[i] = new SortEntry(aggregates[i]);
+		}
+		Arrays.sort(entries);
+		for (int i = 0; i < entries.length; i++)
+		{
+			aggregates[i] = entries[i].aggregate;
+		}
+		return aggregates;
 	}
 
 	protected int getSubActionMaxEntries()
@@ -122,4 +154,25 @@ public class PerformanceAggregator
 		return maxEntriesToKeep == IPerformanceRegistry.UNLIMITED_ENTRIES ? IPerformanceRegistry.UNLIMITED_ENTRIES : Math.max(5, maxEntriesToKeep / 10);
 	}
 
+	private static final class SortEntry implements Comparable<SortEntry>
+	{
+		final PerformanceTimingAggregate aggregate;
+		final long totalIntervalTime;
+
+		SortEntry(PerformanceTimingAggregate aggregate)
+		{
+			this.aggregate = aggregate;
+			this.totalIntervalTime = aggregate.getTotalIntervalTimeMS();
+		}
+
+		public int compareTo(SortEntry o)
+		{
+			if (totalIntervalTime == o.totalIntervalTime)
+			{
+				return aggregate.getAction().compareTo(o.aggregate.getAction());
+			}
+			return totalIntervalTime > o.totalIntervalTime ? -1 : 1;
+		}
+	}
+
 }
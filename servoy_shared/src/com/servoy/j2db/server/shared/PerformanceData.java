@@ -1,10 +1,11 @@
 package com.servoy.j2db.server.shared;
 
 
+import java.util.ArrayDeque;
 import java.util.Comparator;
-import java.util.HashMap;
+import java.util.Deque;
 import java.util.Map;
-import java.util.Stack;
+import java.util.concurrent.ConcurrentHashMap;
 
 import org.slf4j.Logger;
 
@@ -18,11 +19,12 @@ import com.servoy.j2db.util.UUID;
  */
 public class PerformanceData extends PerformanceAggregator
 {
-	private final Map<UUID, PerformanceTiming> startedTimings = new HashMap<UUID, PerformanceTiming>();
+	private final Map<UUID, PerformanceTiming> startedTimings = new ConcurrentHashMap<UUID, PerformanceTiming>();
 
 	// stack because for example an showForm modal dialog could execute other actions and then when modal
-	// is closed sub-actions might still happen and they need to point to the correct parent action
-	private final Stack<UUID> startedTimingUUIDsStack = new Stack<>();
+	// is closed sub-actions might still happen and they need to point to the correct parent action;
+	// one stack per thread, actions of other threads running at the same time must not become each others parent
+	private final ThreadLocal<Deque<UUID>> startedTimingUUIDsStack = new ThreadLocal<>();
 
 	private final Logger log;
 
@@ -32,22 +34,28 @@ public class PerformanceData extends PerformanceAggregator
 		this.log = log;
 	}
 
-	public synchronized UUID startAction(String action, long start_ms, int type, String clientUUID)
+	public UUID startAction(String action, long start_ms, int type, String clientUUID)
 	{
 		if (maxEntriesToKeep == IPerformanceRegistry.OFF) return null;
 
 		PerformanceTiming timing = new PerformanceTiming(action, type, start_ms, clientUUID, maxEntriesToKeep, log);
-		startedTimingUUIDsStack.push(timing.getUuid());
+		Deque<UUID> stack = startedTimingUUIDsStack.get();
+		if (stack == null)
+		{
+			stack = new ArrayDeque<>();
+			startedTimingUUIDsStack.set(stack);
+		}
+		stack.push(timing.getUuid());
 		startedTimings.put(timing.getUuid(), timing);
 		return timing.getUuid();
 	}
 
-	public synchronized UUID startAction(String action, long start_ms, int type)
+	public UUID startAction(String action, long start_ms, int type)
 	{
 		return startAction(action, start_ms, type, null);
 	}
 
-	public synchronized void intervalAction(UUID uuid)
+	public void intervalAction(UUID uuid)
 	{
 		if (maxEntriesToKeep == IPerformanceRegistry.OFF || uuid == null) return;
 
@@ -60,7 +68,7 @@ public class PerformanceData extends PerformanceAggregator
 		endAction(uuid, 1);
 	}
 
-	public synchronized void endAction(UUID uuid, int nrecords)
+	public void endAction(UUID uuid, int nrecords)
 	{
 		if (maxEntriesToKeep == IPerformanceRegistry.OFF || uuid == null) return;
 
@@ -73,27 +81,36 @@ public class PerformanceData extends PerformanceAggregator
 			}
 			addTiming(timing.getAction(), timing.getIntervalTimeMS(), timing.getRunningTimeMS(), timing.getType(), timing.toMap(), nrecords);
 		}
-		startedTimingUUIDsStack.pop();
+		Deque<UUID> stack = startedTimingUUIDsStack.get();
+		if (stack != null)
+		{
+			// normally the top of the stack, but the action could have been ended out of order
+			stack.removeFirstOccurrence(uuid);
+			if (stack.isEmpty()) startedTimingUUIDsStack.remove();
+		}
 	}
 
 	// currently we can have/need only one layer of nesting/sub-actions (sub-actions cannot be accessed right now by the outside world to continue nesting furter)
-	public synchronized Pair<UUID, UUID> startSubAction(String action, long start_ms, int type, String clientUUID)
+	public Pair<UUID, UUID> startSubAction(String action, long start_ms, int type, String clientUUID)
 	{
 		if (maxEntriesToKeep == IPerformanceRegistry.OFF) return null;
 
-		if (startedTimingUUIDsStack.isEmpty()) return null; // probably a Servoy internal service API call that gets called outside any user method; ignore
-		UUID lastStartedTimingUUID = startedTimingUUIDsStack.peek();
-
-		PerformanceTiming lastStartedTiming = startedTimings.get(lastStartedTimingUUID);
-		UUID subTimingUUID = null;
-		if (lastStartedTiming != null)
+		Deque<UUID> stack = startedTimingUUIDsStack.get();
+		UUID lastStartedTimingUUID = stack == null ? null : stack.peekFirst();
+		PerformanceTiming lastStartedTiming = lastStartedTimingUUID == null ? null : startedTimings.get(lastStartedTimingUUID);
+		while (lastStartedTiming == null && lastStartedTimingUUID != null)
 		{
-			subTimingUUID = lastStartedTiming.startAction(action, start_ms, type, clientUUID);
+			// ended on another thread, drop it
+			stack.pollFirst();
+			lastStartedTimingUUID = stack.peekFirst();
+			lastStartedTiming = lastStartedTimingUUID == null ? null : startedTimings.get(lastStartedTimingUUID);
 		}
-		return new Pair<>(lastStartedTimingUUID, subTimingUUID);
+		if (lastStartedTiming == null) return null; // probably a Servoy internal service API call that gets called outside any user method; ignore
+
+		return new Pair<>(lastStartedTimingUUID, lastStartedTiming.startAction(action, start_ms, type, clientUUID));
 	}
 
-	public synchronized void endSubAction(Pair<UUID, UUID> subActionUUIDs)
+	public void endSubAction(Pair<UUID, UUID> subActionUUIDs)
 	{
 		if (maxEntriesToKeep == IPerformanceRegistry.OFF) return;
 		if (subActionUUIDs == null) return; // probably a Servoy internal service API call that gets called outside any user method; ignore
@@ -115,12 +132,12 @@ public class PerformanceData extends PerformanceAggregator
 			{
 				return o1.getAction().compareTo(o2.getAction());
 			}
-			return (int)(t2 - t1);
+			return t2 > t1 ? 1 : -1;
 		}
 	}
 
-	public synchronized PerformanceTiming[] getStartedActions()
+	public PerformanceTiming[] getStartedActions()
 	{
-		return startedTimings.values().toArray(new PerformanceTiming[startedTimings.size()]);
+		return startedTimings.values().toArray(new PerformanceTiming[0]);
 	}
 }
\ No newline at end of file
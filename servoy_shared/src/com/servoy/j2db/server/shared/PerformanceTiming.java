@@ -124,6 +124,8 @@ public class PerformanceTiming extends PerformanceData
 				return "User management"; //$NON-NLS-1$
 			case IDataServer.META_DATA_QUERY :
 				return "Meta data"; //$NON-NLS-1$
+			case IDataServer.RELATED_FOUNDSET_WAIT :
+				return "Wait for related foundset"; //$NON-NLS-1$
 		}
 		return "Unknown"; //$NON-NLS-1$
 	}
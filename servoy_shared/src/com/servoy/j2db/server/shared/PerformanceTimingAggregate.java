@@ -19,32 +19,40 @@ package com.servoy.j2db.server.shared;
 
 import java.util.Map;
 import java.util.Map.Entry;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
 
 import com.servoy.j2db.dataprocessing.IDataServer;
 
 /**
  * Timing of actions like queries in the server.
+ * <p>
+ * All counters are striped (LongAdder/LongAccumulator) so concurrent updates of the same action do not contend, they are summed when read.
+ * Timings are also recorded in a {@link LatencyHistogram} for percentiles, with one sample per record like the count, so percentiles are per record like the
+ * average.
  *
  * @author jblok
  */
 public class PerformanceTimingAggregate extends PerformanceAggregator
 {
 	private final String action;
-	private long min_ms;
-	private long max_ms;
-	private long s2; // used for running calculation of standard deviation
-	private int count;
+	private final LongAccumulator min_ms = new LongAccumulator(Math::min, Long.MAX_VALUE);
+	private final LongAccumulator max_ms = new LongAccumulator(Math::max, Long.MIN_VALUE);
+	private final LongAdder s2 = new LongAdder(); // used for running calculation of standard deviation
+	private final LongAdder count = new LongAdder();
 	private final int type;
-	private long xtotal_ms;
-	private long total_interval_ms;
+	private final LongAdder xtotal_ms = new LongAdder();
+	private final LongAdder total_interval_ms = new LongAdder();
+	private final LatencyHistogram histogram;
 
-	private PerformanceTimingAggregate totalSubActionTimes;
+	private volatile PerformanceTimingAggregate totalSubActionTimes;
 
 	public PerformanceTimingAggregate(String action, int type, int maxEntriesToKeep)
 	{
 		super(maxEntriesToKeep);
 		this.action = action;
 		this.type = type;
+		this.histogram = new LatencyHistogram();
 	}
 
 	public PerformanceTimingAggregate(PerformanceTimingAggregate copy)
@@ -53,27 +61,32 @@ public class PerformanceTimingAggregate extends PerformanceAggregator
 
 		this.action = copy.getAction();
 		this.type = copy.getType();
-		this.min_ms = copy.getMinTimeMS();
-		this.max_ms = copy.getMaxTimeMS();
-		this.s2 = copy.getS2();
-		this.count = copy.getCount();
-		this.xtotal_ms = copy.getTotalTimeMS();
-		this.total_interval_ms = copy.getTotalIntervalTimeMS();
+		this.min_ms.accumulate(copy.min_ms.get());
+		this.max_ms.accumulate(copy.max_ms.get());
+		this.s2.add(copy.getS2());
+		this.count.add(copy.getCount());
+		this.xtotal_ms.add(copy.getTotalTimeMS());
+		this.total_interval_ms.add(copy.getTotalIntervalTimeMS());
+		this.histogram = new LatencyHistogram(copy.histogram);
+		PerformanceTimingAggregate copySubActionTimes = copy.totalSubActionTimes;
+		this.totalSubActionTimes = copySubActionTimes == null ? null : new PerformanceTimingAggregate(copySubActionTimes);
 	}
 
 	public void updateTime(long interval_ms, long running_ms, int nrecords)
 	{
-		total_interval_ms += interval_ms;
-		xtotal_ms += running_ms;
-		min_ms = count == 0 ? running_ms : Math.min(min_ms, running_ms);
-		max_ms = count == 0 ? running_ms : Math.max(max_ms, running_ms);
-		s2 += (running_ms * running_ms);
-		count += nrecords;
+		total_interval_ms.add(interval_ms);
+		xtotal_ms.add(running_ms);
+		min_ms.accumulate(running_ms);
+		max_ms.accumulate(running_ms);
+		s2.add(running_ms * running_ms);
+		count.add(nrecords);
+		histogram.record(nrecords > 0 ? running_ms / nrecords : running_ms, nrecords);
 	}
 
 	public void updateSubActionTimes(Map<String, PerformanceTimingAggregate> newSubActionTimings, int nrecords)
 	{
 		long it = 0, rt = 0;
+		PerformanceTimingAggregate subActionTimes = totalSubActionTimes;
 		if (newSubActionTimings != null)
 		{
 			for (Entry<String, PerformanceTimingAggregate> newE : newSubActionTimings.entrySet())
@@ -82,11 +95,10 @@ public class PerformanceTimingAggregate extends PerformanceAggregator
 				addTiming(newE.getKey(), newSubTime.getTotalIntervalTimeMS(), newSubTime.getTotalTimeMS(), newSubTime.getType(), newSubTime.toMap(), nrecords);
 				if (newSubTime.getType() != IDataServer.METHOD_CALL_WAITING_FOR_USER_INPUT)
 				{
-					if (totalSubActionTimes == null)
+					if (subActionTimes == null)
 					{
 						// done here so that methods that don't call API will not create this unneeded instance
-						totalSubActionTimes = new PerformanceTimingAggregate(action + " - subactions", IDataServer.METHOD_CALL, getSubActionMaxEntries());
-						totalSubActionTimes.count = count - 1; // if only some of the calls (not first ones) call client side APIs, we still must average on all calls
+						subActionTimes = createTotalSubActionTimes();
 					}
 
 					it += newSubTime.getTotalIntervalTimeMS();
@@ -95,12 +107,24 @@ public class PerformanceTimingAggregate extends PerformanceAggregator
 			}
 		}
 
-		if (totalSubActionTimes != null)
+		if (subActionTimes != null)
 		{
-			totalSubActionTimes.updateTime(it, rt, nrecords); // it can happen that if in one parent method execution there are no child API calls, min will become 0 - that is normal
+			subActionTimes.updateTime(it, rt, nrecords); // it can happen that if in one parent method execution there are no child API calls, min will become 0 - that is normal
 		}
 	}
 
+	private synchronized PerformanceTimingAggregate createTotalSubActionTimes()
+	{
+		if (totalSubActionTimes == null)
+		{
+			PerformanceTimingAggregate subActionTimes = new PerformanceTimingAggregate(action + " - subactions", IDataServer.METHOD_CALL, getSubActionMaxEntries());
+			subActionTimes.count.add(getCount() - 1); // if only some of the calls (not first ones) call client side APIs, we still must average on all calls
+			subActionTimes.histogram.record(0, getCount() - 1);
+			totalSubActionTimes = subActionTimes;
+		}
+		return totalSubActionTimes;
+	}
+
 	public PerformanceTimingAggregate getTotalSubActionTimes()
 	{
 		return totalSubActionTimes;
@@ -108,12 +132,39 @@ public class PerformanceTimingAggregate extends PerformanceAggregator
 
 	public void updateTime(long total_interval_ms, long running_ms, long min_ms, long max_ms, long s2, int count)
 	{
-		this.total_interval_ms += total_interval_ms;
-		this.xtotal_ms += running_ms;
-		this.min_ms = Math.min(this.min_ms, min_ms);
-		this.max_ms = Math.max(this.max_ms, max_ms);
-		this.s2 += s2;
-		this.count += count;
+		updateTime(total_interval_ms, running_ms, min_ms, max_ms, s2, count, null);
+	}
+
+	/**
+	 * Merge the totals of another aggregate into this one.
+	 *
+	 * @param histogram the timings of the other aggregate, when null the average running time is recorded for each of the count records
+	 */
+	public void updateTime(long total_interval_ms, long running_ms, long min_ms, long max_ms, long s2, int count, LatencyHistogram histogram)
+	{
+		this.total_interval_ms.add(total_interval_ms);
+		this.xtotal_ms.add(running_ms);
+		this.min_ms.accumulate(min_ms);
+		this.max_ms.accumulate(max_ms);
+		this.s2.add(s2);
+		this.count.add(count);
+		if (histogram != null)
+		{
+			this.histogram.add(histogram);
+		}
+		else
+		{
+			this.histogram.record(count > 0 ? running_ms / count : running_ms, count);
+		}
+	}
+
+	/**
+	 * Merge another aggregate into this one, including its timing histogram.
+	 */
+	public void updateTime(PerformanceTimingAggregate other)
+	{
+		updateTime(other.getTotalIntervalTimeMS(), other.getTotalTimeMS(), other.min_ms.get(), other.max_ms.get(), other.getS2(), other.getCount(),
+			other.histogram);
 	}
 
 	public String getAction()
@@ -133,39 +184,73 @@ public class PerformanceTimingAggregate extends PerformanceAggregator
 
 	public long getAverageIntervalTimeMS()
 	{
-		if (count == 0) return total_interval_ms;
-		return (total_interval_ms / count);
+		int c = getCount();
+		long total = getTotalIntervalTimeMS();
+		if (c == 0) return total;
+		return (total / c);
 	}
 
 	public long getAverageTimeMS()
 	{
-		if (count == 0) return xtotal_ms;
-		return (xtotal_ms / count);
+		int c = getCount();
+		long total = getTotalTimeMS();
+		if (c == 0) return total;
+		return (total / c);
 	}
 
 	public long getTotalIntervalTimeMS()
 	{
-		return total_interval_ms;
+		return total_interval_ms.sum();
 	}
 
 	public long getTotalTimeMS()
 	{
-		return xtotal_ms;
+		return xtotal_ms.sum();
 	}
 
 	public long getMinTimeMS()
 	{
-		return min_ms;
+		long min = min_ms.get();
+		return min == Long.MAX_VALUE ? 0 : min;
 	}
 
 	public long getMaxTimeMS()
 	{
-		return max_ms;
+		long max = max_ms.get();
+		return max == Long.MIN_VALUE ? 0 : max;
+	}
+
+	/**
+	 * Get the running time at the percentile, accurate to about 6%.
+	 *
+	 * @param percentile between 0 and 100
+	 */
+	public long getPercentileTimeMS(double percentile)
+	{
+		return Math.min(histogram.getValueAtPercentile(percentile), getMaxTimeMS());
+	}
+
+	public long getMedianTimeMS()
+	{
+		return getPercentileTimeMS(50);
+	}
+
+	public long get95PercentileTimeMS()
+	{
+		return getPercentileTimeMS(95);
+	}
+
+	public long get99PercentileTimeMS()
+	{
+		return getPercentileTimeMS(99);
 	}
 
 	public double getStandardDeviation()
 	{
+		long count = this.count.sum();
 		if (count <= 1) return 0;
+		long s2 = this.s2.sum();
+		long xtotal_ms = getTotalTimeMS();
 
 		// see http://en.wikipedia.org/wiki/Standard_deviation for calculating standard deviation
 		// see http://easycalculation.com/statistics/standard-deviation.php for calculating stdev
@@ -179,12 +264,12 @@ public class PerformanceTimingAggregate extends PerformanceAggregator
 
 	public int getCount()
 	{
-		return count;
+		return (int)count.sum();
 	}
 
 	public long getS2()
 	{
-		return s2;
+		return s2.sum();
 	}
 
 }
@@ -1121,7 +1121,7 @@ public class PersistHelper
 		List<AbstractBase> hierarchy = PersistHelper.getOverrideHierarchy(extendable);
 		for (int i = hierarchy.size() - 1; i >= 0; i--)
 		{
-			map.putAll(hierarchy.get(i).getPropertiesMap());
+			map.putAll(hierarchy.get(i).getPropertiesView());
 		}
 		return map;
 	}
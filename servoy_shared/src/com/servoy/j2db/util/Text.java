@@ -17,8 +17,11 @@
 package com.servoy.j2db.util;
 
 
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
 import com.servoy.base.util.ITagResolver;
 import com.servoy.base.util.TagParser;
+import com.servoy.base.util.TagTemplate;
 import com.servoy.j2db.J2DBGlobals;
 
 
@@ -29,9 +32,29 @@ import com.servoy.j2db.J2DBGlobals;
  */
 public class Text
 {
+	private static final int MAX_CACHED_TEMPLATES = 10000;
+
+	// bounded, least recently used templates are dropped, so runtime texts that are set once do not push out the design time ones
+	private static final Cache<String, TagTemplate> templates = CacheBuilder.newBuilder().maximumSize(MAX_CACHED_TEMPLATES).build();
 
 	public static String processTags(String s, ITagResolver resolver)
 	{
 		return TagParser.processTags(s, resolver, J2DBGlobals.getServiceProvider());
 	}
+
+	/**
+	 * Get the parsed template of a tag string, templates are cached per string.
+	 * Use this for design time strings that are rendered repeatedly, not for data values.
+	 */
+	public static TagTemplate getTemplate(String s)
+	{
+		if (s == null) return null;
+		TagTemplate template = templates.getIfPresent(s);
+		if (template == null)
+		{
+			template = TagTemplate.compile(s);
+			templates.put(s, template);
+		}
+		return template;
+	}
 }
@@ -310,6 +310,21 @@ public class ExceptionCheckingDataServer implements IDataServer
 		}
 	}
 
+	@Override
+	public IDataSet performCursorQuery(String client_id, String server_name, String transaction_id, QuerySelect pageSelect, ArrayList<TableFilter> filters,
+		int startRow, int pageSize) throws ServoyException, RemoteException
+	{
+		try
+		{
+			return delegate.performCursorQuery(client_id, server_name, transaction_id, pageSelect, filters, startRow, pageSize);
+		}
+		catch (ServoyException | RemoteException e)
+		{
+			checkException(e);
+			throw e;
+		}
+	}
+
 	/**
 	 * @param client_id
 	 * @param server_name